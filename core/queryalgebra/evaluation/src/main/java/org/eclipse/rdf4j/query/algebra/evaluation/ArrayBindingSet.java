@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.AbstractBindingSet;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.impl.SimpleBinding;
+
+/**
+ * A {@link BindingSet} that stores the values of the variables of a query in an array, indexed by the slots of a
+ * {@link Layout}. The layout of a query is computed once, when the query is prepared for evaluation, and is shared by
+ * all of its binding sets, so that operators can read and copy bindings by slot, without hashing variable names.
+ * <p>
+ * Like {@link QueryBindingSet}, a variable can be bound to <tt>null</tt> to mark that it must remain unbound.
+ */
+public class ArrayBindingSet extends AbstractBindingSet {
+
+	private static final long serialVersionUID = -3127485924640722127L;
+
+	/**
+	 * The assignment of the variables of a query to slots. Layouts are immutable. A layout can be extended with
+	 * variables that are not part of the query, e.g. bindings that are passed to the query; the slots of the original
+	 * variables stay the same, so that operators that have been prepared for the original layout can also use binding
+	 * sets of extended layouts.
+	 */
+	public static final class Layout implements Serializable {
+
+		private static final long serialVersionUID = 2207403637925520137L;
+
+		private final String[] names;
+
+		private final Map<String, Integer> slots;
+
+		/**
+		 * The layout that this layout extends, or this layout.
+		 */
+		private final Layout base;
+
+		/**
+		 * Creates a layout with a slot for each of the specified variable names.
+		 */
+		public Layout(Collection<String> names) {
+			this.names = new LinkedHashSet<>(names).toArray(new String[0]);
+			this.slots = index(this.names);
+			this.base = this;
+		}
+
+		private Layout(Layout base, String[] names) {
+			this.names = names;
+			this.slots = index(names);
+			this.base = base;
+		}
+
+		private static Map<String, Integer> index(String[] names) {
+			Map<String, Integer> slots = new HashMap<>(names.length * 2);
+			for (int i = 0; i < names.length; i++) {
+				slots.put(names[i], i);
+			}
+			return slots;
+		}
+
+		/**
+		 * Gets the slot of a variable.
+		 *
+		 * @return The slot, or <tt>-1</tt> if the variable is not part of this layout.
+		 */
+		public int getSlot(String name) {
+			Integer slot = slots.get(name);
+			return slot != null ? slot : -1;
+		}
+
+		public String getName(int slot) {
+			return names[slot];
+		}
+
+		public int size() {
+			return names.length;
+		}
+
+		/**
+		 * Creates a layout that extends this layout with additional variables.
+		 */
+		public Layout extend(Collection<String> names) {
+			String[] extended = Arrays.copyOf(this.names, this.names.length + names.size());
+			int i = this.names.length;
+			for (String name : names) {
+				extended[i++] = name;
+			}
+			return new Layout(base, extended);
+		}
+	}
+
+	private final Layout layout;
+
+	private final Value[] values;
+
+	/**
+	 * Marks the slots that are bound to <tt>null</tt>, <tt>null</tt> if there are none.
+	 */
+	private boolean[] nullBound;
+
+	/**
+	 * Creates an empty binding set.
+	 */
+	public ArrayBindingSet(Layout layout) {
+		this.layout = layout;
+		this.values = new Value[layout.size()];
+	}
+
+	/**
+	 * Creates a copy of a binding set.
+	 */
+	public ArrayBindingSet(ArrayBindingSet other) {
+		this.layout = other.layout;
+		this.values = other.values.clone();
+		this.nullBound = other.nullBound != null ? other.nullBound.clone() : null;
+	}
+
+	/**
+	 * Gets a binding set with the specified layout, or an extension of it, that has the same bindings as the specified
+	 * binding set. The result must not be modified.
+	 *
+	 * @return The specified binding set if it already has the layout, or a new binding set.
+	 */
+	public static ArrayBindingSet of(Layout layout, BindingSet bindings) {
+		if (bindings instanceof ArrayBindingSet && ((ArrayBindingSet) bindings).hasLayout(layout)) {
+			return (ArrayBindingSet) bindings;
+		}
+
+		Set<String> names = bindings.getBindingNames();
+		List<String> unknown = null;
+		for (String name : names) {
+			if (layout.getSlot(name) < 0) {
+				if (unknown == null) {
+					unknown = new ArrayList<>();
+				}
+				unknown.add(name);
+			}
+		}
+
+		ArrayBindingSet result = new ArrayBindingSet(unknown == null ? layout : layout.extend(unknown));
+		for (String name : names) {
+			result.setBinding(result.layout.getSlot(name), bindings.getValue(name));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the bindings of this binding set can be accessed by the slots of a layout.
+	 */
+	public boolean hasLayout(Layout layout) {
+		return this.layout == layout || this.layout.base == layout;
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Gets the value of a slot.
+	 *
+	 * @return The value, or <tt>null</tt> if the slot is not bound or bound to <tt>null</tt>.
+	 */
+	public Value getValue(int slot) {
+		return slot < values.length ? values[slot] : null;
+	}
+
+	/**
+	 * Checks whether a slot is bound, possibly to <tt>null</tt>.
+	 */
+	public boolean hasBinding(int slot) {
+		return slot < values.length && (values[slot] != null || nullBound != null && nullBound[slot]);
+	}
+
+	/**
+	 * Binds a slot, replacing its current value.
+	 *
+	 * @param value The value, or <tt>null</tt> to mark that the variable must remain unbound.
+	 */
+	public void setBinding(int slot, Value value) {
+		values[slot] = value;
+		if (value == null) {
+			if (nullBound == null) {
+				nullBound = new boolean[values.length];
+			}
+			nullBound[slot] = true;
+		} else if (nullBound != null) {
+			nullBound[slot] = false;
+		}
+	}
+
+	/**
+	 * Binds a variable of the layout of this binding set, replacing its current value.
+	 *
+	 * @throws IllegalArgumentException If the variable is not part of the layout.
+	 */
+	public void setBinding(String name, Value value) {
+		int slot = layout.getSlot(name);
+		if (slot < 0) {
+			throw new IllegalArgumentException("variable not part of layout: " + name);
+		}
+		setBinding(slot, value);
+	}
+
+	/**
+	 * Removes the bindings of the slots that are not marked in the specified array.
+	 *
+	 * @param slots Marks the slots to keep, slots beyond its length are removed.
+	 */
+	public void retainAll(boolean[] slots) {
+		for (int i = 0; i < values.length; i++) {
+			if (i >= slots.length || !slots[i]) {
+				values[i] = null;
+				if (nullBound != null) {
+					nullBound[i] = false;
+				}
+			}
+		}
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		Set<String> names = new LinkedHashSet<>();
+		for (int i = 0; i < values.length; i++) {
+			if (hasBinding(i)) {
+				names.add(layout.getName(i));
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public Value getValue(String bindingName) {
+		int slot = layout.getSlot(bindingName);
+		return slot >= 0 ? values[slot] : null;
+	}
+
+	@Override
+	public Binding getBinding(String bindingName) {
+		Value value = getValue(bindingName);
+		return value != null ? new SimpleBinding(bindingName, value) : null;
+	}
+
+	@Override
+	public boolean hasBinding(String bindingName) {
+		int slot = layout.getSlot(bindingName);
+		return slot >= 0 && hasBinding(slot);
+	}
+
+	@Override
+	public Iterator<Binding> iterator() {
+		return new Iterator<Binding>() {
+
+			private int next = advance(0);
+
+			private int advance(int slot) {
+				while (slot < values.length && values[slot] == null) {
+					slot++;
+				}
+				return slot;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < values.length;
+			}
+
+			@Override
+			public Binding next() {
+				if (next >= values.length) {
+					throw new NoSuchElementException();
+				}
+				Binding binding = new SimpleBinding(layout.getName(next), values[next]);
+				next = advance(next + 1);
+				return binding;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (hasBinding(i)) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof ArrayBindingSet && ((ArrayBindingSet) other).layout == layout) {
+			ArrayBindingSet that = (ArrayBindingSet) other;
+			for (int i = 0; i < values.length; i++) {
+				if (hasBinding(i) != that.hasBinding(i) || values[i] != null && !values[i].equals(that.values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return super.equals(other);
+	}
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+
+/**
+ * A triple source that can look up the statements of several patterns at once, e.g. in the order of its indexes.
+ * Nested-loop joins with a statement pattern as right argument are evaluated as bind joins on such triple sources,
+ * which look up the right argument for a batch of solutions of the left argument at a time.
+ *
+ * @since 3.3.0
+ */
+public interface BatchTripleSource extends TripleSource {
+
+	/**
+	 * Gets all statements that match any of several lookups. Each lookup consists of a subject, a predicate and an
+	 * object, any of which may be <tt>null</tt> to indicate a wildcard, like the arguments of
+	 * {@link #getStatements(org.eclipse.rdf4j.model.Resource, org.eclipse.rdf4j.model.IRI, Value, Resource...)}.
+	 * The triple source may perform the lookups in any order, and returns the statements of each lookup, in no
+	 * particular order.
+	 *
+	 * @param lookups  The subject, predicate and object of each lookup. The subjects must be {@link Resource}s and the
+	 *                 predicates {@link org.eclipse.rdf4j.model.IRI}s.
+	 * @param contexts The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                 optional. If no contexts are supplied the method operates on the entire repository.
+	 * @return An iterator over the statements of all lookups.
+	 * @throws QueryEvaluationException If the triple source failed to get the statements.
+	 */
+	public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsForLookups(
+			List<Value[]> lookups, Resource... contexts) throws QueryEvaluationException;
+
+	/**
+	 * Checks whether this triple source performs the lookups of {@link #getStatementsForLookups(List, Resource...)}
+	 * more efficiently than one after another. Bind joins are only selected for triple sources that do.
+	 *
+	 * @return <tt>true</tt> by default.
+	 */
+	default boolean supportsBatchLookups() {
+		return true;
+	}
+}
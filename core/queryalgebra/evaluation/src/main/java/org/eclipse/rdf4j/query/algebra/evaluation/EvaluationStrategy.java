@@ -85,6 +85,20 @@ public interface EvaluationStrategy extends FederatedServiceResolver {
 	CloseableIteration<BindingSet, QueryEvaluationException> evaluate(TupleExpr expr, BindingSet bindings)
 			throws QueryEvaluationException;
 
+	/**
+	 * Prepares a tuple expression for repeated evaluation. The returned step is equivalent to calling
+	 * {@link #evaluate(TupleExpr, BindingSet)} with the expression, but strategies may resolve the operators of the
+	 * expression once, rather than every time it is evaluated. The expression must not be modified while the step is in
+	 * use.
+	 *
+	 * @param expr The tuple expression to prepare.
+	 * @return A step that evaluates the expression.
+	 * @since 3.3.0
+	 */
+	default QueryEvaluationStep precompile(TupleExpr expr) {
+		return bindings -> evaluate(expr, bindings);
+	}
+
 	/**
 	 * Gets the value of this expression.
 	 *
@@ -95,6 +109,18 @@ public interface EvaluationStrategy extends FederatedServiceResolver {
 	Value evaluate(ValueExpr expr, BindingSet bindings)
 			throws ValueExprEvaluationException, QueryEvaluationException;
 
+	/**
+	 * Prepares a value expression for repeated evaluation. The returned step is equivalent to calling
+	 * {@link #evaluate(ValueExpr, BindingSet)} with the expression.
+	 *
+	 * @param expr The value expression to prepare.
+	 * @return A step that evaluates the expression.
+	 * @since 3.3.0
+	 */
+	default QueryValueEvaluationStep precompile(ValueExpr expr) {
+		return bindings -> evaluate(expr, bindings);
+	}
+
 	/**
 	 * Evaluates the boolean expression on the supplied TripleSource object.
 	 *
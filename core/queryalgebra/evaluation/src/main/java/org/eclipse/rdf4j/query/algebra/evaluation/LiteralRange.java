@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+/**
+ * A range of literal values of one {@link Type}, used to restrict the objects of a statement pattern to literals
+ * between a lower and an upper bound. Literals are ordered by a key that depends on the type: numeric literals by their
+ * <tt>double</tt> value, date/time literals by their time in milliseconds and strings by their label.
+ * <p>
+ * Ranges are used to look up candidate statements, e.g. in a sorted index, and may contain more literals than the
+ * expression they are derived from. The expression still needs to be evaluated on the results.
+ */
+public final class LiteralRange {
+
+	/**
+	 * The types of literals that can be ordered in a range.
+	 */
+	public enum Type {
+
+		/**
+		 * Literals with a numeric datatype, ordered by {@link Double#compare(double, double)} on their <tt>double</tt>
+		 * value, so that <tt>NaN</tt> is greater than any other value.
+		 */
+		NUMERIC,
+
+		/**
+		 * Literals of type <tt>xsd:dateTime</tt> or <tt>xsd:dateTimeStamp</tt>, ordered by their time in milliseconds.
+		 * Values without a timezone are ordered as if they were in UTC.
+		 */
+		DATE_TIME,
+
+		/**
+		 * Literals of type <tt>xsd:string</tt> or <tt>rdf:langString</tt>, ordered by their label.
+		 */
+		STRING
+	}
+
+	private final Type type;
+
+	private final double lowerNumber;
+
+	private final double upperNumber;
+
+	private final String lowerString;
+
+	private final String upperString;
+
+	private final boolean upperInclusive;
+
+	private LiteralRange(Type type, double lowerNumber, double upperNumber, String lowerString, String upperString,
+			boolean upperInclusive) {
+		this.type = type;
+		this.lowerNumber = lowerNumber;
+		this.upperNumber = upperNumber;
+		this.lowerString = lowerString;
+		this.upperString = upperString;
+		this.upperInclusive = upperInclusive;
+	}
+
+	/**
+	 * Creates a range of numeric or date/time literals, including both bounds.
+	 *
+	 * @param type  {@link Type#NUMERIC} or {@link Type#DATE_TIME}.
+	 * @param lower The lower bound, {@link Double#NEGATIVE_INFINITY} for no lower bound.
+	 * @param upper The upper bound, {@link Double#NaN} for no upper bound.
+	 */
+	public static LiteralRange numeric(Type type, double lower, double upper) {
+		if (type == Type.STRING) {
+			throw new IllegalArgumentException("Not a numeric range type: " + type);
+		}
+		return new LiteralRange(type, lower, upper, null, null, true);
+	}
+
+	/**
+	 * Creates a range of string literals, including both bounds.
+	 *
+	 * @param lower The lower bound, or <tt>null</tt> for no lower bound.
+	 * @param upper The upper bound, or <tt>null</tt> for no upper bound.
+	 */
+	public static LiteralRange strings(String lower, String upper) {
+		return new LiteralRange(Type.STRING, 0, 0, lower, upper, true);
+	}
+
+	/**
+	 * Creates a range of the string literals whose label starts with a prefix.
+	 */
+	public static LiteralRange prefix(String prefix) {
+		// the upper bound is the smallest string that is greater than all strings with the prefix
+		int end = prefix.length();
+		while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+			end--;
+		}
+		if (end == 0) {
+			return new LiteralRange(Type.STRING, 0, 0, prefix, null, true);
+		}
+		String upper = prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+		return new LiteralRange(Type.STRING, 0, 0, prefix, upper, false);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the lower bound of a numeric or date/time range, {@link Double#NEGATIVE_INFINITY} if there is none.
+	 */
+	public double getLowerNumber() {
+		return lowerNumber;
+	}
+
+	/**
+	 * Gets the upper bound of a numeric or date/time range, {@link Double#NaN} if there is none.
+	 */
+	public double getUpperNumber() {
+		return upperNumber;
+	}
+
+	/**
+	 * Gets the lower bound of a string range, <tt>null</tt> if there is none.
+	 */
+	public String getLowerString() {
+		return lowerString;
+	}
+
+	/**
+	 * Gets the upper bound of a string range, <tt>null</tt> if there is none.
+	 */
+	public String getUpperString() {
+		return upperString;
+	}
+
+	/**
+	 * Checks whether the upper bound is part of the range. The lower bound is always part of the range.
+	 */
+	public boolean isUpperInclusive() {
+		return upperInclusive;
+	}
+
+	/**
+	 * Checks whether a value is a literal of the type of this range and lies between its bounds.
+	 */
+	public boolean contains(Value value) {
+		if (!(value instanceof Literal) || getType((Literal) value) != type) {
+			return false;
+		}
+		Literal literal = (Literal) value;
+		if (type == Type.STRING) {
+			return compareLower(literal.getLabel()) >= 0 && compareUpper(literal.getLabel()) <= 0;
+		}
+		double key = getNumberKey(type, literal);
+		if (Double.isNaN(key) && !(type == Type.NUMERIC && isNumber(literal))) {
+			// not a valid value
+			return false;
+		}
+		return containsNumber(key);
+	}
+
+	/**
+	 * Checks whether a key of a numeric or date/time literal lies between the bounds of this range.
+	 */
+	public boolean containsNumber(double key) {
+		return compareLower(key) >= 0 && compareUpper(key) <= 0;
+	}
+
+	/**
+	 * Compares a numeric or date/time key with the lower bound of this range.
+	 *
+	 * @return A negative number if the key is below the lower bound, zero or a positive number otherwise.
+	 */
+	public int compareLower(double key) {
+		return Double.compare(key, lowerNumber);
+	}
+
+	/**
+	 * Compares a numeric or date/time key with the upper bound of this range.
+	 *
+	 * @return A positive number if the key is above the upper bound, zero or a negative number otherwise.
+	 */
+	public int compareUpper(double key) {
+		return Double.compare(key, upperNumber);
+	}
+
+	/**
+	 * Compares a string key with the lower bound of this range.
+	 *
+	 * @return A negative number if the key is below the lower bound, zero or a positive number otherwise.
+	 */
+	public int compareLower(String key) {
+		return lowerString == null ? 1 : key.compareTo(lowerString);
+	}
+
+	/**
+	 * Compares a string key with the upper bound of this range.
+	 *
+	 * @return A positive number if the key is above the upper bound, zero or a negative number otherwise.
+	 */
+	public int compareUpper(String key) {
+		if (upperString == null) {
+			return -1;
+		}
+		int diff = key.compareTo(upperString);
+		return diff == 0 && !upperInclusive ? 1 : diff;
+	}
+
+	/**
+	 * Gets the range type of a literal.
+	 *
+	 * @return The type, or <tt>null</tt> if literals of this datatype can not be ordered in a range.
+	 */
+	public static Type getType(Literal literal) {
+		IRI datatype = literal.getDatatype();
+		if (XMLDatatypeUtil.isNumericDatatype(datatype)) {
+			return Type.NUMERIC;
+		} else if (datatype.equals(XMLSchema.DATETIME) || datatype.equals(XMLSchema.DATETIMESTAMP)) {
+			return Type.DATE_TIME;
+		} else if (datatype.equals(XMLSchema.STRING) || datatype.equals(RDF.LANGSTRING)) {
+			return Type.STRING;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the key of a numeric or date/time literal.
+	 *
+	 * @return The key, or {@link Double#NaN} if the literal is not a valid value of the type. Note that numeric
+	 *         literals can also have the value <tt>NaN</tt>, see {@link #isNumber(Literal)}.
+	 */
+	public static double getNumberKey(Type type, Literal literal) {
+		try {
+			if (type == Type.NUMERIC) {
+				return literal.doubleValue();
+			} else if (type == Type.DATE_TIME) {
+				XMLGregorianCalendar calendar = literal.calendarValue();
+				if (calendar.getTimezone() == DatatypeConstants.FIELD_UNDEFINED) {
+					calendar = (XMLGregorianCalendar) calendar.clone();
+					calendar.setTimezone(0);
+				}
+				return calendar.toGregorianCalendar().getTimeInMillis();
+			}
+		} catch (IllegalArgumentException e) {
+			// not a valid value, fall through
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Checks whether a numeric literal has a valid value, which may be <tt>NaN</tt>.
+	 */
+	public static boolean isNumber(Literal literal) {
+		try {
+			literal.doubleValue();
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		if (type == Type.STRING) {
+			return type + " [" + lowerString + ", " + upperString + (upperInclusive ? "]" : ")");
+		}
+		return type + " [" + lowerNumber + ", " + upperNumber + "]";
+	}
+}
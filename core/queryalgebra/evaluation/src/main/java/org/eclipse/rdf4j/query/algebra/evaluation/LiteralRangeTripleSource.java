@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+
+/**
+ * A triple source that can look up statements with a literal object in a {@link LiteralRange}, e.g. using a sorted
+ * index. Range and prefix filters on the object of a statement pattern are pushed down to such triple sources.
+ */
+public interface LiteralRangeTripleSource extends TripleSource {
+
+	/**
+	 * Gets all statements that have a specific subject and/or predicate and a literal object in a range. The subject
+	 * and predicate may be null to indicate wildcards.
+	 *
+	 * @param subj     A Resource specifying the subject, or <tt>null</tt> for a wildcard.
+	 * @param pred     A URI specifying the predicate, or <tt>null</tt> for a wildcard.
+	 * @param range    The range of the literal objects.
+	 * @param contexts The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                 optional. If no contexts are supplied the method operates on the entire repository.
+	 * @return An iterator over the relevant statements.
+	 * @throws QueryEvaluationException If the triple source failed to get the statements.
+	 */
+	public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsInRange(Resource subj,
+			IRI pred, LiteralRange range, Resource... contexts) throws QueryEvaluationException;
+}
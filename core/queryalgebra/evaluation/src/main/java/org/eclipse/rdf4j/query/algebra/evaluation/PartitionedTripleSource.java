@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+
+/**
+ * A triple source that can split the statements of a pattern into partitions, which can be read concurrently. Large
+ * statement patterns are scanned in parallel on such triple sources, if parallel evaluation is enabled.
+ *
+ * @since 3.3.0
+ */
+public interface PartitionedTripleSource extends TripleSource {
+
+	/**
+	 * Gets all statements that have a specific subject, predicate and/or object, split into partitions. Together, the
+	 * partitions contain the same statements as {@link #getStatements(Resource, IRI, Value, Resource...)}. Each
+	 * partition must be closed, and may be read by a different thread.
+	 *
+	 * @param subj       A Resource specifying the subject, or <tt>null</tt> for a wildcard.
+	 * @param pred       A URI specifying the predicate, or <tt>null</tt> for a wildcard.
+	 * @param obj        A Value specifying the object, or <tt>null</tt> for a wildcard.
+	 * @param partitions The preferred number of partitions. Fewer partitions are returned for small numbers of
+	 *                   statements.
+	 * @param contexts   The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                   optional. If no contexts are supplied the method operates on the entire repository.
+	 * @return The iterators over the statements of each partition, at least one.
+	 * @throws QueryEvaluationException If the triple source failed to get the statements.
+	 */
+	public List<CloseableIteration<? extends Statement, QueryEvaluationException>> getStatementPartitions(
+			Resource subj, IRI pred, Value obj, int partitions, Resource... contexts) throws QueryEvaluationException;
+}
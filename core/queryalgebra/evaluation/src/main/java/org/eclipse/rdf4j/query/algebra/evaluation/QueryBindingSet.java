@@ -50,6 +50,11 @@ public class QueryBindingSet extends AbstractBindingSet {
 	public void addAll(BindingSet bindingSet) {
 		if (bindingSet instanceof QueryBindingSet) {
 			bindings.putAll(((QueryBindingSet) bindingSet).bindings);
+		} else if (bindingSet instanceof ArrayBindingSet) {
+			// also copy the variables that are bound to null
+			for (String name : bindingSet.getBindingNames()) {
+				bindings.put(name, bindingSet.getValue(name));
+			}
 		} else {
 			for (Binding binding : bindingSet) {
 				this.addBinding(binding);
@@ -31,7 +31,11 @@ public class QueryContext {
 
 	private final Map<String, Object> attributes = new HashMap<>();
 
-	private QueryContext previous;
+	/**
+	 * The context of the current thread before {@link #begin()}, per thread so that the threads that evaluate a query
+	 * in parallel can share its context.
+	 */
+	private final ThreadLocal<QueryContext> previous = new ThreadLocal<>();
 
 	public QueryContext() {
 	}
@@ -41,7 +45,7 @@ public class QueryContext {
 	}
 
 	public void begin() {
-		this.previous = queryContext.get();
+		previous.set(queryContext.get());
 		queryContext.set(this);
 	}
 
@@ -58,9 +62,11 @@ public class QueryContext {
 	}
 
 	public void end() {
+		QueryContext previousContext = previous.get();
+		previous.remove();
 		queryContext.remove();
-		if (previous != null) {
-			queryContext.set(previous);
+		if (previousContext != null) {
+			queryContext.set(previousContext);
 		}
 	}
 }
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+
+/**
+ * A {@link TupleExpr} that has been prepared for evaluation by {@link EvaluationStrategy#precompile(TupleExpr)}. A step
+ * can be evaluated many times, e.g. once for every solution of the left argument of a join, without inspecting the
+ * query model again.
+ *
+ * @see QueryValueEvaluationStep
+ */
+@FunctionalInterface
+public interface QueryEvaluationStep {
+
+	/**
+	 * Evaluates the prepared expression with the specified set of variable bindings as input.
+	 *
+	 * @param bindings The variables bindings to use for evaluating the expression.
+	 * @return A closeable iterator over the variable binding sets that match the expression.
+	 */
+	CloseableIteration<BindingSet, QueryEvaluationException> evaluate(BindingSet bindings)
+			throws QueryEvaluationException;
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+
+/**
+ * A {@link ValueExpr} that has been prepared for evaluation by {@link EvaluationStrategy#precompile(ValueExpr)}, with
+ * variables and functions resolved in advance.
+ *
+ * @see QueryEvaluationStep
+ */
+@FunctionalInterface
+public interface QueryValueEvaluationStep {
+
+	/**
+	 * Gets the value of the prepared expression.
+	 *
+	 * @param bindings The variables bindings to use for evaluating the expression.
+	 * @return The value that the expression evaluates to.
+	 * @throws ValueExprEvaluationException If the expression could not be evaluated, e.g. because a variable is not
+	 *                                      bound.
+	 */
+	Value evaluate(BindingSet bindings) throws ValueExprEvaluationException, QueryEvaluationException;
+}
@@ -8,10 +8,16 @@
 package org.eclipse.rdf4j.query.algebra.evaluation.impl;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizerPipeline;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Abstract base class for {@link ExtendedEvaluationStrategy}.
  *
@@ -26,6 +32,10 @@ public abstract class AbstractEvaluationStrategyFactory implements EvaluationStr
 
 	private QueryOptimizerPipeline pipeline;
 
+	private int parallelism = 1;
+
+	private ThreadPoolExecutor executor;
+
 	@Override
 	public void setQuerySolutionCacheThreshold(long threshold) {
 		this.querySolutionCacheThreshold = threshold;
@@ -46,6 +56,52 @@ public abstract class AbstractEvaluationStrategyFactory implements EvaluationStr
 		return Optional.ofNullable(pipeline);
 	}
 
+	/**
+	 * Sets the number of threads that the strategies created by this factory evaluate a query with. If the parallelism
+	 * is greater than <tt>1</tt>, independent operators of a query are evaluated concurrently by a pool of daemon
+	 * threads shared by all strategies of this factory, see
+	 * {@link StrictEvaluationStrategy#setParallelEvaluation(Executor, int)}. By default, queries are evaluated by a
+	 * single thread.
+	 *
+	 * @param parallelism The number of threads.
+	 * @since 3.3.0
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		if (parallelism != this.parallelism) {
+			this.parallelism = Math.max(1, parallelism);
+			if (executor != null) {
+				// running tasks are completed
+				executor.shutdown();
+				executor = null;
+			}
+		}
+	}
+
+	/**
+	 * @since 3.3.0
+	 */
+	public synchronized int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Enables parallel evaluation for a strategy created by this factory, if the parallelism is greater than
+	 * <tt>1</tt>.
+	 *
+	 * @since 3.3.0
+	 */
+	protected synchronized void configureParallelEvaluation(StrictEvaluationStrategy strategy) {
+		if (parallelism > 1) {
+			if (executor == null) {
+				executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<>(),
+						new ThreadFactoryBuilder().setNameFormat("rdf4j-query-evaluation-%d").setDaemon(true).build());
+				executor.allowCoreThreadTimeOut(true);
+			}
+			strategy.setParallelEvaluation(executor, parallelism);
+		}
+	}
+
 	@Override
 	public boolean isTrackResultSize() {
 		return trackResultSize;
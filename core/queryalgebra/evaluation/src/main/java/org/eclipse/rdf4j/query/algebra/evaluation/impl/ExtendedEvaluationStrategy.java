@@ -14,7 +14,13 @@ import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
 import org.eclipse.rdf4j.query.algebra.MathExpr;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
@@ -58,4 +64,27 @@ public class ExtendedEvaluationStrategy extends TupleFunctionEvaluationStrategy
 		throw new ValueExprEvaluationException("Both arguments must be literals");
 	}
 
+	@Override
+	protected QueryValueEvaluationStep precompile(ValueExpr expr, ArrayBindingSet.Layout layout) {
+		if (expr instanceof Compare) {
+			QueryValueEvaluationStep left = precompile(((Compare) expr).getLeftArg(), layout);
+			QueryValueEvaluationStep right = precompile(((Compare) expr).getRightArg(), layout);
+			CompareOp operator = ((Compare) expr).getOperator();
+			return bindings -> BooleanLiteral.valueOf(
+					QueryEvaluationUtil.compare(left.evaluate(bindings), right.evaluate(bindings), operator, false));
+		} else if (expr instanceof MathExpr) {
+			return bindings -> evaluate((MathExpr) expr, bindings);
+		}
+		return super.precompile(expr, layout);
+	}
+
+	@Override
+	protected LiteralRange getLiteralRange(ValueExpr condition, Var objVar, BindingSet bindings) {
+		LiteralRange range = super.getLiteralRange(condition, objVar, bindings);
+		if (condition instanceof Compare && range != null && range.getType() == LiteralRange.Type.DATE_TIME) {
+			// extended comparison also matches date/time values of other calendar datatypes
+			return null;
+		}
+		return range;
+	}
 }
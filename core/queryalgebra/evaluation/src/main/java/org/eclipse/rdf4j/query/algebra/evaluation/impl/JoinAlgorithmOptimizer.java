@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.LeftJoin;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.Service;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.BindJoinIteration;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.HashJoinIteration;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.JoinIterator;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.helpers.TupleExprs;
+
+/**
+ * Selects the algorithm of the joins of a query, based on the cardinalities of {@link EvaluationStatistics}. A join is
+ * evaluated as an index nested-loop join, which evaluates the right argument for every solution of the left argument,
+ * unless a hash join, which evaluates both arguments once, is estimated to be cheaper. The selected algorithm is set on
+ * the join, see {@link Join#getAlgorithmName()}, and shows in the query explanation.
+ * <p>
+ * Hash joins are only selected for right arguments that consist of statement patterns, which give the same solutions
+ * without the bindings of the left argument, and for joins that are not evaluated repeatedly themselves, e.g. as the
+ * right argument of a nested-loop join. The algorithm of joins with a right argument that is out of scope for the
+ * bindings of the left argument is left to the evaluation strategy.
+ * <p>
+ * If the triple source is a {@link BatchTripleSource} that {@link BatchTripleSource#supportsBatchLookups() supports
+ * batch lookups}, nested-loop joins with a single statement pattern as right argument and a large left argument are
+ * evaluated as bind joins, which look up the statement pattern for batches of solutions of the left argument.
+ *
+ * @since 3.3.0
+ */
+public class JoinAlgorithmOptimizer implements QueryOptimizer {
+
+	/**
+	 * The cost of looking up the right argument of a nested-loop join for a solution of the left argument, relative to
+	 * the cost of producing a solution.
+	 */
+	private static final double LOOKUP_COST = 4;
+
+	/**
+	 * The cost of hashing a solution of a hash join, relative to the cost of producing a solution.
+	 */
+	private static final double HASH_COST = 2;
+
+	/**
+	 * The fixed cost of setting up the hash table of a hash join, relative to the cost of producing a solution, so that
+	 * small joins remain nested-loop joins.
+	 */
+	private static final double HASH_SETUP_COST = 1000;
+
+	/**
+	 * The cost of looking up the right argument of a bind join for a solution of the left argument, relative to the
+	 * cost of producing a solution. The lookups of a batch are performed together, and identical lookups only once.
+	 */
+	private static final double BATCH_LOOKUP_COST = 1;
+
+	/**
+	 * The fixed cost of collecting and grouping the batches of a bind join, relative to the cost of producing a
+	 * solution, so that joins with a small left argument remain nested-loop joins.
+	 */
+	private static final double BIND_JOIN_SETUP_COST = 500;
+
+	private final EvaluationStatistics statistics;
+
+	private final boolean bindJoins;
+
+	public JoinAlgorithmOptimizer(EvaluationStatistics statistics) {
+		this(statistics, null);
+	}
+
+	/**
+	 * Creates an optimizer that selects bind joins if the triple source is a {@link BatchTripleSource} that supports
+	 * batch lookups.
+	 *
+	 * @param tripleSource The triple source that the query is evaluated on, or <tt>null</tt> if unknown.
+	 */
+	public JoinAlgorithmOptimizer(EvaluationStatistics statistics, TripleSource tripleSource) {
+		this.statistics = statistics;
+		this.bindJoins = tripleSource instanceof BatchTripleSource
+				&& ((BatchTripleSource) tripleSource).supportsBatchLookups();
+	}
+
+	@Override
+	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
+		tupleExpr.visit(new JoinAlgorithmVisitor());
+	}
+
+	private class JoinAlgorithmVisitor extends AbstractQueryModelVisitor<RuntimeException> {
+
+		/**
+		 * Whether the visited node is evaluated for every solution of an enclosing operator.
+		 */
+		private boolean repeated;
+
+		@Override
+		public void meet(Join node) {
+			TupleExpr rightArg = node.getRightArg();
+			if (rightArg instanceof Service) {
+				node.getLeftArg().visit(this);
+				visitRepeated(rightArg, true);
+			} else if (TupleExprs.isVariableScopeChange(rightArg) || TupleExprs.containsSubquery(rightArg)) {
+				// evaluated as a hash join
+				super.meet(node);
+			} else {
+				String algorithm = JoinIterator.class.getSimpleName();
+				double cost = getNestedLoopJoinCost(node);
+				if (!repeated && isHashJoinCandidate(node) && getHashJoinCost(node) < cost) {
+					algorithm = HashJoinIteration.class.getSimpleName();
+					cost = getHashJoinCost(node);
+				}
+				if (!repeated && bindJoins && rightArg instanceof StatementPattern && getBindJoinCost(node) < cost) {
+					algorithm = BindJoinIteration.class.getSimpleName();
+				}
+				node.setAlgorithm(algorithm);
+				node.getLeftArg().visit(this);
+				visitRepeated(rightArg, !HashJoinIteration.class.getSimpleName().equals(algorithm));
+			}
+		}
+
+		@Override
+		public void meet(LeftJoin node) {
+			node.getLeftArg().visit(this);
+			visitRepeated(node.getRightArg(), !TupleExprs.containsSubquery(node.getRightArg()));
+			if (node.hasCondition()) {
+				node.getCondition().visit(this);
+			}
+		}
+
+		@Override
+		public void meet(ArbitraryLengthPath node) {
+			visitRepeated(node.getPathExpression(), true);
+		}
+
+		@Override
+		protected void meetSubQueryValueOperator(SubQueryValueOperator node) {
+			visitRepeated(node, true);
+		}
+
+		private void visitRepeated(QueryModelNode node, boolean repeatedArg) {
+			boolean origRepeated = repeated;
+			try {
+				repeated = origRepeated || repeatedArg;
+				if (node instanceof SubQueryValueOperator) {
+					node.visitChildren(this);
+				} else {
+					node.visit(this);
+				}
+			} finally {
+				repeated = origRepeated;
+			}
+		}
+	}
+
+	private boolean isHashJoinCandidate(Join join) {
+		if (!getStatementPatterns(join.getRightArg(), new ArrayList<>())) {
+			return false;
+		}
+		// the join variables must be bound in all solutions of the left argument
+		return join.getLeftArg().getAssuredBindingNames().containsAll(getJoinNames(join));
+	}
+
+	private double getNestedLoopJoinCost(Join join) {
+		return statistics.getCardinality(join.getLeftArg()) * (LOOKUP_COST + getLookupCardinality(join));
+	}
+
+	private double getBindJoinCost(Join join) {
+		return BIND_JOIN_SETUP_COST
+				+ statistics.getCardinality(join.getLeftArg()) * (BATCH_LOOKUP_COST + getLookupCardinality(join));
+	}
+
+	/**
+	 * Estimates the cardinality of the right argument of a join with the join variables bound, see
+	 * {@link QueryJoinOptimizer}.
+	 */
+	private double getLookupCardinality(Join join) {
+		List<StatementPattern> statementPatterns = new ArrayList<>();
+		getStatementPatterns(join.getRightArg(), statementPatterns);
+
+		Set<String> boundNames = getJoinNames(join);
+		double lookupCardinality = 1;
+		for (StatementPattern statementPattern : statementPatterns) {
+			int nonConstantVarCount = 0;
+			int unboundVarCount = 0;
+			for (Var var : statementPattern.getVarList()) {
+				if (!var.hasValue()) {
+					nonConstantVarCount++;
+					if (boundNames.add(var.getName())) {
+						unboundVarCount++;
+					}
+				}
+			}
+			if (nonConstantVarCount > 0) {
+				double cardinality = statistics.getCardinality(statementPattern);
+				lookupCardinality *= Math.pow(cardinality, (double) unboundVarCount / nonConstantVarCount);
+			}
+		}
+
+		return lookupCardinality;
+	}
+
+	private double getHashJoinCost(Join join) {
+		return HASH_SETUP_COST + HASH_COST
+				* (statistics.getCardinality(join.getLeftArg()) + statistics.getCardinality(join.getRightArg()));
+	}
+
+	private static Set<String> getJoinNames(Join join) {
+		Set<String> joinNames = new HashSet<>(join.getLeftArg().getBindingNames());
+		joinNames.retainAll(join.getRightArg().getBindingNames());
+		return joinNames;
+	}
+
+	/**
+	 * Collects the statement patterns of an expression that consists of statement patterns and joins.
+	 *
+	 * @return <tt>false</tt> if the expression contains other operators.
+	 */
+	private static boolean getStatementPatterns(TupleExpr expr, List<StatementPattern> statementPatterns) {
+		if (expr instanceof StatementPattern) {
+			statementPatterns.add((StatementPattern) expr);
+			return true;
+		} else if (expr instanceof Join) {
+			return getStatementPatterns(((Join) expr).getLeftArg(), statementPatterns)
+					&& getStatementPatterns(((Join) expr).getRightArg(), statementPatterns);
+		}
+		return false;
+	}
+}
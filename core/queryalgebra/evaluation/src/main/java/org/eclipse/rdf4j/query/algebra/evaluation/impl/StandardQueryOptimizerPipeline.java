@@ -56,6 +56,7 @@ public class StandardQueryOptimizerPipeline implements QueryOptimizerPipeline {
 				new QueryJoinOptimizer(evaluationStatistics),
 				new IterativeEvaluationOptimizer(),
 				new FilterOptimizer(),
+				new JoinAlgorithmOptimizer(evaluationStatistics, tripleSource),
 				new OrderLimitOptimizer());
 	}
 
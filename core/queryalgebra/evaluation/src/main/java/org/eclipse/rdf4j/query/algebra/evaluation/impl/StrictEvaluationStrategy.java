@@ -7,12 +7,19 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.impl;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -20,7 +27,6 @@ import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.DelayedIteration;
-import org.eclipse.rdf4j.common.iteration.DistinctIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.iteration.FilterIteration;
 import org.eclipse.rdf4j.common.iteration.IntersectIteration;
@@ -42,6 +48,7 @@ import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
 import org.eclipse.rdf4j.model.impl.BooleanLiteral;
+import org.eclipse.rdf4j.model.vocabulary.FN;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.SESAME;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
@@ -49,6 +56,7 @@ import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.AggregateOperator;
 import org.eclipse.rdf4j.query.algebra.And;
 import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
 import org.eclipse.rdf4j.query.algebra.BNodeGenerator;
@@ -67,6 +75,7 @@ import org.eclipse.rdf4j.query.algebra.Distinct;
 import org.eclipse.rdf4j.query.algebra.EmptySet;
 import org.eclipse.rdf4j.query.algebra.Exists;
 import org.eclipse.rdf4j.query.algebra.Extension;
+import org.eclipse.rdf4j.query.algebra.ExtensionElem;
 import org.eclipse.rdf4j.query.algebra.Filter;
 import org.eclipse.rdf4j.query.algebra.FunctionCall;
 import org.eclipse.rdf4j.query.algebra.Group;
@@ -94,6 +103,7 @@ import org.eclipse.rdf4j.query.algebra.Not;
 import org.eclipse.rdf4j.query.algebra.Or;
 import org.eclipse.rdf4j.query.algebra.Order;
 import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.ProjectionElem;
 import org.eclipse.rdf4j.query.algebra.QueryModelNode;
 import org.eclipse.rdf4j.query.algebra.QueryRoot;
 import org.eclipse.rdf4j.query.algebra.Reduced;
@@ -114,10 +124,18 @@ import org.eclipse.rdf4j.query.algebra.ValueExpr;
 import org.eclipse.rdf4j.query.algebra.ValueExprTripleRef;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.ZeroLengthPath;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRangeTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.PartitionedTripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryContext;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizerPipeline;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.RDFStarTripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
@@ -129,6 +147,7 @@ import org.eclipse.rdf4j.query.algebra.evaluation.function.Function;
 import org.eclipse.rdf4j.query.algebra.evaluation.function.FunctionRegistry;
 import org.eclipse.rdf4j.query.algebra.evaluation.function.datetime.Now;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.BadlyDesignedLeftJoinIterator;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.BindJoinIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.DescribeIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ExtensionIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.FilterIterator;
@@ -138,9 +157,11 @@ import org.eclipse.rdf4j.query.algebra.evaluation.iterator.JoinIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.LeftJoinIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.MultiProjectionIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.OrderIterator;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ParallelUnionIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.PathIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ProjectionIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.SPARQLMinusIteration;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.SpillingDistinctIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ZeroLengthPathIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.EvaluationStrategies;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.MathUtil;
@@ -172,6 +193,20 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 	 * Constants *
 	 *-----------*/
 
+	/**
+	 * The name of the {@link QueryContext} attribute that sets the query solution cache threshold of a query, a
+	 * {@link Number}. See {@link #getIterationCacheSyncThreshold()}.
+	 *
+	 * @since 3.3.0
+	 */
+	public static final String QUERY_SOLUTION_CACHE_THRESHOLD = "querySolutionCacheThreshold";
+
+	/**
+	 * The maximum number of solutions that an operator evaluated on another thread queues for its consumer, see
+	 * {@link #setParallelEvaluation(Executor, int)}.
+	 */
+	private static final int PARALLEL_QUEUE_CAPACITY = 1024;
+
 	protected final TripleSource tripleSource;
 
 	protected final Dataset dataset;
@@ -195,6 +230,10 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	private QueryOptimizerPipeline pipeline;
 
+	private Executor executor;
+
+	private int parallelism = 1;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -247,6 +286,43 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		return serviceResolver.getService(serviceUrl);
 	}
 
+	/**
+	 * Gets the maximum number of solutions that operators of the current query, such as hash joins, ORDER BY and
+	 * DISTINCT, cache in memory before they move them to disk. The threshold of this strategy can be overridden for a
+	 * query by the {@link #QUERY_SOLUTION_CACHE_THRESHOLD} attribute of its {@link QueryContext}.
+	 *
+	 * @return The threshold, or <tt>0</tt> for no maximum.
+	 * @since 3.3.0
+	 */
+	protected long getIterationCacheSyncThreshold() {
+		QueryContext context = QueryContext.getQueryContext();
+		if (context != null) {
+			Number threshold = context.getAttribute(QUERY_SOLUTION_CACHE_THRESHOLD);
+			if (threshold != null) {
+				return threshold.longValue();
+			}
+		}
+		return iterationCacheSyncThreshold;
+	}
+
+	/**
+	 * Enables the parallel evaluation of independent operators on the threads of an executor: the arguments of unions
+	 * and hash joins, and, if the triple source is a {@link PartitionedTripleSource}, the partitions of large statement
+	 * patterns. Solutions are passed back to the consuming thread through bounded queues. The triple source, and any
+	 * functions and services used by the queries, must support being called concurrently.
+	 * <p>
+	 * Arguments whose evaluation the executor has not started yet are evaluated by the consuming thread, so a small or
+	 * saturated executor limits the parallelism but never blocks the evaluation.
+	 *
+	 * @param executor    The executor to evaluate operators with, or <tt>null</tt> to evaluate sequentially.
+	 * @param parallelism The preferred number of partitions that a statement pattern is scanned in.
+	 * @since 3.3.0
+	 */
+	public void setParallelEvaluation(Executor executor, int parallelism) {
+		this.executor = executor;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	@Override
 	public void setOptimizerPipeline(QueryOptimizerPipeline pipeline) {
 		Objects.requireNonNull(pipeline);
@@ -304,6 +380,14 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 			throw new QueryEvaluationException("Unsupported tuple expr type: " + expr.getClass());
 		}
 
+		return track(expr, ret);
+	}
+
+	/**
+	 * Wraps the result of evaluating an expression to track the time and result size, if enabled.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> track(TupleExpr expr,
+			CloseableIteration<BindingSet, QueryEvaluationException> ret) {
 		if (trackTime) {
 			// set resultsSizeActual to at least be 0 so we can track iterations that don't procude anything
 			expr.setTotalTimeNanosActual(Math.max(0, expr.getTotalTimeNanosActual()));
@@ -319,6 +403,441 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		return ret;
 	}
 
+	/**
+	 * The query model node types for which subclasses override the <tt>evaluate</tt> methods of this class. Nodes of
+	 * these types are not precompiled, so that the overriding methods are used. Methods that are declared in a class
+	 * that also declares a <tt>precompile</tt> method for the node type are left to that class.
+	 */
+	private static final ClassValue<Set<Class<?>>> OVERRIDDEN_NODE_TYPES = new ClassValue<Set<Class<?>>>() {
+
+		@Override
+		protected Set<Class<?>> computeValue(Class<?> type) {
+			Set<Class<?>> nodeTypes = new HashSet<>();
+			for (Class<?> c = type; c != null && c != StrictEvaluationStrategy.class; c = c.getSuperclass()) {
+				Set<Class<?>> precompiled = new HashSet<>();
+				for (Method method : c.getDeclaredMethods()) {
+					if (method.getName().equals("precompile") && method.getParameterCount() >= 1) {
+						precompiled.add(method.getParameterTypes()[0]);
+					}
+				}
+				for (Method method : c.getDeclaredMethods()) {
+					Class<?>[] params = method.getParameterTypes();
+					if (method.getName().equals("evaluate") && params.length >= 2 && params[1] == BindingSet.class
+							&& !method.isBridge() && !Modifier.isStatic(method.getModifiers())
+							&& precompiled.stream().noneMatch(p -> p.isAssignableFrom(params[0]))) {
+						nodeTypes.add(params[0]);
+					}
+				}
+			}
+			return nodeTypes;
+		}
+	};
+
+	/**
+	 * Gets the names of the variables of an expression, including the names that are bound by extensions,
+	 * projections and binding set assignments.
+	 */
+	private static Set<String> getVariableNames(TupleExpr expr) {
+		Set<String> names = new LinkedHashSet<>();
+		expr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+
+			@Override
+			public void meet(Var node) {
+				names.add(node.getName());
+			}
+
+			@Override
+			public void meet(ExtensionElem node) {
+				names.add(node.getName());
+				super.meet(node);
+			}
+
+			@Override
+			public void meet(ProjectionElem node) {
+				names.add(node.getSourceName());
+				names.add(node.getTargetName());
+			}
+
+			@Override
+			public void meet(BindingSetAssignment node) {
+				names.addAll(node.getBindingNames());
+			}
+		});
+		return names;
+	}
+
+	private boolean isPrecompilable(QueryModelNode node) {
+		for (Class<?> type : OVERRIDDEN_NODE_TYPES.get(getClass())) {
+			if (type.isInstance(node)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Prepares a tuple expression for repeated evaluation. The operators of the expression are resolved once, so that
+	 * e.g. the right argument of a join is not dispatched again for every solution of the left argument. Operators for
+	 * which no step is available, or for which a subclass overrides the evaluation, are evaluated by
+	 * {@link #evaluate(TupleExpr, BindingSet)}.
+	 * <p>
+	 * The variables of the expression are assigned to the slots of an {@link ArrayBindingSet.Layout}, and the prepared
+	 * operators produce {@link ArrayBindingSet}s of that layout, which they read and copy by slot.
+	 */
+	@Override
+	public QueryEvaluationStep precompile(TupleExpr expr) {
+		return precompile(expr, new ArrayBindingSet.Layout(getVariableNames(expr)));
+	}
+
+	/**
+	 * Prepares a tuple expression for repeated evaluation, using a layout for the binding sets of the query.
+	 *
+	 * @param layout The layout, which contains all variables of the expression.
+	 * @since 3.3.0
+	 */
+	protected QueryEvaluationStep precompile(TupleExpr expr, ArrayBindingSet.Layout layout) {
+		if (!isPrecompilable(expr)) {
+			return bindings -> evaluate(expr, bindings);
+		}
+
+		QueryEvaluationStep step;
+		if (expr instanceof StatementPattern) {
+			StatementPattern statementPattern = (StatementPattern) expr;
+			int[] slots = getSlots(statementPattern, layout);
+			step = bindings -> evaluate(statementPattern, ArrayBindingSet.of(layout, bindings), null, slots);
+		} else if (expr instanceof Join) {
+			step = prepare((Join) expr, layout);
+		} else if (expr instanceof LeftJoin) {
+			step = prepare((LeftJoin) expr, layout);
+		} else if (expr instanceof Union) {
+			step = prepare((Union) expr, layout);
+		} else if (expr instanceof Filter) {
+			step = prepare((Filter) expr, layout);
+		} else if (expr instanceof Projection) {
+			step = prepare((Projection) expr, layout);
+		} else if (expr instanceof Extension) {
+			step = prepare((Extension) expr, layout);
+		} else if (expr instanceof Slice) {
+			step = prepare((Slice) expr, layout);
+		} else if (expr instanceof Order) {
+			step = prepare((Order) expr, layout);
+		} else if (expr instanceof Distinct) {
+			QueryEvaluationStep arg = precompile(((Distinct) expr).getArg(), layout);
+			step = bindings -> new SpillingDistinctIteration(arg.evaluate(bindings),
+					getIterationCacheSyncThreshold(), tripleSource.getValueFactory());
+		} else if (expr instanceof Reduced) {
+			QueryEvaluationStep arg = precompile(((Reduced) expr).getArg(), layout);
+			step = bindings -> new ReducedIteration<>(arg.evaluate(bindings));
+		} else if (expr instanceof QueryRoot) {
+			QueryEvaluationStep arg = precompile(((QueryRoot) expr).getArg(), layout);
+			step = bindings -> {
+				// new query, reset shared return value for successive calls of NOW()
+				this.sharedValueOfNow = null;
+				return arg.evaluate(bindings);
+			};
+		} else if (expr instanceof SingletonSet) {
+			step = bindings -> new SingletonIteration<>(bindings);
+		} else if (expr instanceof EmptySet) {
+			step = bindings -> new EmptyIteration<>();
+		} else {
+			return bindings -> evaluate(expr, bindings);
+		}
+
+		return bindings -> track(expr, step.evaluate(bindings));
+	}
+
+	private QueryEvaluationStep prepare(Join join, ArrayBindingSet.Layout layout) {
+		if (join.getRightArg() instanceof Service) {
+			return bindings -> evaluate(join, bindings);
+		}
+		QueryEvaluationStep left = precompile(join.getLeftArg(), layout);
+		QueryEvaluationStep right = precompile(join.getRightArg(), layout);
+		if (isHashJoin(join)) {
+			Set<String> leftNames = join.getLeftArg().getBindingNames();
+			Set<String> rightNames = join.getRightArg().getBindingNames();
+			return bindings -> {
+				HashJoinIteration result = new HashJoinIteration(inParallel(left, bindings), leftNames,
+						inParallel(right, bindings), rightNames, false, layout, getIterationCacheSyncThreshold());
+				join.setAlgorithm(result);
+				return result;
+			};
+		}
+		if (isBindJoin(join)) {
+			int[] slots = getSlots((StatementPattern) join.getRightArg(), layout);
+			return bindings -> bindJoin(join, left.evaluate(bindings), layout, slots);
+		}
+		return bindings -> new JoinIterator(left, right, join, bindings);
+	}
+
+	private QueryEvaluationStep prepare(LeftJoin leftJoin, ArrayBindingSet.Layout layout) {
+		if (TupleExprs.containsSubquery(leftJoin.getRightArg())) {
+			return bindings -> evaluate(leftJoin, bindings);
+		}
+
+		VarNameCollector optionalVarCollector = new VarNameCollector();
+		leftJoin.getRightArg().visit(optionalVarCollector);
+		if (leftJoin.hasCondition()) {
+			leftJoin.getCondition().visit(optionalVarCollector);
+		}
+		Set<String> optionalVars = optionalVarCollector.getVarNames();
+		optionalVars.removeAll(leftJoin.getLeftArg().getBindingNames());
+
+		QueryEvaluationStep left = precompile(leftJoin.getLeftArg(), layout);
+		QueryEvaluationStep right = precompile(leftJoin.getRightArg(), layout);
+		QueryValueEvaluationStep condition = leftJoin.hasCondition() ? precompile(leftJoin.getCondition(), layout)
+				: null;
+		return bindings -> {
+			Set<String> problemVars = new HashSet<>(optionalVars);
+			problemVars.retainAll(bindings.getBindingNames());
+			if (problemVars.isEmpty()) {
+				// left join is "well designed"
+				return new LeftJoinIterator(left, right, condition, leftJoin, bindings);
+			} else {
+				return new BadlyDesignedLeftJoinIterator(this, leftJoin, bindings, problemVars);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private QueryEvaluationStep prepare(Union union, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep left = precompile(union.getLeftArg(), layout);
+		QueryEvaluationStep right = precompile(union.getRightArg(), layout);
+		if (executor != null) {
+			return bindings -> new ParallelUnionIteration(executor, PARALLEL_QUEUE_CAPACITY,
+					Arrays.asList(delayed(left, bindings), delayed(right, bindings)));
+		}
+		return bindings -> new UnionIteration<>(delayed(left, bindings), delayed(right, bindings));
+	}
+
+	private static CloseableIteration<BindingSet, QueryEvaluationException> delayed(QueryEvaluationStep step,
+			BindingSet bindings) {
+		return new DelayedIteration<BindingSet, QueryEvaluationException>() {
+
+			@Override
+			protected Iteration<BindingSet, QueryEvaluationException> createIteration()
+					throws QueryEvaluationException {
+				return step.evaluate(bindings);
+			}
+		};
+	}
+
+	private QueryEvaluationStep prepare(Filter filter, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep arg = precompile(filter.getArg(), layout);
+		QueryValueEvaluationStep condition = precompile(filter.getCondition(), layout);
+		int[] slots = filter.getArg() instanceof StatementPattern
+				? getSlots((StatementPattern) filter.getArg(), layout)
+				: null;
+		return bindings -> new FilterIterator(filter, evaluateFilterArg(filter, arg, bindings, layout, slots),
+				condition, layout);
+	}
+
+	private QueryEvaluationStep prepare(Projection projection, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep arg = precompile(projection.getArg(), layout);
+		return bindings -> new ProjectionIterator(projection, arg.evaluate(bindings), bindings, layout);
+	}
+
+	private QueryEvaluationStep prepare(Extension extension, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep arg = precompile(extension.getArg(), layout);
+		List<ExtensionElem> elements = extension.getElements();
+		QueryValueEvaluationStep[] expressions = new QueryValueEvaluationStep[elements.size()];
+		for (int i = 0; i < expressions.length; i++) {
+			ValueExpr expr = elements.get(i).getExpr();
+			if (!(expr instanceof AggregateOperator)) {
+				expressions[i] = precompile(expr, layout);
+			}
+		}
+		return bindings -> {
+			CloseableIteration<BindingSet, QueryEvaluationException> result;
+			try {
+				result = arg.evaluate(bindings);
+			} catch (ValueExprEvaluationException e) {
+				// a type error in an extension argument should be silently ignored and result in zero bindings.
+				result = new EmptyIteration<>();
+			}
+			return new ExtensionIterator(extension, result, expressions, layout);
+		};
+	}
+
+	private QueryEvaluationStep prepare(Slice slice, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep arg = precompile(slice.getArg(), layout);
+		return bindings -> {
+			CloseableIteration<BindingSet, QueryEvaluationException> result = arg.evaluate(bindings);
+			if (slice.hasOffset()) {
+				result = new OffsetIteration<>(result, slice.getOffset());
+			}
+			if (slice.hasLimit()) {
+				result = new LimitIteration<>(result, slice.getLimit());
+			}
+			return result;
+		};
+	}
+
+	private QueryEvaluationStep prepare(Order order, ArrayBindingSet.Layout layout) {
+		QueryEvaluationStep arg = precompile(order.getArg(), layout);
+		boolean reduced = isReducedOrDistinct(order);
+		long limit = getLimit(order);
+		return bindings -> {
+			OrderComparator cmp = new OrderComparator(this, order, new ValueComparator());
+			return new OrderIterator(arg.evaluate(bindings), cmp, limit, reduced, getIterationCacheSyncThreshold());
+		};
+	}
+
+	/**
+	 * Prepares a value expression for repeated evaluation. Variables are resolved to their names or values and
+	 * functions are looked up once. Expressions for which no step is available, or for which a subclass overrides the
+	 * evaluation, are evaluated by {@link #evaluate(ValueExpr, BindingSet)}.
+	 */
+	@Override
+	public QueryValueEvaluationStep precompile(ValueExpr expr) {
+		return precompile(expr, null);
+	}
+
+	/**
+	 * Prepares a value expression for repeated evaluation. Variables of a layout are read by slot from the
+	 * {@link ArrayBindingSet}s of that layout.
+	 *
+	 * @param layout The layout of the query, or <tt>null</tt> if variables are read by name.
+	 * @since 3.3.0
+	 */
+	protected QueryValueEvaluationStep precompile(ValueExpr expr, ArrayBindingSet.Layout layout) {
+		if (!isPrecompilable(expr)) {
+			return bindings -> evaluate(expr, bindings);
+		}
+
+		if (expr instanceof Var) {
+			return prepare((Var) expr, layout);
+		} else if (expr instanceof ValueConstant) {
+			Value value = ((ValueConstant) expr).getValue();
+			return bindings -> value;
+		} else if (expr instanceof Bound) {
+			QueryValueEvaluationStep arg = precompile(((Bound) expr).getArg(), layout);
+			return bindings -> {
+				try {
+					return BooleanLiteral.valueOf(arg.evaluate(bindings) != null);
+				} catch (ValueExprEvaluationException e) {
+					return BooleanLiteral.FALSE;
+				}
+			};
+		} else if (expr instanceof FunctionCall) {
+			return prepare((FunctionCall) expr, layout);
+		} else if (expr instanceof And) {
+			return prepare((And) expr, layout);
+		} else if (expr instanceof Or) {
+			return prepare((Or) expr, layout);
+		} else if (expr instanceof Not) {
+			QueryValueEvaluationStep arg = precompile(((Not) expr).getArg(), layout);
+			return bindings -> BooleanLiteral
+					.valueOf(!QueryEvaluationUtil.getEffectiveBooleanValue(arg.evaluate(bindings)));
+		} else if (expr instanceof SameTerm) {
+			QueryValueEvaluationStep left = precompile(((SameTerm) expr).getLeftArg(), layout);
+			QueryValueEvaluationStep right = precompile(((SameTerm) expr).getRightArg(), layout);
+			return bindings -> {
+				Value leftVal = left.evaluate(bindings);
+				Value rightVal = right.evaluate(bindings);
+				return BooleanLiteral.valueOf(leftVal != null && leftVal.equals(rightVal));
+			};
+		} else if (expr instanceof Compare) {
+			QueryValueEvaluationStep left = precompile(((Compare) expr).getLeftArg(), layout);
+			QueryValueEvaluationStep right = precompile(((Compare) expr).getRightArg(), layout);
+			CompareOp operator = ((Compare) expr).getOperator();
+			return bindings -> BooleanLiteral
+					.valueOf(QueryEvaluationUtil.compare(left.evaluate(bindings), right.evaluate(bindings), operator));
+		} else {
+			return bindings -> evaluate(expr, bindings);
+		}
+	}
+
+	private QueryValueEvaluationStep prepare(Var var, ArrayBindingSet.Layout layout) {
+		if (var.hasValue()) {
+			Value value = var.getValue();
+			return bindings -> value;
+		}
+		String name = var.getName();
+		int slot = layout != null ? layout.getSlot(name) : -1;
+		if (slot >= 0) {
+			return bindings -> {
+				Value value;
+				if (bindings instanceof ArrayBindingSet && ((ArrayBindingSet) bindings).hasLayout(layout)) {
+					value = ((ArrayBindingSet) bindings).getValue(slot);
+				} else {
+					value = bindings.getValue(name);
+				}
+				if (value == null) {
+					throw new ValueExprEvaluationException();
+				}
+				return value;
+			};
+		}
+		return bindings -> {
+			Value value = bindings.getValue(name);
+			if (value == null) {
+				throw new ValueExprEvaluationException();
+			}
+			return value;
+		};
+	}
+
+	private QueryValueEvaluationStep prepare(FunctionCall node, ArrayBindingSet.Layout layout) {
+		Function function = FunctionRegistry.getInstance().get(node.getURI()).orElse(null);
+		if (function == null || function instanceof Now) {
+			// unknown functions fail when they are evaluated, NOW() keeps a shared value
+			return bindings -> evaluate(node, bindings);
+		}
+
+		List<ValueExpr> args = node.getArgs();
+		QueryValueEvaluationStep[] argSteps = new QueryValueEvaluationStep[args.size()];
+		for (int i = 0; i < argSteps.length; i++) {
+			argSteps[i] = precompile(args.get(i), layout);
+		}
+		return bindings -> {
+			Value[] argValues = new Value[argSteps.length];
+			for (int i = 0; i < argSteps.length; i++) {
+				argValues[i] = argSteps[i].evaluate(bindings);
+			}
+			return function.evaluate(tripleSource.getValueFactory(), argValues);
+		};
+	}
+
+	private QueryValueEvaluationStep prepare(And node, ArrayBindingSet.Layout layout) {
+		QueryValueEvaluationStep left = precompile(node.getLeftArg(), layout);
+		QueryValueEvaluationStep right = precompile(node.getRightArg(), layout);
+		return bindings -> {
+			try {
+				if (!QueryEvaluationUtil.getEffectiveBooleanValue(left.evaluate(bindings))) {
+					return BooleanLiteral.FALSE;
+				}
+			} catch (ValueExprEvaluationException e) {
+				// the result is 'false' when the right argument evaluates to 'false', failure otherwise
+				if (!QueryEvaluationUtil.getEffectiveBooleanValue(right.evaluate(bindings))) {
+					return BooleanLiteral.FALSE;
+				} else {
+					throw new ValueExprEvaluationException();
+				}
+			}
+			return BooleanLiteral.valueOf(QueryEvaluationUtil.getEffectiveBooleanValue(right.evaluate(bindings)));
+		};
+	}
+
+	private QueryValueEvaluationStep prepare(Or node, ArrayBindingSet.Layout layout) {
+		QueryValueEvaluationStep left = precompile(node.getLeftArg(), layout);
+		QueryValueEvaluationStep right = precompile(node.getRightArg(), layout);
+		return bindings -> {
+			try {
+				if (QueryEvaluationUtil.getEffectiveBooleanValue(left.evaluate(bindings))) {
+					return BooleanLiteral.TRUE;
+				}
+			} catch (ValueExprEvaluationException e) {
+				// the result is 'true' when the right argument evaluates to 'true', failure otherwise
+				if (QueryEvaluationUtil.getEffectiveBooleanValue(right.evaluate(bindings))) {
+					return BooleanLiteral.TRUE;
+				} else {
+					throw new ValueExprEvaluationException();
+				}
+			}
+			return BooleanLiteral.valueOf(QueryEvaluationUtil.getEffectiveBooleanValue(right.evaluate(bindings)));
+		};
+	}
+
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(ArbitraryLengthPath alp,
 			final BindingSet bindings) throws QueryEvaluationException {
 		final Scope scope = alp.getScope();
@@ -473,6 +992,46 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(StatementPattern statementPattern,
 			final BindingSet bindings) throws QueryEvaluationException {
+		return evaluate(statementPattern, bindings, null);
+	}
+
+	/**
+	 * Evaluates a statement pattern, restricting an unbound object to a range of literals.
+	 *
+	 * @param range The range of the object, or <tt>null</tt> if the object is not restricted. A range can only be
+	 *              specified if the triple source is a {@link LiteralRangeTripleSource}.
+	 */
+	protected CloseableIteration<BindingSet, QueryEvaluationException> evaluate(StatementPattern statementPattern,
+			final BindingSet bindings, LiteralRange range) throws QueryEvaluationException {
+		return evaluate(statementPattern, bindings, range, null);
+	}
+
+	/**
+	 * Gets the slots of the subject, predicate, object and context variables of a statement pattern that are bound by
+	 * its statements, with <tt>-1</tt> for constants and absent variables.
+	 *
+	 * @return The slots, or <tt>null</tt> if a variable is not part of the layout.
+	 */
+	private static int[] getSlots(StatementPattern statementPattern, ArrayBindingSet.Layout layout) {
+		List<Var> vars = Arrays.asList(statementPattern.getSubjectVar(), statementPattern.getPredicateVar(),
+				statementPattern.getObjectVar(), statementPattern.getContextVar());
+		int[] slots = new int[vars.size()];
+		for (int i = 0; i < slots.length; i++) {
+			Var var = vars.get(i);
+			slots[i] = var != null && !var.isConstant() ? layout.getSlot(var.getName()) : -1;
+			if (slots[i] < 0 && var != null && !var.isConstant()) {
+				return null;
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * Evaluates a statement pattern, binding the variables of its statements by name or, if slots are specified, by
+	 * slot, in which case the specified binding set must be an {@link ArrayBindingSet} of the layout of the slots.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> evaluate(StatementPattern statementPattern,
+			final BindingSet bindings, LiteralRange range, int[] slots) throws QueryEvaluationException {
 		final Var subjVar = statementPattern.getSubjectVar();
 		final Var predVar = statementPattern.getPredicateVar();
 		final Var objVar = statementPattern.getObjectVar();
@@ -484,9 +1043,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		final Value contextValue = getVarValue(conVar, bindings);
 
 		CloseableIteration<? extends Statement, QueryEvaluationException> stIter1 = null;
-		CloseableIteration<? extends Statement, QueryEvaluationException> stIter2 = null;
-		CloseableIteration<? extends Statement, QueryEvaluationException> stIter3 = null;
-		ConvertingIteration<Statement, BindingSet, QueryEvaluationException> resultingIterator = null;
+		List<CloseableIteration<? extends Statement, QueryEvaluationException>> partitions = null;
 
 		if (isUnbound(subjVar, bindings) || isUnbound(predVar, bindings) || isUnbound(objVar, bindings)
 				|| isUnbound(conVar, bindings)) {
@@ -494,178 +1051,249 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 			return new EmptyIteration<>();
 		}
 
+		boolean namedContextsOnly;
 		boolean allGood = false;
 		try {
 			try {
-				Resource[] contexts;
-
-				Set<IRI> graphs = null;
-				boolean emptyGraph = false;
-
-				if (dataset != null) {
-					if (statementPattern.getScope() == Scope.DEFAULT_CONTEXTS) {
-						graphs = dataset.getDefaultGraphs();
-						emptyGraph = graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty();
-					} else {
-						graphs = dataset.getNamedGraphs();
-						emptyGraph = graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty();
-					}
+				Resource[] contexts = getContexts(statementPattern, contextValue);
+				if (contexts == null) {
+					return new EmptyIteration<>();
 				}
 
-				if (emptyGraph) {
-					// Search zero contexts
-					return new EmptyIteration<>();
-				} else if (graphs == null || graphs.isEmpty()) {
-					// store default behaivour
-					if (contextValue != null) {
-						contexts = new Resource[] { (Resource) contextValue };
-					}
-					/*
-					 * TODO activate this to have an exclusive (rather than inclusive) interpretation of the default
-					 * graph in SPARQL querying. else if (statementPattern.getScope() == Scope.DEFAULT_CONTEXTS ) {
-					 * contexts = new Resource[] { (Resource)null }; }
-					 */
-					else {
-						contexts = new Resource[0];
-					}
-				} else if (contextValue != null) {
-					if (graphs.contains(contextValue)) {
-						contexts = new Resource[] { (Resource) contextValue };
-					} else {
-						// Statement pattern specifies a context that is not part of
-						// the dataset
-						return new EmptyIteration<>();
-					}
+				if (range != null && objValue == null) {
+					stIter1 = ((LiteralRangeTripleSource) tripleSource).getStatementsInRange((Resource) subjValue,
+							(IRI) predValue, range, contexts);
+				} else if (executor != null && tripleSource instanceof PartitionedTripleSource) {
+					partitions = ((PartitionedTripleSource) tripleSource).getStatementPartitions(
+							(Resource) subjValue, (IRI) predValue, objValue, parallelism, contexts);
 				} else {
-					contexts = new Resource[graphs.size()];
-					int i = 0;
-					for (IRI graph : graphs) {
-						IRI context = null;
-						if (!SESAME.NIL.equals(graph)) {
-							context = graph;
+					stIter1 = tripleSource.getStatements((Resource) subjValue, (IRI) predValue, objValue, contexts);
+				}
+
+				// Named contexts are matched by retrieving all statements from the store and filtering out the
+				// statements that do not have a context.
+				namedContextsOnly = contexts.length == 0 && statementPattern.getScope() == Scope.NAMED_CONTEXTS;
+			} catch (ClassCastException e) {
+				// Invalid value type for subject, predicate and/or context
+				return new EmptyIteration<>();
+			}
+
+			CloseableIteration<BindingSet, QueryEvaluationException> result;
+			if (partitions == null) {
+				result = toBindingSets(stIter1, statementPattern, bindings, namedContextsOnly, slots);
+			} else if (partitions.size() == 1) {
+				result = toBindingSets(partitions.get(0), statementPattern, bindings, namedContextsOnly, slots);
+			} else {
+				// the partitions are converted on the threads that read them
+				List<CloseableIteration<BindingSet, QueryEvaluationException>> converted = new ArrayList<>();
+				for (CloseableIteration<? extends Statement, QueryEvaluationException> partition : partitions) {
+					converted.add(toBindingSets(partition, statementPattern, bindings, namedContextsOnly, slots));
+				}
+				result = new ParallelUnionIteration(executor, PARALLEL_QUEUE_CAPACITY, converted);
+			}
+			allGood = true;
+			return result;
+		} finally {
+			if (!allGood) {
+				try {
+					if (stIter1 != null) {
+						stIter1.close();
+					}
+				} finally {
+					if (partitions != null) {
+						for (CloseableIteration<? extends Statement, QueryEvaluationException> partition : partitions) {
+							partition.close();
 						}
-						contexts[i++] = context;
 					}
 				}
+			}
+		}
+	}
 
-				stIter1 = tripleSource.getStatements((Resource) subjValue, (IRI) predValue, objValue, contexts);
+	/**
+	 * Gets the contexts to look up the statements of a statement pattern in, taking the dataset into account.
+	 *
+	 * @param contextValue The value of the context variable, or <tt>null</tt> if it is unbound.
+	 * @return The contexts, or <tt>null</tt> if no statements can match.
+	 */
+	private Resource[] getContexts(StatementPattern statementPattern, Value contextValue) {
+		if (contextValue != null && !(contextValue instanceof Resource)) {
+			// Invalid value type for context
+			return null;
+		}
 
-				if (contexts.length == 0 && statementPattern.getScope() == Scope.NAMED_CONTEXTS) {
-					// Named contexts are matched by retrieving all statements from
-					// the store and filtering out the statements that do not have a
-					// context.
-					stIter2 = new FilterIteration<Statement, QueryEvaluationException>(stIter1) {
+		Resource[] contexts;
 
-						@Override
-						protected boolean accept(Statement st) {
-							return st.getContext() != null;
-						}
+		Set<IRI> graphs = null;
+		boolean emptyGraph = false;
 
-					}; // end anonymous class
-				} else {
-					stIter2 = stIter1;
+		if (dataset != null) {
+			if (statementPattern.getScope() == Scope.DEFAULT_CONTEXTS) {
+				graphs = dataset.getDefaultGraphs();
+				emptyGraph = graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty();
+			} else {
+				graphs = dataset.getNamedGraphs();
+				emptyGraph = graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty();
+			}
+		}
+
+		if (emptyGraph) {
+			// Search zero contexts
+			return null;
+		} else if (graphs == null || graphs.isEmpty()) {
+			// store default behaivour
+			if (contextValue != null) {
+				contexts = new Resource[] { (Resource) contextValue };
+			}
+			/*
+			 * TODO activate this to have an exclusive (rather than inclusive) interpretation of the default
+			 * graph in SPARQL querying. else if (statementPattern.getScope() == Scope.DEFAULT_CONTEXTS ) {
+			 * contexts = new Resource[] { (Resource)null }; }
+			 */
+			else {
+				contexts = new Resource[0];
+			}
+		} else if (contextValue != null) {
+			if (graphs.contains(contextValue)) {
+				contexts = new Resource[] { (Resource) contextValue };
+			} else {
+				// Statement pattern specifies a context that is not part of
+				// the dataset
+				return null;
+			}
+		} else {
+			contexts = new Resource[graphs.size()];
+			int i = 0;
+			for (IRI graph : graphs) {
+				IRI context = null;
+				if (!SESAME.NIL.equals(graph)) {
+					context = graph;
 				}
-			} catch (ClassCastException e) {
-				// Invalid value type for subject, predicate and/or context
-				return new EmptyIteration<>();
+				contexts[i++] = context;
 			}
+		}
 
-			// The same variable might have been used multiple times in this
-			// StatementPattern, verify value equality in those cases.
-			// TODO: skip this filter if not necessary
-			stIter3 = new FilterIteration<Statement, QueryEvaluationException>(stIter2) {
+		return contexts;
+	}
 
-				@Override
-				protected boolean accept(Statement st) {
-					Resource subj = st.getSubject();
-					IRI pred = st.getPredicate();
-					Value obj = st.getObject();
-					Resource context = st.getContext();
-
-					if (subjVar != null && subjValue == null) {
-						if (subjVar.equals(predVar) && !subj.equals(pred)) {
-							return false;
-						}
-						if (subjVar.equals(objVar) && !subj.equals(obj)) {
-							return false;
-						}
-						if (subjVar.equals(conVar) && !subj.equals(context)) {
-							return false;
-						}
-					}
+	/**
+	 * Converts the statements that match a statement pattern to solutions, see
+	 * {@link #evaluate(StatementPattern, BindingSet, LiteralRange, int[])}.
+	 *
+	 * @param namedContextsOnly Whether statements without a context are skipped.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> toBindingSets(
+			CloseableIteration<? extends Statement, QueryEvaluationException> statements,
+			StatementPattern statementPattern, BindingSet bindings, boolean namedContextsOnly, int[] slots) {
+		final Var subjVar = statementPattern.getSubjectVar();
+		final Var predVar = statementPattern.getPredicateVar();
+		final Var objVar = statementPattern.getObjectVar();
+		final Var conVar = statementPattern.getContextVar();
 
-					if (predVar != null && predValue == null) {
-						if (predVar.equals(objVar) && !pred.equals(obj)) {
-							return false;
-						}
-						if (predVar.equals(conVar) && !pred.equals(context)) {
-							return false;
-						}
-					}
+		final Value subjValue = getVarValue(subjVar, bindings);
+		final Value predValue = getVarValue(predVar, bindings);
+		final Value objValue = getVarValue(objVar, bindings);
 
-					if (objVar != null && objValue == null) {
-						if (objVar.equals(conVar) && !obj.equals(context)) {
-							return false;
-						}
-					}
+		CloseableIteration<? extends Statement, QueryEvaluationException> stIter2;
+		if (namedContextsOnly) {
+			stIter2 = new FilterIteration<Statement, QueryEvaluationException>(statements) {
 
-					return true;
+				@Override
+				protected boolean accept(Statement st) {
+					return st.getContext() != null;
 				}
-			};
 
-			// Return an iterator that converts the statements to var bindings
-			resultingIterator = new ConvertingIteration<Statement, BindingSet, QueryEvaluationException>(stIter3) {
+			}; // end anonymous class
+		} else {
+			stIter2 = statements;
+		}
 
-				@Override
-				protected BindingSet convert(Statement st) {
-					QueryBindingSet result = new QueryBindingSet(bindings);
+		// The same variable might have been used multiple times in this
+		// StatementPattern, verify value equality in those cases.
+		// TODO: skip this filter if not necessary
+		CloseableIteration<? extends Statement, QueryEvaluationException> stIter3;
+		stIter3 = new FilterIteration<Statement, QueryEvaluationException>(stIter2) {
 
-					if (subjVar != null && !subjVar.isConstant() && !result.hasBinding(subjVar.getName())) {
-						result.addBinding(subjVar.getName(), st.getSubject());
-					}
-					if (predVar != null && !predVar.isConstant() && !result.hasBinding(predVar.getName())) {
-						result.addBinding(predVar.getName(), st.getPredicate());
+			@Override
+			protected boolean accept(Statement st) {
+				Resource subj = st.getSubject();
+				IRI pred = st.getPredicate();
+				Value obj = st.getObject();
+				Resource context = st.getContext();
+
+				if (subjVar != null && subjValue == null) {
+					if (subjVar.equals(predVar) && !subj.equals(pred)) {
+						return false;
 					}
-					if (objVar != null && !objVar.isConstant() && !result.hasBinding(objVar.getName())) {
-						result.addBinding(objVar.getName(), st.getObject());
+					if (subjVar.equals(objVar) && !subj.equals(obj)) {
+						return false;
 					}
-					if (conVar != null && !conVar.isConstant() && !result.hasBinding(conVar.getName())
-							&& st.getContext() != null) {
-						result.addBinding(conVar.getName(), st.getContext());
+					if (subjVar.equals(conVar) && !subj.equals(context)) {
+						return false;
 					}
-
-					return result;
 				}
-			};
-			allGood = true;
 
-			return resultingIterator;
-
-		} finally {
-			if (!allGood) {
-				try {
-					if (resultingIterator != null) {
-						resultingIterator.close();
+				if (predVar != null && predValue == null) {
+					if (predVar.equals(objVar) && !pred.equals(obj)) {
+						return false;
 					}
-				} finally {
-					try {
-						if (stIter3 != null) {
-							stIter3.close();
-						}
-					} finally {
-						try {
-							if (stIter2 != null) {
-								stIter2.close();
-							}
-						} finally {
-							if (stIter1 != null) {
-								stIter1.close();
-							}
-						}
+					if (predVar.equals(conVar) && !pred.equals(context)) {
+						return false;
 					}
 				}
+
+				if (objVar != null && objValue == null) {
+					if (objVar.equals(conVar) && !obj.equals(context)) {
+						return false;
+					}
+				}
+
+				return true;
+			}
+		};
+
+		// Return an iterator that converts the statements to var bindings
+		return new ConvertingIteration<Statement, BindingSet, QueryEvaluationException>(stIter3) {
+
+			@Override
+			protected BindingSet convert(Statement st) {
+				return bind(st, statementPattern, bindings, slots);
 			}
+		};
+	}
+
+	/**
+	 * Binds the variables of a statement pattern to the values of a statement that matches it, by name or, if slots
+	 * are specified, by slot.
+	 */
+	private static BindingSet bind(Statement st, StatementPattern statementPattern, BindingSet bindings,
+			int[] slots) {
+		if (slots != null) {
+			return bindSlots(st, (ArrayBindingSet) bindings, slots);
 		}
+
+		final Var subjVar = statementPattern.getSubjectVar();
+		final Var predVar = statementPattern.getPredicateVar();
+		final Var objVar = statementPattern.getObjectVar();
+		final Var conVar = statementPattern.getContextVar();
+
+		QueryBindingSet result = new QueryBindingSet(bindings);
+
+		if (subjVar != null && !subjVar.isConstant() && !result.hasBinding(subjVar.getName())) {
+			result.addBinding(subjVar.getName(), st.getSubject());
+		}
+		if (predVar != null && !predVar.isConstant() && !result.hasBinding(predVar.getName())) {
+			result.addBinding(predVar.getName(), st.getPredicate());
+		}
+		if (objVar != null && !objVar.isConstant() && !result.hasBinding(objVar.getName())) {
+			result.addBinding(objVar.getName(), st.getObject());
+		}
+		if (conVar != null && !conVar.isConstant() && !result.hasBinding(conVar.getName())
+				&& st.getContext() != null) {
+			result.addBinding(conVar.getName(), st.getContext());
+		}
+
+		return result;
 	}
 
 	protected boolean isUnbound(Var var, BindingSet bindings) {
@@ -676,6 +1304,23 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		}
 	}
 
+	private static ArrayBindingSet bindSlots(Statement st, ArrayBindingSet bindings, int[] slots) {
+		ArrayBindingSet result = new ArrayBindingSet(bindings);
+		bindSlot(result, slots[0], st.getSubject());
+		bindSlot(result, slots[1], st.getPredicate());
+		bindSlot(result, slots[2], st.getObject());
+		if (st.getContext() != null) {
+			bindSlot(result, slots[3], st.getContext());
+		}
+		return result;
+	}
+
+	private static void bindSlot(ArrayBindingSet result, int slot, Value value) {
+		if (slot >= 0 && !result.hasBinding(slot)) {
+			result.setBinding(slot, value);
+		}
+	}
+
 	protected Value getVarValue(Var var, BindingSet bindings) {
 		if (var == null) {
 			return null;
@@ -795,11 +1440,139 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Filter filter, BindingSet bindings)
 			throws QueryEvaluationException {
 		CloseableIteration<BindingSet, QueryEvaluationException> result;
-		result = this.evaluate(filter.getArg(), bindings);
+		result = evaluateFilterArg(filter, b -> this.evaluate(filter.getArg(), b), bindings, null, null);
 		result = new FilterIterator(filter, result, this);
 		return result;
 	}
 
+	/**
+	 * Evaluates the argument of a filter, looking up a statement pattern by a range of literals if possible.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> evaluateFilterArg(Filter filter,
+			QueryEvaluationStep arg, BindingSet bindings, ArrayBindingSet.Layout layout, int[] slots)
+			throws QueryEvaluationException {
+		LiteralRange range = null;
+		if (filter.getArg() instanceof StatementPattern && tripleSource instanceof LiteralRangeTripleSource) {
+			Var objVar = ((StatementPattern) filter.getArg()).getObjectVar();
+			if (!objVar.hasValue() && !bindings.hasBinding(objVar.getName())) {
+				range = getLiteralRange(filter.getCondition(), objVar, bindings);
+			}
+		}
+		if (range != null) {
+			// look up the candidates by range, the condition is still evaluated on them
+			StatementPattern statementPattern = (StatementPattern) filter.getArg();
+			if (slots != null) {
+				return track(statementPattern,
+						evaluate(statementPattern, ArrayBindingSet.of(layout, bindings), range, slots));
+			}
+			return track(statementPattern, evaluate(statementPattern, bindings, range));
+		}
+		return arg.evaluate(bindings);
+	}
+
+	/**
+	 * Derives a range of literals for the object of a statement pattern from a filter condition. Comparisons of the
+	 * object variable with a literal and <tt>STRSTARTS</tt> with a string prefix can be turned into a range, also if
+	 * they are part of a conjunction. The range may contain literals for which the condition does not hold.
+	 *
+	 * @param condition The filter condition.
+	 * @param objVar    The unbound object variable.
+	 * @param bindings  The bindings of the filter.
+	 * @return The range of literals for which the condition may hold, or <tt>null</tt> if there is none.
+	 */
+	protected LiteralRange getLiteralRange(ValueExpr condition, Var objVar, BindingSet bindings) {
+		if (condition instanceof And) {
+			LiteralRange range = getLiteralRange(((And) condition).getLeftArg(), objVar, bindings);
+			return range != null ? range : getLiteralRange(((And) condition).getRightArg(), objVar, bindings);
+		} else if (condition instanceof Compare) {
+			Compare compare = (Compare) condition;
+			CompareOp operator = compare.getOperator();
+			Value value;
+			if (isVariable(compare.getLeftArg(), objVar)) {
+				value = getConstantValue(compare.getRightArg(), bindings);
+			} else if (isVariable(compare.getRightArg(), objVar)) {
+				value = getConstantValue(compare.getLeftArg(), bindings);
+				operator = getReversedOperator(operator);
+			} else {
+				return null;
+			}
+			if (!(value instanceof Literal)) {
+				return null;
+			}
+			return getLiteralRange((Literal) value, operator);
+		} else if (condition instanceof FunctionCall) {
+			FunctionCall call = (FunctionCall) condition;
+			if (FN.STARTS_WITH.stringValue().equals(call.getURI()) && call.getArgs().size() == 2
+					&& isVariable(call.getArgs().get(0), objVar)) {
+				Value prefix = getConstantValue(call.getArgs().get(1), bindings);
+				if (prefix instanceof Literal && XMLSchema.STRING.equals(((Literal) prefix).getDatatype())) {
+					return LiteralRange.prefix(((Literal) prefix).getLabel());
+				}
+			}
+		}
+		return null;
+	}
+
+	private LiteralRange getLiteralRange(Literal value, CompareOp operator) {
+		LiteralRange.Type type = LiteralRange.getType(value);
+		if (type == null || operator == CompareOp.NE) {
+			return null;
+		}
+		boolean lower = operator == CompareOp.EQ || operator == CompareOp.GE || operator == CompareOp.GT;
+		boolean upper = operator == CompareOp.EQ || operator == CompareOp.LE || operator == CompareOp.LT;
+		if (type == LiteralRange.Type.STRING) {
+			if (!XMLSchema.STRING.equals(value.getDatatype())) {
+				// language tagged strings are only equal to themselves
+				return null;
+			}
+			return LiteralRange.strings(lower ? value.getLabel() : null, upper ? value.getLabel() : null);
+		}
+
+		double key = LiteralRange.getNumberKey(type, value);
+		if (Double.isNaN(key)) {
+			return null;
+		}
+		// widen the range by the imprecision of the key: numbers may be compared as floats and date/time values
+		// without a timezone may be up to 14 hours off
+		double margin;
+		if (type == LiteralRange.Type.DATE_TIME) {
+			margin = 14 * 60 * 60 * 1000;
+		} else {
+			margin = Double.isInfinite(key) ? 0 : 2 * Math.ulp((float) key);
+		}
+		return LiteralRange.numeric(type, lower ? key - margin : Double.NEGATIVE_INFINITY,
+				upper ? key + margin : Double.NaN);
+	}
+
+	private static boolean isVariable(ValueExpr expr, Var var) {
+		return expr instanceof Var && !((Var) expr).hasValue() && ((Var) expr).getName().equals(var.getName());
+	}
+
+	private static Value getConstantValue(ValueExpr expr, BindingSet bindings) {
+		if (expr instanceof ValueConstant) {
+			return ((ValueConstant) expr).getValue();
+		} else if (expr instanceof Var) {
+			Var var = (Var) expr;
+			return var.hasValue() ? var.getValue() : bindings.getValue(var.getName());
+		}
+		return null;
+	}
+
+	private static CompareOp getReversedOperator(CompareOp operator) {
+		switch (operator) {
+		case LT:
+			return CompareOp.GT;
+		case LE:
+			return CompareOp.GE;
+		case GT:
+			return CompareOp.LT;
+		case GE:
+			return CompareOp.LE;
+		default:
+			return operator;
+		}
+	}
+
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Slice slice, BindingSet bindings)
 			throws QueryEvaluationException {
 		CloseableIteration<BindingSet, QueryEvaluationException> result = evaluate(slice.getArg(), bindings);
@@ -833,7 +1606,8 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Distinct distinct, BindingSet bindings)
 			throws QueryEvaluationException {
-		return new DistinctIteration<>(evaluate(distinct.getArg(), bindings));
+		return new SpillingDistinctIteration(evaluate(distinct.getArg(), bindings),
+				getIterationCacheSyncThreshold(), tripleSource.getValueFactory());
 	}
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Reduced reduced, BindingSet bindings)
@@ -843,7 +1617,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Group node, BindingSet bindings)
 			throws QueryEvaluationException {
-		return new GroupIterator(this, node, bindings, iterationCacheSyncThreshold);
+		return new GroupIterator(this, node, bindings, getIterationCacheSyncThreshold());
 	}
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Order node, BindingSet bindings)
@@ -852,7 +1626,8 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		OrderComparator cmp = new OrderComparator(this, node, vcmp);
 		boolean reduced = isReducedOrDistinct(node);
 		long limit = getLimit(node);
-		return new OrderIterator(evaluate(node.getArg(), bindings), cmp, limit, reduced, iterationCacheSyncThreshold);
+		return new OrderIterator(evaluate(node.getArg(), bindings), cmp, limit, reduced,
+				getIterationCacheSyncThreshold());
 	}
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(BinaryTupleOperator expr,
@@ -883,13 +1658,79 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 			return new ServiceJoinIterator(leftIter, (Service) join.getRightArg(), bindings, this);
 		}
 
-		if (isOutOfScopeForLeftArgBindings(join.getRightArg())) {
-			return new HashJoinIteration(this, join, bindings);
+		if (isHashJoin(join)) {
+			return hashJoin(join, bindings, false);
+		} else if (isBindJoin(join)) {
+			return bindJoin(join, evaluate(join.getLeftArg(), bindings), null, null);
 		} else {
 			return new JoinIterator(this, join, bindings);
 		}
 	}
 
+	/**
+	 * Checks whether a join is evaluated as a hash join, which is the case if its right argument is out of scope for
+	 * the bindings of the left argument or if the hash join algorithm has been selected for it, see
+	 * {@link JoinAlgorithmOptimizer}.
+	 */
+	private boolean isHashJoin(Join join) {
+		return isOutOfScopeForLeftArgBindings(join.getRightArg())
+				|| HashJoinIteration.class.getSimpleName().equals(join.getAlgorithmName());
+	}
+
+	/**
+	 * Checks whether a join is evaluated as a bind join, which is the case if the bind join algorithm has been selected
+	 * for it, see {@link JoinAlgorithmOptimizer}, the triple source is a {@link BatchTripleSource} and the right
+	 * argument is a statement pattern that is not evaluated by a subclass.
+	 */
+	private boolean isBindJoin(Join join) {
+		return tripleSource instanceof BatchTripleSource && join.getRightArg() instanceof StatementPattern
+				&& BindJoinIteration.class.getSimpleName().equals(join.getAlgorithmName())
+				&& isPrecompilable(join.getRightArg());
+	}
+
+	/**
+	 * Creates a bind join, which looks up the statement pattern of the right argument for batches of solutions of the
+	 * left argument.
+	 *
+	 * @param slots The slots of the variables of the statement pattern in the layout, or <tt>null</tt> to bind the
+	 *              variables by name.
+	 */
+	private BindJoinIteration bindJoin(Join join, CloseableIteration<BindingSet, QueryEvaluationException> leftIter,
+			ArrayBindingSet.Layout layout, int[] slots) {
+		StatementPattern statementPattern = (StatementPattern) join.getRightArg();
+		Var conVar = statementPattern.getContextVar();
+		return new BindJoinIteration(leftIter, statementPattern, (BatchTripleSource) tripleSource,
+				solution -> isUnbound(conVar, solution) ? null
+						: getContexts(statementPattern, getVarValue(conVar, solution)),
+				(solution, st) -> bind(st, statementPattern,
+						slots != null ? ArrayBindingSet.of(layout, solution) : solution, slots),
+				join);
+	}
+
+	private HashJoinIteration hashJoin(BinaryTupleOperator join, BindingSet bindings, boolean leftJoin)
+			throws QueryEvaluationException {
+		TupleExpr left = join.getLeftArg();
+		TupleExpr right = join.getRightArg();
+		HashJoinIteration result = new HashJoinIteration(inParallel(bs -> evaluate(left, bs), bindings),
+				left.getBindingNames(), inParallel(bs -> evaluate(right, bs), bindings), right.getBindingNames(),
+				leftJoin, null, getIterationCacheSyncThreshold());
+		join.setAlgorithm(result);
+		return result;
+	}
+
+	/**
+	 * Evaluates an operator on a thread of the executor, if parallel evaluation is enabled, so that the arguments of a
+	 * hash join, either of which may be hashed, are evaluated concurrently.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> inParallel(QueryEvaluationStep step,
+			BindingSet bindings) throws QueryEvaluationException {
+		if (executor == null) {
+			return step.evaluate(bindings);
+		}
+		return new ParallelUnionIteration(executor, PARALLEL_QUEUE_CAPACITY,
+				Collections.singletonList(delayed(step, bindings)));
+	}
+
 	private boolean isOutOfScopeForLeftArgBindings(TupleExpr expr) {
 		return (TupleExprs.isVariableScopeChange(expr) || TupleExprs.containsSubquery(expr));
 	}
@@ -897,7 +1738,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(LeftJoin leftJoin,
 			final BindingSet bindings) throws QueryEvaluationException {
 		if (TupleExprs.containsSubquery(leftJoin.getRightArg())) {
-			return new HashJoinIteration(this, leftJoin, bindings);
+			return hashJoin(leftJoin, bindings, true);
 		}
 
 		// Check whether optional join is "well designed" as defined in section
@@ -923,7 +1764,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 	@SuppressWarnings("unchecked")
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(final Union union,
 			final BindingSet bindings) throws QueryEvaluationException {
-		Iteration<BindingSet, QueryEvaluationException> leftArg, rightArg;
+		CloseableIteration<BindingSet, QueryEvaluationException> leftArg, rightArg;
 
 		leftArg = new DelayedIteration<BindingSet, QueryEvaluationException>() {
 
@@ -943,6 +1784,9 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 			}
 		};
 
+		if (executor != null) {
+			return new ParallelUnionIteration(executor, PARALLEL_QUEUE_CAPACITY, Arrays.asList(leftArg, rightArg));
+		}
 		return new UnionIteration<>(leftArg, rightArg);
 	}
 
@@ -41,6 +41,7 @@ public class StrictEvaluationStrategyFactory extends AbstractEvaluationStrategyF
 		StrictEvaluationStrategy strategy = new StrictEvaluationStrategy(tripleSource, dataset, serviceResolver,
 				getQuerySolutionCacheThreshold(), evaluationStatistics, isTrackResultSize());
 		getOptimizerPipeline().ifPresent(strategy::setOptimizerPipeline);
+		configureParallelEvaluation(strategy);
 
 		return strategy;
 	}
@@ -20,8 +20,10 @@ import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.TupleFunctionCall;
 import org.eclipse.rdf4j.query.algebra.ValueExpr;
 import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
 import org.eclipse.rdf4j.query.algebra.evaluation.function.TupleFunction;
@@ -75,6 +77,14 @@ public class TupleFunctionEvaluationStrategy extends StrictEvaluationStrategy {
 		}
 	}
 
+	@Override
+	protected QueryEvaluationStep precompile(TupleExpr expr, ArrayBindingSet.Layout layout) {
+		if (expr instanceof TupleFunctionCall) {
+			return bindings -> evaluate((TupleFunctionCall) expr, bindings);
+		}
+		return super.precompile(expr, layout);
+	}
+
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(TupleFunctionCall expr,
 			BindingSet bindings) throws QueryEvaluationException {
 		TupleFunction func = tupleFuncRegistry.get(expr.getURI())
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.eclipse.rdf4j.common.iteration.BatchIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.StatementPattern.Scope;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
+
+/**
+ * Bind join iterator.
+ * <p>
+ * This join iterator evaluates a statement pattern, the right argument of the join, for a batch of solutions of its
+ * left argument at a time. The distinct lookups of a batch are passed to a {@link BatchTripleSource} at once, which
+ * can perform them in the order of its indexes, and every statement that is found is joined with the solutions of the
+ * left argument that it was looked up for. Like the {@link JoinIterator}, this join strategy is only valid in cases
+ * where all bindings from the left argument can be considered in scope for the right argument. The results are not
+ * produced in the order of the left argument.
+ *
+ * @since 3.3.0
+ */
+public class BindJoinIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+	private final CloseableIteration<BindingSet, QueryEvaluationException> leftIter;
+
+	private final StatementPattern statementPattern;
+
+	private final Var[] vars;
+
+	private final BatchTripleSource tripleSource;
+
+	private final Function<BindingSet, Resource[]> contexts;
+
+	private final BiFunction<BindingSet, Statement, BindingSet> join;
+
+	private final List<BindingSet> batch = new ArrayList<>(BatchIteration.DEFAULT_BATCH_SIZE);
+
+	/**
+	 * The lookups of the current batch that have not been performed yet.
+	 */
+	private final Queue<LookupGroup> groups = new ArrayDeque<>();
+
+	private LookupGroup group;
+
+	private volatile CloseableIteration<? extends Statement, QueryEvaluationException> statements;
+
+	private Statement statement;
+
+	private Iterator<BindingSet> solutions = Collections.emptyIterator();
+
+	/**
+	 * Creates a bind join iterator.
+	 *
+	 * @param leftIter         The solutions of the left argument.
+	 * @param statementPattern The right argument.
+	 * @param tripleSource     The triple source to look up the statements of the right argument in.
+	 * @param contexts         A function that gives the contexts to look up the statements in for a solution of the
+	 *                         left argument, or <tt>null</tt> if no statements match for the solution.
+	 * @param join             A function that binds the variables of a statement to a solution of the left argument.
+	 * @param node             The join, for which the algorithm is set.
+	 */
+	public BindJoinIteration(CloseableIteration<BindingSet, QueryEvaluationException> leftIter,
+			StatementPattern statementPattern, BatchTripleSource tripleSource,
+			Function<BindingSet, Resource[]> contexts, BiFunction<BindingSet, Statement, BindingSet> join, Join node) {
+		this.leftIter = leftIter;
+		this.statementPattern = statementPattern;
+		this.vars = new Var[] { statementPattern.getSubjectVar(), statementPattern.getPredicateVar(),
+				statementPattern.getObjectVar(), statementPattern.getContextVar() };
+		this.tripleSource = tripleSource;
+		this.contexts = contexts;
+		this.join = join;
+		this.statements = new EmptyIteration<>();
+
+		node.setAlgorithm(this);
+	}
+
+	@Override
+	protected BindingSet getNextElement() throws QueryEvaluationException {
+		try {
+			while (true) {
+				while (solutions.hasNext()) {
+					BindingSet result = join.apply(solutions.next(), statement);
+					if (result != null) {
+						return result;
+					}
+				}
+
+				if (statements.hasNext()) {
+					statement = statements.next();
+					if (matches(statement)) {
+						solutions = group.getSolutions(statement).iterator();
+					}
+					continue;
+				}
+
+				// Lookups of the current group exhausted
+				statements.close();
+
+				while (groups.isEmpty()) {
+					if (!nextBatch()) {
+						return null;
+					}
+				}
+				group = groups.remove();
+				statements = tripleSource.getStatementsForLookups(group.getLookups(), group.contexts);
+			}
+		} catch (NoSuchElementException ignore) {
+			// probably, one of the iterations has been closed concurrently in
+			// handleClose()
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the next batch of solutions of the left argument and groups their lookups.
+	 *
+	 * @return <tt>false</tt> if the left argument has no more solutions.
+	 */
+	private boolean nextBatch() throws QueryEvaluationException {
+		batch.clear();
+		if (isClosed() || Iterations.nextBatch(leftIter, batch, BatchIteration.DEFAULT_BATCH_SIZE) == 0) {
+			return false;
+		}
+
+		Map<List<Object>, LookupGroup> batchGroups = new LinkedHashMap<>();
+		for (BindingSet solution : batch) {
+			Value[] lookup = new Value[3];
+			boolean[] bound = new boolean[3];
+			boolean valid = true;
+			for (int i = 0; i < lookup.length && valid; i++) {
+				Var var = vars[i];
+				if (var == null) {
+					continue;
+				}
+				if (var.hasValue()) {
+					lookup[i] = var.getValue();
+				} else if (solution.hasBinding(var.getName())) {
+					lookup[i] = solution.getValue(var.getName());
+					// the variable must remain unbound for this solution
+					valid = lookup[i] != null;
+				}
+				bound[i] = lookup[i] != null;
+			}
+			if (!valid || lookup[0] != null && !(lookup[0] instanceof Resource)
+					|| lookup[1] != null && !(lookup[1] instanceof IRI)) {
+				continue;
+			}
+			Resource[] lookupContexts = contexts.apply(solution);
+			if (lookupContexts == null) {
+				continue;
+			}
+
+			// the statements of the lookups of a group are matched to the lookups by their bound positions
+			List<Object> key = Arrays.asList(bound[0], bound[1], bound[2], Arrays.asList(lookupContexts));
+			batchGroups.computeIfAbsent(key, k -> new LookupGroup(bound, lookupContexts))
+					.add(Arrays.asList(lookup), solution);
+		}
+		groups.addAll(batchGroups.values());
+		return true;
+	}
+
+	/**
+	 * Checks whether a statement matches the statement pattern, if the statement pattern contains the same variable
+	 * more than once or is restricted to named contexts.
+	 */
+	private boolean matches(Statement st) {
+		Value[] values = { st.getSubject(), st.getPredicate(), st.getObject(), st.getContext() };
+		if (values[3] == null && statementPattern.getScope() == Scope.NAMED_CONTEXTS && group.contexts.length == 0) {
+			return false;
+		}
+		for (int i = 0; i < vars.length; i++) {
+			for (int j = i + 1; j < vars.length; j++) {
+				if (vars[i] != null && vars[i].equals(vars[j]) && !Objects.equals(values[i], values[j])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			try {
+				leftIter.close();
+			} finally {
+				statements.close();
+			}
+		}
+	}
+
+	/**
+	 * The lookups of a batch that have the same bound positions and contexts, and the solutions of the left argument
+	 * that they are performed for.
+	 */
+	private static class LookupGroup {
+
+		private final boolean[] bound;
+
+		private final Resource[] contexts;
+
+		private final Map<List<Value>, List<BindingSet>> solutions = new LinkedHashMap<>();
+
+		public LookupGroup(boolean[] bound, Resource[] contexts) {
+			this.bound = bound;
+			this.contexts = contexts;
+		}
+
+		public void add(List<Value> lookup, BindingSet solution) {
+			solutions.computeIfAbsent(lookup, k -> new ArrayList<>(1)).add(solution);
+		}
+
+		public List<Value[]> getLookups() {
+			List<Value[]> lookups = new ArrayList<>(solutions.size());
+			for (List<Value> lookup : solutions.keySet()) {
+				lookups.add(lookup.toArray(new Value[lookup.size()]));
+			}
+			return lookups;
+		}
+
+		/**
+		 * Gets the solutions of the left argument that a statement has been looked up for.
+		 */
+		public List<BindingSet> getSolutions(Statement st) {
+			List<Value> lookup = Arrays.asList(bound[0] ? st.getSubject() : null, bound[1] ? st.getPredicate() : null,
+					bound[2] ? st.getObject() : null);
+			List<BindingSet> result = solutions.get(lookup);
+			return result != null ? result : Collections.emptyList();
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.util.Arrays;
 
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 
 /**
  * Compact and efficient representation of a binding set for use as a key in hash maps.
@@ -44,6 +45,20 @@ public class BindingSetHashKey implements Serializable {
 		return key;
 	}
 
+	/**
+	 * Creates a key from the values of the specified slots of a binding set.
+	 */
+	public static BindingSetHashKey create(int[] slots, ArrayBindingSet bindings) {
+		if (slots.length == 0) {
+			return BindingSetHashKey.EMPTY;
+		}
+		Value[] keyValues = new Value[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			keyValues[i] = bindings.getValue(slots[i]);
+		}
+		return new BindingSetHashKey(keyValues);
+	}
+
 	private BindingSetHashKey(Value[] values) {
 		this.values = values;
 	}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.BindingSetCodec;
+
+/**
+ * A temporary file that binding sets are appended to, and that is read back once all binding sets have been written.
+ * The file is deleted when it is closed.
+ */
+class BindingSetSpillFile implements Closeable {
+
+	private final File file;
+
+	private DataOutputStream output;
+
+	private long size;
+
+	private final BindingSetCodec codec = new BindingSetCodec();
+
+	public BindingSetSpillFile(String prefix) throws QueryEvaluationException {
+		try {
+			file = File.createTempFile(prefix, ".bin");
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	public void add(BindingSet bindings) throws QueryEvaluationException {
+		if (output == null) {
+			throw new IllegalStateException("spill file is closed for writing");
+		}
+		try {
+			codec.write(bindings, output);
+			size++;
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Ends writing and reads the binding sets of the file, in the order in which they were added.
+	 */
+	public CloseableIteration<BindingSet, QueryEvaluationException> iterator() throws QueryEvaluationException {
+		DataInputStream input;
+		try {
+			closeOutput();
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+
+		return new LookAheadIteration<BindingSet, QueryEvaluationException>() {
+
+			private final BindingSetCodec codec = new BindingSetCodec();
+
+			private long remaining = size;
+
+			@Override
+			protected BindingSet getNextElement() throws QueryEvaluationException {
+				if (remaining <= 0) {
+					return null;
+				}
+				try {
+					remaining--;
+					return codec.read(input);
+				} catch (IOException e) {
+					throw new QueryEvaluationException(e);
+				}
+			}
+
+			@Override
+			protected void handleClose() throws QueryEvaluationException {
+				try {
+					super.handleClose();
+				} finally {
+					try {
+						input.close();
+					} catch (IOException e) {
+						throw new QueryEvaluationException(e);
+					}
+				}
+			}
+		};
+	}
+
+	private void closeOutput() throws IOException {
+		if (output != null) {
+			try {
+				output.close();
+			} finally {
+				output = null;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws QueryEvaluationException {
+		try {
+			closeOutput();
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
+import java.util.List;
+
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.model.Value;
@@ -16,46 +18,131 @@ import org.eclipse.rdf4j.query.algebra.AggregateOperator;
 import org.eclipse.rdf4j.query.algebra.Extension;
 import org.eclipse.rdf4j.query.algebra.ExtensionElem;
 import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
 
 public class ExtensionIterator extends ConvertingIteration<BindingSet, BindingSet, QueryEvaluationException> {
 
-	private final Extension extension;
+	private final String[] names;
+
+	/**
+	 * The prepared expressions of the extension elements, <tt>null</tt> for aggregates.
+	 */
+	private final QueryValueEvaluationStep[] expressions;
 
-	private final EvaluationStrategy strategy;
+	/**
+	 * The layout of the binding sets that are extended by slot, <tt>null</tt> if bindings are set by name.
+	 */
+	private final ArrayBindingSet.Layout layout;
+
+	private final int[] slots;
 
 	public ExtensionIterator(Extension extension, CloseableIteration<BindingSet, QueryEvaluationException> iter,
 			EvaluationStrategy strategy) throws QueryEvaluationException {
+		this(extension, iter, prepare(extension, strategy));
+	}
+
+	/**
+	 * Creates an extension iterator with prepared expressions.
+	 *
+	 * @param expressions The prepared expressions of the elements of the extension, in the same order, with
+	 *                    <tt>null</tt> for aggregates.
+	 */
+	public ExtensionIterator(Extension extension, CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			QueryValueEvaluationStep[] expressions) throws QueryEvaluationException {
+		this(extension, iter, expressions, null);
+	}
+
+	/**
+	 * Creates an extension iterator with prepared expressions that binds the elements of {@link ArrayBindingSet}s of a
+	 * layout by slot.
+	 *
+	 * @param expressions The prepared expressions of the elements of the extension, in the same order, with
+	 *                    <tt>null</tt> for aggregates.
+	 * @param layout      The layout of the query, which contains the names of the extension elements.
+	 */
+	public ExtensionIterator(Extension extension, CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			QueryValueEvaluationStep[] expressions, ArrayBindingSet.Layout layout) throws QueryEvaluationException {
 		super(iter);
-		this.extension = extension;
-		this.strategy = strategy;
+		List<ExtensionElem> elements = extension.getElements();
+		this.names = new String[elements.size()];
+		this.slots = new int[elements.size()];
+		boolean slotted = layout != null;
+		for (int i = 0; i < names.length; i++) {
+			names[i] = elements.get(i).getName();
+			slots[i] = slotted ? layout.getSlot(names[i]) : -1;
+			slotted = slotted && slots[i] >= 0;
+		}
+		this.layout = slotted ? layout : null;
+		this.expressions = expressions;
+	}
+
+	/**
+	 * Prepares the expressions of the elements of an extension, see
+	 * {@link #ExtensionIterator(Extension, CloseableIteration, QueryValueEvaluationStep[])}.
+	 */
+	public static QueryValueEvaluationStep[] prepare(Extension extension, EvaluationStrategy strategy) {
+		List<ExtensionElem> elements = extension.getElements();
+		QueryValueEvaluationStep[] expressions = new QueryValueEvaluationStep[elements.size()];
+		for (int i = 0; i < expressions.length; i++) {
+			ValueExpr expr = elements.get(i).getExpr();
+			if (!(expr instanceof AggregateOperator)) {
+				expressions[i] = strategy.precompile(expr);
+			}
+		}
+		return expressions;
 	}
 
 	@Override
 	public BindingSet convert(BindingSet sourceBindings) throws QueryEvaluationException {
+		if (layout != null && sourceBindings instanceof ArrayBindingSet
+				&& ((ArrayBindingSet) sourceBindings).hasLayout(layout)) {
+			return convert((ArrayBindingSet) sourceBindings);
+		}
+
 		QueryBindingSet targetBindings = new QueryBindingSet(sourceBindings);
 
-		for (ExtensionElem extElem : extension.getElements()) {
-			ValueExpr expr = extElem.getExpr();
-			if (!(expr instanceof AggregateOperator)) {
+		for (int i = 0; i < expressions.length; i++) {
+			if (expressions[i] != null) {
 				try {
 					// we evaluate each extension element over the targetbindings, so that bindings from
 					// a previous extension element in this same extension can be used by other extension elements.
 					// e.g. if a projection contains (?a + ?b as ?c) (?c * 2 as ?d)
-					Value targetValue = strategy.evaluate(extElem.getExpr(), targetBindings);
+					Value targetValue = expressions[i].evaluate(targetBindings);
 
 					if (targetValue != null) {
 						// Potentially overwrites bindings from super
-						targetBindings.setBinding(extElem.getName(), targetValue);
+						targetBindings.setBinding(names[i], targetValue);
 					}
 				} catch (ValueExprEvaluationException e) {
 					// silently ignore type errors in extension arguments. They should not cause the
 					// query to fail but result in no bindings for this solution
 					// see https://www.w3.org/TR/sparql11-query/#assignment
 					// use null as place holder for unbound variables that must remain so
-					targetBindings.setBinding(extElem.getName(), null);
+					targetBindings.setBinding(names[i], null);
+				}
+			}
+		}
+
+		return targetBindings;
+	}
+
+	private BindingSet convert(ArrayBindingSet sourceBindings) throws QueryEvaluationException {
+		ArrayBindingSet targetBindings = new ArrayBindingSet(sourceBindings);
+
+		for (int i = 0; i < expressions.length; i++) {
+			if (expressions[i] != null) {
+				try {
+					Value targetValue = expressions[i].evaluate(targetBindings);
+					if (targetValue != null) {
+						targetBindings.setBinding(slots[i], targetValue);
+					}
+				} catch (ValueExprEvaluationException e) {
+					// type errors leave the variable unbound, see above
+					targetBindings.setBinding(slots[i], null);
 				}
 			}
 		}
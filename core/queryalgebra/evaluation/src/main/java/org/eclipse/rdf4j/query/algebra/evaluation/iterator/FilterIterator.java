@@ -16,9 +16,12 @@ import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.Filter;
 import org.eclipse.rdf4j.query.algebra.QueryModelNode;
 import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryEvaluationUtil;
 
 public class FilterIterator extends FilterIteration<BindingSet, QueryEvaluationException> {
 
@@ -26,9 +29,7 @@ public class FilterIterator extends FilterIteration<BindingSet, QueryEvaluationE
 	 * Constants *
 	 *-----------*/
 
-	private final Filter filter;
-
-	private final EvaluationStrategy strategy;
+	private final QueryValueEvaluationStep condition;
 
 	/**
 	 * The set of binding names that are "in scope" for the filter. The filter must not include bindings that are (only)
@@ -36,24 +37,66 @@ public class FilterIterator extends FilterIteration<BindingSet, QueryEvaluationE
 	 */
 	private final Set<String> scopeBindingNames;
 
+	private final boolean isPartOfSubQuery;
+
+	private final ArrayBindingSet.Layout layout;
+
+	/**
+	 * Marks the slots of the layout that are in scope for the filter.
+	 */
+	private final boolean[] scopeSlots;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
 	public FilterIterator(Filter filter, CloseableIteration<BindingSet, QueryEvaluationException> iter,
 			EvaluationStrategy strategy) throws QueryEvaluationException {
+		this(filter, iter, strategy.precompile(filter.getCondition()));
+	}
+
+	/**
+	 * Creates a filter iterator with a prepared condition.
+	 *
+	 * @param condition The prepared condition of the filter.
+	 */
+	public FilterIterator(Filter filter, CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			QueryValueEvaluationStep condition) throws QueryEvaluationException {
+		this(filter, iter, condition, null);
+	}
+
+	/**
+	 * Creates a filter iterator with a prepared condition that limits the bindings of {@link ArrayBindingSet}s of a
+	 * layout to the ones in scope by slot.
+	 *
+	 * @param condition The prepared condition of the filter.
+	 * @param layout    The layout of the query.
+	 */
+	public FilterIterator(Filter filter, CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			QueryValueEvaluationStep condition, ArrayBindingSet.Layout layout) throws QueryEvaluationException {
 		super(iter);
-		this.filter = filter;
-		this.strategy = strategy;
+		this.condition = condition;
 		this.scopeBindingNames = filter.getBindingNames();
-
+		this.isPartOfSubQuery = isPartOfSubQuery(filter);
+		this.layout = layout;
+		if (layout != null) {
+			scopeSlots = new boolean[layout.size()];
+			for (String name : scopeBindingNames) {
+				int slot = layout.getSlot(name);
+				if (slot >= 0) {
+					scopeSlots[slot] = true;
+				}
+			}
+		} else {
+			scopeSlots = null;
+		}
 	}
 
 	/*---------*
 	 * Methods *
 	 *---------*/
 
-	private boolean isPartOfSubQuery(QueryModelNode node) {
+	private static boolean isPartOfSubQuery(QueryModelNode node) {
 		if (node instanceof SubQueryValueOperator) {
 			return true;
 		}
@@ -69,17 +112,27 @@ public class FilterIterator extends FilterIteration<BindingSet, QueryEvaluationE
 	@Override
 	protected boolean accept(BindingSet bindings) throws QueryEvaluationException {
 		try {
+			if (layout != null && bindings instanceof ArrayBindingSet
+					&& ((ArrayBindingSet) bindings).hasLayout(layout)) {
+				ArrayBindingSet scopeBindings = (ArrayBindingSet) bindings;
+				if (!isPartOfSubQuery) {
+					scopeBindings = new ArrayBindingSet(scopeBindings);
+					scopeBindings.retainAll(scopeSlots);
+				}
+				return QueryEvaluationUtil.getEffectiveBooleanValue(condition.evaluate(scopeBindings));
+			}
+
 			// Limit the bindings to the ones that are in scope for this filter
 			QueryBindingSet scopeBindings = new QueryBindingSet(bindings);
 
 			// FIXME J1 scopeBindingNames should include bindings from superquery if the filter
 			// is part of a subquery. This is a workaround: we should fix the settings of scopeBindingNames,
 			// rather than skipping the limiting of bindings.
-			if (!isPartOfSubQuery(filter)) {
+			if (!isPartOfSubQuery) {
 				scopeBindings.retainAll(scopeBindingNames);
 			}
 
-			return strategy.isTrue(filter.getCondition(), scopeBindings);
+			return QueryEvaluationUtil.getEffectiveBooleanValue(condition.evaluate(scopeBindings));
 		} catch (ValueExprEvaluationException e) {
 			// failed to evaluate condition
 			return false;
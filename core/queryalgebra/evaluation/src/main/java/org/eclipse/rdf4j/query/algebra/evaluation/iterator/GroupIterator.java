@@ -10,17 +10,21 @@ package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
 
+import org.eclipse.rdf4j.common.iteration.BatchIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.common.lang.ObjectUtil;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Value;
@@ -212,22 +216,27 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 				}
 			}
 
-			while (iter.hasNext()) {
-				BindingSet sol;
+			List<BindingSet> batch = new ArrayList<>(BatchIteration.DEFAULT_BATCH_SIZE);
+			while (true) {
 				try {
-					sol = iter.next();
+					if (Iterations.nextBatch(iter, batch, BatchIteration.DEFAULT_BATCH_SIZE) == 0) {
+						break;
+					}
 				} catch (NoSuchElementException e) {
 					break; // closed
 				}
-				Key key = new Key(sol);
-				Entry entry = entries.get(key);
+				for (BindingSet sol : batch) {
+					Key key = new Key(sol);
+					Entry entry = entries.get(key);
 
-				if (entry == null) {
-					entry = new Entry(sol);
-					entries.put(key, entry);
-				}
+					if (entry == null) {
+						entry = new Entry(sol);
+						entries.put(key, entry);
+					}
 
-				entry.addSolution(sol);
+					entry.addSolution(sol);
+				}
+				batch.clear();
 			}
 
 			return entries.values();
@@ -7,16 +7,22 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.rdf4j.common.iteration.BatchIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.common.iterator.UnionIterator;
 import org.eclipse.rdf4j.model.Value;
@@ -25,6 +31,7 @@ import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.Join;
 import org.eclipse.rdf4j.query.algebra.LeftJoin;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
@@ -32,11 +39,27 @@ import org.eclipse.rdf4j.util.iterators.EmptyIterator;
 
 /**
  * Generic hash join implementation suitable for use by Sail implementations.
+ * <p>
+ * The join builds an in-memory hash table of one of its arguments. If a cache threshold is set and the cached
+ * solutions of the arguments exceed it, the join continues as a grace hash join: the solutions of both arguments are
+ * partitioned by the hash of their join attributes into temporary files, and the partitions are joined one by one, so
+ * that only the hash table of a single partition is kept in memory. Partitions that still exceed the threshold are
+ * partitioned again, up to a maximum depth. Joins without join attributes are not partitioned.
  *
  * @author MJAHale
  */
 public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int PARTITION_BITS = 5;
+
+	private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+
+	private static final int MAX_PARTITION_DEPTH = 3;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -59,6 +82,32 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 
 	private final boolean leftJoin;
 
+	/**
+	 * The layout of the binding sets that are joined by slot, <tt>null</tt> if they are joined by name.
+	 */
+	private final ArrayBindingSet.Layout layout;
+
+	/**
+	 * The slots of the join attributes in the layout.
+	 */
+	private final int[] joinSlots;
+
+	/**
+	 * The maximum number of solutions that are cached in memory before the arguments are partitioned, <tt>0</tt> for
+	 * no maximum.
+	 */
+	private final long cacheThreshold;
+
+	/**
+	 * The partitions that remain to be joined, <tt>null</tt> if the arguments have not been partitioned.
+	 */
+	private volatile Deque<Partition> partitions;
+
+	/**
+	 * The partition that is being joined.
+	 */
+	private volatile Partition currentPartition;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -85,14 +134,53 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 			CloseableIteration<BindingSet, QueryEvaluationException> leftIter, Set<String> leftBindingNames,
 			CloseableIteration<BindingSet, QueryEvaluationException> rightIter, Set<String> rightBindingNames,
 			boolean leftJoin) throws QueryEvaluationException {
+		this(leftIter, leftBindingNames, rightIter, rightBindingNames, leftJoin, null);
+	}
+
+	/**
+	 * Creates a hash join that looks up and merges {@link ArrayBindingSet}s of a layout by slot.
+	 *
+	 * @param layout The layout of the query, which contains the binding names of both arguments.
+	 */
+	public HashJoinIteration(CloseableIteration<BindingSet, QueryEvaluationException> leftIter,
+			Set<String> leftBindingNames, CloseableIteration<BindingSet, QueryEvaluationException> rightIter,
+			Set<String> rightBindingNames, boolean leftJoin, ArrayBindingSet.Layout layout)
+			throws QueryEvaluationException {
+		this(leftIter, leftBindingNames, rightIter, rightBindingNames, leftJoin, layout, 0);
+	}
+
+	/**
+	 * Creates a hash join that partitions its arguments to disk once more solutions than the specified threshold have
+	 * been cached.
+	 *
+	 * @param layout         The layout of the query, which contains the binding names of both arguments, or
+	 *                       <tt>null</tt> to join binding sets by name.
+	 * @param cacheThreshold The maximum number of solutions to cache in memory, <tt>0</tt> for no maximum.
+	 * @since 3.3.0
+	 */
+	public HashJoinIteration(CloseableIteration<BindingSet, QueryEvaluationException> leftIter,
+			Set<String> leftBindingNames, CloseableIteration<BindingSet, QueryEvaluationException> rightIter,
+			Set<String> rightBindingNames, boolean leftJoin, ArrayBindingSet.Layout layout, long cacheThreshold)
+			throws QueryEvaluationException {
 		this.leftIter = leftIter;
 		this.rightIter = rightIter;
 
-		Set<String> joinAttributeNames = leftBindingNames;
+		Set<String> joinAttributeNames = new HashSet<>(leftBindingNames);
 		joinAttributeNames.retainAll(rightBindingNames);
 		joinAttributes = joinAttributeNames.toArray(new String[joinAttributeNames.size()]);
 
 		this.leftJoin = leftJoin;
+
+		int[] slots = layout != null ? new int[joinAttributes.length] : null;
+		for (int i = 0; slots != null && i < joinAttributes.length; i++) {
+			slots[i] = layout.getSlot(joinAttributes[i]);
+			if (slots[i] < 0) {
+				slots = null;
+			}
+		}
+		this.joinSlots = slots;
+		this.layout = slots != null ? layout : null;
+		this.cacheThreshold = cacheThreshold;
 	}
 
 	/*---------*
@@ -120,6 +208,10 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 
 				if (restIter.hasNext()) {
 					currentScanElem = restIter.next();
+				} else if (partitions != null && !partitions.isEmpty()) {
+					disposeHashTable(nextHashTable);
+					nextHashTable = hashTable = nextPartition();
+					continue;
 				} else {
 					// no more elements available
 					return null;
@@ -139,7 +231,7 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 						nextHashTableValues = hashTableValues = null;
 					}
 				} else {
-					BindingSetHashKey key = BindingSetHashKey.create(joinAttributes, currentScanElem);
+					BindingSetHashKey key = createKey(currentScanElem);
 					List<BindingSet> hashValue = nextHashTable.get(key);
 					if (hashValue != null && !hashValue.isEmpty()) {
 						nextHashTableValues = hashTableValues = hashValue.iterator();
@@ -158,16 +250,7 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		if (nextHashTableValues != null) {
 			BindingSet nextHashTableValue = nextHashTableValues.next();
 
-			QueryBindingSet result = new QueryBindingSet(currentScanElem);
-
-			for (String name : nextHashTableValue.getBindingNames()) {
-				if (!result.hasBinding(name)) {
-					Value v = nextHashTableValue.getValue(name);
-					if (v != null) {
-						result.addBinding(name, v);
-					}
-				}
-			}
+			BindingSet result = merge(currentScanElem, nextHashTableValue);
 
 			if (!nextHashTableValues.hasNext()) {
 				// we've exhausted the current scanlist entry
@@ -181,6 +264,43 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		return EmptyBindingSet.getInstance();
 	}
 
+	private BindingSetHashKey createKey(BindingSet bindings) {
+		if (layout != null && bindings instanceof ArrayBindingSet && ((ArrayBindingSet) bindings).hasLayout(layout)) {
+			return BindingSetHashKey.create(joinSlots, (ArrayBindingSet) bindings);
+		}
+		return BindingSetHashKey.create(joinAttributes, bindings);
+	}
+
+	private BindingSet merge(BindingSet scanElem, BindingSet hashValue) {
+		if (layout != null && scanElem instanceof ArrayBindingSet && hashValue instanceof ArrayBindingSet
+				&& ((ArrayBindingSet) scanElem).hasLayout(layout)
+				&& ((ArrayBindingSet) scanElem).getLayout() == ((ArrayBindingSet) hashValue).getLayout()) {
+			ArrayBindingSet value = (ArrayBindingSet) hashValue;
+			ArrayBindingSet result = new ArrayBindingSet((ArrayBindingSet) scanElem);
+			for (int i = 0; i < result.getLayout().size(); i++) {
+				if (!result.hasBinding(i)) {
+					Value v = value.getValue(i);
+					if (v != null) {
+						result.setBinding(i, v);
+					}
+				}
+			}
+			return result;
+		}
+
+		QueryBindingSet result = new QueryBindingSet(scanElem);
+
+		for (String name : hashValue.getBindingNames()) {
+			if (!result.hasBinding(name)) {
+				Value v = hashValue.getValue(name);
+				if (v != null) {
+					result.addBinding(name, v);
+				}
+			}
+		}
+		return result;
+	}
+
 	@Override
 	protected void handleClose() throws QueryEvaluationException {
 		try {
@@ -210,10 +330,14 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 								disposeCache(toCloseScanList);
 							}
 						} finally {
-							Map<BindingSetHashKey, List<BindingSet>> toCloseHashTable = hashTable;
-							hashTable = null;
-							if (toCloseHashTable != null) {
-								disposeHashTable(toCloseHashTable);
+							try {
+								Map<BindingSetHashKey, List<BindingSet>> toCloseHashTable = hashTable;
+								hashTable = null;
+								if (toCloseHashTable != null) {
+									disposeHashTable(toCloseHashTable);
+								}
+							} finally {
+								closePartitions();
 							}
 						}
 					}
@@ -226,18 +350,29 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 
 		Collection<BindingSet> leftArgResults;
 		Collection<BindingSet> rightArgResults = makeIterationCache(rightIter);
+		List<BindingSet> batch = new ArrayList<>(BatchIteration.DEFAULT_BATCH_SIZE);
 		if (!leftJoin) {
 			leftArgResults = makeIterationCache(leftIter);
 
-			while (leftIter.hasNext() && rightIter.hasNext()) {
-				add(leftArgResults, leftIter.next());
-				add(rightArgResults, rightIter.next());
+			// read both arguments alternately until either of them is exhausted
+			while (nextBatch(leftIter, batch)) {
+				addAll(leftArgResults, batch);
+				if (!nextBatch(rightIter, batch)) {
+					break;
+				}
+				addAll(rightArgResults, batch);
+				if (isCacheFull(leftArgResults.size() + rightArgResults.size())) {
+					return partition(leftArgResults, rightArgResults);
+				}
 			}
 		} else {
 			leftArgResults = Collections.emptyList();
 
-			while (rightIter.hasNext()) {
-				add(rightArgResults, rightIter.next());
+			while (nextBatch(rightIter, batch)) {
+				addAll(rightArgResults, batch);
+				if (isCacheFull(rightArgResults.size())) {
+					return partition(leftArgResults, rightArgResults);
+				}
 			}
 		}
 
@@ -257,12 +392,28 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		leftArgResults = null;
 		rightArgResults = null;
 
+		return buildHashTable(smallestResult);
+	}
+
+	/**
+	 * Reads the next batch of solutions of an argument into the specified list, replacing its contents.
+	 *
+	 * @return <tt>false</tt> if the argument has no more solutions.
+	 */
+	private static boolean nextBatch(CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			List<BindingSet> batch) throws QueryEvaluationException {
+		batch.clear();
+		return Iterations.nextBatch(iter, batch, BatchIteration.DEFAULT_BATCH_SIZE) > 0;
+	}
+
+	private Map<BindingSetHashKey, List<BindingSet>> buildHashTable(Collection<BindingSet> smallestResult)
+			throws QueryEvaluationException {
 		// create the hash table for our join
 		// hash table will never be any bigger than smallestResult.size()
 		Map<BindingSetHashKey, List<BindingSet>> resultHashTable = makeHashTable(smallestResult.size());
 		int maxListSize = 1;
 		for (BindingSet b : smallestResult) {
-			BindingSetHashKey hashKey = BindingSetHashKey.create(joinAttributes, b);
+			BindingSetHashKey hashKey = createKey(b);
 
 			List<BindingSet> hashValue = resultHashTable.get(hashKey);
 			boolean newEntry = (hashValue == null);
@@ -279,6 +430,197 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		return resultHashTable;
 	}
 
+	private boolean isCacheFull(long size) {
+		return cacheThreshold > 0 && size >= cacheThreshold && joinAttributes.length > 0;
+	}
+
+	/**
+	 * Partitions the cached and the remaining solutions of both arguments and sets up the hash table of the first
+	 * partition. The solutions of the left argument are always scanned, and those of the right argument hashed, as
+	 * required for left joins.
+	 */
+	private Map<BindingSetHashKey, List<BindingSet>> partition(Collection<BindingSet> leftArgResults,
+			Collection<BindingSet> rightArgResults) throws QueryEvaluationException {
+		partitions = new ArrayDeque<>();
+		Partition[] result = createPartitions(0);
+		try {
+			for (BindingSet b : leftArgResults) {
+				addToScan(result, b);
+			}
+			disposeCache(leftArgResults.iterator());
+			for (BindingSet b : rightArgResults) {
+				addToHash(result, b);
+			}
+			disposeCache(rightArgResults.iterator());
+			List<BindingSet> batch = new ArrayList<>(BatchIteration.DEFAULT_BATCH_SIZE);
+			while (nextBatch(rightIter, batch)) {
+				for (BindingSet b : batch) {
+					addToHash(result, b);
+				}
+			}
+			while (nextBatch(leftIter, batch)) {
+				for (BindingSet b : batch) {
+					addToScan(result, b);
+				}
+			}
+		} finally {
+			Collections.addAll(partitions, result);
+		}
+		return nextPartition();
+	}
+
+	/**
+	 * Sets up the scan and the hash table of the next partition, partitioning partitions that are too large again.
+	 */
+	private Map<BindingSetHashKey, List<BindingSet>> nextPartition() throws QueryEvaluationException {
+		closeCurrentPartition();
+		scanList = Collections.emptyIterator();
+		restIter = new EmptyIteration<>();
+
+		Partition partition;
+		while ((partition = partitions.poll()) != null) {
+			currentPartition = partition;
+			if (partition.scan.size() == 0 || !leftJoin && partition.hash.size() == 0) {
+				// the partition has no results
+				closeCurrentPartition();
+			} else if (isCacheFull(partition.hash.size()) && partition.depth < MAX_PARTITION_DEPTH) {
+				Partition[] result = createPartitions(partition.depth + 1);
+				try {
+					try (CloseableIteration<BindingSet, QueryEvaluationException> iter = partition.scan.iterator()) {
+						while (iter.hasNext()) {
+							addToScan(result, iter.next());
+						}
+					}
+					try (CloseableIteration<BindingSet, QueryEvaluationException> iter = partition.hash.iterator()) {
+						while (iter.hasNext()) {
+							addToHash(result, iter.next());
+						}
+					}
+				} finally {
+					closeCurrentPartition();
+					for (int i = result.length - 1; i >= 0; i--) {
+						partitions.addFirst(result[i]);
+					}
+				}
+			} else {
+				// a partition at the maximum depth is hashed even if it exceeds the threshold, e.g. because most
+				// solutions have the same join attributes
+				Collection<BindingSet> hashResults;
+				try (CloseableIteration<BindingSet, QueryEvaluationException> iter = partition.hash.iterator()) {
+					hashResults = makeIterationCache(iter);
+					while (iter.hasNext()) {
+						add(hashResults, iter.next());
+					}
+				}
+				restIter = partition.scan.iterator();
+				return buildHashTable(hashResults);
+			}
+		}
+		return makeHashTable(0);
+	}
+
+	private Partition[] createPartitions(int depth) throws QueryEvaluationException {
+		Partition[] result = new Partition[PARTITION_COUNT];
+		try {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = new Partition(depth);
+			}
+		} catch (QueryEvaluationException e) {
+			for (Partition partition : result) {
+				if (partition != null) {
+					partition.close();
+				}
+			}
+			throw e;
+		}
+		return result;
+	}
+
+	private void addToScan(Partition[] target, BindingSet bindings) throws QueryEvaluationException {
+		if (bindings.size() == 0) {
+			// the empty binding set is merged with the hashed solutions of every partition
+			for (Partition partition : target) {
+				partition.scan.add(bindings);
+			}
+		} else {
+			target[getPartition(bindings, target[0].depth)].scan.add(bindings);
+		}
+	}
+
+	private void addToHash(Partition[] target, BindingSet bindings) throws QueryEvaluationException {
+		target[getPartition(bindings, target[0].depth)].hash.add(bindings);
+	}
+
+	/**
+	 * Gets the partition of a solution, using different bits of the hash of its join attributes at each depth.
+	 */
+	private int getPartition(BindingSet bindings, int depth) {
+		int h = createKey(bindings).hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return (h >>> (depth * PARTITION_BITS)) & (PARTITION_COUNT - 1);
+	}
+
+	private void closeCurrentPartition() throws QueryEvaluationException {
+		Partition toClose = currentPartition;
+		currentPartition = null;
+		if (toClose != null) {
+			try {
+				restIter.close();
+			} finally {
+				toClose.close();
+			}
+		}
+	}
+
+	private void closePartitions() throws QueryEvaluationException {
+		try {
+			closeCurrentPartition();
+		} finally {
+			Deque<Partition> toClose = partitions;
+			partitions = null;
+			if (toClose != null) {
+				for (Partition partition : toClose) {
+					partition.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The solutions of both arguments whose join attributes hash to the same partition.
+	 */
+	private static class Partition {
+
+		private final int depth;
+
+		private final BindingSetSpillFile scan;
+
+		private final BindingSetSpillFile hash;
+
+		public Partition(int depth) throws QueryEvaluationException {
+			this.depth = depth;
+			this.scan = new BindingSetSpillFile("hashjoin");
+			try {
+				this.hash = new BindingSetSpillFile("hashjoin");
+			} catch (QueryEvaluationException e) {
+				scan.close();
+				throw e;
+			}
+		}
+
+		public void close() throws QueryEvaluationException {
+			try {
+				scan.close();
+			} finally {
+				hash.close();
+			}
+		}
+	}
+
 	protected void putHashTableEntry(Map<BindingSetHashKey, List<BindingSet>> nextHashTable, BindingSetHashKey hashKey,
 			List<BindingSet> hashValue, boolean newEntry) throws QueryEvaluationException {
 		// by default, we use a standard memory hash map
@@ -15,8 +15,8 @@ import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.Join;
-import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 
 /**
  * Interleaved join iterator.
@@ -34,9 +34,7 @@ public class JoinIterator extends LookAheadIteration<BindingSet, QueryEvaluation
 	 * Variables *
 	 *-----------*/
 
-	private final EvaluationStrategy strategy;
-
-	private final Join join;
+	private final QueryEvaluationStep preparedRight;
 
 	private final CloseableIteration<BindingSet, QueryEvaluationException> leftIter;
 
@@ -47,10 +45,20 @@ public class JoinIterator extends LookAheadIteration<BindingSet, QueryEvaluation
 	 *--------------*/
 
 	public JoinIterator(EvaluationStrategy strategy, Join join, BindingSet bindings) throws QueryEvaluationException {
-		this.strategy = strategy;
-		this.join = join;
+		this(strategy.precompile(join.getLeftArg()), strategy.precompile(join.getRightArg()), join, bindings);
+	}
+
+	/**
+	 * Creates a join iterator from the prepared arguments of a join.
+	 *
+	 * @param preparedLeft  The prepared left argument, which is evaluated once.
+	 * @param preparedRight The prepared right argument, which is evaluated for every solution of the left argument.
+	 */
+	public JoinIterator(QueryEvaluationStep preparedLeft, QueryEvaluationStep preparedRight, Join join,
+			BindingSet bindings) throws QueryEvaluationException {
+		this.preparedRight = preparedRight;
 
-		leftIter = strategy.evaluate(join.getLeftArg(), bindings);
+		leftIter = preparedLeft.evaluate(bindings);
 
 		// Initialize with empty iteration so that var is never null
 		rightIter = new EmptyIteration<>();
@@ -74,8 +82,7 @@ public class JoinIterator extends LookAheadIteration<BindingSet, QueryEvaluation
 				rightIter.close();
 
 				if (leftIter.hasNext()) {
-					TupleExpr rightArg = join.getRightArg();
-					rightIter = strategy.evaluate(rightArg, leftIter.next());
+					rightIter = preparedRight.evaluate(leftIter.next());
 				}
 			}
 		} catch (NoSuchElementException ignore) {
@@ -18,7 +18,10 @@ import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.LeftJoin;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryEvaluationUtil;
 
 public class LeftJoinIterator extends LookAheadIteration<BindingSet, QueryEvaluationException> {
 
@@ -26,9 +29,12 @@ public class LeftJoinIterator extends LookAheadIteration<BindingSet, QueryEvalua
 	 * Variables *
 	 *-----------*/
 
-	private final EvaluationStrategy strategy;
+	private final QueryEvaluationStep preparedRight;
 
-	private final LeftJoin join;
+	/**
+	 * The prepared condition of the join, <tt>null</tt> if it has no condition.
+	 */
+	private final QueryValueEvaluationStep condition;
 
 	/**
 	 * The set of binding names that are "in scope" for the filter. The filter must not include bindings that are (only)
@@ -46,11 +52,24 @@ public class LeftJoinIterator extends LookAheadIteration<BindingSet, QueryEvalua
 
 	public LeftJoinIterator(EvaluationStrategy strategy, LeftJoin join, BindingSet bindings)
 			throws QueryEvaluationException {
-		this.strategy = strategy;
-		this.join = join;
+		this(strategy.precompile(join.getLeftArg()), strategy.precompile(join.getRightArg()),
+				join.hasCondition() ? strategy.precompile(join.getCondition()) : null, join, bindings);
+	}
+
+	/**
+	 * Creates a left join iterator from the prepared arguments and condition of a left join.
+	 *
+	 * @param preparedLeft  The prepared left argument, which is evaluated once.
+	 * @param preparedRight The prepared right argument, which is evaluated for every solution of the left argument.
+	 * @param condition     The prepared condition, or <tt>null</tt> if the join has no condition.
+	 */
+	public LeftJoinIterator(QueryEvaluationStep preparedLeft, QueryEvaluationStep preparedRight,
+			QueryValueEvaluationStep condition, LeftJoin join, BindingSet bindings) throws QueryEvaluationException {
+		this.preparedRight = preparedRight;
+		this.condition = condition;
 		this.scopeBindingNames = join.getBindingNames();
 
-		leftIter = strategy.evaluate(join.getLeftArg(), bindings);
+		leftIter = preparedLeft.evaluate(bindings);
 
 		// Initialize with empty iteration so that var is never null
 		rightIter = new EmptyIteration<>();
@@ -74,14 +93,14 @@ public class LeftJoinIterator extends LookAheadIteration<BindingSet, QueryEvalua
 					leftBindings = leftIter.next();
 
 					nextRightIter.close();
-					nextRightIter = rightIter = strategy.evaluate(join.getRightArg(), leftBindings);
+					nextRightIter = rightIter = preparedRight.evaluate(leftBindings);
 				}
 
 				while (nextRightIter.hasNext()) {
 					BindingSet rightBindings = nextRightIter.next();
 
 					try {
-						if (join.getCondition() == null) {
+						if (condition == null) {
 							return rightBindings;
 						} else {
 							// Limit the bindings to the ones that are in scope for
@@ -89,7 +108,7 @@ public class LeftJoinIterator extends LookAheadIteration<BindingSet, QueryEvalua
 							QueryBindingSet scopeBindings = new QueryBindingSet(rightBindings);
 							scopeBindings.retainAll(scopeBindingNames);
 
-							if (strategy.isTrue(join.getCondition(), scopeBindings)) {
+							if (QueryEvaluationUtil.getEffectiveBooleanValue(condition.evaluate(scopeBindings))) {
 								return rightBindings;
 							}
 						}
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntBinaryOperator;
+
+import org.eclipse.rdf4j.query.algebra.evaluation.util.BindingSetCodec;
+
+/**
+ * A set of keys, such as the keys of binding sets encoded by {@link BindingSetCodec}, with a sequence number and an
+ * optional value for each key. The set is stored outside of the Java heap: the keys are appended to a direct buffer,
+ * and indexed by an open-addressing hash table in another direct buffer, so that a key takes little more memory than
+ * its encoding.
+ * <p>
+ * The memory of the set is limited to a maximum size, and the memory of all sets together to a budget that is shared
+ * by all queries. Once {@link #hasRoom(int)} reports that no more keys fit, the keys can be written in sorted order
+ * with {@link #writeSorted(DataOutput, boolean)} and the set cleared. The memory of a set is returned to the budget
+ * when it is closed.
+ */
+class OffHeapKeySet {
+
+	private static final int INITIAL_DATA_SIZE = 1 << 16;
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	/**
+	 * The size of a slot of the hash table: the hash of a key and the position of its entry plus one, or zero if the
+	 * slot is empty.
+	 */
+	private static final int SLOT_SIZE = 8;
+
+	/**
+	 * The size of an entry, in addition to its key and value: the length of the key, its sequence number and the
+	 * length of the value.
+	 */
+	private static final int ENTRY_HEADER_SIZE = 16;
+
+	private static final byte[] NO_VALUE = new byte[0];
+
+	/**
+	 * The maximum number of bytes that the buffers of all sets take together. The buffers of a new set are always
+	 * allocated, but they are only grown within the budget.
+	 */
+	static final long MAX_TOTAL_SIZE = Math.min(1L << 30, Runtime.getRuntime().maxMemory() / 8);
+
+	private static final AtomicLong totalSize = new AtomicLong();
+
+	private final int maxSize;
+
+	/**
+	 * The entries of the keys, in the order in which they were added. The position of the buffer is the end of the
+	 * last entry.
+	 */
+	private ByteBuffer data;
+
+	private ByteBuffer slots;
+
+	private int capacity = INITIAL_CAPACITY;
+
+	private int size;
+
+	/**
+	 * @param maxSize The maximum number of bytes that the set should take.
+	 */
+	public OffHeapKeySet(int maxSize) {
+		this.maxSize = maxSize;
+		this.data = allocate(INITIAL_DATA_SIZE);
+		this.slots = allocate(INITIAL_CAPACITY * SLOT_SIZE);
+	}
+
+	/**
+	 * Gets the number of bytes that the buffers of all open sets take.
+	 */
+	static long getTotalSize() {
+		return totalSize.get();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(byte[] key) {
+		int slot = find(key, hash(key));
+		return slots.getInt(slot * SLOT_SIZE + 4) != 0;
+	}
+
+	/**
+	 * Checks whether a key and value of a given total length can be added without exceeding the maximum size of the
+	 * set.
+	 */
+	public boolean hasRoom(int length) {
+		long dataSize = (long) data.position() + ENTRY_HEADER_SIZE + length;
+		long slotsSize = (long) (2 * (size + 1) > capacity ? 2 * capacity : capacity) * SLOT_SIZE;
+		if (dataSize + slotsSize > maxSize) {
+			return false;
+		}
+
+		long growth = slotsSize - (long) capacity * SLOT_SIZE;
+		if (dataSize > data.capacity()) {
+			growth += newDataSize(dataSize) - data.capacity();
+		}
+		return growth == 0 || totalSize.get() + growth <= MAX_TOTAL_SIZE;
+	}
+
+	/**
+	 * Adds a key, even if the maximum size of the set is exceeded.
+	 *
+	 * @param value The value of the key, or <tt>null</tt> for none.
+	 * @return <tt>false</tt> if the set already contained the key, in which case its sequence number and value are not
+	 *         changed.
+	 */
+	public boolean add(byte[] key, byte[] value, long sequence) {
+		int hash = hash(key);
+		int slot = find(key, hash);
+		if (slots.getInt(slot * SLOT_SIZE + 4) != 0) {
+			return false;
+		}
+
+		if (value == null) {
+			value = NO_VALUE;
+		}
+		int entrySize = ENTRY_HEADER_SIZE + key.length + value.length;
+		if (data.remaining() < entrySize) {
+			ByteBuffer newData = allocate(newDataSize((long) data.position() + entrySize));
+			data.flip();
+			newData.put(data);
+			free(data);
+			data = newData;
+		}
+		int position = data.position();
+		data.putInt(key.length).putLong(sequence).putInt(value.length).put(key).put(value);
+
+		slots.putInt(slot * SLOT_SIZE, hash);
+		slots.putInt(slot * SLOT_SIZE + 4, position + 1);
+		if (2 * ++size > capacity) {
+			rehash(2 * capacity);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the memory of the set to the budget of all sets. The set can no longer be used.
+	 */
+	public void close() {
+		if (data != null) {
+			free(data);
+			free(slots);
+			data = null;
+			slots = null;
+		}
+	}
+
+	public void clear() {
+		data.clear();
+		for (int i = 0; i < capacity; i++) {
+			slots.putLong(i * SLOT_SIZE, 0);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Writes the keys of the set in ascending order of their keys (see {@link #compareKeys(byte[], byte[])}) or their
+	 * sequence numbers. Each key is written as its length, its bytes, its sequence number, the length of its value and
+	 * the bytes of its value, with a length of zero if it has none.
+	 */
+	public void writeSorted(DataOutput out, boolean bySequence) throws IOException {
+		int[] positions = new int[size];
+		for (int i = 0, position = 0; i < size; i++) {
+			positions[i] = position;
+			position += ENTRY_HEADER_SIZE + data.getInt(position) + data.getInt(position + 12);
+		}
+		IntBinaryOperator comparator = bySequence
+				? (a, b) -> Long.compare(data.getLong(a + 4), data.getLong(b + 4))
+				: this::compareKeys;
+		sort(positions, positions.clone(), 0, size, comparator);
+
+		ByteBuffer entries = data.duplicate();
+		byte[] bytes = new byte[0];
+		for (int position : positions) {
+			int keyLength = data.getInt(position);
+			int valueLength = data.getInt(position + 12);
+			if (bytes.length < keyLength + valueLength) {
+				bytes = new byte[keyLength + valueLength];
+			}
+			entries.position(position + ENTRY_HEADER_SIZE);
+			entries.get(bytes, 0, keyLength + valueLength);
+			out.writeInt(keyLength);
+			out.write(bytes, 0, keyLength);
+			out.writeLong(data.getLong(position + 4));
+			out.writeInt(valueLength);
+			out.write(bytes, keyLength, valueLength);
+		}
+	}
+
+	/**
+	 * Compares keys by their unsigned bytes, in lexicographical order.
+	 */
+	public static int compareKeys(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int result = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+	private int compareKeys(int a, int b) {
+		int aLength = data.getInt(a);
+		int bLength = data.getInt(b);
+		int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			int result = Integer.compare(data.get(a + ENTRY_HEADER_SIZE + i) & 0xFF,
+					data.get(b + ENTRY_HEADER_SIZE + i) & 0xFF);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Integer.compare(aLength, bLength);
+	}
+
+	/**
+	 * Finds the slot of a key, or the empty slot at which it can be inserted.
+	 */
+	private int find(byte[] key, int hash) {
+		int mask = capacity - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int position = slots.getInt(slot * SLOT_SIZE + 4);
+			if (position == 0 || slots.getInt(slot * SLOT_SIZE) == hash && equals(position - 1, key)) {
+				return slot;
+			}
+		}
+	}
+
+	private boolean equals(int position, byte[] key) {
+		if (data.getInt(position) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (data.get(position + ENTRY_HEADER_SIZE + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the size to which the data buffer is grown to hold the specified number of bytes, within the maximum size of
+	 * the set if possible.
+	 */
+	private int newDataSize(long required) {
+		long available = Math.max(maxSize - (long) capacity * SLOT_SIZE, required);
+		return (int) Math.min(Math.min(Math.max(2L * data.capacity(), required), available), Integer.MAX_VALUE - 8);
+	}
+
+	private static ByteBuffer allocate(int size) {
+		totalSize.addAndGet(size);
+		return ByteBuffer.allocateDirect(size);
+	}
+
+	private static void free(ByteBuffer buffer) {
+		totalSize.addAndGet(-buffer.capacity());
+	}
+
+	private void rehash(int newCapacity) {
+		ByteBuffer newSlots = allocate(newCapacity * SLOT_SIZE);
+		int mask = newCapacity - 1;
+		for (int i = 0; i < capacity; i++) {
+			int position = slots.getInt(i * SLOT_SIZE + 4);
+			if (position != 0) {
+				int hash = slots.getInt(i * SLOT_SIZE);
+				int slot = hash & mask;
+				while (newSlots.getInt(slot * SLOT_SIZE + 4) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				newSlots.putInt(slot * SLOT_SIZE, hash);
+				newSlots.putInt(slot * SLOT_SIZE + 4, position);
+			}
+		}
+		free(slots);
+		slots = newSlots;
+		capacity = newCapacity;
+	}
+
+	private static int hash(byte[] key) {
+		int hash = Arrays.hashCode(key);
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Sorts a range of an array with a merge sort, which, unlike {@link Arrays#sort(int[])}, takes a comparator.
+	 */
+	private static void sort(int[] a, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		// the buffer holds the same elements as the array, so the halves are sorted in the buffer
+		sort(buffer, a, from, middle, comparator);
+		sort(buffer, a, middle, to, comparator);
+		for (int i = from, left = from, right = middle; i < to; i++) {
+			if (right >= to || left < middle && comparator.applyAsInt(buffer[left], buffer[right]) <= 0) {
+				a[i] = buffer[left++];
+			} else {
+				a[i] = buffer[right++];
+			}
+		}
+	}
+}
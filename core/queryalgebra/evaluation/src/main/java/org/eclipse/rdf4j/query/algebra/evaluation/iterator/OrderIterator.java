@@ -7,217 +7,165 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
-import java.io.Closeable;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.DelayedIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.iteration.Iteration;
 import org.eclipse.rdf4j.common.iteration.LimitIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 
 /**
  * Sorts the input and optionally applies limit and distinct.
+ * <p>
+ * If the limit does not exceed the number of solutions that may be cached in memory, the smallest solutions are kept
+ * in a bounded heap while the input is read. Otherwise, the input is sorted externally: whenever the cache threshold is
+ * reached, the cached solutions are sorted and written to a temporary file in a compact binary format, and the sorted
+ * runs are finally merged with a loser tree.
  *
  * @author James Leigh
  * @author Arjohn Kampman
  */
 public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationException> {
 
-	private static class SerializedQueue<E extends Serializable> extends AbstractQueue<E> implements Closeable {
-
-		private final File file;
+	/**
+	 * Merges sorted iterations with a tournament tree of losers, which takes a single comparison per level of the tree
+	 * to replace the smallest element of all iterations.
+	 */
+	private static class LoserTreeIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
 
-		private ObjectOutputStream output;
+		private final List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations;
 
-		private ObjectInputStream input;
+		private final Comparator<BindingSet> comparator;
 
-		private int size;
+		private final boolean distinct;
 
-		private E next;
+		/**
+		 * The next element of each iteration, or <tt>null</tt> if the iteration is exhausted.
+		 */
+		private final BindingSet[] heads;
 
-		private E last;
+		/**
+		 * The internal nodes of the tree, which hold the iteration that lost the comparison at that node. The leaves
+		 * of the tree, the iterations, are at the positions after the internal nodes.
+		 */
+		private final int[] losers;
 
-		public SerializedQueue(String prefix) throws IOException {
-			this(prefix, null);
-		}
+		private int winner = -1;
 
-		public SerializedQueue(String prefix, File directory) throws IOException {
-			file = File.createTempFile(prefix, "", directory);
-			output = new ObjectOutputStream(new FileOutputStream(file));
-		}
+		private BindingSet previous;
 
-		public E peekLast() {
-			return last;
+		public LoserTreeIteration(List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations,
+				Comparator<BindingSet> comparator, boolean distinct) {
+			this.iterations = iterations;
+			this.comparator = comparator;
+			this.distinct = distinct;
+			this.heads = new BindingSet[iterations.size()];
+			this.losers = new int[iterations.size()];
 		}
 
 		@Override
-		public boolean offer(E e) {
-			if (output == null) {
-				return false;
-			}
-			try {
-				output.writeObject(e);
-				last = e;
-				size++;
-				return true;
-			} catch (IOException exc) {
-				return false;
+		protected BindingSet getNextElement() throws QueryEvaluationException {
+			if (winner < 0) {
+				for (int i = 0; i < heads.length; i++) {
+					advance(i);
+				}
+				winner = build(1);
 			}
-		}
-
-		@Override
-		@SuppressWarnings("unchecked")
-		public E poll() {
-			try {
-				if (next != null) {
+			while (heads[winner] != null) {
+				BindingSet next = heads[winner];
+				advance(winner);
+				replay();
+				if (!distinct || previous == null || comparator.compare(previous, next) != 0) {
+					previous = next;
 					return next;
-				} else if (input == null) {
-					output.close();
-					input = new ObjectInputStream(new FileInputStream(file));
 				}
-				size--;
-				return (E) input.readObject();
-			} catch (IOException | ClassNotFoundException exc) {
-				return null;
-			} finally {
-				next = null;
 			}
+			return null;
 		}
 
-		@Override
-		public E peek() {
-			if (size <= 0) {
-				return null;
-			} else if (next != null) {
-				return next;
+		/**
+		 * Plays the matches of the subtree of a node.
+		 *
+		 * @return The winner of the subtree.
+		 */
+		private int build(int node) {
+			if (node >= heads.length) {
+				return node - heads.length;
+			}
+			int left = build(2 * node);
+			int right = build(2 * node + 1);
+			if (less(right, left)) {
+				losers[node] = left;
+				return right;
 			} else {
-				return next = poll();
+				losers[node] = right;
+				return left;
 			}
 		}
 
-		@Override
-		public Iterator<E> iterator() {
-			return new Iterator<E>() {
-
-				@Override
-				public boolean hasNext() {
-					return peek() != null;
+		/**
+		 * Replays the matches of the previous winner on the path to the root, after it has been advanced.
+		 */
+		private void replay() {
+			int candidate = winner;
+			for (int node = (candidate + heads.length) / 2; node > 0; node /= 2) {
+				if (less(losers[node], candidate)) {
+					int loser = candidate;
+					candidate = losers[node];
+					losers[node] = loser;
 				}
-
-				@Override
-				public E next() {
-					return poll();
-				}
-			};
-		}
-
-		@Override
-		public int size() {
-			if (next == null) {
-				return (int) size;
-			} else {
-				return (int) size + 1;
 			}
+			winner = candidate;
 		}
 
-		@Override
-		public void close() throws IOException {
-			if (output != null) {
-				output.close();
-			}
-			if (input != null) {
-				input.close();
+		/**
+		 * Compares the next elements of two iterations, where an exhausted iteration is larger than any element. Equal
+		 * elements are ordered by iteration, so that the merge is stable.
+		 */
+		private boolean less(int a, int b) {
+			if (heads[a] == null || heads[b] == null) {
+				return heads[b] == null && (heads[a] != null || a < b);
 			}
-			file.delete();
-		}
-
-	}
-
-	private static class SortedIterators<E> implements Iterator<E> {
-
-		private final List<Iterator<E>> iterators;
-
-		private final TreeMap<E, List<Integer>> head;
-
-		private final boolean distinct;
-
-		private E next;
-
-		public SortedIterators(Comparator<E> comparator, boolean distinct, List<Iterator<E>> iterators) {
-			this.iterators = iterators;
-			this.distinct = distinct;
-			head = new TreeMap<>(comparator);
+			int result = comparator.compare(heads[a], heads[b]);
+			return result < 0 || result == 0 && a < b;
 		}
 
-		@Override
-		public boolean hasNext() {
-			if (next != null) {
-				return true;
-			} else {
-				next = next();
-				return next != null;
-			}
+		private void advance(int i) throws QueryEvaluationException {
+			CloseableIteration<BindingSet, QueryEvaluationException> iteration = iterations.get(i);
+			heads[i] = iteration.hasNext() ? iteration.next() : null;
 		}
 
 		@Override
-		public E next() {
-			if (next != null) {
-				try {
-					return next;
-				} finally {
-					next = null;
-				}
-			}
-			if (head.isEmpty()) {
-				for (int i = 0, n = iterators.size(); i < n; i++) {
-					advance(i);
-				}
-			}
-			if (head.isEmpty()) {
-				return null;
-			} else {
-				Entry<E, List<Integer>> e = head.firstEntry();
-				advance(e.getValue().remove(0));
-				if (e.getValue().isEmpty()) {
-					head.remove(e.getKey());
+		protected void handleClose() throws QueryEvaluationException {
+			try {
+				super.handleClose();
+			} finally {
+				QueryEvaluationException exception = null;
+				for (CloseableIteration<BindingSet, QueryEvaluationException> iteration : iterations) {
+					try {
+						iteration.close();
+					} catch (QueryEvaluationException e) {
+						exception = e;
+					}
 				}
-				return e.getKey();
-			}
-		}
-
-		private void advance(int i) {
-			while (iterators.get(i).hasNext()) {
-				E key = iterators.get(i).next();
-				if (!head.containsKey(key)) {
-					head.put(key, new LinkedList<>(Arrays.asList(i)));
-					break;
-				} else if (!distinct) {
-					head.get(key).add(i);
-					break;
+				if (exception != null) {
+					throw exception;
 				}
 			}
 		}
-
 	}
 
 	/*-----------*
@@ -232,7 +180,7 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 
 	private final boolean distinct;
 
-	private final List<SerializedQueue<BindingSet>> serialized = new LinkedList<>();
+	private final List<BindingSetSpillFile> serialized = new ArrayList<>();
 
 	/**
 	 * Number of items cached before internal collection is synced to disk. If set to 0, no disk-syncing is done and all
@@ -269,48 +217,94 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 
 	@Override
 	protected Iteration<BindingSet, QueryEvaluationException> createIteration() throws QueryEvaluationException {
-		BindingSet threshold = null;
-		List<BindingSet> list = new LinkedList<>();
-		int limit2 = limit >= Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : (int) limit * 2;
-		int syncThreshold = (int) Math.min(iterationSyncThreshold, Integer.MAX_VALUE);
 		try {
-			while (iter.hasNext()) {
-				if (list.size() >= syncThreshold && list.size() < limit) {
-					SerializedQueue<BindingSet> queue = new SerializedQueue<>("orderiter");
-					sort(list).forEach(bs -> queue.add(bs));
-					serialized.add(queue);
-					decrement(list.size() - queue.size());
-					list = new ArrayList<>(list.size());
-					if (threshold == null && serialized.stream().mapToLong(q -> q.size()).sum() >= limit) {
-						Stream<BindingSet> stream = serialized.stream().map(q -> q.peekLast());
-						threshold = stream.sorted(comparator).skip(serialized.size() - 1).findFirst().get();
-					}
-				} else if (list.size() >= limit2 || !distinct && threshold == null && list.size() >= limit) {
-					List<BindingSet> sorted = new ArrayList<>(limit2);
-					sort(list).forEach(bs -> sorted.add(bs));
-					decrement(list.size() - sorted.size());
-					list = sorted;
-					if (sorted.size() >= limit) {
-						threshold = sorted.get(sorted.size() - 1);
-					}
-				}
-				BindingSet next = iter.next();
-				if (threshold == null || comparator.compare(next, threshold) < 0) {
-					list.add(next);
-					increment();
-				}
+			if (limit < Integer.MAX_VALUE && limit <= iterationSyncThreshold) {
+				return selectTop();
+			} else {
+				return sortExternally();
 			}
-		} catch (IOException e) {
-			throw new QueryEvaluationException(e);
 		} finally {
 			iter.close();
 		}
-		SortedIterators<BindingSet> iterator;
-		List<Iterator<BindingSet>> iterators = new ArrayList<>(serialized.size() + 1);
-		serialized.forEach(queue -> iterators.add(queue.iterator()));
-		iterators.add(sort(list).iterator());
-		iterator = new SortedIterators<>(comparator, distinct, iterators);
-		return new LimitIteration<>(new CloseableIteratorIteration<>(iterator), limit);
+	}
+
+	/**
+	 * Keeps the smallest solutions of the input, up to the limit, in a heap with the largest solution at its head.
+	 */
+	private Iteration<BindingSet, QueryEvaluationException> selectTop() throws QueryEvaluationException {
+		if (limit <= 0) {
+			return new EmptyIteration<>();
+		}
+		PriorityQueue<BindingSet> heap = new PriorityQueue<>(comparator.reversed());
+		Set<BindingSet> contained = distinct ? new HashSet<>() : null;
+		while (iter.hasNext()) {
+			BindingSet next = iter.next();
+			if (heap.size() >= limit && comparator.compare(next, heap.peek()) >= 0) {
+				continue;
+			}
+			if (contained != null && !contained.add(next)) {
+				continue;
+			}
+			heap.add(next);
+			increment();
+			if (heap.size() > limit) {
+				BindingSet largest = heap.poll();
+				if (contained != null) {
+					contained.remove(largest);
+				}
+				decrement(1);
+			}
+		}
+		BindingSet[] top = heap.toArray(new BindingSet[heap.size()]);
+		Arrays.sort(top, comparator);
+		return new CloseableIteratorIteration<>(Arrays.asList(top).iterator());
+	}
+
+	/**
+	 * Sorts the input in runs of at most the cache threshold, which are written to disk and merged, if there is more
+	 * than one.
+	 */
+	private Iteration<BindingSet, QueryEvaluationException> sortExternally() throws QueryEvaluationException {
+		BindingSet threshold = null;
+		List<BindingSet> lasts = new ArrayList<>();
+		long spilled = 0;
+		List<BindingSet> list = new ArrayList<>();
+		while (iter.hasNext()) {
+			BindingSet next = iter.next();
+			if (threshold != null && comparator.compare(next, threshold) >= 0) {
+				continue;
+			}
+			list.add(next);
+			increment();
+
+			if (list.size() >= iterationSyncThreshold) {
+				BindingSetSpillFile run = new BindingSetSpillFile("orderiter");
+				serialized.add(run);
+				BindingSet[] last = new BindingSet[1];
+				sort(list).forEach(bs -> {
+					run.add(bs);
+					last[0] = bs;
+				});
+				decrement(list.size() - (int) run.size());
+				list.clear();
+				lasts.add(last[0]);
+				spilled += run.size();
+				if (threshold == null && spilled >= limit) {
+					// at least limit solutions are not larger than the largest of the last solutions of the runs
+					threshold = lasts.stream().max(comparator).get();
+				}
+			}
+		}
+
+		if (serialized.isEmpty()) {
+			return new CloseableIteratorIteration<>(sort(list).iterator());
+		}
+		List<CloseableIteration<BindingSet, QueryEvaluationException>> runs = new ArrayList<>(serialized.size() + 1);
+		for (BindingSetSpillFile run : serialized) {
+			runs.add(run.iterator());
+		}
+		runs.add(new CloseableIteratorIteration<>(sort(list).iterator()));
+		return new LimitIteration<>(new LoserTreeIteration(runs, comparator, distinct), limit);
 	}
 
 	protected void increment() throws QueryEvaluationException {
@@ -347,16 +341,17 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 			try {
 				iter.close();
 			} finally {
-				serialized.stream().map(queue -> {
+				QueryEvaluationException exception = null;
+				for (BindingSetSpillFile run : serialized) {
 					try {
-						queue.close();
-						return null;
-					} catch (IOException e) {
-						return e;
+						run.close();
+					} catch (QueryEvaluationException e) {
+						exception = e;
 					}
-				}).filter(exec -> exec != null).findFirst().ifPresent(exec -> {
-					throw new QueryEvaluationException(exec);
-				});
+				}
+				if (exception != null) {
+					throw exception;
+				}
 			}
 		}
 	}
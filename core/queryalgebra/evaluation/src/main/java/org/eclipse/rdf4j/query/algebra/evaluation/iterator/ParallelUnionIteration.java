@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.rdf4j.common.iteration.BatchIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryContext;
+
+/**
+ * Merges the solutions of a number of iterations, which are consumed concurrently by tasks of an {@link Executor}. The
+ * tasks feed their solutions into a bounded queue, and block while it is full. The order of the solutions is
+ * unspecified.
+ * <p>
+ * Iterations whose task has not been started by the executor when the consumer runs out of queued solutions are
+ * consumed by the consumer itself, so that progress never depends on a free thread of the executor, e.g. if an
+ * iteration is itself a parallel union evaluated by one of its threads. The {@link QueryContext} of the thread that
+ * creates the union is made available to the tasks.
+ *
+ * @since 3.3.0
+ */
+public class ParallelUnionIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+	/**
+	 * Marks that the last task has finished, compared by identity.
+	 */
+	private static final BindingSet DONE = new QueryBindingSet(0);
+
+	private final List<Task> tasks;
+
+	private final BlockingQueue<BindingSet> queue;
+
+	/**
+	 * Counts the iterations that have not been consumed completely.
+	 */
+	private final CountDownLatch remaining;
+
+	private final Queue<RuntimeException> exceptions = new ConcurrentLinkedQueue<>();
+
+	private final QueryContext queryContext = QueryContext.getQueryContext();
+
+	/**
+	 * The task that the consumer runs itself.
+	 */
+	private Task current;
+
+	/**
+	 * Creates a union that consumes the specified iterations concurrently.
+	 *
+	 * @param executor      The executor to run the tasks with.
+	 * @param queueCapacity The maximum number of solutions that are queued for the consumer.
+	 * @param iterations    The iterations to merge. Iterations should defer their evaluation until they are consumed,
+	 *                      so that it runs concurrently, e.g. by being a
+	 *                      {@link org.eclipse.rdf4j.common.iteration.DelayedIteration}.
+	 */
+	public ParallelUnionIteration(Executor executor, int queueCapacity,
+			List<? extends CloseableIteration<BindingSet, QueryEvaluationException>> iterations) {
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.remaining = new CountDownLatch(iterations.size());
+		this.tasks = new ArrayList<>(iterations.size());
+		for (CloseableIteration<BindingSet, QueryEvaluationException> iteration : iterations) {
+			tasks.add(new Task(iteration));
+		}
+		for (Task task : tasks) {
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				// the consumer runs the task itself
+			}
+		}
+	}
+
+	@Override
+	protected BindingSet getNextElement() throws QueryEvaluationException {
+		try {
+			while (true) {
+				if (current != null) {
+					if (current.iteration.hasNext()) {
+						return current.iteration.next();
+					}
+					Task finished = current;
+					current = null;
+					finished.finish();
+					continue;
+				}
+
+				// read the count before polling, all solutions have been queued once it is zero
+				boolean done = remaining.getCount() == 0;
+				BindingSet next = queue.poll();
+				checkExceptions();
+				if (next != null && next != DONE) {
+					return next;
+				} else if (done) {
+					return null;
+				} else if (next == DONE) {
+					continue;
+				}
+
+				current = claimTask();
+				if (current == null) {
+					next = queue.poll(1, TimeUnit.SECONDS);
+					checkExceptions();
+					if (next != null && next != DONE) {
+						return next;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	private Task claimTask() {
+		for (Task task : tasks) {
+			if (task.claim()) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private void checkExceptions() throws QueryEvaluationException {
+		RuntimeException e = exceptions.poll();
+		if (e instanceof QueryEvaluationException) {
+			throw (QueryEvaluationException) e;
+		} else if (e != null) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			try {
+				if (current != null) {
+					current.finish();
+					current = null;
+				}
+				// iterations that are not consumed yet are closed here, the others by their tasks
+				for (Task task : tasks) {
+					if (task.claim()) {
+						task.finish();
+					}
+				}
+			} finally {
+				queue.clear();
+				try {
+					// wait for the running tasks to release their iterations
+					remaining.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Consumes an iteration into the queue.
+	 */
+	private class Task implements Runnable {
+
+		private final CloseableIteration<BindingSet, QueryEvaluationException> iteration;
+
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		public Task(CloseableIteration<BindingSet, QueryEvaluationException> iteration) {
+			this.iteration = iteration;
+		}
+
+		/**
+		 * Claims the iteration for the executor or for the consumer.
+		 *
+		 * @return <tt>true</tt> if the iteration had not been claimed before.
+		 */
+		public boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		@Override
+		public void run() {
+			if (!claim()) {
+				return;
+			}
+			if (queryContext != null) {
+				queryContext.begin();
+			}
+			try {
+				List<BindingSet> batch = new ArrayList<>(BatchIteration.DEFAULT_BATCH_SIZE);
+				while (!isClosed() && Iterations.nextBatch(iteration, batch, BatchIteration.DEFAULT_BATCH_SIZE) > 0) {
+					for (BindingSet next : batch) {
+						while (!queue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+							if (isClosed()) {
+								return;
+							}
+						}
+					}
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (!isClosed()) {
+					exceptions.add(new QueryEvaluationException(e));
+				}
+			} catch (RuntimeException e) {
+				exceptions.add(e);
+			} finally {
+				try {
+					finish();
+				} finally {
+					if (queryContext != null) {
+						queryContext.end();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Closes the iteration after it has been consumed or after the union has been closed.
+		 */
+		public void finish() {
+			try {
+				iteration.close();
+			} catch (RuntimeException e) {
+				if (!isClosed()) {
+					exceptions.add(e);
+				}
+			} finally {
+				remaining.countDown();
+				if (remaining.getCount() == 0) {
+					// wake up the consumer, there is no need to wait if the queue is full
+					queue.offer(DONE);
+				}
+			}
+		}
+	}
+}
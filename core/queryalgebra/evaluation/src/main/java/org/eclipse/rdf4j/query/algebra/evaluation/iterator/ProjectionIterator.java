@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
+import java.util.List;
+
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.model.Value;
@@ -17,6 +19,7 @@ import org.eclipse.rdf4j.query.algebra.Projection;
 import org.eclipse.rdf4j.query.algebra.ProjectionElem;
 import org.eclipse.rdf4j.query.algebra.ProjectionElemList;
 import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
 
 public class ProjectionIterator extends ConvertingIteration<BindingSet, BindingSet, QueryEvaluationException> {
@@ -31,16 +34,46 @@ public class ProjectionIterator extends ConvertingIteration<BindingSet, BindingS
 
 	private final boolean isOuterProjection;
 
+	/**
+	 * The layout of the binding sets that are projected by slot, <tt>null</tt> if bindings are projected by name.
+	 */
+	private final ArrayBindingSet.Layout layout;
+
+	private final int[] sourceSlots;
+
+	private final int[] targetSlots;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
 	public ProjectionIterator(Projection projection, CloseableIteration<BindingSet, QueryEvaluationException> iter,
 			BindingSet parentBindings) throws QueryEvaluationException {
+		this(projection, iter, parentBindings, null);
+	}
+
+	/**
+	 * Creates a projection iterator that projects {@link ArrayBindingSet}s of a layout by slot.
+	 *
+	 * @param layout The layout of the query, which contains the source and target names of the projection.
+	 */
+	public ProjectionIterator(Projection projection, CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			BindingSet parentBindings, ArrayBindingSet.Layout layout) throws QueryEvaluationException {
 		super(iter);
 		this.projection = projection;
-		this.parentBindings = parentBindings;
 		this.isOuterProjection = determineOuterProjection();
+
+		List<ProjectionElem> elements = projection.getProjectionElemList().getElements();
+		this.sourceSlots = new int[elements.size()];
+		this.targetSlots = new int[elements.size()];
+		boolean slotted = layout != null;
+		for (int i = 0; i < elements.size() && slotted; i++) {
+			sourceSlots[i] = layout.getSlot(elements.get(i).getSourceName());
+			targetSlots[i] = layout.getSlot(elements.get(i).getTargetName());
+			slotted = sourceSlots[i] >= 0 && targetSlots[i] >= 0;
+		}
+		this.layout = slotted ? layout : null;
+		this.parentBindings = slotted ? ArrayBindingSet.of(layout, parentBindings) : parentBindings;
 	}
 
 	private final boolean determineOuterProjection() {
@@ -60,9 +93,35 @@ public class ProjectionIterator extends ConvertingIteration<BindingSet, BindingS
 
 	@Override
 	protected BindingSet convert(BindingSet sourceBindings) throws QueryEvaluationException {
+		if (layout != null && sourceBindings instanceof ArrayBindingSet
+				&& ((ArrayBindingSet) sourceBindings).hasLayout(layout)) {
+			return project((ArrayBindingSet) sourceBindings);
+		}
 		return project(projection.getProjectionElemList(), sourceBindings, parentBindings, !isOuterProjection);
 	}
 
+	private BindingSet project(ArrayBindingSet sourceBindings) {
+		ArrayBindingSet parent = (ArrayBindingSet) parentBindings;
+		ArrayBindingSet resultBindings;
+		if (isOuterProjection) {
+			resultBindings = new ArrayBindingSet(layout);
+		} else {
+			resultBindings = new ArrayBindingSet(parent);
+		}
+
+		for (int i = 0; i < sourceSlots.length; i++) {
+			Value targetValue = sourceBindings.getValue(sourceSlots[i]);
+			if (isOuterProjection && targetValue == null) {
+				targetValue = parent.getValue(sourceSlots[i]);
+			}
+			if (targetValue != null) {
+				resultBindings.setBinding(targetSlots[i], targetValue);
+			}
+		}
+
+		return resultBindings;
+	}
+
 	public static BindingSet project(ProjectionElemList projElemList, BindingSet sourceBindings,
 			BindingSet parentBindings) {
 		return project(projElemList, sourceBindings, parentBindings, false);
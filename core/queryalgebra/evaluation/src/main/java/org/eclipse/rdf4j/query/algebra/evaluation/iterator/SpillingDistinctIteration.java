@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.BindingSetCodec;
+
+/**
+ * An iteration that filters any duplicate binding sets from an underlying iteration, like
+ * {@link org.eclipse.rdf4j.common.iteration.DistinctIteration}, but without keeping many binding sets on the Java heap.
+ * The first binding sets are kept in a set on the heap, as small results do not need more. Beyond that, the binding
+ * sets that have been seen are kept as compact binary keys, see {@link BindingSetCodec#encodeKey(BindingSet)}, in an
+ * off-heap hash table, of which the memory counts towards a budget that is shared by all queries.
+ * <p>
+ * Once the table holds more keys than the cache threshold, or its memory exceeds its maximum size or the shared
+ * budget, its keys are written
+ * to a temporary file in sorted order and the table is cleared. From then on, binding sets can no longer be returned as
+ * they are read, since they may have been seen before: the remaining binding sets are read into sorted runs as well,
+ * which are merged to drop the duplicates once the underlying iteration is exhausted. No more than a fixed number of
+ * runs are merged at a time, so that many runs are merged in several passes. The remaining binding sets are returned
+ * in the order in which they were first read, so that the order of the underlying iteration is preserved.
+ * They are decoded from their keys, or from their original encoding if their key differs in the case of a language
+ * tag, so that they are returned as they were first read. Their values are created by the value factory of the
+ * iteration, which should be that of the store, so that they are resolved to the values of the store again.
+ *
+ * @since 3.3.0
+ */
+public class SpillingDistinctIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+	/**
+	 * The maximum number of binding sets that are kept on the heap before the table of keys is created, by default.
+	 */
+	private static final int DEFAULT_MAX_HEAP_SIZE = 10_000;
+
+	/**
+	 * The maximum number of bytes that the table of keys takes, by default.
+	 */
+	private static final int DEFAULT_MAX_TABLE_SIZE = (int) OffHeapKeySet.MAX_TOTAL_SIZE;
+
+	/**
+	 * The maximum number of runs that are merged at the same time, by default.
+	 */
+	private static final int DEFAULT_MERGE_WIDTH = 64;
+
+	private static final Comparator<Run> KEY_ORDER = (a, b) -> OffHeapKeySet.compareKeys(a.key, b.key);
+
+	private static final Comparator<Run> SEQUENCE_ORDER = Comparator.comparingLong(run -> run.sequence);
+
+	private final CloseableIteration<BindingSet, QueryEvaluationException> iter;
+
+	private final long threshold;
+
+	private final int mergeWidth;
+
+	private final int maxHeapSize;
+
+	private final int maxTableSize;
+
+	private final BindingSetCodec codec;
+
+	/**
+	 * The binding sets that have been returned, until there are more than {@link #maxHeapSize} of them, <tt>null</tt>
+	 * once they have been moved to the table of keys.
+	 */
+	private Set<BindingSet> seen = new HashSet<>();
+
+	/**
+	 * The table of keys, <tt>null</tt> as long as the binding sets are kept on the heap.
+	 */
+	private OffHeapKeySet keys;
+
+	private long sequence;
+
+	/**
+	 * The sequence number of the first key whose binding set has not been returned, once the table has been spilled:
+	 * the binding sets of the first run are returned as they are read.
+	 */
+	private long returned;
+
+	/**
+	 * The sorted runs that have been written.
+	 */
+	private List<Run> runs = new ArrayList<>();
+
+	/**
+	 * All runs that have been created, to delete their files when the iteration is closed.
+	 */
+	private final List<Run> files = new ArrayList<>();
+
+	/**
+	 * The runs of binding sets that have not been returned yet, ordered by the binding set that they return next, once
+	 * the underlying iteration is exhausted.
+	 */
+	private PriorityQueue<Run> merged;
+
+	/**
+	 * @param iter      The underlying iteration.
+	 * @param threshold The maximum number of binding sets to keep in memory, or <tt>0</tt> for no maximum.
+	 */
+	public SpillingDistinctIteration(CloseableIteration<BindingSet, QueryEvaluationException> iter, long threshold) {
+		this(iter, threshold, SimpleValueFactory.getInstance());
+	}
+
+	/**
+	 * @param iter      The underlying iteration.
+	 * @param threshold The maximum number of binding sets to keep in memory, or <tt>0</tt> for no maximum.
+	 * @param vf        The value factory that creates the values of binding sets that are read back from disk.
+	 */
+	public SpillingDistinctIteration(CloseableIteration<BindingSet, QueryEvaluationException> iter, long threshold,
+			ValueFactory vf) {
+		this(iter, threshold, vf, DEFAULT_MAX_HEAP_SIZE, DEFAULT_MAX_TABLE_SIZE, DEFAULT_MERGE_WIDTH);
+	}
+
+	SpillingDistinctIteration(CloseableIteration<BindingSet, QueryEvaluationException> iter, long threshold,
+			ValueFactory vf, int maxHeapSize, int maxTableSize, int mergeWidth) {
+		if (mergeWidth < 2) {
+			throw new IllegalArgumentException("merge width must be at least 2");
+		}
+		this.iter = iter;
+		this.threshold = threshold;
+		this.codec = new BindingSetCodec(vf);
+		this.maxHeapSize = threshold > 0 ? (int) Math.min(maxHeapSize, threshold) : maxHeapSize;
+		this.maxTableSize = maxTableSize;
+		this.mergeWidth = mergeWidth;
+	}
+
+	@Override
+	protected BindingSet getNextElement() throws QueryEvaluationException {
+		try {
+			if (merged == null) {
+				while (iter.hasNext()) {
+					BindingSet next = iter.next();
+					if (seen != null) {
+						if (seen.contains(next)) {
+							continue;
+						}
+						if (seen.size() < maxHeapSize) {
+							seen.add(next);
+							return next;
+						}
+						moveOffHeap();
+					}
+
+					byte[] key = codec.encodeKey(next);
+					if (keys.contains(key)) {
+						continue;
+					}
+					if (isFull(key)) {
+						if (runs.isEmpty()) {
+							returned = sequence;
+						}
+						runs.add(spill(false));
+					}
+					if (runs.isEmpty()) {
+						keys.add(key, null, sequence++);
+						return next;
+					}
+					keys.add(key, encodeOriginal(next, key), sequence++);
+				}
+				if (runs.isEmpty()) {
+					return null;
+				}
+				runs.add(spill(false));
+				merged = merge();
+			}
+
+			Run run = merged.poll();
+			if (run == null) {
+				return null;
+			}
+			BindingSet result = codec.decodeKey(run.value.length > 0 ? run.value : run.key);
+			advance(merged, run);
+			return result;
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	/**
+	 * Creates the table of keys, with the keys of the binding sets that have been returned so far.
+	 */
+	private void moveOffHeap() throws IOException {
+		keys = new OffHeapKeySet(maxTableSize);
+		for (BindingSet bindings : seen) {
+			keys.add(codec.encodeKey(bindings), null, sequence++);
+		}
+		seen = null;
+	}
+
+	/**
+	 * Encodes a binding set without lower-casing its language tags, if that differs from its key.
+	 *
+	 * @return The original encoding, or <tt>null</tt> if the binding set can be decoded from its key.
+	 */
+	private byte[] encodeOriginal(BindingSet bindings, byte[] key) throws IOException {
+		byte[] original = codec.encodeKey(bindings, false);
+		return Arrays.equals(original, key) ? null : original;
+	}
+
+	private boolean isFull(byte[] key) {
+		return threshold > 0 && keys.size() >= threshold || !keys.hasRoom(key.length);
+	}
+
+	/**
+	 * Merges the runs by key, and writes the keys that have not been returned yet to new runs, sorted by the sequence
+	 * number of their first occurrence.
+	 *
+	 * @return The new runs, ordered by sequence number.
+	 */
+	private PriorityQueue<Run> merge() throws IOException {
+		reduce(KEY_ORDER);
+		List<Run> pending = new ArrayList<>();
+		merge(runs, KEY_ORDER, (key, first, value) -> {
+			// a key that occurs in the first run has been returned, and that is its first occurrence
+			if (first >= returned) {
+				if (isFull(key)) {
+					pending.add(spill(true));
+				}
+				keys.add(key, value, first);
+			}
+		});
+		pending.add(spill(true));
+		keys.close();
+		keys = null;
+
+		runs = pending;
+		reduce(SEQUENCE_ORDER);
+		return open(runs, SEQUENCE_ORDER);
+	}
+
+	/**
+	 * Replaces the runs by longer runs, each of which merges up to {@link #mergeWidth} consecutive runs, until no more
+	 * than {@link #mergeWidth} runs are left.
+	 */
+	private void reduce(Comparator<Run> order) throws IOException {
+		while (runs.size() > mergeWidth) {
+			List<Run> longer = new ArrayList<>();
+			for (int i = 0; i < runs.size(); i += mergeWidth) {
+				List<Run> group = runs.subList(i, Math.min(i + mergeWidth, runs.size()));
+				if (group.size() == 1) {
+					longer.add(group.get(0));
+					continue;
+				}
+
+				Run run = new Run();
+				files.add(run);
+				try (DataOutputStream out = run.create()) {
+					merge(group, order, (key, first, value) -> {
+						out.writeInt(key.length);
+						out.write(key);
+						out.writeLong(first);
+						out.writeInt(value.length);
+						out.write(value);
+						run.remaining++;
+					});
+				}
+				for (Run source : group) {
+					source.delete();
+					files.remove(source);
+				}
+				longer.add(run);
+			}
+			runs = longer;
+		}
+	}
+
+	/**
+	 * Merges runs in a given order. Keys that are equal in that order are passed once, with the sequence number and
+	 * value of their first occurrence, so that the binding set is returned as it was first read.
+	 */
+	private void merge(List<Run> runs, Comparator<Run> order, EntryHandler handler) throws IOException {
+		PriorityQueue<Run> queue = open(runs, order);
+		List<Run> equal = new ArrayList<>();
+		while (!queue.isEmpty()) {
+			equal.add(queue.poll());
+			while (!queue.isEmpty() && order.compare(queue.peek(), equal.get(0)) == 0) {
+				equal.add(queue.poll());
+			}
+
+			Run first = Collections.min(equal, SEQUENCE_ORDER);
+			handler.handle(first.key, first.sequence, first.value);
+			for (Run run : equal) {
+				advance(queue, run);
+			}
+			equal.clear();
+		}
+	}
+
+	private PriorityQueue<Run> open(List<Run> runs, Comparator<Run> comparator) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runs.size()), comparator);
+		for (Run run : runs) {
+			run.open();
+			advance(queue, run);
+		}
+		return queue;
+	}
+
+	private static void advance(PriorityQueue<Run> queue, Run run) throws IOException {
+		if (run.next()) {
+			queue.add(run);
+		} else {
+			run.close();
+		}
+	}
+
+	/**
+	 * Writes the keys of the table to a new run and clears the table.
+	 */
+	private Run spill(boolean bySequence) throws IOException {
+		Run run = new Run();
+		files.add(run);
+		try (DataOutputStream out = run.create()) {
+			keys.writeSorted(out, bySequence);
+		}
+		run.remaining = keys.size();
+		keys.clear();
+		return run;
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			try {
+				iter.close();
+			} finally {
+				if (keys != null) {
+					keys.close();
+					keys = null;
+				}
+				seen = null;
+				merged = null;
+				for (Run run : files) {
+					run.delete();
+				}
+				files.clear();
+			}
+		}
+	}
+
+	/**
+	 * Receives the keys of merged runs.
+	 */
+	@FunctionalInterface
+	private interface EntryHandler {
+
+		void handle(byte[] key, long sequence, byte[] value) throws IOException;
+	}
+
+	/**
+	 * A temporary file with keys, their sequence numbers and values, which is read one key at a time. The keys are
+	 * written in the format of {@link OffHeapKeySet#writeSorted(java.io.DataOutput, boolean)}.
+	 */
+	private static class Run implements Closeable {
+
+		private final File file;
+
+		private long remaining;
+
+		private DataInputStream in;
+
+		private byte[] key;
+
+		private long sequence;
+
+		/**
+		 * The original encoding of the binding set of the key, or an empty array if it is decoded from the key.
+		 */
+		private byte[] value;
+
+		public Run() throws IOException {
+			this.file = File.createTempFile("distinct", ".bin");
+		}
+
+		/**
+		 * Opens the file of the run for writing. The number of keys that are written must be set as remaining.
+		 */
+		public DataOutputStream create() throws IOException {
+			return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		}
+
+		public void open() throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		}
+
+		/**
+		 * Reads the next key of the run.
+		 *
+		 * @return <tt>false</tt> if the run has no more keys.
+		 */
+		public boolean next() throws IOException {
+			if (remaining <= 0) {
+				return false;
+			}
+			remaining--;
+			key = new byte[in.readInt()];
+			in.readFully(key);
+			sequence = in.readLong();
+			value = new byte[in.readInt()];
+			in.readFully(value);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				try {
+					in.close();
+				} finally {
+					in = null;
+				}
+			}
+		}
+
+		public void delete() {
+			try {
+				close();
+			} catch (IOException e) {
+				// the file is deleted regardless
+			} finally {
+				file.delete();
+			}
+		}
+	}
+}
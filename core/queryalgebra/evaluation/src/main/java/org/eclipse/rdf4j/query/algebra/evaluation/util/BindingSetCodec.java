@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Triple;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+
+/**
+ * Encodes binding sets in a compact binary format, for operators that spill solutions to disk. Unlike Java
+ * serialization, only the names and values of the bindings are written, not the classes of the binding sets and values,
+ * which may refer to the store that created them.
+ * <p>
+ * A codec encodes or decodes a single stream of binding sets: binding names are written once per stream and referred
+ * to by number afterwards. Variables that are bound to <tt>null</tt> (see {@link QueryBindingSet}) keep their null
+ * binding. Binding sets without bindings are decoded as {@link EmptyBindingSet}.
+ * <p>
+ * A codec can also encode binding sets as keys (see {@link #encodeKey(BindingSet)}), for operators that compare binding
+ * sets by their encoding. A codec should be used either for a stream or for keys, not for both.
+ *
+ * @since 3.3.0
+ */
+public class BindingSetCodec {
+
+	private static final int NULL = 0;
+
+	private static final int IRI = 1;
+
+	private static final int BNODE = 2;
+
+	private static final int STRING_LITERAL = 3;
+
+	private static final int LANG_LITERAL = 4;
+
+	private static final int TYPED_LITERAL = 5;
+
+	private static final int TRIPLE = 6;
+
+	private final ValueFactory vf;
+
+	private final Map<String, Integer> writtenNames = new HashMap<>();
+
+	private final List<String> readNames = new ArrayList<>();
+
+	private final Map<String, Integer> keyIndexes = new HashMap<>();
+
+	private final List<String> keyNames = new ArrayList<>();
+
+	private final ByteArrayOutputStream keyBuffer = new ByteArrayOutputStream();
+
+	private final DataOutputStream keyOutput = new DataOutputStream(keyBuffer);
+
+	/**
+	 * Creates a codec that decodes values with a {@link SimpleValueFactory}.
+	 */
+	public BindingSetCodec() {
+		this(SimpleValueFactory.getInstance());
+	}
+
+	public BindingSetCodec(ValueFactory vf) {
+		this.vf = vf;
+	}
+
+	public void write(BindingSet bindings, DataOutput out) throws IOException {
+		Set<String> names = bindings.getBindingNames();
+		writeInt(names.size(), out);
+		for (String name : names) {
+			Integer index = writtenNames.get(name);
+			if (index != null) {
+				writeInt(index, out);
+			} else {
+				writeInt(writtenNames.size(), out);
+				writeString(name, out);
+				writtenNames.put(name, writtenNames.size());
+			}
+			writeValue(bindings.getValue(name), false, out);
+		}
+	}
+
+	public BindingSet read(DataInput in) throws IOException {
+		int size = readInt(in);
+		if (size == 0) {
+			return EmptyBindingSet.getInstance();
+		}
+		QueryBindingSet result = new QueryBindingSet(size);
+		for (int i = 0; i < size; i++) {
+			int index = readInt(in);
+			if (index == readNames.size()) {
+				readNames.add(readString(in));
+			}
+			result.setBinding(readNames.get(index), readValue(in));
+		}
+		return result;
+	}
+
+	/**
+	 * Encodes a binding set as a key. Equal binding sets have equal keys, regardless of the order of their bindings.
+	 * The binding names are not part of the key but are kept by the codec, so a key can only be decoded by the codec
+	 * that encoded it.
+	 * <p>
+	 * Language tags are compared without regard to case, like {@link Literal#equals(Object)} does, so they are
+	 * lower-cased in the key. A decoded key may therefore differ in the case of its language tags from the binding set
+	 * that was encoded, see {@link #encodeKey(BindingSet, boolean)}.
+	 */
+	public byte[] encodeKey(BindingSet bindings) throws IOException {
+		return encodeKey(bindings, true);
+	}
+
+	/**
+	 * Encodes a binding set as a key, like {@link #encodeKey(BindingSet)}.
+	 *
+	 * @param normalize Whether language tags are lower-cased. A key that is not normalized decodes to a binding set
+	 *                  with the original language tags, but is only equal to the keys of binding sets with the same
+	 *                  case.
+	 */
+	public byte[] encodeKey(BindingSet bindings, boolean normalize) throws IOException {
+		Set<String> names = bindings.getBindingNames();
+		int[] indexes = new int[names.size()];
+		int i = 0;
+		for (String name : names) {
+			Integer index = keyIndexes.get(name);
+			if (index == null) {
+				index = keyNames.size();
+				keyIndexes.put(name, index);
+				keyNames.add(name);
+			}
+			indexes[i++] = index;
+		}
+		Arrays.sort(indexes);
+
+		keyBuffer.reset();
+		writeInt(indexes.length, keyOutput);
+		for (int index : indexes) {
+			writeInt(index, keyOutput);
+			writeValue(bindings.getValue(keyNames.get(index)), normalize, keyOutput);
+		}
+		keyOutput.flush();
+		return keyBuffer.toByteArray();
+	}
+
+	/**
+	 * Decodes a key that has been encoded by {@link #encodeKey(BindingSet, boolean)} of this codec.
+	 */
+	public BindingSet decodeKey(byte[] key) throws IOException {
+		DataInput in = new DataInputStream(new ByteArrayInputStream(key));
+		int size = readInt(in);
+		if (size == 0) {
+			return EmptyBindingSet.getInstance();
+		}
+		QueryBindingSet result = new QueryBindingSet(size);
+		for (int i = 0; i < size; i++) {
+			result.setBinding(keyNames.get(readInt(in)), readValue(in));
+		}
+		return result;
+	}
+
+	private void writeValue(Value value, boolean normalize, DataOutput out) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof IRI) {
+			out.writeByte(IRI);
+			writeString(value.stringValue(), out);
+		} else if (value instanceof BNode) {
+			out.writeByte(BNODE);
+			writeString(((BNode) value).getID(), out);
+		} else if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			if (literal.getLanguage().isPresent()) {
+				out.writeByte(LANG_LITERAL);
+				writeString(literal.getLabel(), out);
+				String language = literal.getLanguage().get();
+				writeString(normalize ? language.toLowerCase(Locale.ROOT) : language, out);
+			} else if (XMLSchema.STRING.equals(literal.getDatatype())) {
+				out.writeByte(STRING_LITERAL);
+				writeString(literal.getLabel(), out);
+			} else {
+				out.writeByte(TYPED_LITERAL);
+				writeString(literal.getLabel(), out);
+				writeString(literal.getDatatype().stringValue(), out);
+			}
+		} else if (value instanceof Triple) {
+			Triple triple = (Triple) value;
+			out.writeByte(TRIPLE);
+			writeValue(triple.getSubject(), normalize, out);
+			writeValue(triple.getPredicate(), normalize, out);
+			writeValue(triple.getObject(), normalize, out);
+		} else {
+			throw new IOException("Unsupported value type: " + value.getClass().getName());
+		}
+	}
+
+	private Value readValue(DataInput in) throws IOException {
+		int type = in.readByte();
+		switch (type) {
+		case NULL:
+			return null;
+		case IRI:
+			return vf.createIRI(readString(in));
+		case BNODE:
+			return vf.createBNode(readString(in));
+		case STRING_LITERAL:
+			return vf.createLiteral(readString(in));
+		case LANG_LITERAL:
+			return vf.createLiteral(readString(in), readString(in));
+		case TYPED_LITERAL:
+			return vf.createLiteral(readString(in), vf.createIRI(readString(in)));
+		case TRIPLE:
+			return vf.createTriple((Resource) readValue(in), (IRI) readValue(in), readValue(in));
+		default:
+			throw new IOException("Unknown value type: " + type);
+		}
+	}
+
+	private static void writeString(String s, DataOutput out) throws IOException {
+		// unlike DataOutput.writeUTF(), not limited to 64k
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length, out);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a non-negative integer in 7 bit groups, so that small numbers take a single byte.
+	 */
+	private static void writeInt(int value, DataOutput out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+}
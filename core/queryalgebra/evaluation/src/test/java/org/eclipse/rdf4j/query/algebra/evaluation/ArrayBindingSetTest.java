@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.impl.MapBindingSet;
+import org.junit.Test;
+
+public class ArrayBindingSetTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final ArrayBindingSet.Layout layout = new ArrayBindingSet.Layout(Arrays.asList("a", "b", "c", "a"));
+
+	@Test
+	public void testLayout() {
+		assertEquals(3, layout.size());
+		assertEquals(1, layout.getSlot("b"));
+		assertEquals(-1, layout.getSlot("x"));
+
+		ArrayBindingSet.Layout extended = layout.extend(Collections.singleton("x"));
+		assertEquals(1, extended.getSlot("b"));
+		assertEquals(3, extended.getSlot("x"));
+	}
+
+	@Test
+	public void testBindings() {
+		IRI foo = vf.createIRI("urn:foo");
+		ArrayBindingSet bs = new ArrayBindingSet(layout);
+		bs.setBinding("a", foo);
+		// bound to null, the variable must remain unbound
+		bs.setBinding(2, null);
+
+		assertEquals(foo, bs.getValue(0));
+		assertTrue(bs.hasBinding("c"));
+		assertNull(bs.getValue("c"));
+		assertFalse(bs.hasBinding("b"));
+		assertEquals(new HashSet<>(Arrays.asList("a", "c")), bs.getBindingNames());
+		assertEquals(2, bs.size());
+
+		QueryBindingSet qbs = new QueryBindingSet();
+		qbs.addAll(bs);
+		assertTrue(qbs.hasBinding("c"));
+		assertEquals(qbs, bs);
+		assertEquals(bs, qbs);
+
+		ArrayBindingSet copy = new ArrayBindingSet(bs);
+		copy.retainAll(new boolean[] { true });
+		assertEquals(1, copy.size());
+		assertEquals(2, bs.size());
+	}
+
+	@Test
+	public void testEquals() {
+		ArrayBindingSet bs = new ArrayBindingSet(layout);
+		bs.setBinding("b", vf.createLiteral(1));
+		MapBindingSet mbs = new MapBindingSet();
+		mbs.addBinding("b", vf.createLiteral(1));
+
+		assertEquals(bs, mbs);
+		assertEquals(mbs, bs);
+		assertEquals(mbs.hashCode(), bs.hashCode());
+
+		ArrayBindingSet other = ArrayBindingSet.of(layout, mbs);
+		assertEquals(bs, other);
+		other.setBinding("a", vf.createLiteral(2));
+		assertFalse(bs.equals(other));
+	}
+
+	@Test
+	public void testOf() {
+		ArrayBindingSet bs = new ArrayBindingSet(layout);
+		assertSame(bs, ArrayBindingSet.of(layout, bs));
+
+		MapBindingSet mbs = new MapBindingSet();
+		mbs.addBinding("x", vf.createLiteral(1));
+		mbs.addBinding("c", vf.createLiteral(2));
+		ArrayBindingSet extended = ArrayBindingSet.of(layout, mbs);
+		assertTrue(extended.hasLayout(layout));
+		assertEquals(mbs, extended);
+		assertEquals(vf.createLiteral(2), extended.getValue(2));
+		// binding sets of an extended layout are not converted again
+		assertSame(extended, ArrayBindingSet.of(layout, extended));
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.junit.Test;
+
+public class LiteralRangeTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testPrefix() {
+		LiteralRange range = LiteralRange.prefix("ab");
+		assertEquals("ac", range.getUpperString());
+		assertFalse(range.isUpperInclusive());
+		assertTrue(range.contains(vf.createLiteral("ab")));
+		assertTrue(range.contains(vf.createLiteral("abz", "en")));
+		assertFalse(range.contains(vf.createLiteral("ac")));
+		assertFalse(range.contains(vf.createLiteral("aa")));
+		assertFalse(range.contains(vf.createIRI("urn:ab")));
+
+		assertNull(LiteralRange.prefix("\uffff").getUpperString());
+		assertEquals("b", LiteralRange.prefix("a\uffff").getUpperString());
+	}
+
+	@Test
+	public void testNumeric() {
+		LiteralRange range = LiteralRange.numeric(LiteralRange.Type.NUMERIC, 1, Double.NaN);
+		assertTrue(range.contains(vf.createLiteral(1)));
+		assertTrue(range.contains(vf.createLiteral("1.5", XMLSchema.DECIMAL)));
+		assertTrue(range.contains(vf.createLiteral(Double.NaN)));
+		assertFalse(range.contains(vf.createLiteral(0.5f)));
+		assertFalse(range.contains(vf.createLiteral("abc", XMLSchema.INT)));
+		assertFalse(range.contains(vf.createLiteral("2")));
+	}
+
+	@Test
+	public void testDateTime() {
+		assertEquals(LiteralRange.Type.DATE_TIME, LiteralRange.getType(vf.createLiteral("2020-01-01T00:00:00Z",
+				XMLSchema.DATETIME)));
+		assertEquals(LiteralRange.Type.STRING, LiteralRange.getType(vf.createLiteral("a", "en")));
+		assertNull(LiteralRange.getType(vf.createLiteral("2020-01-01", XMLSchema.DATE)));
+
+		// values without a timezone are keyed as UTC
+		double utc = LiteralRange.getNumberKey(LiteralRange.Type.DATE_TIME,
+				vf.createLiteral("2020-01-01T00:00:00Z", XMLSchema.DATETIME));
+		double local = LiteralRange.getNumberKey(LiteralRange.Type.DATE_TIME,
+				vf.createLiteral("2020-01-01T00:00:00", XMLSchema.DATETIME));
+		assertEquals(utc, local, 0);
+		assertTrue(Double.isNaN(LiteralRange.getNumberKey(LiteralRange.Type.DATE_TIME,
+				vf.createLiteral("yesterday", XMLSchema.DATETIME))));
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.LeftJoin;
+import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.ProjectionElem;
+import org.eclipse.rdf4j.query.algebra.ProjectionElemList;
+import org.eclipse.rdf4j.query.algebra.QueryRoot;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.BindJoinIteration;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.HashJoinIteration;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.junit.Test;
+
+public class JoinAlgorithmOptimizerTest {
+
+	private static final String HASH_JOIN = HashJoinIteration.class.getSimpleName();
+
+	private static final String NESTED_LOOP_JOIN = "JoinIterator";
+
+	private static final String BIND_JOIN = BindJoinIteration.class.getSimpleName();
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI small = vf.createIRI("urn:small");
+
+	private final IRI medium = vf.createIRI("urn:medium");
+
+	private final IRI large = vf.createIRI("urn:large");
+
+	/**
+	 * Statistics with a fixed cardinality per predicate.
+	 */
+	private final EvaluationStatistics statistics = new EvaluationStatistics() {
+
+		@Override
+		protected CardinalityCalculator createCardinalityCalculator() {
+			return new CardinalityCalculator() {
+
+				@Override
+				protected double getCardinality(StatementPattern sp) {
+					Value predicate = sp.getPredicateVar().getValue();
+					return small.equals(predicate) ? 10 : medium.equals(predicate) ? 1000 : 1_000_000;
+				}
+			};
+		}
+	};
+
+	@Test
+	public void testLargeArguments() {
+		Join join = new Join(pattern("a", large, "b"), pattern("b", large, "c"));
+		optimize(join);
+		assertEquals(HASH_JOIN, join.getAlgorithmName());
+	}
+
+	@Test
+	public void testSelectiveLeftArgument() {
+		Join join = new Join(pattern("a", small, "b"), pattern("b", large, "c"));
+		optimize(join);
+		assertEquals(NESTED_LOOP_JOIN, join.getAlgorithmName());
+	}
+
+	@Test
+	public void testBindJoin() {
+		Join join = new Join(pattern("a", medium, "b"), pattern("b", large, "c"));
+		optimize(join);
+		assertEquals(NESTED_LOOP_JOIN, join.getAlgorithmName());
+
+		// lookups are cheaper on a triple source that performs them in batches
+		new JoinAlgorithmOptimizer(statistics, new EmptyBatchTripleSource()).optimize(join, null,
+				EmptyBindingSet.getInstance());
+		assertEquals(BIND_JOIN, join.getAlgorithmName());
+
+		Join selective = new Join(pattern("a", small, "b"), pattern("b", large, "c"));
+		new JoinAlgorithmOptimizer(statistics, new EmptyBatchTripleSource()).optimize(selective, null,
+				EmptyBindingSet.getInstance());
+		assertEquals(NESTED_LOOP_JOIN, selective.getAlgorithmName());
+	}
+
+	@Test
+	public void testTripleSourceWithoutBatchLookups() {
+		Join join = new Join(pattern("a", medium, "b"), pattern("b", large, "c"));
+		BatchTripleSource tripleSource = new EmptyBatchTripleSource() {
+
+			@Override
+			public boolean supportsBatchLookups() {
+				return false;
+			}
+		};
+		new JoinAlgorithmOptimizer(statistics, tripleSource).optimize(join, null, EmptyBindingSet.getInstance());
+		assertEquals(NESTED_LOOP_JOIN, join.getAlgorithmName());
+	}
+
+	@Test
+	public void testRightArgumentWithFilter() {
+		// the filter may refer to variables of the left argument
+		Filter filter = new Filter(pattern("b", large, "c"), new Compare(new Var("a"), new Var("c"), CompareOp.NE));
+		Join join = new Join(pattern("a", large, "b"), filter);
+		optimize(join);
+		assertEquals(NESTED_LOOP_JOIN, join.getAlgorithmName());
+	}
+
+	@Test
+	public void testRepeatedJoins() {
+		Join inner = new Join(pattern("b", large, "c"), pattern("c", large, "d"));
+		Join outer = new Join(pattern("a", small, "b"), inner);
+		optimize(outer);
+		assertEquals(NESTED_LOOP_JOIN, outer.getAlgorithmName());
+		// the inner join is evaluated for every solution of the outer join
+		assertEquals(NESTED_LOOP_JOIN, inner.getAlgorithmName());
+
+		Join optional = new Join(pattern("b", large, "c"), pattern("c", large, "d"));
+		LeftJoin leftJoin = new LeftJoin(pattern("a", large, "b"), optional);
+		optimize(leftJoin);
+		assertEquals(NESTED_LOOP_JOIN, optional.getAlgorithmName());
+	}
+
+	@Test
+	public void testOutOfScopeRightArgument() {
+		Projection subquery = new Projection(pattern("b", large, "c"),
+				new ProjectionElemList(new ProjectionElem("b"), new ProjectionElem("c")), true);
+		Join join = new Join(pattern("a", small, "b"), subquery);
+		optimize(join);
+		assertNull(join.getAlgorithmName());
+	}
+
+	@Test
+	public void testEvaluation() throws Exception {
+		Join join = new Join(pattern("a", large, "b"), pattern("b", large, "c"));
+		QueryRoot root = new QueryRoot(join);
+		optimize(root);
+
+		StrictEvaluationStrategy strategy = new StrictEvaluationStrategy(new EmptyTripleSource(), null);
+		try (CloseableIteration<BindingSet, QueryEvaluationException> iter = strategy.precompile(root)
+				.evaluate(EmptyBindingSet.getInstance())) {
+			iter.hasNext();
+		}
+		assertEquals(HASH_JOIN, join.getAlgorithmName());
+
+		join.setAlgorithm(NESTED_LOOP_JOIN);
+		try (CloseableIteration<BindingSet, QueryEvaluationException> iter = strategy.evaluate(root,
+				EmptyBindingSet.getInstance())) {
+			iter.hasNext();
+		}
+		assertEquals(NESTED_LOOP_JOIN, join.getAlgorithmName());
+	}
+
+	private void optimize(TupleExpr expr) {
+		new JoinAlgorithmOptimizer(statistics).optimize(expr, null, EmptyBindingSet.getInstance());
+	}
+
+	private StatementPattern pattern(String subject, IRI predicate, String object) {
+		return new StatementPattern(new Var(subject), new Var("p_" + predicate.getLocalName(), predicate),
+				new Var(object));
+	}
+
+	private static class EmptyBatchTripleSource extends EmptyTripleSource implements BatchTripleSource {
+
+		@Override
+		public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsForLookups(
+				List<Value[]> lookups, Resource... contexts) throws QueryEvaluationException {
+			return new EmptyIteration<>();
+		}
+	}
+}
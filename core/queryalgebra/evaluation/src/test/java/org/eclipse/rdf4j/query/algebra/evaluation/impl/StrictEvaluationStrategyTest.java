@@ -8,28 +8,65 @@
 package org.eclipse.rdf4j.query.algebra.evaluation.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.BooleanLiteral;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FN;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.algebra.And;
+import org.eclipse.rdf4j.query.algebra.Bound;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
+import org.eclipse.rdf4j.query.algebra.Extension;
+import org.eclipse.rdf4j.query.algebra.ExtensionElem;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.MathExpr;
+import org.eclipse.rdf4j.query.algebra.MathExpr.MathOp;
+import org.eclipse.rdf4j.query.algebra.Not;
+import org.eclipse.rdf4j.query.algebra.Or;
+import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.ProjectionElem;
+import org.eclipse.rdf4j.query.algebra.ProjectionElemList;
+import org.eclipse.rdf4j.query.algebra.QueryRoot;
+import org.eclipse.rdf4j.query.algebra.SameTerm;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizer;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.eclipse.rdf4j.query.parser.ParsedQuery;
 import org.eclipse.rdf4j.query.parser.QueryParserUtil;
@@ -134,4 +171,125 @@ public class StrictEvaluationStrategyTest {
 		assertThat(values).containsExactlyInAnyOrder("foo.bar", "FOO.BAR");
 	}
 
+	@Test
+	public void testDistinctLanguageTags() throws Exception {
+		String query = "SELECT DISTINCT ?a WHERE { VALUES ?a { \"a\"@EN \"a\"@en } }";
+		ParsedQuery pq = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, query, null);
+
+		List<BindingSet> bindingSets = QueryResults.asList(strategy.evaluate(pq.getTupleExpr(),
+				new EmptyBindingSet()));
+		// language tags are compared without regard to case
+		assertThat(bindingSets).hasSize(1);
+		assertThat(bindingSets.get(0).getValue("a").toString()).isEqualTo("\"a\"@EN");
+	}
+
+	@Test
+	public void testPrecompile() throws Exception {
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		IRI knows = vf.createIRI("urn:knows");
+		IRI age = vf.createIRI("urn:age");
+		List<Statement> statements = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			statements.add(vf.createStatement(vf.createIRI("urn:p" + i), knows, vf.createIRI("urn:p" + (i + 1) % 10)));
+			statements.add(vf.createStatement(vf.createIRI("urn:p" + i), age, vf.createLiteral(20 + i)));
+		}
+		StrictEvaluationStrategy strategy = new StrictEvaluationStrategy(new ListTripleSource(statements), null);
+
+		// SELECT ?a ?b ?next WHERE { ?a :knows ?b . ?b :age ?age FILTER(?age > 25) BIND(?age + 1 AS ?next) }
+		Join join = new Join(new StatementPattern(new Var("a"), new Var("p1", knows), new Var("b")),
+				new StatementPattern(new Var("b"), new Var("p2", age), new Var("age")));
+		Filter filter = new Filter(join,
+				new Compare(new Var("age"), new ValueConstant(vf.createLiteral(25)), CompareOp.GT));
+		Extension extension = new Extension(filter, new ExtensionElem(
+				new MathExpr(new Var("age"), new ValueConstant(vf.createLiteral(1)), MathOp.PLUS), "next"));
+		ProjectionElemList elems = new ProjectionElemList(new ProjectionElem("a"), new ProjectionElem("b"),
+				new ProjectionElem("next"));
+		QueryRoot root = new QueryRoot(new Projection(extension, elems));
+
+		List<BindingSet> expected = Iterations.asList(strategy.evaluate(root, EmptyBindingSet.getInstance()));
+		assertEquals(4, expected.size());
+
+		QueryEvaluationStep step = strategy.precompile(root);
+		List<BindingSet> actual = Iterations.asList(step.evaluate(EmptyBindingSet.getInstance()));
+		assertEquals(expected, actual);
+		// the solutions are binding sets of the layout of the query
+		assertTrue(actual.get(0) instanceof ArrayBindingSet);
+		// a step can be evaluated more than once
+		assertEquals(expected, Iterations.asList(step.evaluate(EmptyBindingSet.getInstance())));
+
+		// bindings of variables that are not part of the query extend the layout
+		QueryBindingSet bindings = new QueryBindingSet();
+		bindings.addBinding("a", vf.createIRI("urn:p7"));
+		bindings.addBinding("other", vf.createIRI("urn:other"));
+		assertEquals(Iterations.asList(strategy.evaluate(root, bindings)), Iterations.asList(step.evaluate(bindings)));
+	}
+
+	@Test
+	public void testPrecompileValueExpr() throws Exception {
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		QueryBindingSet bindings = new QueryBindingSet();
+		bindings.addBinding("x", vf.createLiteral("abc"));
+
+		ValueExpr expr = new And(new FunctionCall(FN.STARTS_WITH.stringValue(), new Var("x"),
+				new ValueConstant(vf.createLiteral("ab"))), new Bound(new Var("x")));
+		assertEquals(BooleanLiteral.TRUE, strategy.precompile(expr).evaluate(bindings));
+
+		// an unbound variable is an error, unless it is ignored by a disjunction
+		QueryValueEvaluationStep unbound = strategy.precompile(new Var("y"));
+		try {
+			unbound.evaluate(bindings);
+			fail("expected ValueExprEvaluationException");
+		} catch (ValueExprEvaluationException e) {
+			// expected
+		}
+		expr = new Or(new SameTerm(new Var("y"), new Var("x")), new Not(new Bound(new Var("y"))));
+		assertEquals(BooleanLiteral.TRUE, strategy.precompile(expr).evaluate(bindings));
+
+		// unknown functions fail on evaluation rather than preparation
+		QueryValueEvaluationStep unknown = strategy.precompile(new FunctionCall("urn:unknown", new Var("x")));
+		try {
+			unknown.evaluate(bindings);
+			fail("expected QueryEvaluationException");
+		} catch (QueryEvaluationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPrecompileOverriddenEvaluation() throws Exception {
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		StrictEvaluationStrategy strategy = new StrictEvaluationStrategy(new EmptyTripleSource(), null) {
+
+			@Override
+			public Value evaluate(Compare node, BindingSet bindings) throws QueryEvaluationException {
+				return BooleanLiteral.TRUE;
+			}
+		};
+		ValueExpr expr = new Not(new Compare(new ValueConstant(vf.createLiteral(1)),
+				new ValueConstant(vf.createLiteral(2)), CompareOp.EQ));
+		assertEquals(BooleanLiteral.FALSE, strategy.precompile(expr).evaluate(EmptyBindingSet.getInstance()));
+	}
+
+	/**
+	 * A triple source over a list of statements without contexts.
+	 */
+	private static class ListTripleSource extends EmptyTripleSource {
+
+		private final List<Statement> statements;
+
+		public ListTripleSource(List<Statement> statements) {
+			this.statements = statements;
+		}
+
+		@Override
+		public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Resource subj,
+				IRI pred, Value obj, Resource... contexts) throws QueryEvaluationException {
+			List<Statement> result = statements.stream()
+					.filter(st -> subj == null || subj.equals(st.getSubject()))
+					.filter(st -> pred == null || pred.equals(st.getPredicate()))
+					.filter(st -> obj == null || obj.equals(st.getObject()))
+					.collect(Collectors.toList());
+			return new CloseableIteratorIteration<>(result.iterator());
+		}
+	}
 }
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.UnionIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.BindingSetAssignment;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.StatementPattern.Scope;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BindJoinIterationTest {
+
+	private static final String BIND_JOIN = BindJoinIteration.class.getSimpleName();
+
+	private static final String NESTED_LOOP_JOIN = JoinIterator.class.getSimpleName();
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI type = vf.createIRI("urn:type");
+
+	private final IRI label = vf.createIRI("urn:label");
+
+	private final IRI comment = vf.createIRI("urn:comment");
+
+	private final IRI link = vf.createIRI("urn:link");
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private final Model model = new LinkedHashModel();
+
+	private final ModelTripleSource tripleSource = new ModelTripleSource();
+
+	private final StrictEvaluationStrategy strategy = new StrictEvaluationStrategy(tripleSource, null);
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < 300; i++) {
+			IRI item = vf.createIRI("urn:item:" + i);
+			model.add(item, type, vf.createIRI("urn:type:" + i % 7));
+			model.add(item, label, vf.createLiteral("item " + i));
+			if (i % 3 == 0) {
+				model.add(item, comment, vf.createLiteral(i), ctx);
+			} else if (i % 5 == 0) {
+				model.add(item, comment, vf.createLiteral(i));
+			}
+			model.add(item, link, i % 10 == 0 ? item : vf.createIRI("urn:item:" + (i + 1)));
+		}
+	}
+
+	@Test
+	public void testBoundSubject() throws QueryEvaluationException {
+		assertSameResults(pattern("s", type, "t"), pattern("s", label, "l"), 300);
+		// one lookup per batch
+		assertEquals(3, tripleSource.lookupCalls);
+	}
+
+	@Test
+	public void testRepeatedVariable() throws QueryEvaluationException {
+		// the same lookup for every solution of the left argument
+		assertSameResults(pattern("s", type, "t"), pattern("x", link, "x"), 300 * 30);
+	}
+
+	@Test
+	public void testNamedContexts() throws QueryEvaluationException {
+		StatementPattern right = new StatementPattern(Scope.NAMED_CONTEXTS, new Var("s"), constant(comment),
+				new Var("c"), new Var("g"));
+		assertSameResults(pattern("s", type, "t"), right, 100);
+	}
+
+	@Test
+	public void testPartiallyBoundSolutions() throws QueryEvaluationException {
+		List<BindingSet> bindingSets = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			QueryBindingSet bindingSet = new QueryBindingSet();
+			if (i % 2 == 0) {
+				bindingSet.addBinding("s", vf.createIRI("urn:item:" + i));
+			}
+			bindingSet.addBinding("i", vf.createLiteral(i));
+			bindingSets.add(bindingSet);
+		}
+		// a literal subject does not match any statement
+		QueryBindingSet literalSubject = new QueryBindingSet();
+		literalSubject.addBinding("s", vf.createLiteral("item"));
+		bindingSets.add(literalSubject);
+
+		BindingSetAssignment left = new BindingSetAssignment();
+		left.setBindingSets(bindingSets);
+		assertSameResults(left, pattern("s", label, "l"), 3 + 2 * 300);
+	}
+
+	private void assertSameResults(TupleExpr left, StatementPattern right, int expectedSize)
+			throws QueryEvaluationException {
+		Join join = new Join(left, right);
+
+		join.setAlgorithm(NESTED_LOOP_JOIN);
+		Map<BindingSet, Integer> expected = evaluate(join, true);
+		assertEquals(expectedSize, expected.values().stream().mapToInt(Integer::intValue).sum());
+
+		join.setAlgorithm(BIND_JOIN);
+		assertEquals(expected, evaluate(join, true));
+		assertEquals(BIND_JOIN, join.getAlgorithmName());
+		assertTrue(tripleSource.lookupCalls > 0);
+
+		join.setAlgorithm(NESTED_LOOP_JOIN);
+		expected = evaluate(join, false);
+		join.setAlgorithm(BIND_JOIN);
+		assertEquals(expected, evaluate(join, false));
+		assertEquals(BIND_JOIN, join.getAlgorithmName());
+	}
+
+	private Map<BindingSet, Integer> evaluate(Join join, boolean precompiled) throws QueryEvaluationException {
+		tripleSource.lookupCalls = 0;
+		Map<BindingSet, Integer> result = new HashMap<>();
+		try (CloseableIteration<BindingSet, QueryEvaluationException> iter = precompiled
+				? strategy.precompile(join).evaluate(EmptyBindingSet.getInstance())
+				: strategy.evaluate(join, EmptyBindingSet.getInstance())) {
+			while (iter.hasNext()) {
+				result.merge(iter.next(), 1, Integer::sum);
+			}
+		}
+		return result;
+	}
+
+	private StatementPattern pattern(String subject, IRI predicate, String object) {
+		return new StatementPattern(new Var(subject), constant(predicate), new Var(object));
+	}
+
+	private Var constant(IRI value) {
+		return new Var("_const_" + value.getLocalName(), value);
+	}
+
+	/**
+	 * Looks up the statements of a model one lookup after another, and counts the batches of lookups.
+	 */
+	private class ModelTripleSource implements BatchTripleSource {
+
+		private int lookupCalls;
+
+		@Override
+		public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Resource subj,
+				IRI pred, Value obj, Resource... contexts) throws QueryEvaluationException {
+			return new CloseableIteratorIteration<>(model.filter(subj, pred, obj, contexts).iterator());
+		}
+
+		@Override
+		public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsForLookups(
+				List<Value[]> lookups, Resource... contexts) throws QueryEvaluationException {
+			lookupCalls++;
+			List<CloseableIteration<? extends Statement, QueryEvaluationException>> result = new ArrayList<>();
+			for (Value[] lookup : lookups) {
+				result.add(getStatements((Resource) lookup[0], (IRI) lookup[1], lookup[2], contexts));
+			}
+			return new UnionIteration<>(result);
+		}
+
+		@Override
+		public ValueFactory getValueFactory() {
+			return vf;
+		}
+	}
+}
@@ -10,8 +10,12 @@ package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.ValueFactoryImpl;
 import org.eclipse.rdf4j.query.BindingSet;
@@ -106,4 +110,46 @@ public class HashJoinIterationTest {
 		assertEquals("x", actual.getValue("i").stringValue());
 		assertFalse(actual.hasBinding("b"));
 	}
+
+	@Test
+	public void testPartitionedJoin() throws QueryEvaluationException {
+		// 100 distinct join values, a third of the right solutions do not match
+		BindingSetAssignment left = bindingSets("a", 1000, 100);
+		BindingSetAssignment right = bindingSets("b", 300, 150);
+
+		assertEquals(2000, join(left, right, false, 0).size());
+		assertEquals(join(left, right, false, 0), join(left, right, false, 10));
+		assertEquals(join(left, right, true, 0), join(left, right, true, 10));
+		assertEquals(join(right, left, true, 0), join(right, left, true, 10));
+
+		// all solutions have the same join value and cannot be partitioned below the threshold
+		BindingSetAssignment same = bindingSets("b", 50, 1);
+		assertEquals(join(left, same, false, 0), join(left, same, false, 10));
+	}
+
+	private BindingSetAssignment bindingSets(String name, int count, int joinValues) {
+		List<BindingSet> bindingSets = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			QueryBindingSet bs = new QueryBindingSet();
+			bs.addBinding(name, vf.createLiteral(i));
+			bs.addBinding("i", vf.createIRI("urn:", Integer.toString(i % joinValues)));
+			bindingSets.add(bs);
+		}
+		BindingSetAssignment result = new BindingSetAssignment();
+		result.setBindingSets(bindingSets);
+		return result;
+	}
+
+	private List<String> join(BindingSetAssignment left, BindingSetAssignment right, boolean leftJoin,
+			long cacheThreshold) throws QueryEvaluationException {
+		BindingSet bindings = EmptyBindingSet.getInstance();
+		HashJoinIteration iter = new HashJoinIteration(evaluator.evaluate(left, bindings), left.getBindingNames(),
+				evaluator.evaluate(right, bindings), right.getBindingNames(), leftJoin, null, cacheThreshold);
+		List<String> result = new ArrayList<>();
+		for (BindingSet bs : Iterations.asList(iter)) {
+			result.add(bs.getValue("i") + " " + bs.getValue("a") + " " + bs.getValue("b"));
+		}
+		Collections.sort(result);
+		return result;
+	}
 }
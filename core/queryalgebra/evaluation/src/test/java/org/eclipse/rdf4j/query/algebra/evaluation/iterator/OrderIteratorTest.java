@@ -13,13 +13,19 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
 
 import junit.framework.TestCase;
 
@@ -181,6 +187,61 @@ public class OrderIteratorTest extends TestCase {
 		assertFalse(order.hasNext());
 	}
 
+	public void testTopK() throws Exception {
+		List<Integer> values = randomValues(1000, 100);
+		List<Integer> expected = values.stream().sorted().limit(25).collect(Collectors.toList());
+		assertEquals(expected, sortValues(values, 25, false, 0));
+		assertEquals(expected, sortValues(values, 25, false, 100));
+
+		expected = values.stream().sorted().distinct().limit(25).collect(Collectors.toList());
+		assertEquals(expected, sortValues(values, 25, true, 0));
+		assertEquals(Collections.emptyList(), sortValues(values, 0, false, 0));
+	}
+
+	public void testExternalSort() throws Exception {
+		List<Integer> values = randomValues(1000, 100);
+		assertEquals(values.stream().sorted().collect(Collectors.toList()),
+				sortValues(values, Long.MAX_VALUE, false, 30));
+		assertEquals(values.stream().sorted().distinct().collect(Collectors.toList()),
+				sortValues(values, Long.MAX_VALUE, true, 30));
+	}
+
+	public void testExternalSortWithLimit() throws Exception {
+		List<Integer> values = randomValues(1000, 500);
+		// the limit exceeds the cache threshold
+		assertEquals(values.stream().sorted().limit(200).collect(Collectors.toList()),
+				sortValues(values, 200, false, 30));
+		assertEquals(values.stream().sorted().distinct().limit(200).collect(Collectors.toList()),
+				sortValues(values, 200, true, 30));
+	}
+
+	private List<Integer> randomValues(int size, int bound) {
+		Random random = new Random(43);
+		List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			values.add(random.nextInt(bound));
+		}
+		return values;
+	}
+
+	private List<Integer> sortValues(List<Integer> values, long limit, boolean distinct, long syncThreshold)
+			throws Exception {
+		List<BindingSet> bindingSets = new ArrayList<>();
+		for (Integer value : values) {
+			QueryBindingSet bindings = new QueryBindingSet();
+			bindings.addBinding("x", SimpleValueFactory.getInstance().createLiteral(value));
+			bindingSets.add(bindings);
+		}
+		Comparator<BindingSet> valueComparator = Comparator
+				.comparingInt(bindings -> ((Literal) bindings.getValue("x")).intValue());
+		OrderIterator sorted = new OrderIterator(new CloseableIteratorIteration<>(bindingSets.iterator()),
+				valueComparator, limit, distinct, syncThreshold);
+		return Iterations.asList(sorted)
+				.stream()
+				.map(bindings -> ((Literal) bindings.getValue("x")).intValue())
+				.collect(Collectors.toList());
+	}
+
 	@Override
 	protected void setUp() throws Exception {
 		list = Arrays.asList(b3, b5, b2, b1, b4, b2);
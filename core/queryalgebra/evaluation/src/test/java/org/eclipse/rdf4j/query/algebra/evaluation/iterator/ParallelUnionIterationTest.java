@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelUnionIterationTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(1);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test(timeout = 10000)
+	public void testMerge() throws QueryEvaluationException {
+		List<Source> sources = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			sources.add(new Source(i * 1000, 1000));
+		}
+
+		Set<Integer> values = consume(new ParallelUnionIteration(executor, 16, sources));
+		assertEquals(10000, values.size());
+		for (Source source : sources) {
+			assertTrue(source.isClosed());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testNestedUnions() throws QueryEvaluationException {
+		// the inner unions cannot all be run by the single thread of the executor
+		List<CloseableIteration<BindingSet, QueryEvaluationException>> unions = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			unions.add(new ParallelUnionIteration(executor, 4,
+					Arrays.asList(new Source(i * 2000, 1000), new Source(i * 2000 + 1000, 1000))));
+		}
+
+		assertEquals(8000, consume(new ParallelUnionIteration(executor, 4, unions)).size());
+	}
+
+	@Test(timeout = 10000)
+	public void testRejectedExecution() throws QueryEvaluationException {
+		List<Source> sources = Arrays.asList(new Source(0, 100), new Source(100, 100));
+
+		ParallelUnionIteration union = new ParallelUnionIteration(command -> {
+			throw new RejectedExecutionException();
+		}, 4, sources);
+		assertEquals(200, consume(union).size());
+	}
+
+	@Test(timeout = 10000)
+	public void testClose() throws QueryEvaluationException {
+		List<Source> sources = Arrays.asList(new Source(0, 100000), new Source(100000, 100000));
+
+		ParallelUnionIteration union = new ParallelUnionIteration(executor, 4, sources);
+		for (int i = 0; i < 10; i++) {
+			union.next();
+		}
+		union.close();
+
+		for (Source source : sources) {
+			assertTrue(source.isClosed());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testException() {
+		Source failing = new Source(0, 1000) {
+
+			@Override
+			protected BindingSet getNextElement() throws QueryEvaluationException {
+				BindingSet next = super.getNextElement();
+				if (next != null && next.getValue("x").stringValue().equals("500")) {
+					throw new QueryEvaluationException("failure");
+				}
+				return next;
+			}
+		};
+
+		ParallelUnionIteration union = new ParallelUnionIteration(executor, 4,
+				Arrays.asList(new Source(1000, 1000), failing));
+		try {
+			consume(union);
+			fail("exception expected");
+		} catch (QueryEvaluationException e) {
+			assertEquals("failure", e.getMessage());
+		} finally {
+			union.close();
+		}
+		assertTrue(failing.isClosed());
+	}
+
+	private Set<Integer> consume(ParallelUnionIteration union) throws QueryEvaluationException {
+		Set<Integer> values = new HashSet<>();
+		try {
+			while (union.hasNext()) {
+				assertTrue(values.add(Integer.valueOf(union.next().getValue("x").stringValue())));
+			}
+		} finally {
+			union.close();
+		}
+		return values;
+	}
+
+	/**
+	 * Binds <tt>x</tt> to a range of integers.
+	 */
+	private class Source extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+		private int next;
+
+		private final int end;
+
+		public Source(int start, int size) {
+			this.next = start;
+			this.end = start + size;
+		}
+
+		@Override
+		protected BindingSet getNextElement() throws QueryEvaluationException {
+			if (next >= end) {
+				return null;
+			}
+			QueryBindingSet result = new QueryBindingSet();
+			result.addBinding("x", vf.createLiteral(next++));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.AbstractValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.junit.Test;
+
+public class SpillingDistinctIterationTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testInMemory() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(2000, 300);
+
+		List<BindingSet> result = new ArrayList<>();
+		long offHeapSize = OffHeapKeySet.getTotalSize();
+		try (SpillingDistinctIteration distinct = new SpillingDistinctIteration(iterate(input), 0)) {
+			for (int i = 0; i < 300; i++) {
+				assertTrue(distinct.hasNext());
+				// returned as soon as they are read, without allocating the off-heap table
+				assertTrue(input.get(i) == distinct.next());
+			}
+			result.addAll(Iterations.asList(distinct));
+			assertEquals(offHeapSize, OffHeapKeySet.getTotalSize());
+		}
+		assertTrue(result.isEmpty());
+	}
+
+	@Test
+	public void testOffHeapMemoryIsReleased() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(2000, 300);
+		long offHeapSize = OffHeapKeySet.getTotalSize();
+		try (SpillingDistinctIteration distinct = new SpillingDistinctIteration(iterate(input), 0, vf, 100,
+				Integer.MAX_VALUE, 64)) {
+			for (int i = 0; i < 200; i++) {
+				assertEquals(input.get(i), distinct.next());
+			}
+			// the binding sets beyond the first 100 are kept off-heap
+			assertTrue(OffHeapKeySet.getTotalSize() > offHeapSize);
+		}
+		assertEquals(offHeapSize, OffHeapKeySet.getTotalSize());
+
+		// released by a merge as well
+		assertEquals(300, Iterations.asList(new SpillingDistinctIteration(iterate(input), 25)).size());
+		assertEquals(offHeapSize, OffHeapKeySet.getTotalSize());
+	}
+
+	@Test
+	public void testSpilledValuesAreCreatedByValueFactory() throws QueryEvaluationException {
+		AtomicInteger created = new AtomicInteger();
+		ValueFactory storeValueFactory = new AbstractValueFactory() {
+
+			@Override
+			public IRI createIRI(String iri) {
+				if (iri.startsWith("urn:x:")) {
+					created.incrementAndGet();
+				}
+				return super.createIRI(iri);
+			}
+		};
+
+		List<BindingSet> input = createBindingSets(2000, 300);
+		List<BindingSet> result = Iterations
+				.asList(new SpillingDistinctIteration(iterate(input), 25, storeValueFactory));
+		assertEquals(new ArrayList<>(new LinkedHashSet<>(input)), result);
+		// the binding sets after the first spill are read back from disk
+		assertEquals(300 - 25, created.get());
+	}
+
+	@Test
+	public void testSpillingThreshold() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(2000, 300);
+		assertEquals(new ArrayList<>(new LinkedHashSet<>(input)),
+				Iterations.asList(new SpillingDistinctIteration(iterate(input), 25)));
+	}
+
+	@Test
+	public void testSpillingMaxTableSize() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(5000, 1500);
+		input.add(0, EmptyBindingSet.getInstance());
+		QueryBindingSet unbound = new QueryBindingSet();
+		unbound.addBinding("x", null);
+		input.add(unbound);
+		input.add(unbound);
+
+		assertEquals(new ArrayList<>(new LinkedHashSet<>(input)),
+				Iterations.asList(new SpillingDistinctIteration(iterate(input), 0, vf, 100, 4096, 64)));
+	}
+
+	@Test
+	public void testMultipleMergePasses() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(5000, 1500);
+		List<BindingSet> expected = new ArrayList<>(new LinkedHashSet<>(input));
+		for (int mergeWidth : new int[] { 2, 3, 7 }) {
+			// about 200 runs of keys, and about 60 runs of sequence numbers, merged a few at a time
+			assertEquals(expected, Iterations.asList(
+					new SpillingDistinctIteration(iterate(input), 25, vf, 25, Integer.MAX_VALUE, mergeWidth)));
+		}
+	}
+
+	@Test
+	public void testLanguageTags() throws QueryEvaluationException {
+		List<BindingSet> input = createBindingSets(1000, 500);
+		input.add(0, languageBindingSet("EN"));
+		input.add(1, languageBindingSet("en"));
+		// read after the table has been spilled
+		input.add(languageBindingSet("De"));
+		input.add(languageBindingSet("de"));
+
+		for (long threshold : new long[] { 0, 10 }) {
+			List<BindingSet> result = Iterations.asList(
+					new SpillingDistinctIteration(iterate(input), threshold, vf, 10, Integer.MAX_VALUE, 2));
+			assertEquals(502, result.size());
+			assertEquals("\"a\"@EN", result.get(0).getValue("x").toString());
+			// returned as they were first read, with the original case of their language tags
+			assertEquals("\"a\"@De", result.get(501).getValue("x").toString());
+		}
+	}
+
+	@Test
+	public void testClose() throws QueryEvaluationException {
+		CloseableIteration<BindingSet, QueryEvaluationException> input = iterate(createBindingSets(1000, 500));
+		SpillingDistinctIteration distinct = new SpillingDistinctIteration(input, 10);
+		// the first solutions are returned before the table is spilled
+		assertTrue(distinct.hasNext());
+		distinct.next();
+		distinct.close();
+		assertFalse(distinct.hasNext());
+	}
+
+	/**
+	 * Creates binding sets with a given number of distinct values, which repeat in a different order.
+	 */
+	private List<BindingSet> createBindingSets(int size, int distinct) {
+		List<BindingSet> result = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			int value = i < distinct ? i : (int) ((i * 7919L) % distinct);
+			QueryBindingSet bindings = new QueryBindingSet();
+			bindings.addBinding("x", vf.createIRI("urn:x:" + value));
+			if (value % 3 == 0) {
+				bindings.addBinding("y", vf.createLiteral(value % 4));
+			}
+			result.add(bindings);
+		}
+		return result;
+	}
+
+	private BindingSet languageBindingSet(String language) {
+		QueryBindingSet bindings = new QueryBindingSet();
+		bindings.addBinding("x", vf.createLiteral("a", language));
+		return bindings;
+	}
+
+	private static CloseableIteration<BindingSet, QueryEvaluationException> iterate(List<BindingSet> bindingSets) {
+		return new CloseableIteratorIteration<>(bindingSets.iterator());
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.ArrayBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.junit.Test;
+
+public class BindingSetCodecTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		QueryBindingSet first = new QueryBindingSet();
+		first.addBinding("iri", RDF.TYPE);
+		first.addBinding("bnode", vf.createBNode("b1"));
+		first.addBinding("string", vf.createLiteral("été"));
+		first.addBinding("lang", vf.createLiteral("summer", "en"));
+		first.addBinding("typed", vf.createLiteral("1", XMLSchema.INTEGER));
+		first.addBinding("triple", vf.createTriple(RDF.TYPE, RDF.TYPE, vf.createLiteral(true)));
+		// bound to null, must remain unbound
+		first.addBinding("unbound", null);
+
+		QueryBindingSet second = new QueryBindingSet();
+		second.addBinding("iri", RDF.PROPERTY);
+		StringBuilder label = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			label.append("long label ");
+		}
+		second.addBinding("long", vf.createLiteral(label.toString()));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		BindingSetCodec encoder = new BindingSetCodec();
+		encoder.write(first, out);
+		encoder.write(EmptyBindingSet.getInstance(), out);
+		encoder.write(second, out);
+		out.close();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		BindingSetCodec decoder = new BindingSetCodec();
+		BindingSet decoded = decoder.read(in);
+		assertEquals(first, decoded);
+		assertTrue(decoded.hasBinding("unbound"));
+		assertNull(decoded.getValue("unbound"));
+		assertSame(EmptyBindingSet.getInstance(), decoder.read(in));
+		assertEquals(second, decoder.read(in));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testKeys() throws Exception {
+		QueryBindingSet first = new QueryBindingSet();
+		first.addBinding("a", RDF.TYPE);
+		first.addBinding("b", vf.createLiteral("b"));
+
+		ArrayBindingSet second = new ArrayBindingSet(new ArrayBindingSet.Layout(Arrays.asList("c", "b", "a")));
+		second.setBinding("b", vf.createLiteral("b"));
+		second.setBinding("a", RDF.TYPE);
+
+		QueryBindingSet third = new QueryBindingSet(first);
+		third.addBinding("c", null);
+
+		BindingSetCodec codec = new BindingSetCodec();
+		byte[] key = codec.encodeKey(first);
+		// equal binding sets have equal keys, regardless of the order of their bindings
+		assertArrayEquals(key, codec.encodeKey(second));
+		assertFalse(Arrays.equals(key, codec.encodeKey(third)));
+		assertArrayEquals(key, codec.encodeKey(first));
+
+		assertEquals(first, codec.decodeKey(key));
+		assertEquals(third, codec.decodeKey(codec.encodeKey(third)));
+		assertSame(EmptyBindingSet.getInstance(), codec.decodeKey(codec.encodeKey(EmptyBindingSet.getInstance())));
+	}
+
+	@Test
+	public void testLanguageTagKeys() throws Exception {
+		QueryBindingSet lower = new QueryBindingSet();
+		lower.addBinding("a", vf.createLiteral("a", "en"));
+		QueryBindingSet upper = new QueryBindingSet();
+		upper.addBinding("a", vf.createLiteral("a", "EN"));
+
+		BindingSetCodec codec = new BindingSetCodec();
+		// language tags are compared without regard to case
+		assertArrayEquals(codec.encodeKey(lower), codec.encodeKey(upper));
+		assertFalse(Arrays.equals(codec.encodeKey(lower, false), codec.encodeKey(upper, false)));
+
+		Literal decoded = (Literal) codec.decodeKey(codec.encodeKey(upper, false)).getValue("a");
+		assertEquals("EN", decoded.getLanguage().get());
+	}
+}
@@ -143,6 +143,16 @@ public abstract class BinaryTupleOperator extends AbstractQueryModelNode impleme
 		this.algorithmName = iteration.getClass().getSimpleName();
 	}
 
+	/**
+	 * Sets the name of the algorithm that combines the arguments of this operator, e.g. the algorithm that has been
+	 * selected by the query optimizer. The name is the simple class name of the iteration that implements the
+	 * algorithm.
+	 */
+	@Experimental
+	public void setAlgorithm(String algorithmName) {
+		this.algorithmName = algorithmName;
+	}
+
 	@Experimental
 	public String getAlgorithmName() {
 		return algorithmName;
@@ -8,6 +8,7 @@
 
 package org.eclipse.rdf4j.common.concurrent.locks;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.eclipse.rdf4j.common.iteration.Iteration;
@@ -72,6 +73,17 @@ public class LockingIteration<E, X extends Exception> extends IterationWrapper<E
 		return super.next();
 	}
 
+	/**
+	 * Reads the next elements from the underlying Iteration, synchronizing once per batch rather than once per element.
+	 */
+	@Override
+	public synchronized int nextBatch(List<? super E> batch, int max) throws X {
+		if (isClosed()) {
+			return 0;
+		}
+		return super.nextBatch(batch, max);
+	}
+
 	@Override
 	public synchronized void remove() throws X {
 		if (isClosed()) {
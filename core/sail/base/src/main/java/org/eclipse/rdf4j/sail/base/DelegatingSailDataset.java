@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.base;
 
+import java.util.List;
+
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Namespace;
@@ -14,6 +16,7 @@ import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.sail.SailException;
 
 /**
@@ -65,6 +68,29 @@ abstract class DelegatingSailDataset implements SailDataset {
 		return delegate.getStatements(subj, pred, obj, contexts);
 	}
 
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+			LiteralRange range, Resource... contexts) throws SailException {
+		return delegate.getStatementsInRange(subj, pred, range, contexts);
+	}
+
+	@Override
+	public List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj, IRI pred,
+			Value obj, int partitions, Resource... contexts) throws SailException {
+		return delegate.getStatementPartitions(subj, pred, obj, partitions, contexts);
+	}
+
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+			Resource... contexts) throws SailException {
+		return delegate.getStatementsForLookups(lookups, contexts);
+	}
+
+	@Override
+	public boolean supportsBatchLookups() {
+		return delegate.supportsBatchLookups();
+	}
+
 	@Override
 	public CloseableIteration<? extends Triple, SailException> getTriples(Resource subj, IRI pred,
 			Value obj) throws SailException {
@@ -7,12 +7,15 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.base;
 
+import java.util.List;
+
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.sail.SailException;
 
 /**
@@ -67,4 +70,27 @@ class ObservingSailDataset extends DelegatingSailDataset {
 		return super.getStatements(subj, pred, obj, contexts);
 	}
 
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+			LiteralRange range, Resource... contexts) throws SailException {
+		observer.observe(subj, pred, null, contexts);
+		return super.getStatementsInRange(subj, pred, range, contexts);
+	}
+
+	@Override
+	public List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj, IRI pred,
+			Value obj, int partitions, Resource... contexts) throws SailException {
+		observer.observe(subj, pred, obj, contexts);
+		return super.getStatementPartitions(subj, pred, obj, partitions, contexts);
+	}
+
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+			Resource... contexts) throws SailException {
+		for (Value[] lookup : lookups) {
+			observer.observe((Resource) lookup[0], (IRI) lookup[1], lookup[2], contexts);
+		}
+		return super.getStatementsForLookups(lookups, contexts);
+	}
+
 }
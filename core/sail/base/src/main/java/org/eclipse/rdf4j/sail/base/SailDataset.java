@@ -7,14 +7,23 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.base;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.DelayedIteration;
+import org.eclipse.rdf4j.common.iteration.FilterIteration;
+import org.eclipse.rdf4j.common.iteration.Iteration;
+import org.eclipse.rdf4j.common.iteration.UnionIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.sail.SailException;
 
 /**
@@ -76,6 +85,92 @@ public interface SailDataset extends SailClosable {
 	CloseableIteration<? extends Statement, SailException> getStatements(Resource subj, IRI pred, Value obj,
 			Resource... contexts) throws SailException;
 
+	/**
+	 * Gets all statements that have a specific subject and/or predicate and a literal object in a range. The subject
+	 * and predicate may be null to indicate wildcards. The default implementation filters the statements with any
+	 * object, implementations that maintain sorted indexes of literals should look up the range directly.
+	 *
+	 * @param subj     A Resource specifying the subject, or <tt>null</tt> for a wildcard.
+	 * @param pred     A IRI specifying the predicate, or <tt>null</tt> for a wildcard.
+	 * @param range    The range of the literal objects.
+	 * @param contexts The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                 optional. If no contexts are supplied the method operates on all contexts.
+	 * @return An iterator over the relevant statements.
+	 * @throws SailException If the triple source failed to get the statements.
+	 */
+	default CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+			LiteralRange range, Resource... contexts) throws SailException {
+		return new FilterIteration<Statement, SailException>(getStatements(subj, pred, null, contexts)) {
+
+			@Override
+			protected boolean accept(Statement st) {
+				return range.contains(st.getObject());
+			}
+		};
+	}
+
+	/**
+	 * Gets all statements that have a specific subject, predicate and/or object, split into partitions that can be read
+	 * concurrently. Together, the partitions contain the same statements as
+	 * {@link #getStatements(Resource, IRI, Value, Resource...)}. The default implementation returns a single partition.
+	 *
+	 * @param subj       A Resource specifying the subject, or <tt>null</tt> for a wildcard.
+	 * @param pred       A IRI specifying the predicate, or <tt>null</tt> for a wildcard.
+	 * @param obj        A Value specifying the object, or <tt>null</tt> for a wildcard.
+	 * @param partitions The preferred number of partitions, a union of datasets may return more.
+	 * @param contexts   The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                   optional. If no contexts are supplied the method operates on all contexts.
+	 * @return The iterators over the statements of each partition, at least one.
+	 * @throws SailException If the triple source failed to get the statements.
+	 * @since 3.3.0
+	 */
+	default List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj, IRI pred,
+			Value obj, int partitions, Resource... contexts) throws SailException {
+		return Collections.singletonList(getStatements(subj, pred, obj, contexts));
+	}
+
+	/**
+	 * Gets all statements that match any of several lookups, each of which has a specific subject, predicate and/or
+	 * object. The default implementation performs the lookups one after another, implementations that can perform
+	 * lookups more efficiently in the order of their indexes should do so.
+	 *
+	 * @param lookups  The subject, predicate and object of each lookup, any of which may be <tt>null</tt> to indicate a
+	 *                 wildcard. The subjects must be {@link Resource}s and the predicates {@link IRI}s.
+	 * @param contexts The context(s) to get the statements from. Note that this parameter is a vararg and as such is
+	 *                 optional. If no contexts are supplied the method operates on all contexts.
+	 * @return An iterator over the statements of all lookups, in no particular order.
+	 * @throws SailException If the triple source failed to get the statements.
+	 * @since 3.3.0
+	 */
+	default CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+			Resource... contexts) throws SailException {
+		List<DelayedIteration<Statement, SailException>> result = new ArrayList<>(lookups.size());
+		for (Value[] lookup : lookups) {
+			result.add(new DelayedIteration<Statement, SailException>() {
+
+				@Override
+				protected Iteration<? extends Statement, ? extends SailException> createIteration()
+						throws SailException {
+					return getStatements((Resource) lookup[0], (IRI) lookup[1], lookup[2], contexts);
+				}
+			});
+		}
+		return new UnionIteration<>(result);
+	}
+
+	/**
+	 * Checks whether {@link #getStatementsForLookups(List, Resource...)} performs the lookups more efficiently than
+	 * one after another, for example in the order of an index. Queries are only evaluated with bind joins on datasets
+	 * that do.
+	 *
+	 * @return <tt>true</tt> if the lookups are performed together, the default implementation returns
+	 *         <tt>false</tt>.
+	 * @since 3.3.0
+	 */
+	default boolean supportsBatchLookups() {
+		return false;
+	}
+
 	/**
 	 * Gets all RDF* triples that have a specific subject, predicate and/or object. All three parameters may be null to
 	 * indicate wildcards.
@@ -29,6 +29,7 @@ import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleNamespace;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.sail.SailException;
 
 /**
@@ -287,6 +288,49 @@ class SailDatasetImpl implements SailDataset {
 		}
 	}
 
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+			LiteralRange range, Resource... contexts) throws SailException {
+		if (changes.isStatementCleared() || changes.getDeprecatedContexts() != null || changes.hasDeprecated()
+				|| changes.hasApproved()) {
+			// merging the changes is only implemented for the general case
+			return SailDataset.super.getStatementsInRange(subj, pred, range, contexts);
+		}
+		return derivedFrom.getStatementsInRange(subj, pred, range, contexts);
+	}
+
+	@Override
+	public List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj, IRI pred,
+			Value obj, int partitions, Resource... contexts) throws SailException {
+		if (changes.isStatementCleared() || changes.getDeprecatedContexts() != null || changes.hasDeprecated()
+				|| changes.hasApproved()) {
+			// merging the changes is only implemented for the general case
+			return SailDataset.super.getStatementPartitions(subj, pred, obj, partitions, contexts);
+		}
+		return derivedFrom.getStatementPartitions(subj, pred, obj, partitions, contexts);
+	}
+
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+			Resource... contexts) throws SailException {
+		if (changes.isStatementCleared() || changes.getDeprecatedContexts() != null || changes.hasDeprecated()
+				|| changes.hasApproved()) {
+			// merging the changes is only implemented for the general case
+			return SailDataset.super.getStatementsForLookups(lookups, contexts);
+		}
+		return derivedFrom.getStatementsForLookups(lookups, contexts);
+	}
+
+	@Override
+	public boolean supportsBatchLookups() {
+		if (changes.isStatementCleared() || changes.getDeprecatedContexts() != null || changes.hasDeprecated()
+				|| changes.hasApproved()) {
+			// the lookups are performed one after another, see getStatementsForLookups
+			return false;
+		}
+		return derivedFrom.supportsBatchLookups();
+	}
+
 	@Override
 	public CloseableIteration<? extends Triple, SailException> getTriples(Resource subj, IRI pred, Value obj)
 			throws SailException {
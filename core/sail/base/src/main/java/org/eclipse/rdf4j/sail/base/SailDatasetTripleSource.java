@@ -7,6 +7,9 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.base;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.ExceptionConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.Iteration;
@@ -17,6 +20,10 @@ import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.BatchTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRangeTripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.PartitionedTripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.RDFStarTripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.sail.SailException;
@@ -24,7 +31,8 @@ import org.eclipse.rdf4j.sail.SailException;
 /**
  * Implementation of the TripleSource interface using {@link SailDataset}
  */
-class SailDatasetTripleSource implements TripleSource, RDFStarTripleSource {
+class SailDatasetTripleSource implements TripleSource, RDFStarTripleSource, LiteralRangeTripleSource,
+		PartitionedTripleSource, BatchTripleSource {
 
 	private final ValueFactory vf;
 
@@ -50,6 +58,46 @@ class SailDatasetTripleSource implements TripleSource, RDFStarTripleSource {
 		}
 	}
 
+	@Override
+	public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsInRange(Resource subj,
+			IRI pred, LiteralRange range, Resource... contexts) throws QueryEvaluationException {
+		try {
+			return new Eval(dataset.getStatementsInRange(subj, pred, range, contexts));
+		} catch (SailException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	@Override
+	public List<CloseableIteration<? extends Statement, QueryEvaluationException>> getStatementPartitions(
+			Resource subj, IRI pred, Value obj, int partitions, Resource... contexts) throws QueryEvaluationException {
+		try {
+			List<CloseableIteration<? extends Statement, QueryEvaluationException>> result = new ArrayList<>();
+			for (CloseableIteration<? extends Statement, SailException> partition : dataset
+					.getStatementPartitions(subj, pred, obj, partitions, contexts)) {
+				result.add(new Eval(partition));
+			}
+			return result;
+		} catch (SailException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	@Override
+	public CloseableIteration<? extends Statement, QueryEvaluationException> getStatementsForLookups(
+			List<Value[]> lookups, Resource... contexts) throws QueryEvaluationException {
+		try {
+			return new Eval(dataset.getStatementsForLookups(lookups, contexts));
+		} catch (SailException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	@Override
+	public boolean supportsBatchLookups() {
+		return dataset.supportsBatchLookups();
+	}
+
 	@Override
 	public ValueFactory getValueFactory() {
 		return vf;
@@ -245,7 +245,7 @@ public abstract class SailSourceConnection extends NotifyingSailConnectionBase
 
 			logger.trace("Optimized query model:\n{}", tupleExpr);
 
-			iteration = strategy.evaluate(tupleExpr, EmptyBindingSet.getInstance());
+			iteration = strategy.precompile(tupleExpr).evaluate(EmptyBindingSet.getInstance());
 			iteration = interlock(iteration, rdfDataset, branch);
 			allGood = true;
 			return iteration;
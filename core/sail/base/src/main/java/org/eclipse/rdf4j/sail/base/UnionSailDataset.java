@@ -7,7 +7,9 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.base;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.UnionIteration;
@@ -17,6 +19,7 @@ import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.sail.SailException;
 
 /**
@@ -94,6 +97,58 @@ class UnionSailDataset implements SailDataset {
 		return union(result);
 	}
 
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+			LiteralRange range, Resource... contexts) throws SailException {
+		CloseableIteration<? extends Statement, SailException>[] result;
+		result = new CloseableIteration[datasets.length];
+		for (int i = 0; i < datasets.length; i++) {
+			result[i] = datasets[i].getStatementsInRange(subj, pred, range, contexts);
+		}
+		return union(result);
+	}
+
+	@Override
+	public List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj, IRI pred,
+			Value obj, int partitions, Resource... contexts) throws SailException {
+		List<CloseableIteration<? extends Statement, SailException>> result = new ArrayList<>();
+		boolean allGood = false;
+		try {
+			for (SailDataset dataset : datasets) {
+				result.addAll(dataset.getStatementPartitions(subj, pred, obj, partitions, contexts));
+			}
+			allGood = true;
+			return result;
+		} finally {
+			if (!allGood) {
+				for (CloseableIteration<? extends Statement, SailException> iter : result) {
+					iter.close();
+				}
+			}
+		}
+	}
+
+	@Override
+	public CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+			Resource... contexts) throws SailException {
+		CloseableIteration<? extends Statement, SailException>[] result;
+		result = new CloseableIteration[datasets.length];
+		for (int i = 0; i < datasets.length; i++) {
+			result[i] = datasets[i].getStatementsForLookups(lookups, contexts);
+		}
+		return union(result);
+	}
+
+	@Override
+	public boolean supportsBatchLookups() {
+		for (SailDataset dataset : datasets) {
+			if (!dataset.supportsBatchLookups()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public CloseableIteration<? extends Triple, SailException> getTriples(Resource subj, IRI pred, Value obj)
 			throws SailException {
@@ -0,0 +1,943 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.rdf4j.IsolationLevel;
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Triple;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.eclipse.rdf4j.sail.SailConflictException;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.base.BackingSailSource;
+import org.eclipse.rdf4j.sail.base.SailDataset;
+import org.eclipse.rdf4j.sail.base.SailSink;
+import org.eclipse.rdf4j.sail.base.SailSource;
+import org.eclipse.rdf4j.sail.base.SailStore;
+
+/**
+ * An implementation of {@link SailStore} that keeps committed statements in primitive columns instead of in
+ * {@link org.eclipse.rdf4j.sail.memory.model.MemStatement} objects. Values are encoded as <tt>int</tt> IDs by a
+ * {@link ValueDictionary}, and statements are stored as columns of the IDs of their subject, predicate, object and
+ * context, with their snapshot range and flags. Statements are found through four {@link StatementIndex sorted
+ * permutations} (spoc, posc, ospc and cspo), so that a statement takes about 40 bytes instead of the 200 bytes and more
+ * of a {@link MemorySailStore}.
+ * <p>
+ * Like {@link MemorySailStore}, transactions are serialized and readers use snapshots. Each commit publishes an
+ * immutable {@link State} with the new indexes; the statement columns are only appended to, except for the snapshot at
+ * which a statement is deprecated. Deprecated statements are removed by rebuilding the columns and indexes once they
+ * make up a significant part of the store, readers of older states keep using the old columns.
+ */
+class CompactMemorySailStore implements SailStore {
+
+	private static final int SUBJ = 0;
+
+	private static final int PRED = 1;
+
+	private static final int OBJ = 2;
+
+	private static final int CTX = 3;
+
+	private static final int[][] INDEX_FIELDS = { { SUBJ, PRED, OBJ, CTX }, { PRED, OBJ, SUBJ, CTX },
+			{ OBJ, SUBJ, PRED, CTX }, { CTX, SUBJ, PRED, OBJ } };
+
+	private static final byte EXPLICIT_FLAG = 1;
+
+	/**
+	 * The minimum number of deprecated statements before they are removed from the columns.
+	 */
+	private static final int MIN_COMPACTION_SIZE = 1024;
+
+	private final ValueFactory valueFactory = SimpleValueFactory.getInstance();
+
+	private final ValueDictionary dictionary = new ValueDictionary();
+
+	/**
+	 * Store for namespace prefix info.
+	 */
+	private final MemNamespaceStore namespaceStore = new MemNamespaceStore();
+
+	/**
+	 * Lock used to prevent concurrent writes.
+	 */
+	private final ReentrantLock txnLockManager = new ReentrantLock();
+
+	/**
+	 * The latest committed state.
+	 */
+	private volatile State state;
+
+	/*
+	 * The following fields are guarded by txnLockManager.
+	 */
+
+	/**
+	 * The columns that are written to, which may be newer than the columns of the latest state.
+	 */
+	private StatementTable table;
+
+	/**
+	 * The number of statements in {@link #table}, including those that have not been committed yet.
+	 */
+	private int tableSize;
+
+	/**
+	 * The number of deprecated statements in {@link #table}.
+	 */
+	private int deprecatedCount;
+
+	/**
+	 * The snapshot of the active transaction.
+	 */
+	private int nextSnapshot;
+
+	/**
+	 * The statements that have been added since the last flush and that are not indexed yet.
+	 */
+	private final PendingStatements pending = new PendingStatements();
+
+	/**
+	 * The positions of the statements that have been deprecated since the last flush.
+	 */
+	private int[] deprecated = new int[16];
+
+	private int deprecatedSize;
+
+	public CompactMemorySailStore() {
+		table = new StatementTable(1024);
+		StatementIndex[] indexes = new StatementIndex[INDEX_FIELDS.length];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = new StatementIndex(INDEX_FIELDS[i]);
+		}
+		state = new State(table, 0, indexes, 0);
+	}
+
+	@Override
+	public ValueFactory getValueFactory() {
+		return valueFactory;
+	}
+
+	@Override
+	public void close() {
+		txnLockManager.lock();
+		try {
+			table = new StatementTable(1024);
+			tableSize = 0;
+			deprecatedCount = 0;
+			pending.clear();
+			deprecatedSize = 0;
+			StatementIndex[] indexes = new StatementIndex[INDEX_FIELDS.length];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = new StatementIndex(INDEX_FIELDS[i]);
+			}
+			state = new State(table, 0, indexes, state.snapshot);
+			dictionary.clear();
+		} finally {
+			txnLockManager.unlock();
+		}
+	}
+
+	@Override
+	public EvaluationStatistics getEvaluationStatistics() {
+		return new CompactEvaluationStatistics();
+	}
+
+	@Override
+	public SailSource getExplicitSailSource() {
+		return new CompactSailSource(true);
+	}
+
+	@Override
+	public SailSource getInferredSailSource() {
+		return new CompactSailSource(false);
+	}
+
+	/**
+	 * Creates a pattern for the specified values, or returns <tt>null</tt> if no statement can match because one of the
+	 * values is unknown. See {@link MemorySailStore} for the handling of the contexts.
+	 */
+	private Pattern createPattern(Resource subj, IRI pred, Value obj, Boolean explicit, int snapshot,
+			Resource... contexts) {
+		Pattern pattern = new Pattern(explicit, snapshot);
+		pattern.ids[SUBJ] = subj == null ? -1 : dictionary.getID(subj);
+		pattern.ids[PRED] = pred == null ? -1 : dictionary.getID(pred);
+		pattern.ids[OBJ] = obj == null ? -1 : dictionary.getID(obj);
+		if (subj != null && pattern.ids[SUBJ] < 0 || pred != null && pattern.ids[PRED] < 0
+				|| obj != null && pattern.ids[OBJ] < 0) {
+			return null;
+		}
+
+		if (contexts.length == 0) {
+			pattern.ids[CTX] = -1;
+		} else {
+			Set<Integer> contextIDs = new LinkedHashSet<>(2 * contexts.length);
+			for (Resource context : contexts) {
+				int id = dictionary.getID(context);
+				if (id >= 0) {
+					contextIDs.add(id);
+				}
+			}
+			if (contextIDs.isEmpty()) {
+				// no known contexts specified
+				return null;
+			} else if (contextIDs.size() == 1) {
+				pattern.ids[CTX] = contextIDs.iterator().next();
+			} else {
+				pattern.ids[CTX] = -1;
+				pattern.contexts = new HashSet<>(contextIDs);
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Finds the index with the longest prefix of bound components for a pattern.
+	 */
+	private static int selectIndex(Pattern pattern) {
+		int best = 0;
+		int bestLength = -1;
+		for (int i = 0; i < INDEX_FIELDS.length; i++) {
+			int length = pattern.getPrefixLength(INDEX_FIELDS[i]);
+			if (length > bestLength) {
+				best = i;
+				bestLength = length;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Visits the statements of the columns that are written to that match a pattern, including those that have not
+	 * been indexed yet. Must be called by the thread that holds the transaction lock.
+	 */
+	private void forEachMatch(Pattern pattern, PositionVisitor visitor) throws SailException {
+		State current = state;
+		int index = selectIndex(pattern);
+		int[] fields = INDEX_FIELDS[index];
+		int length = pattern.getPrefixLength(fields);
+		if (length == 0) {
+			for (int pos = 0; pos < tableSize; pos++) {
+				if (pattern.matches(table, pos)) {
+					visitor.visit(pos);
+				}
+			}
+			return;
+		}
+
+		StatementIndex.Cursor cursor = current.indexes[index].cursor(pattern.getKey(fields), length,
+				table.components);
+		for (int pos = cursor.next(); pos >= 0; pos = cursor.next()) {
+			if (pattern.matches(table, pos)) {
+				visitor.visit(pos);
+			}
+		}
+		for (int i = 0; i < pending.size; i++) {
+			int pos = pending.positions[i];
+			if (pattern.matches(table, pos)) {
+				visitor.visit(pos);
+			}
+		}
+	}
+
+	private interface PositionVisitor {
+
+		void visit(int position) throws SailException;
+	}
+
+	private Statement createStatement(StatementTable table, int pos) {
+		int[][] columns = table.components;
+		return valueFactory.createStatement((Resource) dictionary.getValue(columns[SUBJ][pos]),
+				(IRI) dictionary.getValue(columns[PRED][pos]), dictionary.getValue(columns[OBJ][pos]),
+				(Resource) dictionary.getValue(columns[CTX][pos]));
+	}
+
+	/*---------------------------------------------*
+	 * Transaction methods, guarded by the txn lock *
+	 *---------------------------------------------*/
+
+	private void addStatement(Resource subj, IRI pred, Value obj, Resource context, boolean explicit) {
+		int s = dictionary.getOrCreateID(subj);
+		int p = dictionary.getOrCreateID(pred);
+		int o = dictionary.getOrCreateID(obj);
+		int c = dictionary.getOrCreateID(context);
+
+		int existing = findLiveStatement(s, p, o, c);
+		if (existing >= 0) {
+			if (explicit && (table.flags[existing] & EXPLICIT_FLAG) == 0) {
+				// Implicit statement is now added explicitly
+				deprecate(existing);
+			} else {
+				// statement already exists
+				return;
+			}
+		}
+
+		if (tableSize == table.since.length) {
+			table = table.grow(2 * tableSize);
+		}
+		int pos = tableSize++;
+		table.components[SUBJ][pos] = s;
+		table.components[PRED][pos] = p;
+		table.components[OBJ][pos] = o;
+		table.components[CTX][pos] = c;
+		table.since[pos] = nextSnapshot;
+		table.till[pos] = Integer.MAX_VALUE;
+		table.flags[pos] = explicit ? EXPLICIT_FLAG : 0;
+		pending.add(pos, table);
+	}
+
+	/**
+	 * Finds the statement with the specified components that has not been deprecated, if any.
+	 */
+	private int findLiveStatement(int s, int p, int o, int c) {
+		int[] key = { s, p, o, c };
+		StatementIndex.Cursor cursor = state.indexes[0].cursor(key, 4, table.components);
+		for (int pos = cursor.next(); pos >= 0; pos = cursor.next()) {
+			if (table.till[pos] == Integer.MAX_VALUE) {
+				return pos;
+			}
+		}
+		return pending.find(key, table);
+	}
+
+	private void deprecate(int pos) {
+		table.till[pos] = nextSnapshot;
+		if (deprecatedSize == deprecated.length) {
+			deprecated = Arrays.copyOf(deprecated, 2 * deprecatedSize);
+		}
+		deprecated[deprecatedSize++] = pos;
+	}
+
+	/**
+	 * Indexes the pending statements and publishes a new state.
+	 */
+	private void publish() {
+		StatementIndex[] indexes = state.indexes;
+		if (pending.size > 0) {
+			indexes = indexes.clone();
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = indexes[i].add(pending.positions, pending.size, table.components);
+			}
+		}
+		deprecatedCount += deprecatedSize;
+		pending.clear();
+		deprecatedSize = 0;
+
+		if (deprecatedCount >= MIN_COMPACTION_SIZE && deprecatedCount >= (tableSize - deprecatedCount) / 4) {
+			compact();
+			indexes = new StatementIndex[INDEX_FIELDS.length];
+			int[] positions = new int[tableSize];
+			for (int i = 0; i < indexes.length; i++) {
+				for (int pos = 0; pos < tableSize; pos++) {
+					positions[pos] = pos;
+				}
+				indexes[i] = StatementIndex.build(INDEX_FIELDS[i], positions.clone(), table.components);
+			}
+		}
+		state = new State(table, tableSize, indexes, nextSnapshot);
+	}
+
+	/**
+	 * Replaces the columns with new ones that only contain the statements that have not been deprecated. Readers of
+	 * older states keep using the old columns.
+	 */
+	private void compact() {
+		StatementTable compacted = new StatementTable(Math.max(1024, tableSize - deprecatedCount));
+		int size = 0;
+		for (int pos = 0; pos < tableSize; pos++) {
+			if (table.till[pos] == Integer.MAX_VALUE) {
+				for (int field = 0; field < 4; field++) {
+					compacted.components[field][size] = table.components[field][pos];
+				}
+				compacted.since[size] = table.since[pos];
+				compacted.till[size] = Integer.MAX_VALUE;
+				compacted.flags[size] = table.flags[pos];
+				size++;
+			}
+		}
+		table = compacted;
+		tableSize = size;
+		deprecatedCount = 0;
+	}
+
+	/**
+	 * Reverts the changes since the last flush, when a transaction is closed without flushing its changes.
+	 */
+	private void revert() {
+		for (int i = 0; i < deprecatedSize; i++) {
+			table.till[deprecated[i]] = Integer.MAX_VALUE;
+		}
+		for (int i = 0; i < pending.size; i++) {
+			// an empty snapshot range makes the statement invisible until it is compacted
+			int pos = pending.positions[i];
+			table.till[pos] = table.since[pos];
+		}
+		deprecatedCount += pending.size;
+		pending.clear();
+		deprecatedSize = 0;
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * The statement columns. Arrays are replaced by larger copies when they are full.
+	 */
+	private static final class StatementTable {
+
+		private final int[][] components;
+
+		private final int[] since;
+
+		private final int[] till;
+
+		private final byte[] flags;
+
+		StatementTable(int capacity) {
+			components = new int[4][capacity];
+			since = new int[capacity];
+			till = new int[capacity];
+			flags = new byte[capacity];
+		}
+
+		private StatementTable(int[][] components, int[] since, int[] till, byte[] flags) {
+			this.components = components;
+			this.since = since;
+			this.till = till;
+			this.flags = flags;
+		}
+
+		StatementTable grow(int capacity) {
+			int[][] newComponents = new int[4][];
+			for (int i = 0; i < 4; i++) {
+				newComponents[i] = Arrays.copyOf(components[i], capacity);
+			}
+			return new StatementTable(newComponents, Arrays.copyOf(since, capacity), Arrays.copyOf(till, capacity),
+					Arrays.copyOf(flags, capacity));
+		}
+	}
+
+	/**
+	 * A committed state of the store, which readers use without locking.
+	 */
+	private static final class State {
+
+		private final StatementTable table;
+
+		/**
+		 * The number of statements in the columns, committed statements all have a lower position.
+		 */
+		private final int size;
+
+		private final StatementIndex[] indexes;
+
+		private final int snapshot;
+
+		State(StatementTable table, int size, StatementIndex[] indexes, int snapshot) {
+			this.table = table;
+			this.size = size;
+			this.indexes = indexes;
+			this.snapshot = snapshot;
+		}
+	}
+
+	/**
+	 * A statement pattern in terms of value IDs, with <tt>-1</tt> for wildcards.
+	 */
+	private static final class Pattern {
+
+		private final int[] ids = new int[4];
+
+		/**
+		 * The IDs of the contexts to match if there is more than one, or <tt>null</tt>.
+		 */
+		private Set<Integer> contexts;
+
+		private final Boolean explicit;
+
+		/**
+		 * The snapshot the statements must be part of, or <tt>-1</tt> to match any statement.
+		 */
+		private final int snapshot;
+
+		Pattern(Boolean explicit, int snapshot) {
+			this.explicit = explicit;
+			this.snapshot = snapshot;
+		}
+
+		int getPrefixLength(int[] fields) {
+			int length = 0;
+			while (length < fields.length && ids[fields[length]] >= 0) {
+				length++;
+			}
+			return length;
+		}
+
+		int[] getKey(int[] fields) {
+			int[] key = new int[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				key[i] = ids[fields[i]];
+			}
+			return key;
+		}
+
+		boolean matches(StatementTable table, int pos) {
+			for (int field = 0; field < 4; field++) {
+				if (ids[field] >= 0 && table.components[field][pos] != ids[field]) {
+					return false;
+				}
+			}
+			if (contexts != null && !contexts.contains(table.components[CTX][pos])) {
+				return false;
+			}
+			if (explicit != null && explicit != ((table.flags[pos] & EXPLICIT_FLAG) != 0)) {
+				return false;
+			}
+			return snapshot < 0 || table.since[pos] <= snapshot && snapshot < table.till[pos];
+		}
+	}
+
+	/**
+	 * The statements that have been added in the active transaction and have not been indexed yet, with a hash table
+	 * to find them by their components.
+	 */
+	private static final class PendingStatements {
+
+		private int[] positions = new int[16];
+
+		private int size;
+
+		/**
+		 * Hash table with positions plus one, <tt>0</tt> marks an empty slot.
+		 */
+		private int[] slots = new int[32];
+
+		void add(int pos, StatementTable table) {
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, 2 * size);
+			}
+			positions[size++] = pos;
+			if (2 * size > slots.length) {
+				slots = new int[2 * slots.length];
+				for (int i = 0; i < size; i++) {
+					insert(positions[i], table);
+				}
+			} else {
+				insert(pos, table);
+			}
+		}
+
+		private void insert(int pos, StatementTable table) {
+			int mask = slots.length - 1;
+			int slot = hash(table, pos) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = pos + 1;
+		}
+
+		/**
+		 * Finds a pending statement with the specified components that has not been deprecated.
+		 */
+		int find(int[] key, StatementTable table) {
+			if (size == 0) {
+				return -1;
+			}
+			int mask = slots.length - 1;
+			int hash = 0;
+			for (int id : key) {
+				hash = 31 * hash + id;
+			}
+			for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+				int pos = slots[slot] - 1;
+				if (table.components[SUBJ][pos] == key[SUBJ] && table.components[PRED][pos] == key[PRED]
+						&& table.components[OBJ][pos] == key[OBJ] && table.components[CTX][pos] == key[CTX]
+						&& table.till[pos] == Integer.MAX_VALUE) {
+					return pos;
+				}
+			}
+			return -1;
+		}
+
+		void clear() {
+			if (size > 0) {
+				size = 0;
+				slots = new int[32];
+			}
+		}
+
+		private static int hash(StatementTable table, int pos) {
+			int hash = 0;
+			for (int field = 0; field < 4; field++) {
+				hash = 31 * hash + table.components[field][pos];
+			}
+			return mix(hash);
+		}
+
+		private static int mix(int hash) {
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	private final class CompactSailSource extends BackingSailSource {
+
+		private final boolean explicit;
+
+		public CompactSailSource(boolean explicit) {
+			this.explicit = explicit;
+		}
+
+		@Override
+		public SailSink sink(IsolationLevel level) throws SailException {
+			return new CompactSailSink(explicit, level.isCompatibleWith(IsolationLevels.SERIALIZABLE));
+		}
+
+		@Override
+		public CompactSailDataset dataset(IsolationLevel level) throws SailException {
+			if (level.isCompatibleWith(IsolationLevels.SNAPSHOT_READ)) {
+				return new CompactSailDataset(explicit, state);
+			} else {
+				return new CompactSailDataset(explicit, null);
+			}
+		}
+	}
+
+	private final class CompactSailSink implements SailSink {
+
+		private final boolean explicit;
+
+		private final int serializable;
+
+		private Set<StatementPattern> observations;
+
+		private boolean txnLock;
+
+		public CompactSailSink(boolean explicit, boolean serializable) {
+			this.explicit = explicit;
+			if (serializable) {
+				this.serializable = state.snapshot;
+			} else {
+				this.serializable = Integer.MAX_VALUE;
+			}
+		}
+
+		@Override
+		public synchronized void prepare() throws SailException {
+			acquireExclusiveTransactionLock();
+			if (observations != null) {
+				for (StatementPattern p : observations) {
+					Resource subj = (Resource) p.getSubjectVar().getValue();
+					IRI pred = (IRI) p.getPredicateVar().getValue();
+					Value obj = p.getObjectVar().getValue();
+					Var ctxVar = p.getContextVar();
+					Resource[] contexts;
+					if (ctxVar == null) {
+						contexts = new Resource[0];
+					} else {
+						contexts = new Resource[] { (Resource) ctxVar.getValue() };
+					}
+					Pattern pattern = createPattern(subj, pred, obj, null, -1, contexts);
+					if (pattern != null) {
+						forEachMatch(pattern, pos -> {
+							int since = table.since[pos];
+							int till = table.till[pos];
+							if (serializable < since && since < nextSnapshot
+									|| serializable < till && till < nextSnapshot) {
+								throw new SailConflictException("Observed State has Changed");
+							}
+						});
+					}
+				}
+			}
+		}
+
+		@Override
+		public synchronized void flush() throws SailException {
+			if (txnLock) {
+				publish();
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (txnLock) {
+				txnLock = false;
+				try {
+					if (txnLockManager.getHoldCount() == 1) {
+						revert();
+					}
+				} finally {
+					txnLockManager.unlock();
+				}
+			}
+		}
+
+		@Override
+		public synchronized void setNamespace(String prefix, String name) throws SailException {
+			acquireExclusiveTransactionLock();
+			namespaceStore.setNamespace(prefix, name);
+		}
+
+		@Override
+		public synchronized void removeNamespace(String prefix) throws SailException {
+			acquireExclusiveTransactionLock();
+			namespaceStore.removeNamespace(prefix);
+		}
+
+		@Override
+		public synchronized void clearNamespaces() throws SailException {
+			acquireExclusiveTransactionLock();
+			namespaceStore.clear();
+		}
+
+		@Override
+		public synchronized void observe(Resource subj, IRI pred, Value obj, Resource... contexts)
+				throws SailException {
+			if (observations == null) {
+				observations = new HashSet<>();
+			}
+			if (contexts == null) {
+				observations.add(new StatementPattern(new Var("s", subj), new Var("p", pred), new Var("o", obj),
+						new Var("g", null)));
+			} else if (contexts.length == 0) {
+				observations.add(new StatementPattern(new Var("s", subj), new Var("p", pred), new Var("o", obj)));
+			} else {
+				for (Resource ctx : contexts) {
+					observations.add(new StatementPattern(new Var("s", subj), new Var("p", pred), new Var("o", obj),
+							new Var("g", ctx)));
+				}
+			}
+		}
+
+		@Override
+		public synchronized void clear(Resource... contexts) throws SailException {
+			deprecateByQuery(null, null, null, contexts);
+		}
+
+		@Override
+		public synchronized void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
+			acquireExclusiveTransactionLock();
+			addStatement(subj, pred, obj, ctx, explicit);
+		}
+
+		@Override
+		public synchronized void deprecate(Statement statement) throws SailException {
+			deprecateByQuery(statement.getSubject(), statement.getPredicate(), statement.getObject(),
+					new Resource[] { statement.getContext() });
+		}
+
+		@Override
+		public synchronized boolean deprecateByQuery(Resource subj, IRI pred, Value obj, Resource[] contexts) {
+			acquireExclusiveTransactionLock();
+			Pattern pattern = createPattern(subj, pred, obj, explicit, nextSnapshot, contexts);
+			if (pattern == null) {
+				return false;
+			}
+			List<Integer> matches = new ArrayList<>();
+			forEachMatch(pattern, matches::add);
+			for (int pos : matches) {
+				CompactMemorySailStore.this.deprecate(pos);
+			}
+			return !matches.isEmpty();
+		}
+
+		private void acquireExclusiveTransactionLock() throws SailException {
+			if (!txnLock) {
+				txnLockManager.lock();
+				if (txnLockManager.getHoldCount() == 1) {
+					nextSnapshot = state.snapshot + 1;
+				}
+				txnLock = true;
+			}
+		}
+	}
+
+	private final class CompactSailDataset implements SailDataset {
+
+		private final boolean explicit;
+
+		/**
+		 * The state to read, or <tt>null</tt> to read the latest state.
+		 */
+		private final State snapshot;
+
+		public CompactSailDataset(boolean explicit, State snapshot) {
+			this.explicit = explicit;
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public void close() {
+			// the state is immutable
+		}
+
+		@Override
+		public String getNamespace(String prefix) throws SailException {
+			return namespaceStore.getNamespace(prefix);
+		}
+
+		@Override
+		public CloseableIteration<? extends Namespace, SailException> getNamespaces() {
+			return new CloseableIteratorIteration<Namespace, SailException>(namespaceStore.iterator());
+		}
+
+		@Override
+		public CloseableIteration<? extends Resource, SailException> getContextIDs() throws SailException {
+			State current = getState();
+			StatementIndex contextIndex = current.indexes[INDEX_FIELDS.length - 1];
+			int[] ids = contextIndex.getFirstComponentValues(pos -> isVisible(current, pos),
+					current.table.components);
+			List<Resource> contextIDs = new ArrayList<>(ids.length);
+			for (int id : ids) {
+				if (id != 0) {
+					contextIDs.add((Resource) dictionary.getValue(id));
+				}
+			}
+			return new CloseableIteratorIteration<>(contextIDs.iterator());
+		}
+
+		@Override
+		public CloseableIteration<? extends Statement, SailException> getStatements(Resource subj, IRI pred, Value obj,
+				Resource... contexts) throws SailException {
+			State current = getState();
+			Pattern pattern = createPattern(subj, pred, obj, explicit, current.snapshot, contexts);
+			if (pattern == null) {
+				return new EmptyIteration<>();
+			}
+
+			int index = selectIndex(pattern);
+			int[] fields = INDEX_FIELDS[index];
+			int length = pattern.getPrefixLength(fields);
+			StatementIndex.Cursor cursor = length == 0 ? null
+					: current.indexes[index].cursor(pattern.getKey(fields), length, current.table.components);
+
+			return new LookAheadIteration<Statement, SailException>() {
+
+				private int scanned;
+
+				@Override
+				protected Statement getNextElement() {
+					int pos;
+					do {
+						if (cursor != null) {
+							pos = cursor.next();
+						} else {
+							pos = scanned < current.size ? scanned++ : -1;
+						}
+					} while (pos >= 0 && !pattern.matches(current.table, pos));
+					return pos < 0 ? null : createStatement(current.table, pos);
+				}
+			};
+		}
+
+		@Override
+		public CloseableIteration<? extends Triple, SailException> getTriples(Resource subj, IRI pred, Value obj)
+				throws SailException {
+			State current = getState();
+			Set<Triple> triples = new LinkedHashSet<>();
+			int[][] columns = current.table.components;
+			for (int pos = 0; pos < current.size; pos++) {
+				if (isVisible(current, pos)) {
+					addTriple(dictionary.getValue(columns[SUBJ][pos]), subj, pred, obj, triples);
+					addTriple(dictionary.getValue(columns[OBJ][pos]), subj, pred, obj, triples);
+				}
+			}
+			return new CloseableIteratorIteration<>(triples.iterator());
+		}
+
+		private void addTriple(Value value, Resource subj, IRI pred, Value obj, Set<Triple> triples) {
+			if (value instanceof Triple) {
+				Triple triple = (Triple) value;
+				if ((subj == null || subj.equals(triple.getSubject()))
+						&& (pred == null || pred.equals(triple.getPredicate()))
+						&& (obj == null || obj.equals(triple.getObject()))) {
+					triples.add(triple);
+				}
+			}
+		}
+
+		private boolean isVisible(State current, int pos) {
+			StatementTable table = current.table;
+			return explicit == ((table.flags[pos] & EXPLICIT_FLAG) != 0) && table.since[pos] <= current.snapshot
+					&& current.snapshot < table.till[pos];
+		}
+
+		private State getState() {
+			return snapshot != null ? snapshot : state;
+		}
+	}
+
+	/**
+	 * Estimates cardinalities from the sizes of the index ranges, including deprecated statements.
+	 */
+	private class CompactEvaluationStatistics extends EvaluationStatistics {
+
+		@Override
+		protected CardinalityCalculator createCardinalityCalculator() {
+			return new CompactCardinalityCalculator();
+		}
+
+		protected class CompactCardinalityCalculator extends CardinalityCalculator {
+
+			@Override
+			public double getCardinality(StatementPattern sp) {
+				Value subj = getConstantValue(sp.getSubjectVar());
+				Value pred = getConstantValue(sp.getPredicateVar());
+				Value obj = getConstantValue(sp.getObjectVar());
+				Value context = getConstantValue(sp.getContextVar());
+				// constants of the wrong type can happen when a previous optimizer has inlined a comparison operator
+				Pattern pattern = createPattern(subj instanceof Resource ? (Resource) subj : null,
+						pred instanceof IRI ? (IRI) pred : null, obj, null, -1,
+						context instanceof Resource ? new Resource[] { (Resource) context } : new Resource[0]);
+				if (pattern == null) {
+					// non-existent subject, predicate, object or context
+					return 0.0;
+				}
+
+				State current = state;
+				int index = selectIndex(pattern);
+				int[] fields = INDEX_FIELDS[index];
+				int length = pattern.getPrefixLength(fields);
+				if (length == 0) {
+					return current.size;
+				}
+				return current.indexes[index].count(pattern.getKey(fields), length, current.table.components);
+			}
+
+			protected Value getConstantValue(Var var) {
+				if (var != null) {
+					return var.getValue();
+				}
+
+				return null;
+			}
+		}
+	}
+}
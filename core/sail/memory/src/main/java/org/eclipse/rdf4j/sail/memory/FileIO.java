@@ -7,23 +7,42 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
+import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.io.IOUtil;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.model.BNode;
@@ -31,19 +50,49 @@ import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
-import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.util.Literals;
 import org.eclipse.rdf4j.sail.SailException;
-import org.eclipse.rdf4j.sail.base.SailDataset;
 import org.eclipse.rdf4j.sail.base.SailSink;
 import org.eclipse.rdf4j.sail.memory.model.MemIRI;
 import org.eclipse.rdf4j.sail.memory.model.MemResource;
+import org.eclipse.rdf4j.sail.memory.model.MemStatement;
 import org.eclipse.rdf4j.sail.memory.model.MemValue;
+import org.eclipse.rdf4j.sail.memory.model.MemValueFactory;
 
 /**
  * Functionality to read and write MemoryStore to/from a file.
+ * <p>
+ * The contents of the store are written to a <em>checkpoint</em> file, which is complemented by an append-only
+ * <em>delta</em> file with the changes since the checkpoint was written. Both files consist of a header followed by a
+ * sequence of Deflate-compressed blocks, so that the blocks can be decompressed and decoded in parallel when the store
+ * is restored:
+ *
+ * <pre>
+ *  byte 1-4        : the magic number, "BMSF" for checkpoints or "BMSD" for deltas
+ *  byte 5          : the format version
+ *  byte 6-13       : the checkpoint ID, a delta file only applies to the checkpoint with the same ID
+ *  byte 14-        : a sequence of blocks, each one consisting of:
+ *    byte 1        : the block type
+ *    byte 2-5      : the uncompressed length of the block data
+ *    byte 6-9      : the compressed length of the block data
+ *    byte 10-13    : the CRC-32 checksum of the compressed block data
+ *    byte 14-      : the compressed block data
+ *  byte            : the EOF marker, only in checkpoint files
+ * </pre>
+ *
+ * Values are written once in a value dictionary and statements are written as columns of dictionary IDs for subjects,
+ * predicates, objects and contexts, plus a column with flags. A checkpoint contains a namespace block followed by
+ * statement blocks, each one preceded by a value block with the values that are introduced by the statement block. Each
+ * delta block contains the namespaces (if they were changed), a local value dictionary and the removed and added
+ * statements of a synchronization.
+ * <p>
+ * Files in the version 1 and 2 formats, which write every statement and value inline in a single GZIP stream, can
+ * still be read.
  *
  * @author Arjohn Kampman
  */
@@ -56,11 +105,27 @@ class FileIO {
 	/** Magic number for Binary Memory Store Files */
 	private static final byte[] MAGIC_NUMBER = new byte[] { 'B', 'M', 'S', 'F' };
 
+	/** Magic number for Binary Memory Store Delta files */
+	private static final byte[] DELTA_MAGIC_NUMBER = new byte[] { 'B', 'M', 'S', 'D' };
+
 	/** The version number of the current format. */
 	// Version 1: initial version
 	// Version 2: don't use read/writeUTF() to remove 64k limit on strings,
 	// removed dummy "up-to-date status" boolean for namespace records
-	private static final int BMSF_VERSION = 2;
+	// Version 3: compressed blocks with a value dictionary and statement columns
+	private static final int BMSF_VERSION = 3;
+
+	/** The version number of the current delta format. */
+	private static final int DELTA_VERSION = 1;
+
+	/** The length of the header of checkpoint and delta files. */
+	private static final int HEADER_LENGTH = 13;
+
+	/** The length of the header of a block. */
+	private static final int BLOCK_HEADER_LENGTH = 13;
+
+	/** The maximum number of statements in a statement block of a checkpoint. */
+	private static final int STATEMENT_BLOCK_SIZE = 64 * 1024;
 
 	/* RECORD TYPES */
 	public static final int NAMESPACE_MARKER = 1;
@@ -83,35 +148,79 @@ class FileIO {
 
 	public static final int DATATYPE_LITERAL_MARKER = 10;
 
+	public static final int RDFSTAR_TRIPLE_MARKER = 11;
+
 	public static final int EOF_MARKER = 127;
 
+	/* BLOCK TYPES */
+	private static final int NAMESPACE_BLOCK = 1;
+
+	private static final int VALUE_BLOCK = 2;
+
+	private static final int STATEMENT_BLOCK = 3;
+
+	private static final int DELTA_BLOCK = 4;
+
+	/* STATEMENT FLAGS */
+	private static final byte EXPLICIT_FLAG = 1;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
 
-	private final ValueFactory vf;
+	private final MemorySailStore store;
 
-	private final CharsetEncoder charsetEncoder = StandardCharsets.UTF_8.newEncoder();
+	private final MemValueFactory vf;
 
 	private final CharsetDecoder charsetDecoder = StandardCharsets.UTF_8.newDecoder();
 
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
 	private int formatVersion;
 
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
-	public FileIO(ValueFactory vf) {
-		this.vf = vf;
+	public FileIO(MemorySailStore store) {
+		this.store = store;
+		this.vf = store.getValueFactory();
 	}
 
 	/*---------*
 	 * Methods *
 	 *---------*/
 
-	public synchronized void write(SailDataset explicit, SailDataset inferred, File syncFile, File dataFile)
-			throws IOException, SailException {
-		write(explicit, inferred, syncFile);
+	/**
+	 * Writes a checkpoint with the namespaces and the statements of the specified snapshot to the sync file and then
+	 * renames it to the data file.
+	 */
+	public synchronized void writeCheckpoint(int snapshot, Collection<? extends Namespace> namespaces,
+			long checkpointID, File syncFile, File dataFile) throws IOException, SailException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(syncFile.toPath())))) {
+			writeHeader(MAGIC_NUMBER, BMSF_VERSION, checkpointID, out);
+
+			BlockBuffer buffer = new BlockBuffer();
+			writeNamespaces(namespaces, buffer.data);
+			writeBlock(NAMESPACE_BLOCK, buffer, out);
+
+			ValueDictionary dictionary = new ValueDictionary();
+			StatementColumns columns = new StatementColumns(STATEMENT_BLOCK_SIZE);
+			try (CloseableIteration<MemStatement, SailException> iter = store.getSnapshotDifference(snapshot, -1)) {
+				while (iter.hasNext()) {
+					columns.add(iter.next(), dictionary);
+					if (columns.size == STATEMENT_BLOCK_SIZE) {
+						writeStatementBlock(columns, dictionary, buffer, out);
+					}
+				}
+			}
+			if (columns.size > 0) {
+				writeStatementBlock(columns, dictionary, buffer, out);
+			}
+
+			out.writeByte(EOF_MARKER);
+		}
 
 		// prefer atomic renameTo operations
 		boolean renamed = syncFile.renameTo(dataFile);
@@ -131,25 +240,80 @@ class FileIO {
 		}
 	}
 
-	private void write(SailDataset explicit, SailDataset inferred, File dataFile) throws IOException, SailException {
-		try (OutputStream out = Files.newOutputStream(dataFile.toPath())) {
-			// Write header
-			out.write(MAGIC_NUMBER);
-			out.write(BMSF_VERSION);
-			out.flush();
-			// The rest of the data is GZIP-compressed
-			try (DataOutputStream dataOut = new DataOutputStream(new GZIPOutputStream(out));) {
-				writeNamespaces(explicit, dataOut);
-				writeStatements(explicit, inferred, dataOut);
+	private void writeStatementBlock(StatementColumns columns, ValueDictionary dictionary, BlockBuffer buffer,
+			DataOutputStream out) throws IOException {
+		if (!dictionary.pending.isEmpty()) {
+			dictionary.writePending(buffer.data);
+			writeBlock(VALUE_BLOCK, buffer, out);
+		}
+		columns.write(buffer.data);
+		writeBlock(STATEMENT_BLOCK, buffer, out);
+		columns.clear();
+	}
+
+	/**
+	 * Creates a new, empty delta file for the specified checkpoint, replacing any existing delta file.
+	 */
+	public synchronized void createDeltaFile(File deltaFile, long checkpointID) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(deltaFile))) {
+			writeHeader(DELTA_MAGIC_NUMBER, DELTA_VERSION, checkpointID, out);
+		}
+	}
 
-				dataOut.writeByte(EOF_MARKER);
+	/**
+	 * Appends the differences between two snapshots to the delta file.
+	 *
+	 * @param baseSnapshot The snapshot that has already been persisted.
+	 * @param snapshot     The snapshot to persist.
+	 * @param namespaces   The namespaces, or <tt>null</tt> if they have not changed since the base snapshot.
+	 * @return The number of removed statements, or <tt>-1</tt> if nothing needed to be written.
+	 */
+	public synchronized int appendDelta(File deltaFile, int baseSnapshot, int snapshot,
+			Collection<? extends Namespace> namespaces) throws IOException, SailException {
+		ValueDictionary dictionary = new ValueDictionary();
+		StatementColumns removed = new StatementColumns(64);
+		StatementColumns added = new StatementColumns(64);
+		try (CloseableIteration<MemStatement, SailException> iter = store.getSnapshotDifference(baseSnapshot,
+				snapshot)) {
+			while (iter.hasNext()) {
+				removed.add(iter.next(), dictionary);
+			}
+		}
+		try (CloseableIteration<MemStatement, SailException> iter = store.getSnapshotDifference(snapshot,
+				baseSnapshot)) {
+			while (iter.hasNext()) {
+				added.add(iter.next(), dictionary);
 			}
 		}
+
+		if (namespaces == null && removed.size == 0 && added.size == 0) {
+			return -1;
+		}
+
+		BlockBuffer buffer = new BlockBuffer();
+		buffer.data.writeBoolean(namespaces != null);
+		if (namespaces != null) {
+			writeNamespaces(namespaces, buffer.data);
+		}
+		dictionary.writePending(buffer.data);
+		removed.write(buffer.data);
+		added.write(buffer.data);
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(deltaFile, true)))) {
+			writeBlock(DELTA_BLOCK, buffer, out);
+		}
+		return removed.size;
 	}
 
-	public synchronized void read(File dataFile, SailSink explicit, SailSink inferred)
-			throws IOException, SailException {
-		try (InputStream in = Files.newInputStream(dataFile.toPath())) {
+	/**
+	 * Restores the contents of a data file into the (empty) store.
+	 *
+	 * @return The ID of the checkpoint, or <tt>0</tt> if the data file uses an older format and needs to be rewritten
+	 *         before deltas can be appended.
+	 */
+	public synchronized long read(File dataFile) throws IOException, SailException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(dataFile.toPath()))) {
 			byte[] magicNumber = IOUtil.readBytes(in, MAGIC_NUMBER.length);
 			if (!Arrays.equals(magicNumber, MAGIC_NUMBER)) {
 				throw new IOException("File is not a binary MemoryStore file");
@@ -160,86 +324,336 @@ class FileIO {
 				throw new IOException("Incompatible format version: " + formatVersion);
 			}
 
-			// The rest of the data is GZIP-compressed
-			try (DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));) {
-				int recordTypeMarker;
-				while ((recordTypeMarker = dataIn.readByte()) != EOF_MARKER) {
-					switch (recordTypeMarker) {
-					case NAMESPACE_MARKER:
-						readNamespace(dataIn, explicit);
-						break;
-					case EXPL_TRIPLE_MARKER:
-						readStatement(false, true, dataIn, explicit, inferred);
-						break;
-					case EXPL_QUAD_MARKER:
-						readStatement(true, true, dataIn, explicit, inferred);
-						break;
-					case INF_TRIPLE_MARKER:
-						readStatement(false, false, dataIn, explicit, inferred);
-						break;
-					case INF_QUAD_MARKER:
-						readStatement(true, false, dataIn, explicit, inferred);
-						break;
-					default:
-						throw new IOException("Invalid record type marker: " + recordTypeMarker);
-					}
-				}
+			if (formatVersion < 3) {
+				readLegacy(in);
+				return 0;
 			}
+
+			DataInputStream dataIn = new DataInputStream(in);
+			long checkpointID = dataIn.readLong();
+			Checkpoint checkpoint = new Checkpoint();
+			readBlocks(dataIn, false, checkpoint);
+			return checkpointID;
 		}
 	}
 
-	private void writeNamespaces(SailDataset store, DataOutputStream dataOut) throws IOException, SailException {
-		try (CloseableIteration<? extends Namespace, SailException> iter = store.getNamespaces();) {
-			while (iter.hasNext()) {
-				Namespace ns = iter.next();
-				dataOut.writeByte(NAMESPACE_MARKER);
-				writeString(ns.getPrefix(), dataOut);
-				writeString(ns.getName(), dataOut);
+	/**
+	 * Replays the changes of a delta file onto the store, if the delta file belongs to the specified checkpoint. A
+	 * trailing block that has not been written completely is removed from the delta file.
+	 *
+	 * @return <tt>true</tt> if the delta file belongs to the checkpoint and has been replayed.
+	 */
+	public synchronized boolean readDeltas(File deltaFile, long checkpointID) throws IOException, SailException {
+		long validLength;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(deltaFile.toPath())))) {
+			byte[] magicNumber = new byte[DELTA_MAGIC_NUMBER.length];
+			in.readFully(magicNumber);
+			if (!Arrays.equals(magicNumber, DELTA_MAGIC_NUMBER) || in.read() != DELTA_VERSION
+					|| in.readLong() != checkpointID) {
+				return false;
+			}
+
+			SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+			SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+			try {
+				validLength = HEADER_LENGTH + readBlocks(in, true, new DeltaReplay(explicit, inferred));
+			} finally {
+				explicit.prepare();
+				explicit.flush();
+				explicit.close();
+				inferred.prepare();
+				inferred.flush();
+				inferred.close();
+			}
+		} catch (EOFException e) {
+			// incomplete header
+			return false;
+		}
+
+		if (validLength < deltaFile.length()) {
+			try (RandomAccessFile raf = new RandomAccessFile(deltaFile, "rw")) {
+				raf.setLength(validLength);
 			}
 		}
+		return true;
 	}
 
-	private void readNamespace(DataInputStream dataIn, SailSink store) throws IOException, SailException {
-		String prefix = readString(dataIn);
-		String name = readString(dataIn);
+	/*------------------------*
+	 * Block encoding methods *
+	 *------------------------*/
 
-		if (formatVersion <= 1) {
-			// the up-to-date status is no longer relevant
-			dataIn.readBoolean();
+	private static void writeHeader(byte[] magicNumber, int version, long checkpointID, DataOutputStream out)
+			throws IOException {
+		out.write(magicNumber);
+		out.write(version);
+		out.writeLong(checkpointID);
+	}
+
+	private void writeBlock(int type, BlockBuffer buffer, DataOutputStream out) throws IOException {
+		buffer.data.flush();
+		int length = buffer.bytes.size();
+
+		deflater.reset();
+		deflater.setInput(buffer.bytes.getBuffer(), 0, length);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 2));
+		byte[] chunk = new byte[8192];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(chunk);
+			compressed.write(chunk, 0, n);
 		}
+		byte[] data = compressed.toByteArray();
 
-		store.setNamespace(prefix, name);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		out.writeByte(type);
+		out.writeInt(length);
+		out.writeInt(data.length);
+		out.writeInt((int) crc.getValue());
+		out.write(data);
+
+		buffer.bytes.reset();
 	}
 
-	private void writeStatements(final SailDataset explicit, SailDataset inferred, DataOutputStream dataOut)
+	/**
+	 * Reads the blocks from the supplied stream, decompresses and decodes them in parallel and passes the decoded
+	 * blocks to the consumer in the order in which they were written.
+	 *
+	 * @param tolerateIncomplete Whether to stop at a block that has not been written completely instead of failing.
+	 * @return The number of bytes of the blocks that have been read completely.
+	 */
+	private long readBlocks(DataInputStream in, boolean tolerateIncomplete, BlockConsumer consumer)
 			throws IOException, SailException {
-		// write explicit only statements
-		writeStatement(explicit.getStatements(null, null, null), EXPL_TRIPLE_MARKER, EXPL_QUAD_MARKER, dataOut);
-		// write inferred only statements
-		writeStatement(inferred.getStatements(null, null, null), INF_TRIPLE_MARKER, INF_QUAD_MARKER, dataOut);
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "MemoryStore file reader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			// limits the number of decoded blocks that are kept in memory
+			int window = 2 * threads;
+			ArrayDeque<Future<Object>> decoded = new ArrayDeque<>(window + 1);
+			long length = 0;
+			while (true) {
+				Block block;
+				try {
+					block = readBlock(in);
+				} catch (IOException e) {
+					if (!tolerateIncomplete) {
+						throw e;
+					}
+					block = null;
+				}
+				if (block == null) {
+					break;
+				}
+				length += BLOCK_HEADER_LENGTH + block.data.length;
+
+				Block toDecode = block;
+				decoded.add(executor.submit(() -> decode(toDecode)));
+				if (decoded.size() > window) {
+					consumer.accept(getDecoded(decoded.poll()));
+				}
+			}
+			while (!decoded.isEmpty()) {
+				consumer.accept(getDecoded(decoded.poll()));
+			}
+			return length;
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 
-	public void writeStatement(CloseableIteration<? extends Statement, SailException> stIter, int tripleMarker,
-			int quadMarker, DataOutputStream dataOut) throws IOException, SailException {
+	/**
+	 * Reads the next block.
+	 *
+	 * @return The block, or <tt>null</tt> if the end of the file has been reached.
+	 */
+	private static Block readBlock(DataInputStream in) throws IOException {
+		int type = in.read();
+		if (type == -1 || type == EOF_MARKER) {
+			return null;
+		}
+
+		int length = in.readInt();
+		byte[] data = new byte[in.readInt()];
+		int checksum = in.readInt();
+		in.readFully(data);
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		if ((int) crc.getValue() != checksum) {
+			throw new IOException("Checksum mismatch in block of type " + type);
+		}
+		return new Block(type, length, data);
+	}
+
+	private static Object getDecoded(Future<Object> future) throws IOException {
 		try {
-			while (stIter.hasNext()) {
-				Statement st = stIter.next();
-				Resource context = st.getContext();
-				if (context == null) {
-					dataOut.writeByte(tripleMarker);
-				} else {
-					dataOut.writeByte(quadMarker);
-				}
-				writeValue(st.getSubject(), dataOut);
-				writeValue(st.getPredicate(), dataOut);
-				writeValue(st.getObject(), dataOut);
-				if (context != null) {
-					writeValue(context, dataOut);
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Decompresses and decodes a block. This is executed in parallel for multiple blocks, so it only uses thread-safe
+	 * state.
+	 */
+	private static Object decode(Block block) throws IOException {
+		Inflater inflater = new Inflater();
+		byte[] bytes = new byte[block.length];
+		try {
+			inflater.setInput(block.data);
+			int length = 0;
+			while (length < bytes.length && !inflater.finished() && !inflater.needsInput()) {
+				length += inflater.inflate(bytes, length, bytes.length - length);
+			}
+			if (length != bytes.length) {
+				throw new IOException("Block of type " + block.type + " is shorter than expected");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+		switch (block.type) {
+		case NAMESPACE_BLOCK:
+			return readNamespaces(data);
+		case VALUE_BLOCK:
+			return ValueBlock.read(data);
+		case STATEMENT_BLOCK:
+			return StatementColumns.read(data);
+		case DELTA_BLOCK:
+			DeltaBlock delta = new DeltaBlock();
+			if (data.readBoolean()) {
+				delta.namespaces = readNamespaces(data);
+			}
+			delta.values = ValueBlock.read(data);
+			delta.removed = StatementColumns.read(data);
+			delta.added = StatementColumns.read(data);
+			return delta;
+		default:
+			throw new IOException("Invalid block type: " + block.type);
+		}
+	}
+
+	private static void writeNamespaces(Collection<? extends Namespace> namespaces, DataOutputStream dataOut)
+			throws IOException {
+		dataOut.writeInt(namespaces.size());
+		for (Namespace ns : namespaces) {
+			writeUTF8(ns.getPrefix(), dataOut);
+			writeUTF8(ns.getName(), dataOut);
+		}
+	}
+
+	private static List<Namespace> readNamespaces(DataInputStream dataIn) throws IOException {
+		int count = dataIn.readInt();
+		List<Namespace> namespaces = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String prefix = readUTF8(dataIn);
+			namespaces.add(new SimpleNamespace(prefix, readUTF8(dataIn)));
+		}
+		return namespaces;
+	}
+
+	private static void writeUTF8(String s, DataOutputStream dataOut) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		dataOut.writeInt(bytes.length);
+		dataOut.write(bytes);
+	}
+
+	private static String readUTF8(DataInputStream dataIn) throws IOException {
+		byte[] bytes = new byte[dataIn.readInt()];
+		dataIn.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Adds the values of a decoded value block to a dictionary, resolving them to MemValues.
+	 */
+	private MemValue[] addValues(ValueBlock block, MemValue[] dictionary) {
+		int end = block.firstID + block.values.length;
+		if (end > dictionary.length) {
+			dictionary = Arrays.copyOf(dictionary, Math.max(end, 2 * dictionary.length));
+		}
+		for (int i = 0; i < block.values.length; i++) {
+			Value value = block.values[i];
+			if (value == null) {
+				// RDF-star triple, its components precede it in the dictionary
+				value = vf.createTriple((Resource) dictionary[block.triples[3 * i]],
+						(IRI) dictionary[block.triples[3 * i + 1]], dictionary[block.triples[3 * i + 2]]);
+			}
+			dictionary[block.firstID + i] = vf.getOrCreateMemValue(value);
+		}
+		return dictionary;
+	}
+
+	/*------------------------*
+	 * Legacy format (v1, v2) *
+	 *------------------------*/
+
+	private void readLegacy(InputStream in) throws IOException, SailException {
+		SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+		SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+		// The rest of the data is GZIP-compressed
+		try (DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));) {
+			int recordTypeMarker;
+			while ((recordTypeMarker = dataIn.readByte()) != EOF_MARKER) {
+				switch (recordTypeMarker) {
+				case NAMESPACE_MARKER:
+					readNamespace(dataIn, explicit);
+					break;
+				case EXPL_TRIPLE_MARKER:
+					readStatement(false, true, dataIn, explicit, inferred);
+					break;
+				case EXPL_QUAD_MARKER:
+					readStatement(true, true, dataIn, explicit, inferred);
+					break;
+				case INF_TRIPLE_MARKER:
+					readStatement(false, false, dataIn, explicit, inferred);
+					break;
+				case INF_QUAD_MARKER:
+					readStatement(true, false, dataIn, explicit, inferred);
+					break;
+				default:
+					throw new IOException("Invalid record type marker: " + recordTypeMarker);
 				}
 			}
 		} finally {
-			stIter.close();
+			explicit.prepare();
+			explicit.flush();
+			explicit.close();
+			inferred.prepare();
+			inferred.flush();
+			inferred.close();
+		}
+	}
+
+	private void readNamespace(DataInputStream dataIn, SailSink store) throws IOException, SailException {
+		String prefix = readString(dataIn);
+		String name = readString(dataIn);
+
+		if (formatVersion <= 1) {
+			// the up-to-date status is no longer relevant
+			dataIn.readBoolean();
 		}
+
+		store.setNamespace(prefix, name);
 	}
 
 	private void readStatement(boolean hasContext, boolean isExplicit, DataInputStream dataIn, SailSink explicit,
@@ -259,33 +673,6 @@ class FileIO {
 		}
 	}
 
-	private void writeValue(Value value, DataOutputStream dataOut) throws IOException {
-		if (value instanceof IRI) {
-			dataOut.writeByte(URI_MARKER);
-			writeString(((IRI) value).toString(), dataOut);
-		} else if (value instanceof BNode) {
-			dataOut.writeByte(BNODE_MARKER);
-			writeString(((BNode) value).getID(), dataOut);
-		} else if (value instanceof Literal) {
-			Literal lit = (Literal) value;
-
-			String label = lit.getLabel();
-			IRI datatype = lit.getDatatype();
-
-			if (Literals.isLanguageLiteral(lit)) {
-				dataOut.writeByte(LANG_LITERAL_MARKER);
-				writeString(label, dataOut);
-				writeString(lit.getLanguage().get(), dataOut);
-			} else {
-				dataOut.writeByte(DATATYPE_LITERAL_MARKER);
-				writeString(label, dataOut);
-				writeValue(datatype, dataOut);
-			}
-		} else {
-			throw new IllegalArgumentException("unexpected value type: " + value.getClass());
-		}
-	}
-
 	private Value readValue(DataInputStream dataIn) throws IOException, ClassCastException {
 		int valueTypeMarker = dataIn.readByte();
 
@@ -311,12 +698,6 @@ class FileIO {
 		}
 	}
 
-	private void writeString(String s, DataOutputStream dataOut) throws IOException {
-		ByteBuffer byteBuf = charsetEncoder.encode(CharBuffer.wrap(s));
-		dataOut.writeInt(byteBuf.remaining());
-		dataOut.write(byteBuf.array(), 0, byteBuf.remaining());
-	}
-
 	private String readString(DataInputStream dataIn) throws IOException {
 		if (formatVersion == 1) {
 			return readStringV1(dataIn);
@@ -350,4 +731,348 @@ class FileIO {
 
 		return charBuf.toString();
 	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	private interface BlockConsumer {
+
+		void accept(Object decoded) throws IOException, SailException;
+	}
+
+	/**
+	 * Restores the statements of a checkpoint directly into the store.
+	 */
+	private class Checkpoint implements BlockConsumer {
+
+		private MemValue[] dictionary = new MemValue[1024];
+
+		@Override
+		public void accept(Object decoded) throws IOException, SailException {
+			if (decoded instanceof ValueBlock) {
+				dictionary = addValues((ValueBlock) decoded, dictionary);
+			} else if (decoded instanceof StatementColumns) {
+				StatementColumns columns = (StatementColumns) decoded;
+				int count = columns.size;
+				MemResource[] subjects = new MemResource[count];
+				MemIRI[] predicates = new MemIRI[count];
+				MemValue[] objects = new MemValue[count];
+				MemResource[] contexts = new MemResource[count];
+				boolean[] explicit = new boolean[count];
+				for (int i = 0; i < count; i++) {
+					subjects[i] = (MemResource) dictionary[columns.subjects[i]];
+					predicates[i] = (MemIRI) dictionary[columns.predicates[i]];
+					objects[i] = dictionary[columns.objects[i]];
+					contexts[i] = (MemResource) dictionary[columns.contexts[i]];
+					explicit[i] = (columns.flags[i] & EXPLICIT_FLAG) != 0;
+				}
+				store.restoreStatements(subjects, predicates, objects, contexts, explicit, count);
+			} else {
+				@SuppressWarnings("unchecked")
+				List<Namespace> namespaces = (List<Namespace>) decoded;
+				SailSink sink = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+				try {
+					for (Namespace ns : namespaces) {
+						sink.setNamespace(ns.getPrefix(), ns.getName());
+					}
+					sink.prepare();
+					sink.flush();
+				} finally {
+					sink.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replays the changes of delta blocks through the sinks of the store.
+	 */
+	private class DeltaReplay implements BlockConsumer {
+
+		private final SailSink explicit;
+
+		private final SailSink inferred;
+
+		public DeltaReplay(SailSink explicit, SailSink inferred) {
+			this.explicit = explicit;
+			this.inferred = inferred;
+		}
+
+		@Override
+		public void accept(Object decoded) throws IOException, SailException {
+			DeltaBlock delta = (DeltaBlock) decoded;
+			if (delta.namespaces != null) {
+				explicit.clearNamespaces();
+				for (Namespace ns : delta.namespaces) {
+					explicit.setNamespace(ns.getPrefix(), ns.getName());
+				}
+			}
+
+			MemValue[] dictionary = addValues(delta.values, new MemValue[delta.values.values.length + 1]);
+			StatementColumns removed = delta.removed;
+			for (int i = 0; i < removed.size; i++) {
+				SailSink sink = (removed.flags[i] & EXPLICIT_FLAG) != 0 ? explicit : inferred;
+				sink.deprecate(vf.createStatement((Resource) dictionary[removed.subjects[i]],
+						(IRI) dictionary[removed.predicates[i]], dictionary[removed.objects[i]],
+						(Resource) dictionary[removed.contexts[i]]));
+			}
+			StatementColumns added = delta.added;
+			for (int i = 0; i < added.size; i++) {
+				SailSink sink = (added.flags[i] & EXPLICIT_FLAG) != 0 ? explicit : inferred;
+				sink.approve((Resource) dictionary[added.subjects[i]], (IRI) dictionary[added.predicates[i]],
+						dictionary[added.objects[i]], (Resource) dictionary[added.contexts[i]]);
+			}
+		}
+	}
+
+	private static class Block {
+
+		private final int type;
+
+		private final int length;
+
+		private final byte[] data;
+
+		public Block(int type, int length, byte[] data) {
+			this.type = type;
+			this.length = length;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Buffer for the uncompressed data of a block.
+	 */
+	private static class BlockBuffer {
+
+		private final ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+
+		private final DataOutputStream data = new DataOutputStream(bytes);
+	}
+
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+		public ExposedByteArrayOutputStream() {
+			super(64 * 1024);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	/**
+	 * Assigns IDs to values while writing, starting at 1. The ID 0 denotes the absence of a value, i.e. the default
+	 * context.
+	 */
+	private static class ValueDictionary {
+
+		private final Map<Value, Integer> ids = new HashMap<>();
+
+		/**
+		 * The values that have been assigned an ID but have not been written yet.
+		 */
+		private final List<Value> pending = new ArrayList<>();
+
+		public int getID(Value value) {
+			if (value == null) {
+				return 0;
+			}
+			Integer id = ids.get(value);
+			if (id == null) {
+				if (value instanceof Triple) {
+					// the components must be read before the triple
+					Triple triple = (Triple) value;
+					getID(triple.getSubject());
+					getID(triple.getPredicate());
+					getID(triple.getObject());
+				}
+				id = ids.size() + 1;
+				ids.put(value, id);
+				pending.add(value);
+			}
+			return id;
+		}
+
+		public void writePending(DataOutputStream dataOut) throws IOException {
+			dataOut.writeInt(ids.size() - pending.size() + 1);
+			dataOut.writeInt(pending.size());
+			for (Value value : pending) {
+				writeValue(value, dataOut);
+			}
+			pending.clear();
+		}
+
+		private void writeValue(Value value, DataOutputStream dataOut) throws IOException {
+			if (value instanceof IRI) {
+				dataOut.writeByte(URI_MARKER);
+				writeUTF8(value.stringValue(), dataOut);
+			} else if (value instanceof BNode) {
+				dataOut.writeByte(BNODE_MARKER);
+				writeUTF8(((BNode) value).getID(), dataOut);
+			} else if (value instanceof Literal) {
+				Literal lit = (Literal) value;
+				if (Literals.isLanguageLiteral(lit)) {
+					dataOut.writeByte(LANG_LITERAL_MARKER);
+					writeUTF8(lit.getLabel(), dataOut);
+					writeUTF8(lit.getLanguage().get(), dataOut);
+				} else {
+					dataOut.writeByte(DATATYPE_LITERAL_MARKER);
+					writeUTF8(lit.getLabel(), dataOut);
+					writeUTF8(lit.getDatatype().stringValue(), dataOut);
+				}
+			} else if (value instanceof Triple) {
+				Triple triple = (Triple) value;
+				dataOut.writeByte(RDFSTAR_TRIPLE_MARKER);
+				dataOut.writeInt(ids.get(triple.getSubject()));
+				dataOut.writeInt(ids.get(triple.getPredicate()));
+				dataOut.writeInt(ids.get(triple.getObject()));
+			} else {
+				throw new IllegalArgumentException("unexpected value type: " + value.getClass());
+			}
+		}
+	}
+
+	/**
+	 * A decoded value block. RDF-star triples are represented by <tt>null</tt> values, as they can only be created
+	 * once the values of their components are known.
+	 */
+	private static class ValueBlock {
+
+		private int firstID;
+
+		private Value[] values;
+
+		private int[] triples;
+
+		public static ValueBlock read(DataInputStream dataIn) throws IOException {
+			ValueFactory vf = SimpleValueFactory.getInstance();
+			ValueBlock block = new ValueBlock();
+			block.firstID = dataIn.readInt();
+			block.values = new Value[dataIn.readInt()];
+			for (int i = 0; i < block.values.length; i++) {
+				int valueTypeMarker = dataIn.readByte();
+				switch (valueTypeMarker) {
+				case URI_MARKER:
+					block.values[i] = vf.createIRI(readUTF8(dataIn));
+					break;
+				case BNODE_MARKER:
+					block.values[i] = vf.createBNode(readUTF8(dataIn));
+					break;
+				case LANG_LITERAL_MARKER:
+					String label = readUTF8(dataIn);
+					block.values[i] = vf.createLiteral(label, readUTF8(dataIn));
+					break;
+				case DATATYPE_LITERAL_MARKER:
+					label = readUTF8(dataIn);
+					block.values[i] = vf.createLiteral(label, vf.createIRI(readUTF8(dataIn)));
+					break;
+				case RDFSTAR_TRIPLE_MARKER:
+					if (block.triples == null) {
+						block.triples = new int[3 * block.values.length];
+					}
+					for (int j = 0; j < 3; j++) {
+						// relative to the dictionary, not to this block
+						block.triples[3 * i + j] = dataIn.readInt();
+					}
+					break;
+				default:
+					throw new IOException("Invalid value type marker: " + valueTypeMarker);
+				}
+			}
+			return block;
+		}
+	}
+
+	/**
+	 * Statements as columns of value IDs.
+	 */
+	private static class StatementColumns {
+
+		private int size;
+
+		private int[] subjects;
+
+		private int[] predicates;
+
+		private int[] objects;
+
+		private int[] contexts;
+
+		private byte[] flags;
+
+		public StatementColumns(int capacity) {
+			subjects = new int[capacity];
+			predicates = new int[capacity];
+			objects = new int[capacity];
+			contexts = new int[capacity];
+			flags = new byte[capacity];
+		}
+
+		public void add(MemStatement st, ValueDictionary dictionary) {
+			if (size == subjects.length) {
+				int capacity = 2 * size;
+				subjects = Arrays.copyOf(subjects, capacity);
+				predicates = Arrays.copyOf(predicates, capacity);
+				objects = Arrays.copyOf(objects, capacity);
+				contexts = Arrays.copyOf(contexts, capacity);
+				flags = Arrays.copyOf(flags, capacity);
+			}
+			subjects[size] = dictionary.getID(st.getSubject());
+			predicates[size] = dictionary.getID(st.getPredicate());
+			objects[size] = dictionary.getID(st.getObject());
+			contexts[size] = dictionary.getID(st.getContext());
+			flags[size] = st.isExplicit() ? EXPLICIT_FLAG : 0;
+			size++;
+		}
+
+		public void clear() {
+			size = 0;
+		}
+
+		public void write(DataOutputStream dataOut) throws IOException {
+			dataOut.writeInt(size);
+			writeColumn(subjects, dataOut);
+			writeColumn(predicates, dataOut);
+			writeColumn(objects, dataOut);
+			writeColumn(contexts, dataOut);
+			dataOut.write(flags, 0, size);
+		}
+
+		private void writeColumn(int[] column, DataOutputStream dataOut) throws IOException {
+			for (int i = 0; i < size; i++) {
+				dataOut.writeInt(column[i]);
+			}
+		}
+
+		public static StatementColumns read(DataInputStream dataIn) throws IOException {
+			int size = dataIn.readInt();
+			StatementColumns columns = new StatementColumns(size);
+			columns.size = size;
+			readColumn(columns.subjects, dataIn);
+			readColumn(columns.predicates, dataIn);
+			readColumn(columns.objects, dataIn);
+			readColumn(columns.contexts, dataIn);
+			dataIn.readFully(columns.flags);
+			return columns;
+		}
+
+		private static void readColumn(int[] column, DataInputStream dataIn) throws IOException {
+			for (int i = 0; i < column.length; i++) {
+				column[i] = dataIn.readInt();
+			}
+		}
+	}
+
+	private static class DeltaBlock {
+
+		private List<Namespace> namespaces;
+
+		private ValueBlock values;
+
+		private StatementColumns removed;
+
+		private StatementColumns added;
+	}
 }
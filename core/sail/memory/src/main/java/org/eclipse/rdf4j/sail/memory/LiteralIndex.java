@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
+import org.eclipse.rdf4j.sail.memory.model.MemStatement;
+import org.eclipse.rdf4j.sail.memory.model.MemStatementList;
+
+/**
+ * The statements of a {@link MemStatementList} with a literal object of one {@link LiteralRange.Type}, sorted by the
+ * key of the object, so that the statements with an object in a range can be found by binary search. Indexes are
+ * built from the statement list of a predicate and include statements of all snapshots.
+ * <p>
+ * Indexes are immutable: {@link #update(MemStatementList)} returns a new index if the list has changed. Statements that
+ * have been appended to the list are merged into a copy of the index, other changes require a full rebuild.
+ */
+class LiteralIndex {
+
+	private final LiteralRange.Type type;
+
+	/**
+	 * The version of the indexed list, see {@link MemStatementList#getVersion()}.
+	 */
+	private final int version;
+
+	/**
+	 * The number of statements of the list that have been indexed, including those without a literal of the type.
+	 */
+	private final int indexedCount;
+
+	private final MemStatement[] statements;
+
+	/**
+	 * The keys of the statements of a numeric or date/time index, <tt>null</tt> for a string index.
+	 */
+	private final double[] numberKeys;
+
+	/**
+	 * The keys of the statements of a string index, <tt>null</tt> for other indexes.
+	 */
+	private final String[] stringKeys;
+
+	private LiteralIndex(LiteralRange.Type type, int version, int indexedCount, MemStatement[] statements,
+			double[] numberKeys, String[] stringKeys) {
+		this.type = type;
+		this.version = version;
+		this.indexedCount = indexedCount;
+		this.statements = statements;
+		this.numberKeys = numberKeys;
+		this.stringKeys = stringKeys;
+	}
+
+	/**
+	 * Creates an index of the statements of a list with a literal object of the specified type.
+	 */
+	public static LiteralIndex build(LiteralRange.Type type, MemStatementList list) {
+		LiteralIndex empty = new LiteralIndex(type, list.getVersion(), 0, new MemStatement[0],
+				type == LiteralRange.Type.STRING ? null : new double[0],
+				type == LiteralRange.Type.STRING ? new String[0] : null);
+		return empty.add(list.getStatements(), 0);
+	}
+
+	/**
+	 * Gets an index of the current statements of a list.
+	 *
+	 * @param list The list from which this index has been built.
+	 * @return This index if the list has not changed, or an updated index.
+	 */
+	public LiteralIndex update(MemStatementList list) {
+		int currentVersion = list.getVersion();
+		if (currentVersion != version) {
+			return build(type, list);
+		}
+		MemStatement[] array = list.getStatements();
+		if (indexedCount < array.length && array[indexedCount] != null) {
+			return add(array, indexedCount);
+		}
+		return this;
+	}
+
+	public int size() {
+		return statements.length;
+	}
+
+	public MemStatement[] getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Gets the index of the first statement with an object that is not below the lower bound of a range.
+	 */
+	public int lowerBound(LiteralRange range) {
+		int low = 0;
+		int high = statements.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int diff = numberKeys != null ? range.compareLower(numberKeys[mid]) : range.compareLower(stringKeys[mid]);
+			if (diff < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the index after the last statement with an object that is not above the upper bound of a range.
+	 */
+	public int upperBound(LiteralRange range) {
+		int low = 0;
+		int high = statements.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int diff = numberKeys != null ? range.compareUpper(numberKeys[mid]) : range.compareUpper(stringKeys[mid]);
+			if (diff <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Creates an index that also contains the statements that follow the specified position in an array.
+	 */
+	private LiteralIndex add(MemStatement[] array, int from) {
+		int end = from;
+		while (end < array.length && array[end] != null) {
+			end++;
+		}
+
+		Entry[] entries = new Entry[end - from];
+		int count = 0;
+		for (int i = from; i < end; i++) {
+			Entry entry = createEntry(array[i]);
+			if (entry != null) {
+				entries[count++] = entry;
+			}
+		}
+		Arrays.sort(entries, 0, count, type == LiteralRange.Type.STRING ? STRING_ORDER : NUMBER_ORDER);
+
+		// merge the sorted entries with the statements of this index
+		int size = statements.length + count;
+		MemStatement[] mergedStatements = new MemStatement[size];
+		double[] mergedNumbers = numberKeys != null ? new double[size] : null;
+		String[] mergedStrings = stringKeys != null ? new String[size] : null;
+		int i = 0;
+		int j = 0;
+		for (int k = 0; k < size; k++) {
+			boolean takeExisting;
+			if (j == count) {
+				takeExisting = true;
+			} else if (i == statements.length) {
+				takeExisting = false;
+			} else if (numberKeys != null) {
+				takeExisting = Double.compare(numberKeys[i], entries[j].numberKey) <= 0;
+			} else {
+				takeExisting = stringKeys[i].compareTo(entries[j].stringKey) <= 0;
+			}
+
+			if (takeExisting) {
+				mergedStatements[k] = statements[i];
+				if (numberKeys != null) {
+					mergedNumbers[k] = numberKeys[i];
+				} else {
+					mergedStrings[k] = stringKeys[i];
+				}
+				i++;
+			} else {
+				mergedStatements[k] = entries[j].statement;
+				if (numberKeys != null) {
+					mergedNumbers[k] = entries[j].numberKey;
+				} else {
+					mergedStrings[k] = entries[j].stringKey;
+				}
+				j++;
+			}
+		}
+		return new LiteralIndex(type, version, end, mergedStatements, mergedNumbers, mergedStrings);
+	}
+
+	private Entry createEntry(MemStatement st) {
+		if (!(st.getObject() instanceof Literal)) {
+			return null;
+		}
+		Literal literal = (Literal) st.getObject();
+		if (LiteralRange.getType(literal) != type) {
+			return null;
+		}
+		if (type == LiteralRange.Type.STRING) {
+			return new Entry(st, 0, literal.getLabel());
+		}
+		double key = LiteralRange.getNumberKey(type, literal);
+		if (Double.isNaN(key) && !(type == LiteralRange.Type.NUMERIC && LiteralRange.isNumber(literal))) {
+			// not a valid value, which is not part of any range
+			return null;
+		}
+		return new Entry(st, key, null);
+	}
+
+	private static final Comparator<Entry> NUMBER_ORDER = (a, b) -> Double.compare(a.numberKey, b.numberKey);
+
+	private static final Comparator<Entry> STRING_ORDER = (a, b) -> a.stringKey.compareTo(b.stringKey);
+
+	private static class Entry {
+
+		final MemStatement statement;
+
+		final double numberKey;
+
+		final String stringKey;
+
+		Entry(MemStatement statement, double numberKey, String stringKey) {
+			this.statement = statement;
+			this.numberKey = numberKey;
+			this.stringKey = stringKey;
+		}
+	}
+}
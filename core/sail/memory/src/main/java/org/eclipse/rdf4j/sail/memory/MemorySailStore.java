@@ -8,30 +8,44 @@
 package org.eclipse.rdf4j.sail.memory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.rdf4j.IsolationLevel;
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.concurrent.locks.Lock;
 import org.eclipse.rdf4j.common.concurrent.locks.LockingIteration;
-import org.eclipse.rdf4j.common.concurrent.locks.ReadPrefReadWriteLockManager;
-import org.eclipse.rdf4j.common.concurrent.locks.ReadWriteLockManager;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.FilterIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Triple;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.LiteralRange;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
 import org.eclipse.rdf4j.sail.SailConflictException;
 import org.eclipse.rdf4j.sail.SailException;
@@ -58,6 +72,27 @@ import org.slf4j.LoggerFactory;
  */
 class MemorySailStore implements SailStore {
 
+	/**
+	 * The maximum number of statement lists that are replaced at once by the snapshot cleanup.
+	 */
+	private static final int CLEANUP_CHUNK_SIZE = 1024;
+
+	/**
+	 * The snapshot cleanup only removes stale statements from a statement list once they make up at least one in this
+	 * many statements of the list, as the whole list is copied to do so.
+	 */
+	private static final int STALE_STATEMENT_RATIO = 8;
+
+	/**
+	 * The minimum number of statements of a predicate for which a literal index is built.
+	 */
+	private static final int MIN_LITERAL_INDEX_SIZE = 64;
+
+	/**
+	 * The minimum number of statements of a partition, see {@link SailDataset#getStatementPartitions}.
+	 */
+	private static final int MIN_PARTITION_SIZE = 1024;
+
 	private final Logger logger = LoggerFactory.getLogger(MemorySailStore.class);
 
 	/**
@@ -75,21 +110,44 @@ class MemorySailStore implements SailStore {
 	 */
 	private volatile int currentSnapshot;
 
+	/**
+	 * The snapshot from which changes must remain available, see {@link #retainChangesSince(int)}.
+	 */
+	private volatile int retainedSnapshot = Integer.MAX_VALUE;
+
+	/**
+	 * The number of statements that have been deprecated since {@link #retainChangesSince(int)} was last called,
+	 * updated while holding {@link #txnLockManager}.
+	 */
+	private volatile long retainedStatementCount;
+
 	/**
 	 * Store for namespace prefix info.
 	 */
 	private final MemNamespaceStore namespaceStore = new MemNamespaceStore();
 
 	/**
-	 * Lock manager used to give the snapshot cleanup thread exclusive access to the statement list.
+	 * The active readers, whose snapshots the snapshot cleanup must leave intact. See
+	 * {@link #openStatementsReadLock()}.
+	 */
+	private final Set<SnapshotReader> readers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Set while the snapshot cleanup waits for {@link #readers} to be released.
 	 */
-	private final ReadWriteLockManager statementListLockManager;
+	private volatile boolean cleanupWaiting;
 
 	/**
 	 * Lock manager used to prevent concurrent writes.
 	 */
 	private final ReentrantLock txnLockManager = new ReentrantLock();
 
+	/**
+	 * The statements that have been deprecated and that have not been removed by the snapshot cleanup yet, guarded by
+	 * {@link #txnLockManager}.
+	 */
+	private List<MemStatement> deprecatedStatements = new ArrayList<>();
+
 	/**
 	 * Cleanup thread that removes deprecated statements when no other threads are accessing this list. Seee
 	 * {@link #scheduleSnapshotCleanup()}.
@@ -101,27 +159,50 @@ class MemorySailStore implements SailStore {
 	 */
 	private final Object snapshotCleanupThreadLockObject = new Object();
 
-	public MemorySailStore(boolean debug) {
-		statementListLockManager = new ReadPrefReadWriteLockManager(debug);
+	/**
+	 * Whether range lookups use {@link LiteralIndex literal indexes}.
+	 */
+	private final boolean literalIndexes;
+
+	/**
+	 * The literal indexes of the predicates, per type. Indexes are built on first use and updated when they are used
+	 * after the statements of the predicate have changed.
+	 */
+	private final Map<LiteralRange.Type, Map<MemIRI, LiteralIndex>> literalIndexMaps = new EnumMap<>(
+			LiteralRange.Type.class);
+
+	public MemorySailStore() {
+		this(true);
+	}
+
+	/**
+	 * @param literalIndexes Whether to build sorted indexes of the literal objects of predicates, to look up range and
+	 *                       prefix filters.
+	 */
+	public MemorySailStore(boolean literalIndexes) {
+		this.literalIndexes = literalIndexes;
+		for (LiteralRange.Type type : LiteralRange.Type.values()) {
+			literalIndexMaps.put(type, new ConcurrentHashMap<>());
+		}
 	}
 
 	@Override
-	public ValueFactory getValueFactory() {
+	public MemValueFactory getValueFactory() {
 		return valueFactory;
 	}
 
 	@Override
 	public void close() {
+		txnLockManager.lock();
 		try {
-			Lock stLock = statementListLockManager.getWriteLock();
-			try {
-				valueFactory.clear();
-				statements.clear();
-			} finally {
-				stLock.release();
+			valueFactory.clear();
+			statements.clear();
+			deprecatedStatements = new ArrayList<>();
+			for (Map<MemIRI, LiteralIndex> indexes : literalIndexMaps.values()) {
+				indexes.clear();
 			}
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
+		} finally {
+			txnLockManager.unlock();
 		}
 	}
 
@@ -140,13 +221,370 @@ class MemorySailStore implements SailStore {
 		return new MemorySailSource(false);
 	}
 
-	private Lock openStatementsReadLock() throws SailException {
+	/**
+	 * Gets the latest committed snapshot.
+	 */
+	int getLatestSnapshot() {
+		return currentSnapshot;
+	}
+
+	/**
+	 * Prevents the snapshot cleanup from removing statements that have been deprecated after the specified snapshot, so
+	 * that the changes since that snapshot can still be retrieved with {@link #getSnapshotDifference(int, int)}.
+	 */
+	void retainChangesSince(int snapshot) {
+		retainedSnapshot = snapshot;
+		retainedStatementCount = 0;
+	}
+
+	/**
+	 * Gets the number of statements that have been deprecated since {@link #retainChangesSince(int)} was last called.
+	 * These statements are kept in memory until changes are retained from a later snapshot.
+	 */
+	long getRetainedStatementCount() {
+		return retainedStatementCount;
+	}
+
+	/**
+	 * Gets the statements that are part of a snapshot but not of a base snapshot. Statements that have been deprecated
+	 * after the base snapshot are only available if they have been {@link #retainChangesSince(int) retained}. The
+	 * snapshot cleanup is blocked until the returned iteration is closed.
+	 *
+	 * @param snapshot     The snapshot to get the statements of.
+	 * @param baseSnapshot The snapshot whose statements are excluded, or <tt>-1</tt> to include all statements.
+	 */
+	CloseableIteration<MemStatement, SailException> getSnapshotDifference(int snapshot, int baseSnapshot)
+			throws SailException {
+		Lock stLock = openStatementsReadLock();
+		MemStatement[] array = statements.getStatements();
+		return new LockingIteration<>(stLock, new LookAheadIteration<MemStatement, SailException>() {
+
+			private int index;
+
+			@Override
+			protected MemStatement getNextElement() {
+				while (index < array.length && array[index] != null) {
+					MemStatement st = array[index++];
+					if (st.isInSnapshot(snapshot) && (baseSnapshot < 0 || !st.isInSnapshot(baseSnapshot))) {
+						return st;
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Adds statements that are known not to be present in this store yet, as a new snapshot and without the duplicate
+	 * checks of a {@link SailSink}. Used to restore the contents of a persisted store.
+	 */
+	void restoreStatements(MemResource[] subjects, MemIRI[] predicates, MemValue[] objects, MemResource[] contexts,
+			boolean[] explicit, int count) throws SailException {
+		Lock stLock = openStatementsReadLock();
+		try {
+			txnLockManager.lock();
+			try {
+				int snapshot = currentSnapshot + 1;
+				for (int i = 0; i < count; i++) {
+					MemStatement st = new MemStatement(subjects[i], predicates[i], objects[i], contexts[i], explicit[i],
+							snapshot);
+					statements.add(st);
+					st.addToComponentLists();
+				}
+				currentSnapshot = snapshot;
+			} finally {
+				txnLockManager.unlock();
+			}
+		} finally {
+			stLock.release();
+		}
+	}
+
+	/**
+	 * Adds the explicit statements of the specified sources as a new snapshot, using the specified number of threads.
+	 * Statements that are already present are not added again. The transaction lock is held while loading, see
+	 * {@link MemoryStoreBulkLoader}.
+	 * <p>
+	 * The statements are loaded in three phases:
+	 * <ol>
+	 * <li>The sources are read in parallel and statements of interned values are created.</li>
+	 * <li>The statements are partitioned by subject. Within each partition, duplicates are removed and the statements
+	 * are added to the statement lists of their subjects.</li>
+	 * <li>The remaining statements are added to the statement lists of their predicates, objects and contexts, again
+	 * partitioned by value, and to the list of all statements.</li>
+	 * </ol>
+	 * Statement lists are only modified by a single thread, as lists of different values are independent.
+	 *
+	 * @return The number of statements that have been added.
+	 */
+	long bulkLoad(List<? extends MemoryStoreBulkLoader.StatementSource> sources, int threads) throws SailException {
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "MemoryStore bulk load " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
 		try {
-			return statementListLockManager.getReadLock();
+			txnLockManager.lockInterruptibly();
+			try {
+				return bulkLoad(sources, threads, executor);
+			} finally {
+				txnLockManager.unlock();
+			}
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 			throw new SailException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long bulkLoad(List<? extends MemoryStoreBulkLoader.StatementSource> sources, int partitions,
+			ExecutorService executor) throws InterruptedException, SailException {
+		int snapshot = currentSnapshot + 1;
+
+		List<Callable<List<MemStatement>>> readers = new ArrayList<>(sources.size());
+		for (MemoryStoreBulkLoader.StatementSource source : sources) {
+			readers.add(() -> {
+				List<MemStatement> read = new ArrayList<>();
+				source.forEach(st -> read.add(new MemStatement(valueFactory.getOrCreateMemResource(st.getSubject()),
+						valueFactory.getOrCreateMemURI(st.getPredicate()),
+						valueFactory.getOrCreateMemValue(st.getObject()),
+						st.getContext() == null ? null : valueFactory.getOrCreateMemResource(st.getContext()), true,
+						snapshot)));
+				return read;
+			});
 		}
+		List<List<MemStatement>> read = invokeAll(executor, readers);
+
+		List<SubjectPartition> subjectPartitions = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			subjectPartitions.add(new SubjectPartition(i, partitions, read, snapshot));
+		}
+		boolean published = false;
+		try {
+			invokeAll(executor, subjectPartitions);
+
+			List<Callable<Void>> appends = new ArrayList<>(3 * partitions + 1);
+			for (int i = 0; i < partitions; i++) {
+				for (int component = 0; component < 3; component++) {
+					int partition = i;
+					int c = component;
+					appends.add(() -> {
+						for (SubjectPartition subjectPartition : subjectPartitions) {
+							for (MemStatement st : subjectPartition.added[c][partition]) {
+								if (c == 0) {
+									st.getPredicate().addPredicateStatement(st);
+								} else if (c == 1) {
+									st.getObject().addObjectStatement(st);
+								} else {
+									st.getContext().addContextStatement(st);
+								}
+							}
+						}
+						return null;
+					});
+				}
+			}
+			appends.add(() -> {
+				for (SubjectPartition subjectPartition : subjectPartitions) {
+					for (List<MemStatement> added : subjectPartition.added[0]) {
+						for (MemStatement st : added) {
+							statements.add(st);
+						}
+					}
+				}
+				return null;
+			});
+			invokeAll(executor, appends);
+
+			long count = 0;
+			for (SubjectPartition subjectPartition : subjectPartitions) {
+				count += subjectPartition.count;
+				deprecatedStatements.addAll(subjectPartition.deprecated);
+				retainedStatementCount += subjectPartition.deprecated.size();
+			}
+			currentSnapshot = snapshot;
+			published = true;
+			if (!deprecatedStatements.isEmpty()) {
+				scheduleSnapshotCleanup();
+			}
+			return count;
+		} finally {
+			if (!published) {
+				// the statements may have been added to some of the lists, make sure they are never visible
+				executor.shutdownNow();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+				for (SubjectPartition subjectPartition : subjectPartitions) {
+					for (MemStatement st : subjectPartition.deprecated) {
+						// visible again
+						st.setTillSnapshot(Integer.MAX_VALUE);
+					}
+				}
+				for (List<MemStatement> chunk : read) {
+					for (MemStatement st : chunk) {
+						st.setTillSnapshot(snapshot);
+						deprecatedStatements.add(st);
+					}
+				}
+				scheduleSnapshotCleanup();
+			}
+		}
+	}
+
+	/**
+	 * Runs tasks and waits for their completion.
+	 *
+	 * @return The results of the tasks.
+	 * @throws SailException If one of the tasks failed.
+	 */
+	private static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks)
+			throws InterruptedException, SailException {
+		List<T> results = new ArrayList<>(tasks.size());
+		for (Future<T> future : executor.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof SailException) {
+					throw (SailException) e.getCause();
+				}
+				throw new SailException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Removes the duplicates from the bulk loaded statements of a partition of the subjects and adds the statements to
+	 * the statement lists of their subjects. The added statements are grouped by partitions of their predicates,
+	 * objects and contexts.
+	 */
+	private static class SubjectPartition implements Callable<Void> {
+
+		/**
+		 * The number of statements of a subject from which duplicates are looked up in a map instead of by scanning.
+		 */
+		private static final int MIN_LOOKUP_SIZE = 16;
+
+		private final int partition;
+
+		private final int partitions;
+
+		private final List<List<MemStatement>> read;
+
+		private final int snapshot;
+
+		/**
+		 * The added statements, by component (predicate, object or context) and partition of its value.
+		 */
+		final List<MemStatement>[][] added;
+
+		/**
+		 * Inferred statements that have been loaded explicitly.
+		 */
+		final List<MemStatement> deprecated = new ArrayList<>();
+
+		long count;
+
+		@SuppressWarnings("unchecked")
+		SubjectPartition(int partition, int partitions, List<List<MemStatement>> read, int snapshot) {
+			this.partition = partition;
+			this.partitions = partitions;
+			this.read = read;
+			this.snapshot = snapshot;
+			this.added = new List[3][partitions];
+			for (List<MemStatement>[] lists : added) {
+				for (int i = 0; i < partitions; i++) {
+					lists[i] = new ArrayList<>();
+				}
+			}
+		}
+
+		@Override
+		public Void call() {
+			// lookup maps of the subjects with many statements
+			Map<MemResource, Map<MemStatement, MemStatement>> lookups = new IdentityHashMap<>();
+			for (List<MemStatement> chunk : read) {
+				for (MemStatement st : chunk) {
+					MemResource subject = st.getSubject();
+					if (getPartition(subject) != partition) {
+						continue;
+					}
+
+					Map<MemStatement, MemStatement> lookup = lookups.get(subject);
+					MemStatementList list = subject.getSubjectStatementList();
+					if (lookup == null && list.size() >= MIN_LOOKUP_SIZE) {
+						lookup = new HashMap<>();
+						for (int i = 0; i < list.size(); i++) {
+							if (list.get(i).isInSnapshot(snapshot)) {
+								lookup.put(list.get(i), list.get(i));
+							}
+						}
+						lookups.put(subject, lookup);
+					}
+
+					MemStatement existing = lookup != null ? lookup.get(st) : find(list, st);
+					if (existing != null) {
+						if (existing.isExplicit()) {
+							continue;
+						}
+						// inferred statement is now added explicitly
+						existing.setTillSnapshot(snapshot);
+						deprecated.add(existing);
+					}
+					subject.addSubjectStatement(st);
+					if (lookup != null) {
+						lookup.put(st, st);
+					}
+					added[0][getPartition(st.getPredicate())].add(st);
+					added[1][getPartition(st.getObject())].add(st);
+					if (st.getContext() != null) {
+						added[2][getPartition(st.getContext())].add(st);
+					}
+					count++;
+				}
+			}
+			return null;
+		}
+
+		private MemStatement find(MemStatementList list, MemStatement st) {
+			for (int i = 0; i < list.size(); i++) {
+				MemStatement candidate = list.get(i);
+				if (candidate.getObject() == st.getObject() && candidate.getPredicate() == st.getPredicate()
+						&& candidate.getContext() == st.getContext() && candidate.isInSnapshot(snapshot)) {
+					return candidate;
+				}
+			}
+			return null;
+		}
+
+		private int getPartition(Value value) {
+			return (value.hashCode() & Integer.MAX_VALUE) % partitions;
+		}
+	}
+
+	/**
+	 * Registers a reader of the current snapshot and of later snapshots, until the returned lock is released. The
+	 * snapshot cleanup does not remove statements that are visible to a registered reader, and never blocks readers.
+	 */
+	private SnapshotReader openStatementsReadLock() {
+		SnapshotReader reader = new SnapshotReader();
+		readers.add(reader);
+		// only read the snapshot once registered, see getCleanupSnapshot()
+		reader.snapshot = currentSnapshot;
+		return reader;
+	}
+
+	/**
+	 * Gets the latest snapshot whose deprecated statements are not visible to any reader.
+	 */
+	private int getCleanupSnapshot() {
+		// readers that are not seen here have registered after currentSnapshot has been read
+		int snapshot = Math.min(currentSnapshot, retainedSnapshot);
+		for (SnapshotReader reader : readers) {
+			snapshot = Math.min(snapshot, reader.snapshot);
+		}
+		return snapshot;
 	}
 
 	/**
@@ -157,57 +595,44 @@ class MemorySailStore implements SailStore {
 	 */
 	private CloseableIteration<MemStatement, SailException> createStatementIterator(Resource subj, IRI pred, Value obj,
 			Boolean explicit, int snapshot, Resource... contexts) {
+		return createStatementPartitions(subj, pred, obj, explicit, snapshot, 1, contexts).get(0);
+	}
+
+	/**
+	 * Creates up to the specified number of StatementIterators that together contain the statements matching the
+	 * specified pattern, see {@link #createStatementIterator}. The statement list that is scanned is split into ranges
+	 * of at least {@link #MIN_PARTITION_SIZE} statements.
+	 */
+	private List<CloseableIteration<MemStatement, SailException>> createStatementPartitions(Resource subj, IRI pred,
+			Value obj, Boolean explicit, int snapshot, int partitions, Resource... contexts) {
 		// Perform look-ups for value-equivalents of the specified values
 		MemResource memSubj = valueFactory.getMemResource(subj);
 		if (subj != null && memSubj == null) {
 			// non-existent subject
-			return new EmptyIteration<>();
+			return Collections.singletonList(new EmptyIteration<>());
 		}
 
 		MemIRI memPred = valueFactory.getMemURI(pred);
 		if (pred != null && memPred == null) {
 			// non-existent predicate
-			return new EmptyIteration<>();
+			return Collections.singletonList(new EmptyIteration<>());
 		}
 
 		MemValue memObj = valueFactory.getMemValue(obj);
 		if (obj != null && memObj == null) {
 			// non-existent object
-			return new EmptyIteration<>();
+			return Collections.singletonList(new EmptyIteration<>());
 		}
 
-		MemResource[] memContexts;
-		MemStatementList smallestList;
-
-		if (contexts.length == 0) {
-			memContexts = new MemResource[0];
-			smallestList = statements;
-		} else if (contexts.length == 1 && contexts[0] != null) {
-			MemResource memContext = valueFactory.getMemResource(contexts[0]);
-			if (memContext == null) {
-				// non-existent context
-				return new EmptyIteration<>();
-			}
-
-			memContexts = new MemResource[] { memContext };
-			smallestList = memContext.getContextStatementList();
-		} else {
-			Set<MemResource> contextSet = new LinkedHashSet<>(2 * contexts.length);
-
-			for (Resource context : contexts) {
-				MemResource memContext = valueFactory.getMemResource(context);
-				if (context == null || memContext != null) {
-					contextSet.add(memContext);
-				}
-			}
-
-			if (contextSet.isEmpty()) {
-				// no known contexts specified
-				return new EmptyIteration<>();
-			}
+		MemResource[] memContexts = getMemContexts(contexts);
+		if (memContexts == null) {
+			// no known contexts specified
+			return Collections.singletonList(new EmptyIteration<>());
+		}
 
-			memContexts = contextSet.toArray(new MemResource[contextSet.size()]);
-			smallestList = statements;
+		MemStatementList smallestList = statements;
+		if (memContexts.length == 1 && memContexts[0] != null) {
+			smallestList = memContexts[0].getContextStatementList();
 		}
 
 		if (memSubj != null) {
@@ -231,7 +656,93 @@ class MemorySailStore implements SailStore {
 			}
 		}
 
-		return new MemStatementIterator<>(smallestList, memSubj, memPred, memObj, explicit, snapshot, memContexts);
+		int size = smallestList.size();
+		MemStatement[] array = smallestList.getStatements();
+		int count = Math.max(1, Math.min(partitions, size / MIN_PARTITION_SIZE));
+		if (count == 1) {
+			return Collections.singletonList(new MemStatementIterator<>(array, 0, Integer.MAX_VALUE, memSubj, memPred,
+					memObj, explicit, snapshot, memContexts));
+		}
+
+		int partitionSize = (size + count - 1) / count;
+		List<CloseableIteration<MemStatement, SailException>> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			// the last partition includes the statements that have been appended to the array since its size was read
+			int to = i == count - 1 ? Integer.MAX_VALUE : (i + 1) * partitionSize;
+			result.add(new MemStatementIterator<>(array, i * partitionSize, to, memSubj, memPred, memObj, explicit,
+					snapshot, memContexts));
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up the value-equivalents of contexts.
+	 *
+	 * @return The contexts, an empty array to match all contexts, or <tt>null</tt> if none of the specified contexts
+	 *         exist.
+	 */
+	private MemResource[] getMemContexts(Resource... contexts) {
+		if (contexts.length == 0) {
+			return new MemResource[0];
+		} else if (contexts.length == 1 && contexts[0] != null) {
+			MemResource memContext = valueFactory.getMemResource(contexts[0]);
+			return memContext == null ? null : new MemResource[] { memContext };
+		}
+
+		Set<MemResource> contextSet = new LinkedHashSet<>(2 * contexts.length);
+		for (Resource context : contexts) {
+			MemResource memContext = valueFactory.getMemResource(context);
+			if (context == null || memContext != null) {
+				contextSet.add(memContext);
+			}
+		}
+		return contextSet.isEmpty() ? null : contextSet.toArray(new MemResource[contextSet.size()]);
+	}
+
+	/**
+	 * Creates a StatementIterator that contains the statements matching the specified subject, predicate and contexts
+	 * with a literal object in a range. If only the predicate is specified, the statements are looked up in a
+	 * {@link LiteralIndex}, otherwise the statements matching the pattern are filtered.
+	 */
+	private CloseableIteration<MemStatement, SailException> createRangeIterator(Resource subj, IRI pred,
+			LiteralRange range, Boolean explicit, int snapshot, Resource... contexts) {
+		MemIRI memPred = valueFactory.getMemURI(pred);
+		if (!literalIndexes || subj != null || memPred == null
+				|| memPred.getPredicateStatementList().size() < MIN_LITERAL_INDEX_SIZE) {
+			return new FilterIteration<MemStatement, SailException>(
+					createStatementIterator(subj, pred, null, explicit, snapshot, contexts)) {
+
+				@Override
+				protected boolean accept(MemStatement st) {
+					return range.contains(st.getObject());
+				}
+			};
+		}
+
+		MemResource[] memContexts = getMemContexts(contexts);
+		if (memContexts == null) {
+			// no known contexts specified
+			return new EmptyIteration<>();
+		}
+
+		LiteralIndex index = getLiteralIndex(memPred, range.getType());
+		return new MemStatementIterator<>(index.getStatements(), index.lowerBound(range), index.upperBound(range),
+				null, memPred, null, explicit, snapshot, memContexts);
+	}
+
+	/**
+	 * Gets the up-to-date literal index of a predicate, building or updating it if needed. Concurrent readers may
+	 * build the same index, the last one is kept.
+	 */
+	private LiteralIndex getLiteralIndex(MemIRI predicate, LiteralRange.Type type) {
+		Map<MemIRI, LiteralIndex> indexes = literalIndexMaps.get(type);
+		MemStatementList list = predicate.getPredicateStatementList();
+		LiteralIndex index = indexes.get(predicate);
+		LiteralIndex updated = index == null ? LiteralIndex.build(type, list) : index.update(list);
+		if (updated != index) {
+			indexes.put(predicate, updated);
+		}
+		return updated;
 	}
 
 	/**
@@ -266,79 +777,148 @@ class MemorySailStore implements SailStore {
 	}
 
 	/**
-	 * Removes statements from old snapshots from the main statement list and resets the snapshot to 1 for the rest of
-	 * the statements.
+	 * Removes the deprecated statements that are no longer visible to any reader from the main statement list and from
+	 * the statement lists of their values. Only the lists of the values of these statements are visited. The remaining
+	 * statements of a list are copied without locking, and the copies replace the lists in chunks while holding the
+	 * transaction lock, so that readers are never blocked. Writers do stall while a chunk is replaced, for the time it
+	 * takes to copy the statements that they added to the lists of the chunk since its copies were made. As a list is
+	 * copied in full, it is only cleaned up once an eighth of it is stale; until then, its stale statements are skipped
+	 * like any other statement that is not part of a snapshot. Statements that are still visible to a reader are
+	 * removed once that reader has been released.
 	 *
 	 * @throws InterruptedException
 	 */
 	protected void cleanSnapshots() throws InterruptedException {
-		// System.out.println("cleanSnapshots() starting...");
-		// long startTime = System.currentTimeMillis();
+		List<MemStatement> deprecated = takeDeprecatedStatements(Collections.emptyList());
+		while (!deprecated.isEmpty()) {
+			int cleanupSnapshot = getCleanupSnapshot();
+			int latestSnapshot = Math.min(currentSnapshot, retainedSnapshot);
+			List<MemStatement> stale = new ArrayList<>();
+			List<MemStatement> remaining = new ArrayList<>();
+			boolean blockedByReaders = false;
+			for (MemStatement st : deprecated) {
+				int till = st.getTillSnapshot();
+				if (till <= cleanupSnapshot) {
+					stale.add(st);
+				} else {
+					remaining.add(st);
+					blockedByReaders |= till <= latestSnapshot;
+				}
+			}
 
-		// Sets used to keep track of which lists have already been processed
-		HashSet<MemValue> processedSubjects = new HashSet<>();
-		HashSet<MemValue> processedPredicates = new HashSet<>();
-		HashSet<MemValue> processedObjects = new HashSet<>();
-		HashSet<MemValue> processedContexts = new HashSet<>();
+			if (!stale.isEmpty()) {
+				removeStatements(stale, cleanupSnapshot);
+			} else if (blockedByReaders) {
+				awaitReaders(latestSnapshot);
+			} else if (returnDeprecatedStatements(remaining)) {
+				// the remaining statements are retained, or deprecated by a transaction that is still active
+				return;
+			}
+			deprecated = takeDeprecatedStatements(remaining);
+		}
+	}
 
-		int lastStmtPos;
-		Lock stReadLock = statementListLockManager.getReadLock();
+	/**
+	 * Takes the statements that have been deprecated since the previous call, together with the specified statements.
+	 */
+	private List<MemStatement> takeDeprecatedStatements(List<MemStatement> remaining) throws InterruptedException {
+		txnLockManager.lockInterruptibly();
 		try {
-			lastStmtPos = statements.size() - 1;
+			List<MemStatement> deprecated = deprecatedStatements;
+			deprecatedStatements = new ArrayList<>();
+			deprecated.addAll(remaining);
+			return deprecated;
 		} finally {
-			stReadLock.release();
+			txnLockManager.unlock();
 		}
+	}
 
-		/*
-		 * The order of the statement list won't change from lastStmtPos down while we don't have the write lock (it
-		 * might shrink or grow) as (1) new statements are always appended last, (2) we are the only process that
-		 * removes statements, (3) this list is cleared on close.
-		 */
+	/**
+	 * Puts statements back for the next cleanup, unless other statements have been deprecated in the meantime.
+	 *
+	 * @return <tt>true</tt> if the statements have been put back.
+	 */
+	private boolean returnDeprecatedStatements(List<MemStatement> remaining) throws InterruptedException {
+		txnLockManager.lockInterruptibly();
+		try {
+			if (deprecatedStatements.isEmpty()) {
+				deprecatedStatements.addAll(remaining);
+				return true;
+			}
+			return false;
+		} finally {
+			txnLockManager.unlock();
+		}
+	}
 
-		int nextSnapshot = currentSnapshot;
-		for (int i = lastStmtPos; i >= 0; i--) {
-			// As we are running in the background, yield the write lock frequently to other writers.
-			Lock stWriteLock = statementListLockManager.getWriteLock();
-			try {
-				// guard against shrinkage, e.g. clear() on close()
-				lastStmtPos = statements.size() - 1;
-				i = Math.min(i, lastStmtPos);
-				if (i >= 0) {
-					MemStatement st = statements.get(i);
-
-					if (st.getTillSnapshot() <= nextSnapshot) {
-						MemResource subj = st.getSubject();
-						if (processedSubjects.add(subj)) {
-							subj.cleanSnapshotsFromSubjectStatements(nextSnapshot);
-						}
+	private void removeStatements(List<MemStatement> stale, int cleanupSnapshot) throws InterruptedException {
+		Map<MemStatementList, int[]> staleCounts = new IdentityHashMap<>();
+		staleCounts.put(statements, new int[] { stale.size() });
+		for (MemStatement st : stale) {
+			countStale(staleCounts, st.getSubject().getSubjectStatementList());
+			countStale(staleCounts, st.getPredicate().getPredicateStatementList());
+			countStale(staleCounts, st.getObject().getObjectStatementList());
+			MemResource context = st.getContext();
+			if (context != null) {
+				countStale(staleCounts, context.getContextStatementList());
+			}
+		}
 
-						MemIRI pred = st.getPredicate();
-						if (processedPredicates.add(pred)) {
-							pred.cleanSnapshotsFromPredicateStatements(nextSnapshot);
-						}
+		List<MemStatementList.Cleanup> cleanups = new ArrayList<>();
+		for (Map.Entry<MemStatementList, int[]> entry : staleCounts.entrySet()) {
+			MemStatementList list = entry.getKey();
+			if (list.addStaleStatements(entry.getValue()[0]) < list.size() / STALE_STATEMENT_RATIO) {
+				// the stale statements are skipped by readers until more of the list is stale
+				continue;
+			}
+			// this also removes the statements that were left stale by earlier cleanups
+			MemStatementList.Cleanup cleanup = list.prepareCleanup(cleanupSnapshot);
+			if (cleanup != null) {
+				cleanups.add(cleanup);
+				if (cleanups.size() == CLEANUP_CHUNK_SIZE) {
+					applyCleanups(cleanups);
+				}
+			}
+		}
+		applyCleanups(cleanups);
+	}
 
-						MemValue obj = st.getObject();
-						if (processedObjects.add(obj)) {
-							obj.cleanSnapshotsFromObjectStatements(nextSnapshot);
-						}
+	private static void countStale(Map<MemStatementList, int[]> staleCounts, MemStatementList list) {
+		staleCounts.computeIfAbsent(list, l -> new int[1])[0]++;
+	}
 
-						MemResource context = st.getContext();
-						if (context != null && processedContexts.add(context)) {
-							context.cleanSnapshotsFromContextStatements(nextSnapshot);
-						}
+	/**
+	 * Replaces a chunk of statement lists by their cleaned up copies. Statements are only added to the lists while
+	 * holding the transaction lock, so this holds it too: writers stall until the statements they added since the
+	 * copies were made have been appended to the copies.
+	 */
+	private void applyCleanups(List<MemStatementList.Cleanup> cleanups) throws InterruptedException {
+		txnLockManager.lockInterruptibly();
+		try {
+			for (MemStatementList.Cleanup cleanup : cleanups) {
+				cleanup.apply();
+			}
+		} finally {
+			txnLockManager.unlock();
+		}
+		cleanups.clear();
+	}
 
-						// stale statement
-						statements.remove(i);
-					}
+	/**
+	 * Waits until no reader uses a snapshot before the specified one.
+	 */
+	private void awaitReaders(int snapshot) throws InterruptedException {
+		synchronized (readers) {
+			cleanupWaiting = true;
+			try {
+				while (getCleanupSnapshot() < snapshot) {
+					// a reader that is still registering does not notify when its snapshot is set, hence the timeout
+					readers.wait(TimeUnit.SECONDS.toMillis(1));
 				}
 			} finally {
-				stWriteLock.release();
+				cleanupWaiting = false;
 			}
 		}
-
-		// long endTime = System.currentTimeMillis();
-		// System.out.println("cleanSnapshots() took " + (endTime - startTime) +
-		// " ms");
 	}
 
 	protected void scheduleSnapshotCleanup() {
@@ -362,6 +942,37 @@ class MemorySailStore implements SailStore {
 		}
 	}
 
+	/**
+	 * A registered reader, see {@link MemorySailStore#openStatementsReadLock()}.
+	 */
+	private final class SnapshotReader implements Lock {
+
+		/**
+		 * The snapshot that is read, or <tt>0</tt> while it is being registered.
+		 */
+		private volatile int snapshot;
+
+		private volatile boolean active = true;
+
+		@Override
+		public boolean isActive() {
+			return active;
+		}
+
+		@Override
+		public void release() {
+			if (active) {
+				active = false;
+				readers.remove(this);
+				if (cleanupWaiting) {
+					synchronized (readers) {
+						readers.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
 	private final class MemorySailSource extends BackingSailSource {
 
 		private final boolean explicit;
@@ -378,7 +989,7 @@ class MemorySailStore implements SailStore {
 		@Override
 		public MemorySailDataset dataset(IsolationLevel level) throws SailException {
 			if (level.isCompatibleWith(IsolationLevels.SNAPSHOT_READ)) {
-				return new MemorySailDataset(explicit, currentSnapshot);
+				return new MemorySailDataset(explicit, openStatementsReadLock());
 			} else {
 				return new MemorySailDataset(explicit);
 			}
@@ -391,7 +1002,7 @@ class MemorySailStore implements SailStore {
 
 		private final int serializable;
 
-		private final Lock txnStLock;
+		private final SnapshotReader txnStLock;
 
 		private volatile int nextSnapshot;
 
@@ -403,12 +1014,12 @@ class MemorySailStore implements SailStore {
 
 		public MemorySailSink(boolean explicit, boolean serializable) throws SailException {
 			this.explicit = explicit;
+			txnStLock = openStatementsReadLock();
 			if (serializable) {
-				this.serializable = currentSnapshot;
+				this.serializable = txnStLock.snapshot;
 			} else {
 				this.serializable = Integer.MAX_VALUE;
 			}
-			txnStLock = openStatementsReadLock();
 		}
 
 		@Override
@@ -528,7 +1139,7 @@ class MemorySailStore implements SailStore {
 					explicit, nextSnapshot, contexts);) {
 				while (iter.hasNext()) {
 					MemStatement st = iter.next();
-					st.setTillSnapshot(nextSnapshot);
+					deprecateStatement(st);
 				}
 			}
 		}
@@ -547,7 +1158,7 @@ class MemorySailStore implements SailStore {
 				MemStatement toDeprecate = (MemStatement) statement;
 				if ((nextSnapshot < 0 || toDeprecate.isInSnapshot(nextSnapshot))
 						&& toDeprecate.isExplicit() == explicit) {
-					toDeprecate.setTillSnapshot(nextSnapshot);
+					deprecateStatement(toDeprecate);
 				}
 			} else if (statement instanceof LinkedHashModel.ModelStatement
 					&& ((LinkedHashModel.ModelStatement) statement).getStatement() instanceof MemStatement) {
@@ -556,7 +1167,7 @@ class MemorySailStore implements SailStore {
 				MemStatement toDeprecate = (MemStatement) ((LinkedHashModel.ModelStatement) statement).getStatement();
 				if ((nextSnapshot < 0 || toDeprecate.isInSnapshot(nextSnapshot))
 						&& toDeprecate.isExplicit() == explicit) {
-					toDeprecate.setTillSnapshot(nextSnapshot);
+					deprecateStatement(toDeprecate);
 				}
 			} else {
 				try (CloseableIteration<MemStatement, SailException> iter = createStatementIterator(
@@ -565,12 +1176,18 @@ class MemorySailStore implements SailStore {
 						explicit, nextSnapshot, statement.getContext())) {
 					while (iter.hasNext()) {
 						MemStatement st = iter.next();
-						st.setTillSnapshot(nextSnapshot);
+						deprecateStatement(st);
 					}
 				}
 			}
 		}
 
+		private void deprecateStatement(MemStatement st) {
+			st.setTillSnapshot(nextSnapshot);
+			deprecatedStatements.add(st);
+			retainedStatementCount++;
+		}
+
 		private void acquireExclusiveTransactionLock() throws SailException {
 			if (!txnLock) {
 				txnLockManager.lock();
@@ -601,7 +1218,7 @@ class MemorySailStore implements SailStore {
 
 						if (!st.isExplicit() && explicit) {
 							// Implicit statement is now added explicitly
-							st.setTillSnapshot(nextSnapshot);
+							deprecateStatement(st);
 						} else if (!st.isInSnapshot(nextSnapshot)) {
 							st.setSinceSnapshot(nextSnapshot);
 						} else {
@@ -629,7 +1246,7 @@ class MemorySailStore implements SailStore {
 				while (iter.hasNext()) {
 					deprecated = true;
 					MemStatement st = iter.next();
-					st.setTillSnapshot(nextSnapshot);
+					deprecateStatement(st);
 				}
 			}
 
@@ -655,10 +1272,10 @@ class MemorySailStore implements SailStore {
 			this.lock = null;
 		}
 
-		public MemorySailDataset(boolean explicit, int snapshot) throws SailException {
+		public MemorySailDataset(boolean explicit, SnapshotReader reader) throws SailException {
 			this.explicit = explicit;
-			this.snapshot = snapshot;
-			this.lock = openStatementsReadLock();
+			this.snapshot = reader.snapshot;
+			this.lock = reader;
 		}
 
 		@Override
@@ -697,29 +1314,25 @@ class MemorySailStore implements SailStore {
 
 		@Override
 		public CloseableIteration<? extends Resource, SailException> getContextIDs() throws SailException {
-			// Note: we can't do this in a streaming fashion due to concurrency
-			// issues; iterating over the set of IRIs or bnodes while another
-			// thread
-			// adds statements with new resources would result in
-			// ConcurrentModificationException's (issue SES-544).
+			// Note: the contexts are collected up front, so that the result does
+			// not depend on resources that are added while it is being consumed
+			// (issue SES-544).
 
 			// Create a list of all resources that are used as contexts
 			ArrayList<MemResource> contextIDs = new ArrayList<>(32);
 
 			Lock stLock = openStatementsReadLock();
 			try {
-				synchronized (valueFactory) {
-					int snapshot = getCurrentSnapshot();
-					for (MemResource memResource : valueFactory.getMemURIs()) {
-						if (isContextResource(memResource, snapshot)) {
-							contextIDs.add(memResource);
-						}
+				int snapshot = getCurrentSnapshot();
+				for (MemResource memResource : valueFactory.getMemURIs()) {
+					if (isContextResource(memResource, snapshot)) {
+						contextIDs.add(memResource);
 					}
+				}
 
-					for (MemResource memResource : valueFactory.getMemBNodes()) {
-						if (isContextResource(memResource, snapshot)) {
-							contextIDs.add(memResource);
-						}
+				for (MemResource memResource : valueFactory.getMemBNodes()) {
+					if (isContextResource(memResource, snapshot)) {
+						contextIDs.add(memResource);
 					}
 				}
 			} finally {
@@ -760,6 +1373,79 @@ class MemorySailStore implements SailStore {
 			}
 		}
 
+		@Override
+		public List<CloseableIteration<? extends Statement, SailException>> getStatementPartitions(Resource subj,
+				IRI pred, Value obj, int partitions, Resource... contexts) throws SailException {
+			List<CloseableIteration<? extends Statement, SailException>> result = new ArrayList<>();
+			List<CloseableIteration<MemStatement, SailException>> stIters = null;
+			boolean allGood = false;
+			Lock stLock = openStatementsReadLock();
+			try {
+				stIters = createStatementPartitions(subj, pred, obj, explicit, getCurrentSnapshot(), partitions,
+						contexts);
+				// each partition holds a lock of its own, as the partitions may be closed in any order
+				result.add(new LockingIteration<Statement, SailException>(stLock, stIters.get(0)));
+				for (int i = 1; i < stIters.size(); i++) {
+					result.add(new LockingIteration<Statement, SailException>(openStatementsReadLock(),
+							stIters.get(i)));
+				}
+				allGood = true;
+				return result;
+			} finally {
+				if (!allGood) {
+					try {
+						if (result.isEmpty()) {
+							// otherwise, the lock is owned and released by the first partition
+							stLock.release();
+						}
+					} finally {
+						try {
+							for (CloseableIteration<? extends Statement, SailException> iter : result) {
+								iter.close();
+							}
+						} finally {
+							if (stIters != null) {
+								for (CloseableIteration<MemStatement, SailException> iter : stIters) {
+									iter.close();
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public CloseableIteration<? extends Statement, SailException> getStatementsInRange(Resource subj, IRI pred,
+				LiteralRange range, Resource... contexts) throws SailException {
+			CloseableIteration<? extends Statement, SailException> stIter1 = null;
+			CloseableIteration<? extends Statement, SailException> stIter2 = null;
+			boolean allGood = false;
+			Lock stLock = openStatementsReadLock();
+			try {
+				stIter1 = createRangeIterator(subj, pred, range, explicit, getCurrentSnapshot(), contexts);
+				stIter2 = new LockingIteration<Statement, SailException>(stLock, stIter1);
+				allGood = true;
+				return stIter2;
+			} finally {
+				if (!allGood) {
+					try {
+						stLock.release();
+					} finally {
+						try {
+							if (stIter2 != null) {
+								stIter2.close();
+							}
+						} finally {
+							if (stIter1 != null) {
+								stIter1.close();
+							}
+						}
+					}
+				}
+			}
+		}
+
 		@Override
 		public CloseableIteration<? extends Triple, SailException> getTriples(Resource subj, IRI pred, Value obj)
 				throws SailException {
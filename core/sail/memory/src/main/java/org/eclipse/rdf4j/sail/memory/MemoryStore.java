@@ -9,12 +9,19 @@ package org.eclipse.rdf4j.sail.memory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.concurrent.locks.Lock;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
@@ -25,7 +32,6 @@ import org.eclipse.rdf4j.sail.NotifyingSailConnection;
 import org.eclipse.rdf4j.sail.SailChangedEvent;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.base.SailDataset;
-import org.eclipse.rdf4j.sail.base.SailSink;
 import org.eclipse.rdf4j.sail.base.SailStore;
 import org.eclipse.rdf4j.sail.helpers.AbstractNotifyingSail;
 import org.eclipse.rdf4j.sail.helpers.DirectoryLockManager;
@@ -57,17 +63,29 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 
 	protected static final String SYNC_FILE_NAME = "memorystore.sync";
 
+	protected static final String DELTA_FILE_NAME = "memorystore.delta";
+
+	/**
+	 * The number of removed statements after which the changes are synced, regardless of the sync delay. Removed
+	 * statements are kept in memory until they have been written to the delta file.
+	 */
+	private static final long MAX_RETAINED_STATEMENTS = 100_000;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
 
 	/**
-	 * Factory/cache for MemValue objects.
+	 * The statements and namespaces of this store.
 	 */
 	private SailStore store;
 
 	private volatile boolean persist = false;
 
+	private volatile boolean compactStorage = false;
+
+	private volatile boolean literalIndexing = true;
+
 	/**
 	 * The file used for data persistence, null if this is a volatile RDF store.
 	 */
@@ -78,6 +96,11 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	 */
 	private volatile File syncFile;
 
+	/**
+	 * The file used for the changes since the data file was written, null if this is a volatile RDF store.
+	 */
+	private volatile File deltaFile;
+
 	/**
 	 * The directory lock, null if this is read-only or a volatile RDF store.
 	 */
@@ -86,7 +109,34 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	/**
 	 * Flag indicating whether the contents of this repository have changed.
 	 */
-	private volatile boolean contentsChanged;
+	private final AtomicBoolean contentsChanged = new AtomicBoolean();
+
+	/**
+	 * Flag indicating whether a connection listener has been added to a connection of this store, as stacked sails
+	 * such as inferencers do.
+	 */
+	private volatile boolean connectionListenersAdded = false;
+
+	/**
+	 * The ID of the checkpoint in the data file, or 0 if the data file needs to be rewritten before changes can be
+	 * appended to the delta file. Guarded by {@link #syncSemaphore}.
+	 */
+	private long checkpointID;
+
+	/**
+	 * The snapshot that has been written to disk. Guarded by {@link #syncSemaphore}.
+	 */
+	private int persistedSnapshot;
+
+	/**
+	 * The namespaces that have been written to disk. Guarded by {@link #syncSemaphore}.
+	 */
+	private Collection<Namespace> persistedNamespaces;
+
+	/**
+	 * Reads and writes the data and delta files, null if this is a volatile RDF store.
+	 */
+	private volatile FileIO fileIO;
 
 	/**
 	 * The sync delay.
@@ -164,6 +214,48 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		return persist;
 	}
 
+	/**
+	 * Sets whether statements are stored as columns of value IDs instead of as statement objects. Compact storage
+	 * needs considerably less memory per statement, but it can't be combined with persistence.
+	 * <p>
+	 * The values of compact storage are kept in a dictionary from which they are never removed, even once no statement
+	 * refers to them any more, until the store is shut down. Its memory therefore grows with the number of distinct
+	 * values that have ever been stored, which matters for long-running stores with a high turnover of values.
+	 *
+	 * @param compactStorage <tt>true</tt> to use compact storage.
+	 */
+	public void setCompactStorage(boolean compactStorage) {
+		if (isInitialized()) {
+			throw new IllegalStateException("sail has already been initialized");
+		}
+
+		this.compactStorage = compactStorage;
+	}
+
+	public boolean isCompactStorage() {
+		return compactStorage;
+	}
+
+	/**
+	 * Sets whether sorted indexes of the literal objects of predicates are used to look up statements for range and
+	 * prefix filters, e.g. <tt>FILTER(?price &gt; 100)</tt> or <tt>FILTER(STRSTARTS(?name, "A"))</tt>. Indexes are
+	 * built when a predicate is first queried in this way, and only for predicates with many statements. Literal
+	 * indexing is enabled by default, it is not supported by compact storage.
+	 *
+	 * @param literalIndexing <tt>true</tt> to use literal indexes.
+	 */
+	public void setLiteralIndexing(boolean literalIndexing) {
+		if (isInitialized()) {
+			throw new IllegalStateException("sail has already been initialized");
+		}
+
+		this.literalIndexing = literalIndexing;
+	}
+
+	public boolean isLiteralIndexing() {
+		return literalIndexing;
+	}
+
 	/**
 	 * Sets the time (in milliseconds) to wait after a transaction was commited before writing the changed data to file.
 	 * Setting this variable to 0 will force a file sync immediately after each commit. A negative value will deactivate
@@ -172,6 +264,9 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	 * rescheduled to wait for another <tt>syncDelay</tt> ms. This way, bursts of transaction events can be combined in
 	 * one file sync.
 	 * <p>
+	 * As removed statements are kept in memory until they have been written to file, the changes are synchronized
+	 * regardless of this setting once many statements have been removed since the previous synchronization.
+	 * <p>
 	 * The default value for this parameter is <tt>0</tt> (immediate synchronization).
 	 *
 	 * @param syncDelay The sync delay in milliseconds.
@@ -249,13 +344,23 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	protected void initializeInternal() throws SailException {
 		logger.debug("Initializing MemoryStore...");
 
-		this.store = new MemorySailStore(debugEnabled());
+		if (compactStorage) {
+			if (persist) {
+				throw new SailException("Compact storage can't be used with persistence");
+			}
+			this.store = new CompactMemorySailStore();
+		} else {
+			this.store = new MemorySailStore(literalIndexing);
+		}
 
 		if (persist) {
+			MemorySailStore memStore = getMemorySailStore();
 			File dataDir = getDataDir();
 			DirectoryLockManager locker = new DirectoryLockManager(dataDir);
 			dataFile = new File(dataDir, DATA_FILE_NAME);
 			syncFile = new File(dataDir, SYNC_FILE_NAME);
+			deltaFile = new File(dataDir, DELTA_FILE_NAME);
+			fileIO = new FileIO(memStore);
 
 			if (dataFile.exists()) {
 				logger.debug("Reading data from {}...", dataFile);
@@ -275,21 +380,20 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 				if (dataFile.length() == 0L) {
 					logger.warn("Ignoring empty data file: {}", dataFile);
 				} else {
-					SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
-					SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
 					try {
-						new FileIO(store.getValueFactory()).read(dataFile, explicit, inferred);
+						checkpointID = fileIO.read(dataFile);
 						logger.debug("Data file read successfully");
+						if (checkpointID != 0) {
+							if (deltaFile.exists() && fileIO.readDeltas(deltaFile, checkpointID)) {
+								logger.debug("Delta file read successfully");
+							} else if (dirLock != null) {
+								// no delta file yet, or a stale one that belongs to a previous data file
+								fileIO.createDeltaFile(deltaFile, checkpointID);
+							}
+						}
 					} catch (IOException e) {
 						logger.error("Failed to read data file", e);
 						throw new SailException(e);
-					} finally {
-						explicit.prepare();
-						explicit.flush();
-						explicit.close();
-						inferred.prepare();
-						inferred.flush();
-						inferred.close();
 					}
 				}
 			} else {
@@ -307,10 +411,7 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 					dirLock = locker.lockOrFail();
 
 					logger.debug("Initializing data file...");
-					try (SailDataset explicit = store.getExplicitSailSource().dataset(IsolationLevels.SNAPSHOT);
-							SailDataset inferred = store.getInferredSailSource().dataset(IsolationLevels.SNAPSHOT)) {
-						new FileIO(store.getValueFactory()).write(explicit, inferred, syncFile, dataFile);
-					}
+					writeCheckpoint(memStore.getLatestSnapshot());
 					logger.debug("Data file initialized");
 				} catch (IOException | SailException e) {
 					logger.debug("Failed to initialize data file", e);
@@ -319,7 +420,13 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 			}
 		}
 
-		contentsChanged = false;
+		contentsChanged.set(false);
+		if (persist) {
+			MemorySailStore memStore = getMemorySailStore();
+			persistedSnapshot = memStore.getLatestSnapshot();
+			persistedNamespaces = getNamespaces();
+			memStore.retainChangesSince(persistedSnapshot);
+		}
 
 		logger.debug("MemoryStore initialized");
 	}
@@ -333,6 +440,8 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 			store.close();
 			dataFile = null;
 			syncFile = null;
+			deltaFile = null;
+			fileIO = null;
 		} finally {
 			if (dirLock != null) {
 				dirLock.release();
@@ -357,6 +466,17 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		return new MemoryStoreConnection(this);
 	}
 
+	void connectionListenerAdded() {
+		connectionListenersAdded = true;
+	}
+
+	/**
+	 * Checks whether a connection listener has ever been added to a connection of this store.
+	 */
+	boolean hasConnectionListeners() {
+		return connectionListenersAdded;
+	}
+
 	@Override
 	public ValueFactory getValueFactory() {
 		if (store == null) {
@@ -369,8 +489,9 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	@Override
 	public void notifySailChanged(SailChangedEvent event) {
 		super.notifySailChanged(event);
-		synchronized (syncSemaphore) {
-			contentsChanged = contentsChanged || event.statementsAdded() || event.statementsRemoved();
+		// don't wait for a running sync, the changes are picked up by the next one
+		if (event.statementsAdded() || event.statementsRemoved()) {
+			contentsChanged.set(true);
 		}
 	}
 
@@ -379,8 +500,9 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 			return;
 		}
 
-		if (syncDelay == 0L) {
+		if (syncDelay == 0L || getMemorySailStore().getRetainedStatementCount() >= MAX_RETAINED_STATEMENTS) {
 			// Sync immediately
+			cancelSyncTask();
 			sync();
 		} else if (syncDelay > 0L) {
 			synchronized (syncTimerSemaphore) {
@@ -434,21 +556,40 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	/**
 	 * Synchronizes the contents of this repository with the data that is stored on disk. Data will only be written when
 	 * the contents of the repository and data in the file are out of sync.
+	 * <p>
+	 * The changes since the previous synchronization are appended to a delta file. Once the delta file has grown to
+	 * half the size of the data file, the complete contents are written to the data file instead and the delta file is
+	 * started anew. Commits are not blocked while the files are being written.
 	 */
 	public void sync() throws SailException {
 		// syncSemaphore prevents concurrent file synchronizations
 		synchronized (syncSemaphore) {
-			if (persist && contentsChanged) {
+			// reset the flag first, so that changes committed during the sync are picked up by the next one
+			if (persist && contentsChanged.getAndSet(false)) {
 				logger.debug("syncing data to file...");
+				MemorySailStore memStore = getMemorySailStore();
 				try {
-					IsolationLevels level = IsolationLevels.SNAPSHOT;
-					try (SailDataset explicit = store.getExplicitSailSource().dataset(level);
-							SailDataset inferred = store.getInferredSailSource().dataset(level)) {
-						new FileIO(store.getValueFactory()).write(explicit, inferred, syncFile, dataFile);
+					int snapshot = memStore.getLatestSnapshot();
+					Collection<Namespace> namespaces = getNamespaces();
+					boolean removed;
+					if (checkpointID == 0 || deltaFile.length() > dataFile.length() / 2) {
+						writeCheckpoint(snapshot);
+						removed = true;
+					} else {
+						Collection<Namespace> changedNamespaces = namespaces.equals(persistedNamespaces) ? null
+								: namespaces;
+						removed = fileIO.appendDelta(deltaFile, persistedSnapshot, snapshot, changedNamespaces) > 0;
+					}
+					persistedSnapshot = snapshot;
+					persistedNamespaces = namespaces;
+					memStore.retainChangesSince(snapshot);
+					if (removed) {
+						// the removed statements have been retained for this sync
+						memStore.scheduleSnapshotCleanup();
 					}
-					contentsChanged = false;
 					logger.debug("Data synced to file");
 				} catch (IOException e) {
+					contentsChanged.set(true);
 					logger.error("Failed to sync to file", e);
 					throw new SailException(e);
 				}
@@ -456,6 +597,34 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		}
 	}
 
+	/**
+	 * Writes the statements of the specified snapshot to a new data file and starts a new delta file.
+	 */
+	private void writeCheckpoint(int snapshot) throws IOException, SailException {
+		long newCheckpointID = Math.max(checkpointID + 1, System.currentTimeMillis());
+		fileIO.writeCheckpoint(snapshot, getNamespaces(), newCheckpointID, syncFile, dataFile);
+		checkpointID = newCheckpointID;
+		fileIO.createDeltaFile(deltaFile, checkpointID);
+	}
+
+	private MemorySailStore getMemorySailStore() {
+		// persistence requires the default storage
+		return (MemorySailStore) store;
+	}
+
+	private Collection<Namespace> getNamespaces() throws SailException {
+		Set<Namespace> namespaces = new HashSet<>();
+		try (SailDataset dataset = store.getExplicitSailSource().dataset(IsolationLevels.NONE);
+				CloseableIteration<? extends Namespace, SailException> iter = dataset.getNamespaces()) {
+			while (iter.hasNext()) {
+				// copy, as the namespaces of the store are mutable
+				Namespace ns = iter.next();
+				namespaces.add(new SimpleNamespace(ns.getPrefix(), ns.getName()));
+			}
+		}
+		return namespaces;
+	}
+
 	SailStore getSailStore() {
 		return store;
 	}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.base.SailStore;
+import org.eclipse.rdf4j.sail.helpers.DefaultSailChangedEvent;
+
+/**
+ * Loads large amounts of explicit statements into a {@link MemoryStore}, using multiple threads. The statements are
+ * read from a number of {@link StatementSource sources}, typically parsers of separate files or of parts of a file,
+ * which are consumed in parallel. The values of the statements are interned and the statements are added to the
+ * statement lists of their values in parallel as well.
+ * <p>
+ * Bulk loads bypass the connections of the store: the statements are added as a single new snapshot, which is only
+ * visible once all statements have been loaded, without the per-statement bookkeeping of a transaction. Statements
+ * that are already present are not added again. Transactions that commit during a bulk load wait for it to complete,
+ * while readers are not blocked. Since connections are bypassed, {@link org.eclipse.rdf4j.sail.SailConnectionListener
+ * connection listeners} would not be notified of the loaded statements, which would leave stacked sails such as
+ * inferencers inconsistent. Bulk loads are therefore refused once a connection listener has been added to a connection
+ * of the store.
+ * <p>
+ * Bulk loads require the default storage of the store, see {@link MemoryStore#setCompactStorage(boolean)}. If the
+ * store is persistent, the statements are written at the next synchronization.
+ */
+public class MemoryStoreBulkLoader {
+
+	/**
+	 * A source of statements, e.g. an RDF parser. A source is consumed by a single thread.
+	 */
+	@FunctionalInterface
+	public interface StatementSource {
+
+		/**
+		 * Passes all statements of this source to an action.
+		 *
+		 * @param action The action, which may be called from a thread other than the one that created the source.
+		 * @throws Exception If the statements could not be read, in which case none of the statements of the bulk
+		 *                   load are added.
+		 */
+		void forEach(Consumer<? super Statement> action) throws Exception;
+	}
+
+	private final MemoryStore sail;
+
+	private volatile int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Creates a new bulk loader for an initialized store.
+	 */
+	public MemoryStoreBulkLoader(MemoryStore sail) {
+		this.sail = sail;
+	}
+
+	/**
+	 * Sets the number of threads that load statements, by default the number of available processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Loads the statements of the specified sources into the store, as explicit statements in their own contexts.
+	 *
+	 * @param sources The sources, which are consumed in parallel.
+	 * @return The number of statements that have been added.
+	 * @throws SailException If the statements of a source could not be read, or if the store does not support bulk
+	 *                       loads, e.g. because it is used by a stacked sail that listens to its connections. No
+	 *                       statements are added in that case.
+	 */
+	public long load(Collection<? extends StatementSource> sources) throws SailException {
+		SailStore store = sail.getSailStore();
+		if (store == null) {
+			throw new IllegalStateException("sail not initialized.");
+		} else if (!(store instanceof MemorySailStore)) {
+			throw new SailException("Bulk loads require the default storage");
+		} else if (sail.hasConnectionListeners()) {
+			throw new SailException("Bulk loads bypass the connection listeners of stacked sails such as inferencers");
+		} else if (!sail.isWritable()) {
+			throw new SailException("Unable to load statements: data file is locked or read-only");
+		}
+		long added = ((MemorySailStore) store).bulkLoad(new ArrayList<>(sources), threads);
+		if (added > 0) {
+			DefaultSailChangedEvent event = new DefaultSailChangedEvent(sail);
+			event.setStatementsAdded(true);
+			sail.notifySailChanged(event);
+			sail.scheduleSyncTask();
+		}
+		return added;
+	}
+}
@@ -11,6 +11,7 @@ package org.eclipse.rdf4j.sail.memory;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.sail.SailConnectionListener;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.SailReadOnlyException;
 import org.eclipse.rdf4j.sail.base.SailSourceConnection;
@@ -46,6 +47,13 @@ public class MemoryStoreConnection extends SailSourceConnection {
 	 * Methods *
 	 *---------*/
 
+	@Override
+	public void addConnectionListener(SailConnectionListener listener) {
+		super.addConnectionListener(listener);
+		// bulk loads would bypass the listener
+		sail.connectionListenerAdded();
+	}
+
 	@Override
 	protected void startTransactionInternal() throws SailException {
 		if (!sail.isWritable()) {
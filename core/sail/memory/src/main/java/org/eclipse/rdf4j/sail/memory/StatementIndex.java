@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.Arrays;
+
+/**
+ * A sorted permutation of the statements of a {@link CompactMemorySailStore}. The statements are identified by their
+ * position in the statement columns and are ordered by the value IDs of their components, in the field order of the
+ * index, e.g. subject, predicate, object, context.
+ * <p>
+ * The permutation consists of a large main level and a few small levels with recently added statements. Added
+ * statements are appended as a new level, which is only merged with the previous level once that is less than twice
+ * as large, so that the recent levels shrink geometrically and each statement is merged a logarithmic number of times.
+ * The recent levels are merged into the main level when they have grown to an eighth of its size. Indexes are
+ * immutable: adding statements returns a new index, which shares the arrays that did not change.
+ */
+class StatementIndex {
+
+	/**
+	 * The minimum size of the recent levels before they are merged into the main level.
+	 */
+	private static final int MIN_MERGE_SIZE = 4096;
+
+	private static final int[][] NO_LEVELS = new int[0][];
+
+	private final int[] fields;
+
+	private final int[] main;
+
+	/**
+	 * The levels with recently added statements, from the oldest and largest to the newest.
+	 */
+	private final int[][] recent;
+
+	/**
+	 * The total size of the {@link #recent} levels.
+	 */
+	private final int recentSize;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param fields The order of the components, as column numbers.
+	 */
+	public StatementIndex(int[] fields) {
+		this(fields, new int[0], NO_LEVELS, 0);
+	}
+
+	private StatementIndex(int[] fields, int[] main, int[][] recent, int recentSize) {
+		this.fields = fields;
+		this.main = main;
+		this.recent = recent;
+		this.recentSize = recentSize;
+	}
+
+	/**
+	 * Creates an index of statements.
+	 *
+	 * @param positions The positions of the statements, which are sorted in place.
+	 * @param columns   The statement columns.
+	 */
+	public static StatementIndex build(int[] fields, int[] positions, int[][] columns) {
+		sort(positions, positions.length, fields, columns);
+		return new StatementIndex(fields, positions, NO_LEVELS, 0);
+	}
+
+	public int[] getFields() {
+		return fields;
+	}
+
+	/**
+	 * Creates a new index that also contains the specified statements.
+	 *
+	 * @param positions The positions of the added statements. The array is not modified.
+	 */
+	public StatementIndex add(int[] positions, int count, int[][] columns) {
+		if (count == 0) {
+			return this;
+		}
+		int[] added = Arrays.copyOf(positions, count);
+		sort(added, count, fields, columns);
+
+		int newRecentSize = recentSize + count;
+		if (newRecentSize >= MIN_MERGE_SIZE && newRecentSize >= main.length / 8) {
+			int[] merged = main;
+			for (int[] level : recent) {
+				merged = merge(merged, level, fields, columns);
+			}
+			return new StatementIndex(fields, merge(merged, added, fields, columns), NO_LEVELS, 0);
+		}
+
+		int levelCount = recent.length;
+		while (levelCount > 0 && recent[levelCount - 1].length < 2 * added.length) {
+			added = merge(recent[--levelCount], added, fields, columns);
+		}
+		int[][] levels = Arrays.copyOf(recent, levelCount + 1);
+		levels[levelCount] = added;
+		return new StatementIndex(fields, main, levels, newRecentSize);
+	}
+
+	/**
+	 * Gets the number of statements in this index, including deprecated ones.
+	 */
+	public int size() {
+		return main.length + recentSize;
+	}
+
+	/**
+	 * Counts the statements that match the leading components of this index.
+	 *
+	 * @param key    The value IDs of the leading components, in the order of this index.
+	 * @param length The number of leading components to match.
+	 */
+	public int count(int[] key, int length, int[][] columns) {
+		int count = upperBound(main, key, length, columns) - lowerBound(main, key, length, columns);
+		for (int[] level : recent) {
+			count += upperBound(level, key, length, columns) - lowerBound(level, key, length, columns);
+		}
+		return count;
+	}
+
+	/**
+	 * Creates a cursor over the statements that match the leading components of this index.
+	 *
+	 * @param key    The value IDs of the leading components, in the order of this index.
+	 * @param length The number of leading components to match.
+	 */
+	public Cursor cursor(int[] key, int length, int[][] columns) {
+		int[] starts = new int[recent.length + 1];
+		int[] ends = new int[recent.length + 1];
+		starts[0] = lowerBound(main, key, length, columns);
+		ends[0] = upperBound(main, key, length, columns);
+		for (int i = 0; i < recent.length; i++) {
+			starts[i + 1] = lowerBound(recent[i], key, length, columns);
+			ends[i + 1] = upperBound(recent[i], key, length, columns);
+		}
+		return new Cursor(starts, ends);
+	}
+
+	/**
+	 * Iterates over the positions of the statements in a range of all levels of an index, one level after another.
+	 */
+	class Cursor {
+
+		/**
+		 * The current level: <tt>0</tt> for the main level, otherwise the index of a recent level plus one.
+		 */
+		private int level;
+
+		private int index;
+
+		private final int[] starts;
+
+		private final int[] ends;
+
+		private Cursor(int[] starts, int[] ends) {
+			this.starts = starts;
+			this.ends = ends;
+			this.index = starts[0];
+		}
+
+		/**
+		 * Gets the position of the next statement, or <tt>-1</tt> if there are no more statements.
+		 */
+		public int next() {
+			while (index == ends[level]) {
+				if (++level == ends.length) {
+					level--;
+					return -1;
+				}
+				index = starts[level];
+			}
+			return level == 0 ? main[index++] : recent[level - 1][index++];
+		}
+	}
+
+	/**
+	 * Gets the distinct values of the first component of this index.
+	 *
+	 * @param filter Only the positions for which this filter returns <tt>true</tt> are considered.
+	 */
+	public int[] getFirstComponentValues(PositionFilter filter, int[][] columns) {
+		int[] column = columns[fields[0]];
+		int[] values = new int[16];
+		int count = 0;
+		int[] key = new int[1];
+		int[][] levels = Arrays.copyOf(recent, recent.length + 1);
+		levels[recent.length] = main;
+		for (int[] level : levels) {
+			int i = 0;
+			while (i < level.length) {
+				key[0] = column[level[i]];
+				int end = upperBound(level, key, 1, columns);
+				for (int j = i; j < end; j++) {
+					if (filter.accept(level[j])) {
+						if (count == values.length) {
+							values = Arrays.copyOf(values, 2 * count);
+						}
+						values[count++] = key[0];
+						break;
+					}
+				}
+				i = end;
+			}
+		}
+		values = Arrays.copyOf(values, count);
+		Arrays.sort(values);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || values[i] != values[i - 1]) {
+				values[distinct++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, distinct);
+	}
+
+	interface PositionFilter {
+
+		boolean accept(int position);
+	}
+
+	private int lowerBound(int[] level, int[] key, int length, int[][] columns) {
+		int low = 0;
+		int high = level.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareKey(level[mid], key, length, columns) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int upperBound(int[] level, int[] key, int length, int[][] columns) {
+		int low = 0;
+		int high = level.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareKey(level[mid], key, length, columns) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compares the leading components of the statement at a position with a key.
+	 */
+	private int compareKey(int position, int[] key, int length, int[][] columns) {
+		for (int i = 0; i < length; i++) {
+			int diff = Integer.compare(columns[fields[i]][position], key[i]);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return 0;
+	}
+
+	private static int compare(int a, int b, int[] fields, int[][] columns) {
+		for (int field : fields) {
+			int[] column = columns[field];
+			int diff = Integer.compare(column[a], column[b]);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return Integer.compare(a, b);
+	}
+
+	private static int[] merge(int[] a, int[] b, int[] fields, int[][] columns) {
+		if (a.length == 0) {
+			return b;
+		} else if (b.length == 0) {
+			return a;
+		}
+		int[] merged = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length && j < b.length) {
+			merged[k++] = compare(a[i], b[j], fields, columns) <= 0 ? a[i++] : b[j++];
+		}
+		System.arraycopy(a, i, merged, k, a.length - i);
+		System.arraycopy(b, j, merged, k + a.length - i, b.length - j);
+		return merged;
+	}
+
+	/**
+	 * Sorts positions by the components of their statements, using a bottom-up merge sort.
+	 */
+	private static void sort(int[] positions, int count, int[] fields, int[][] columns) {
+		int[] src = positions;
+		int[] dst = new int[count];
+		for (int width = 1; width < count; width *= 2) {
+			for (int start = 0; start < count; start += 2 * width) {
+				int mid = Math.min(start + width, count);
+				int end = Math.min(start + 2 * width, count);
+				int i = start;
+				int j = mid;
+				int k = start;
+				while (i < mid && j < end) {
+					dst[k++] = compare(src[i], src[j], fields, columns) <= 0 ? src[i++] : src[j++];
+				}
+				while (i < mid) {
+					dst[k++] = src[i++];
+				}
+				while (j < end) {
+					dst[k++] = src[j++];
+				}
+			}
+			int[] tmp = src;
+			src = dst;
+			dst = tmp;
+		}
+		if (src != positions) {
+			System.arraycopy(src, 0, positions, 0, count);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.eclipse.rdf4j.model.Value;
+
+/**
+ * Assigns dense <tt>int</tt> IDs to values, for the statement columns of a {@link CompactMemorySailStore}. The ID
+ * <tt>0</tt> represents <tt>null</tt>, i.e. the default context. IDs are never reused.
+ * <p>
+ * The IDs are kept in an open addressing hash table of <tt>int</tt>s that refers to the value array, so that a value
+ * costs little more than the value object itself. Only the creation of IDs is synchronized: an ID is written to its
+ * slot of the table after its value has been stored, and slots are never cleared, so lookups of IDs probe the table
+ * without locking. Tables and value arrays that have outgrown their capacity are replaced by larger copies, while
+ * lookups that are in progress finish on the old ones. Values can be read without locking, provided that the ID has
+ * been obtained through a happens-before relation with its creation, e.g. from a published snapshot or from
+ * {@link #getID(Value)}.
+ * <p>
+ * Values are never removed from the dictionary, so it grows with every value that has ever been stored, see
+ * {@link MemoryStore#setCompactStorage(boolean)}.
+ */
+class ValueDictionary {
+
+	/**
+	 * The ID returned for values that are not in the dictionary.
+	 */
+	static final int UNKNOWN_ID = -1;
+
+	private volatile Value[] values;
+
+	/**
+	 * The number of assigned IDs, including the reserved ID <tt>0</tt>. Guarded by this dictionary.
+	 */
+	private int size;
+
+	/**
+	 * Hash table with the IDs of the values, <tt>0</tt> marks an empty slot.
+	 */
+	private volatile AtomicIntegerArray table;
+
+	public ValueDictionary() {
+		clear();
+	}
+
+	/**
+	 * Gets the ID of a value.
+	 *
+	 * @return The ID, <tt>0</tt> for <tt>null</tt> or {@link #UNKNOWN_ID} if the value is not in the dictionary.
+	 */
+	public int getID(Value value) {
+		if (value == null) {
+			return 0;
+		}
+		AtomicIntegerArray table = this.table;
+		int id = table.get(findSlot(table, value));
+		return id == 0 ? UNKNOWN_ID : id;
+	}
+
+	/**
+	 * Gets the ID of a value, adding it to the dictionary if needed.
+	 */
+	public synchronized int getOrCreateID(Value value) {
+		if (value == null) {
+			return 0;
+		}
+		int slot = findSlot(table, value);
+		int id = table.get(slot);
+		if (id != 0) {
+			return id;
+		}
+
+		if (size == values.length) {
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		id = size++;
+		values[id] = value;
+		// publishes the value to lookups that find the ID
+		table.set(slot, id);
+		if (2 * size > table.length()) {
+			rehash(2 * table.length());
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the value with the specified ID, or <tt>null</tt> for the ID <tt>0</tt>.
+	 */
+	public Value getValue(int id) {
+		return values[id];
+	}
+
+	/**
+	 * Gets the number of values in the dictionary.
+	 */
+	public synchronized int size() {
+		return size - 1;
+	}
+
+	public synchronized void clear() {
+		values = new Value[1024];
+		table = new AtomicIntegerArray(2048);
+		size = 1;
+	}
+
+	private int findSlot(AtomicIntegerArray table, Value value) {
+		int mask = table.length() - 1;
+		int slot = mix(value.hashCode()) & mask;
+		for (int id = table.get(slot); id != 0; id = table.get(slot)) {
+			// read after the ID, so that the array holds its value
+			if (values[id].equals(value)) {
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		AtomicIntegerArray newTable = new AtomicIntegerArray(capacity);
+		int mask = capacity - 1;
+		for (int id = 1; id < size; id++) {
+			int slot = mix(values[id].hashCode()) & mask;
+			while (newTable.get(slot) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable.set(slot, id);
+		}
+		table = newTable;
+	}
+
+	private static int mix(int hash) {
+		// spread the bits, as value hash codes are often similar
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
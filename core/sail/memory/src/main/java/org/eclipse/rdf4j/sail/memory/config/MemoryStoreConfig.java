@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory.config;
 
+import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.COMPACT_STORAGE;
+import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.LITERAL_INDEXING;
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.NAMESPACE;
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.PERSIST;
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.SYNC_DELAY;
@@ -29,6 +31,10 @@ public class MemoryStoreConfig extends BaseSailConfig {
 
 	private long syncDelay = 0L;
 
+	private boolean compactStorage = false;
+
+	private boolean literalIndexing = true;
+
 	public MemoryStoreConfig() {
 		super(MemoryStoreFactory.SAIL_TYPE);
 	}
@@ -59,6 +65,22 @@ public class MemoryStoreConfig extends BaseSailConfig {
 		this.syncDelay = syncDelay;
 	}
 
+	public boolean isCompactStorage() {
+		return compactStorage;
+	}
+
+	public void setCompactStorage(boolean compactStorage) {
+		this.compactStorage = compactStorage;
+	}
+
+	public boolean isLiteralIndexing() {
+		return literalIndexing;
+	}
+
+	public void setLiteralIndexing(boolean literalIndexing) {
+		this.literalIndexing = literalIndexing;
+	}
+
 	@Override
 	public Resource export(Model graph) {
 		Resource implNode = super.export(graph);
@@ -72,6 +94,14 @@ public class MemoryStoreConfig extends BaseSailConfig {
 			graph.add(implNode, SYNC_DELAY, SimpleValueFactory.getInstance().createLiteral(syncDelay));
 		}
 
+		if (compactStorage) {
+			graph.add(implNode, COMPACT_STORAGE, BooleanLiteral.TRUE);
+		}
+
+		if (!literalIndexing) {
+			graph.add(implNode, LITERAL_INDEXING, BooleanLiteral.FALSE);
+		}
+
 		return implNode;
 	}
 
@@ -98,6 +128,24 @@ public class MemoryStoreConfig extends BaseSailConfig {
 							"Long integer value required for " + SYNC_DELAY + " property, found " + syncDelayValue);
 				}
 			});
+
+			Models.objectLiteral(graph.getStatements(implNode, COMPACT_STORAGE, null)).ifPresent(compactValue -> {
+				try {
+					setCompactStorage(compactValue.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + COMPACT_STORAGE + " property, found " + compactValue);
+				}
+			});
+
+			Models.objectLiteral(graph.getStatements(implNode, LITERAL_INDEXING, null)).ifPresent(indexingValue -> {
+				try {
+					setLiteralIndexing(indexingValue.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + LITERAL_INDEXING + " property, found " + indexingValue);
+				}
+			});
 		} catch (ModelException e) {
 			throw new SailConfigException(e.getMessage(), e);
 		}
@@ -29,9 +29,17 @@ public class MemoryStoreSchema {
 	/** <tt>http://www.openrdf.org/config/sail/memory#syncDelay</tt> */
 	public final static IRI SYNC_DELAY;
 
+	/** <tt>http://www.openrdf.org/config/sail/memory#compactStorage</tt> */
+	public final static IRI COMPACT_STORAGE;
+
+	/** <tt>http://www.openrdf.org/config/sail/memory#literalIndexing</tt> */
+	public final static IRI LITERAL_INDEXING;
+
 	static {
 		ValueFactory factory = SimpleValueFactory.getInstance();
 		PERSIST = factory.createIRI(NAMESPACE, "persist");
 		SYNC_DELAY = factory.createIRI(NAMESPACE, "syncDelay");
+		COMPACT_STORAGE = factory.createIRI(NAMESPACE, "compactStorage");
+		LITERAL_INDEXING = factory.createIRI(NAMESPACE, "literalIndexing");
 	}
 }
@@ -22,9 +22,14 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	 *-----------*/
 
 	/**
-	 * The lists of statements over which to iterate.
+	 * The statements over which to iterate, see {@link MemStatementList#getStatements()}.
 	 */
-	private final MemStatementList statementList;
+	private final MemStatement[] statements;
+
+	/**
+	 * The index after the last statement over which to iterate.
+	 */
+	private final int end;
 
 	/**
 	 * The subject of statements to return, or null if any subject is OK.
@@ -79,7 +84,27 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	 */
 	public MemStatementIterator(MemStatementList statementList, MemResource subject, MemIRI predicate, MemValue object,
 			Boolean explicit, int snapshot, MemResource... contexts) {
-		this.statementList = statementList;
+		this(statementList.getStatements(), 0, Integer.MAX_VALUE, subject, predicate, object, explicit, snapshot,
+				contexts);
+	}
+
+	/**
+	 * Creates a new MemStatementIterator that will iterate over a range of an array of statements, searching for
+	 * statements that match the specified pattern of subject, predicate, object and context(s). The iteration stops at
+	 * the end of the range or at the first <tt>null</tt> value.
+	 *
+	 * @param statements the statements over which to iterate.
+	 * @param fromIndex  the index of the first statement.
+	 * @param toIndex    the index after the last statement.
+	 * @param subject    subject of pattern.
+	 * @param predicate  predicate of pattern.
+	 * @param object     object of pattern.
+	 * @param contexts   context(s) of pattern.
+	 */
+	public MemStatementIterator(MemStatement[] statements, int fromIndex, int toIndex, MemResource subject,
+			MemIRI predicate, MemValue object, Boolean explicit, int snapshot, MemResource... contexts) {
+		this.statements = statements;
+		this.end = Math.min(toIndex, statements.length);
 		this.subject = subject;
 		this.predicate = predicate;
 		this.object = object;
@@ -87,7 +112,7 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 		this.explicit = explicit;
 		this.snapshot = snapshot;
 
-		this.statementIdx = -1;
+		this.statementIdx = fromIndex - 1;
 	}
 
 	/*---------*
@@ -104,8 +129,8 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	protected MemStatement getNextElement() {
 		statementIdx++;
 
-		for (; statementIdx < statementList.size(); statementIdx++) {
-			MemStatement st = statementList.get(statementIdx);
+		for (; statementIdx < end && statements[statementIdx] != null; statementIdx++) {
+			MemStatement st = statements[statementIdx];
 
 			if (isInSnapshot(st) && (subject == null || subject == st.getSubject())
 					&& (predicate == null || predicate == st.getPredicate())
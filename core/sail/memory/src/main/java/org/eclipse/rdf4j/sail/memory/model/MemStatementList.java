@@ -23,6 +23,17 @@ public class MemStatementList {
 
 	private volatile int size;
 
+	/**
+	 * Incremented when statements are removed, see {@link #getVersion()}.
+	 */
+	private volatile int version;
+
+	/**
+	 * The number of statements of this list that are known to be no longer visible to any reader, see
+	 * {@link #addStaleStatements(int)}.
+	 */
+	private int staleCount;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -98,6 +109,7 @@ public class MemStatementList {
 			statements[index] = statements[size];
 			statements[size] = null;
 		}
+		version++;
 	}
 
 	public void remove(MemStatement st) {
@@ -112,30 +124,130 @@ public class MemStatementList {
 	public void clear() {
 		Arrays.fill(statements, 0, size, null);
 		size = 0;
+		version++;
+	}
+
+	/**
+	 * Gets the version of this list, which changes whenever statements are removed from the list. As long as the
+	 * version is the same, statements are only appended, so that data derived from the statements in the array
+	 * returned by {@link #getStatements()} only needs to be updated with the statements that follow them. The version
+	 * must be read before the array.
+	 */
+	public int getVersion() {
+		return version;
 	}
 
+	/**
+	 * Gets the array that holds the statements of this list, for iterating over the list without being affected by
+	 * concurrent changes. The statements are followed by <tt>null</tt> values, if the array is not full. Statements
+	 * that are added after this method has been called may or may not be part of the returned array.
+	 */
+	public MemStatement[] getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Records that statements of this list are no longer visible to any reader. Such statements are skipped by readers
+	 * like any other statement that is not part of their snapshot, so the snapshot cleanup of the store can leave them
+	 * in the list until they make up a large enough part of it to be worth copying the list. Only to be called by that
+	 * cleanup.
+	 *
+	 * @param count The number of statements that have become stale.
+	 * @return The number of stale statements that have been recorded since the list was last cleaned up.
+	 */
+	public int addStaleStatements(int count) {
+		staleCount += count;
+		return staleCount;
+	}
+
+	/**
+	 * Removes all statements that have been deprecated in or before the specified snapshot. The statements are copied
+	 * to a new array, so that iterations over the array returned by {@link #getStatements()} are not affected.
+	 */
 	public void cleanSnapshots(int currentSnapshot) {
-		int i = size - 1;
-
-		// remove all deprecated statements from the end of the list
-		for (; i >= 0; i--) {
-			if (statements[i].getTillSnapshot() <= currentSnapshot) {
-				--size;
-				statements[i] = null;
-			} else {
-				i--;
-				break;
+		Cleanup cleanup = prepareCleanup(currentSnapshot);
+		if (cleanup != null) {
+			cleanup.apply();
+		}
+	}
+
+	/**
+	 * Prepares the removal of all statements that have been deprecated in or before the specified snapshot, without
+	 * modifying this list. The statements that remain are copied, which can be done concurrently with additions to
+	 * this list. Statements that are added in the meantime are only copied by {@link Cleanup#apply()}, which must not
+	 * be called concurrently with additions.
+	 *
+	 * @return The cleanup to apply, or <tt>null</tt> if there are no statements to remove.
+	 */
+	public Cleanup prepareCleanup(int currentSnapshot) {
+		int sourceSize = size;
+		MemStatement[] source = statements;
+		int i = 0;
+		while (i < sourceSize && source[i].getTillSnapshot() > currentSnapshot) {
+			i++;
+		}
+		if (i == sourceSize) {
+			// the stale statements have been removed otherwise
+			staleCount = 0;
+			return null;
+		}
+
+		MemStatement[] remaining = new MemStatement[Math.max(4, sourceSize)];
+		System.arraycopy(source, 0, remaining, 0, i);
+		int remainingSize = i;
+		for (i++; i < sourceSize; i++) {
+			if (source[i].getTillSnapshot() > currentSnapshot) {
+				remaining[remainingSize++] = source[i];
 			}
 		}
+		return new Cleanup(source, sourceSize, remaining, remainingSize);
+	}
+
+	/**
+	 * A copy of a list without deprecated statements, see {@link MemStatementList#prepareCleanup(int)}.
+	 */
+	public class Cleanup {
+
+		private final MemStatement[] source;
+
+		private final int sourceSize;
+
+		private MemStatement[] remaining;
+
+		private int remainingSize;
+
+		private Cleanup(MemStatement[] source, int sourceSize, MemStatement[] remaining, int remainingSize) {
+			this.source = source;
+			this.sourceSize = sourceSize;
+			this.remaining = remaining;
+			this.remainingSize = remainingSize;
+		}
+
+		/**
+		 * Replaces the statements of the list with the remaining statements, plus the statements that have been added
+		 * since the cleanup was prepared. Nothing is changed if statements have been removed in the meantime.
+		 *
+		 * @return <tt>true</tt> if the list has been changed.
+		 */
+		public boolean apply() {
+			int currentSize = size;
+			MemStatement[] current = statements;
+			if (currentSize < sourceSize || current[sourceSize - 1] != source[sourceSize - 1]) {
+				// the list has been cleared or cleaned up otherwise
+				return false;
+			}
 
-		// remove all deprecated statements that are not at the end of the list
-		for (; i >= 0; i--) {
-			if (statements[i].getTillSnapshot() <= currentSnapshot) {
-				// replace statement with last statement in the list
-				--size;
-				statements[i] = statements[size];
-				statements[size] = null;
+			int added = currentSize - sourceSize;
+			if (remainingSize + added > remaining.length) {
+				remaining = Arrays.copyOf(remaining, remainingSize + added);
 			}
+			System.arraycopy(current, sourceSize, remaining, remainingSize, added);
+			// publish a consistent array before the size shrinks
+			statements = remaining;
+			size = remainingSize + added;
+			version++;
+			staleCount = 0;
+			return true;
 		}
 	}
 
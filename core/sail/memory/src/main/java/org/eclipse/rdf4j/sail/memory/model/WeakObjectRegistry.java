@@ -7,18 +7,24 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory.model;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An object registry that uses weak references to keep track of the stored objects. The registry can be used to
  * retrieve stored objects using another, equivalent object. As such, it can be used to prevent the use of duplicates in
  * another data structure, reducing memory usage. The objects that are being stored should properly implement the
  * {@link Object#equals} and {@link Object#hashCode} methods.
+ * <p>
+ * The registry is thread-safe without locking: lookups never block, and concurrent additions of equal objects are
+ * resolved by {@link #getOrAdd(Object)}. Entries of objects that have been garbage collected are removed during
+ * additions.
  */
 public class WeakObjectRegistry<E> extends AbstractSet<E> {
 
@@ -27,9 +33,14 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 	 *-----------*/
 
 	/**
-	 * The hash map that is used to store the objects.
+	 * The hash map that is used to store the objects, which maps each entry to itself.
 	 */
-	private final Map<E, WeakReference<E>> objectMap = new WeakHashMap<>();
+	private final ConcurrentHashMap<Object, WeakEntry<E>> objectMap = new ConcurrentHashMap<>();
+
+	/**
+	 * The queue with the entries of the objects that have been garbage collected.
+	 */
+	private final ReferenceQueue<E> queue = new ReferenceQueue<>();
 
 	/*--------------*
 	 * Constructors *
@@ -64,18 +75,81 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 	 * @return A stored object that is equal to the supplied key, or <tt>null</tt> if no such object was found.
 	 */
 	public E get(Object key) {
-		WeakReference<E> weakRef = objectMap.get(key);
+		if (key == null) {
+			return null;
+		}
+
+		WeakEntry<E> entry = objectMap.get(new Lookup(key));
 
-		if (weakRef != null) {
-			return weakRef.get();
+		if (entry != null) {
+			return entry.get();
 		}
 
 		return null;
 	}
 
+	/**
+	 * Retrieves the stored object that is equal to the supplied object, storing the supplied object if there is no
+	 * such object yet.
+	 *
+	 * @param object The object to store.
+	 * @return The stored object that is equal to the supplied object, which is the supplied object if it has been
+	 *         added.
+	 */
+	public E getOrAdd(E object) {
+		expungeStaleEntries();
+
+		WeakEntry<E> entry = new WeakEntry<>(object, queue);
+		while (true) {
+			WeakEntry<E> existing = objectMap.putIfAbsent(entry, entry);
+			if (existing == null) {
+				return object;
+			}
+
+			E existingObject = existing.get();
+			if (existingObject != null) {
+				return existingObject;
+			}
+
+			// garbage collected in the meantime
+			objectMap.remove(existing, existing);
+		}
+	}
+
 	@Override
 	public Iterator<E> iterator() {
-		return objectMap.keySet().iterator();
+		Iterator<WeakEntry<E>> entries = objectMap.values().iterator();
+
+		return new Iterator<E>() {
+
+			private E next;
+
+			private WeakEntry<E> current;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && entries.hasNext()) {
+					current = entries.next();
+					next = current.get();
+				}
+				return next != null;
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				E result = next;
+				next = null;
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				objectMap.remove(current, current);
+			}
+		};
 	}
 
 	@Override
@@ -90,23 +164,16 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 
 	@Override
 	public boolean add(E object) {
-		WeakReference<E> ref = new WeakReference<>(object);
-
-		ref = objectMap.put(object, ref);
-
-		if (ref != null && ref.get() != null) {
-			// A duplicate was added which replaced the existing object. Undo this
-			// operation.
-			objectMap.put(ref.get(), ref);
-			return false;
-		}
-
-		return true;
+		return getOrAdd(object) == object;
 	}
 
 	@Override
 	public boolean remove(Object o) {
-		WeakReference<E> ref = objectMap.remove(o);
+		if (o == null) {
+			return false;
+		}
+
+		WeakEntry<E> ref = objectMap.remove(new Lookup(o));
 		return ref != null && ref.get() != null;
 	}
 
@@ -114,4 +181,66 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 	public void clear() {
 		objectMap.clear();
 	}
+
+	private void expungeStaleEntries() {
+		Reference<? extends E> ref;
+		while ((ref = queue.poll()) != null) {
+			objectMap.remove(ref, ref);
+		}
+	}
+
+	/**
+	 * A weak reference to a stored object, which is equal to the entries and lookups of equal objects.
+	 */
+	private static final class WeakEntry<E> extends WeakReference<E> {
+
+		private final int hash;
+
+		WeakEntry(E object, ReferenceQueue<E> queue) {
+			super(object, queue);
+			this.hash = object.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			if (o instanceof WeakEntry) {
+				E object = get();
+				return object != null && hash == o.hashCode() && object.equals(((WeakEntry<?>) o).get());
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A key to look up the entry of an object that is equal to another object.
+	 */
+	private static final class Lookup {
+
+		private final Object key;
+
+		private final int hash;
+
+		Lookup(Object key) {
+			this.key = key;
+			this.hash = key.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof WeakEntry && key.equals(((WeakEntry<?>) o).get());
+		}
+	}
 }
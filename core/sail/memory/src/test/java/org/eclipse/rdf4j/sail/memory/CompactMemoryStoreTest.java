@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.RDFNotifyingStoreTest;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.junit.Test;
+
+/**
+ * An extension of RDFStoreTest for testing a {@link MemoryStore} with compact storage.
+ */
+public class CompactMemoryStoreTest extends RDFNotifyingStoreTest {
+
+	@Override
+	protected NotifyingSail createSail() throws SailException {
+		MemoryStore sail = new MemoryStore();
+		sail.setCompactStorage(true);
+		return sail;
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		con.begin();
+		for (int i = 0; i < 5000; i++) {
+			con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE, context1);
+		}
+		con.commit();
+
+		try (SailConnection reader = sail.getConnection()) {
+			reader.begin(IsolationLevels.SNAPSHOT);
+			assertEquals(5000, reader.size());
+
+			// removes enough statements to rebuild the statement columns
+			con.begin();
+			con.removeStatements(null, RDF.TYPE, null, context1);
+			con.addStatement(resource(0), RDFS.LABEL, vf.createLiteral("label"));
+			con.commit();
+
+			assertEquals(5000, reader.size(context1));
+			assertTrue(reader.hasStatement(resource(4999), RDF.TYPE, RDFS.RESOURCE, false));
+			reader.commit();
+		}
+
+		assertEquals(1, con.size());
+		assertFalse(con.hasStatement(resource(0), RDF.TYPE, null, false));
+		assertEquals(1, Iterations.asList(con.getStatements(null, RDFS.LABEL, null, false)).size());
+	}
+
+	@Test
+	public void testInferredStatementAddedExplicitly() throws Exception {
+		con.begin();
+		((InferencerConnection) con).addInferredStatement(picasso, RDF.TYPE, painter);
+		con.commit();
+		assertFalse(con.hasStatement(picasso, RDF.TYPE, painter, false));
+		assertTrue(con.hasStatement(picasso, RDF.TYPE, painter, true));
+
+		con.begin();
+		con.addStatement(picasso, RDF.TYPE, painter);
+		con.rollback();
+		assertFalse(con.hasStatement(picasso, RDF.TYPE, painter, false));
+
+		con.begin();
+		con.addStatement(picasso, RDF.TYPE, painter);
+		con.commit();
+		assertTrue(con.hasStatement(picasso, RDF.TYPE, painter, false));
+		assertEquals(1, Iterations.asList(con.getStatements(picasso, RDF.TYPE, painter, true)).size());
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
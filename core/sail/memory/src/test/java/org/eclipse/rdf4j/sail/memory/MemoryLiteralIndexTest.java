@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FN;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.And;
+import org.eclipse.rdf4j.query.algebra.Compare;
+import org.eclipse.rdf4j.query.algebra.Compare.CompareOp;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.ValueConstant;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that range and prefix filters on literals give the same results with and without literal indexes.
+ */
+public class MemoryLiteralIndexTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI price = vf.createIRI("urn:price");
+
+	private final IRI created = vf.createIRI("urn:created");
+
+	private MemoryStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		createSail(true);
+	}
+
+	private void createSail(boolean literalIndexing) throws Exception {
+		sail = new MemoryStore();
+		sail.setLiteralIndexing(literalIndexing);
+		sail.init();
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 200; i++) {
+				con.addStatement(item(i), price, vf.createLiteral(i));
+				con.addStatement(item(i), RDFS.LABEL, vf.createLiteral("name-" + i));
+				con.addStatement(item(i), created, vf.createLiteral(String.format("2020-01-%02dT12:00:00Z", i % 28 + 1),
+						XMLSchema.DATETIME));
+			}
+			con.addStatement(item(0), price, vf.createLiteral(100.5));
+			con.addStatement(item(0), price, vf.createLiteral("cheap"));
+			con.addStatement(item(0), price, vf.createLiteral("abc", XMLSchema.INT));
+			con.addStatement(item(0), price, RDFS.RESOURCE);
+			con.addStatement(item(0), RDFS.LABEL, vf.createLiteral("name-1", "en"));
+			con.addStatement(item(0), created, vf.createLiteral("2020-01-05T00:00:00", XMLSchema.DATETIME));
+			con.commit();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+	}
+
+	@Test
+	public void testNumericRange() throws Exception {
+		assertEquals(100, count(price, compare(CompareOp.GT, vf.createLiteral(100))));
+		assertEquals(99, count(price, compare(CompareOp.LT, vf.createLiteral(99))));
+		assertEquals(1, count(price, compare(CompareOp.EQ, vf.createLiteral(150.0))));
+		assertEquals(0, count(price, compare(CompareOp.GT, vf.createLiteral(1000L))));
+
+		// the variable on the right hand side, within a conjunction
+		ValueExpr lower = new Compare(new ValueConstant(vf.createLiteral(10)), new Var("o"), CompareOp.LE);
+		ValueExpr upper = compare(CompareOp.LT, vf.createLiteral(20.5f));
+		assertEquals(11, count(price, new And(lower, upper)));
+	}
+
+	@Test
+	public void testStringRange() throws Exception {
+		assertEquals(112, count(RDFS.LABEL, startsWith("name-1")));
+		assertEquals(201, count(RDFS.LABEL, startsWith("name-")));
+		assertEquals(0, count(RDFS.LABEL, startsWith("other")));
+		assertEquals(1, count(RDFS.LABEL, compare(CompareOp.EQ, vf.createLiteral("name-42"))));
+		assertEquals(2, count(RDFS.LABEL, compare(CompareOp.GE, vf.createLiteral("name-98"))));
+	}
+
+	@Test
+	public void testDateTimeRange() throws Exception {
+		Literal date = vf.createLiteral("2020-01-05T10:00:00Z", XMLSchema.DATETIME);
+		assertEquals(32, count(created, compare(CompareOp.LT, date)));
+		assertEquals(7, count(created, compare(CompareOp.EQ,
+				vf.createLiteral("2020-01-05T12:00:00Z", XMLSchema.DATETIME))));
+	}
+
+	@Test
+	public void testIndexUpdates() throws Exception {
+		ValueExpr condition = compare(CompareOp.GE, vf.createLiteral(190));
+		assertEquals(10, count(price, condition));
+
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(item(1), price, vf.createLiteral(195.5));
+			// uncommitted changes are included
+			assertEquals(11, count(con, price, condition));
+			con.commit();
+		}
+		assertEquals(11, count(price, condition));
+
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.removeStatements(item(195), price, null);
+			con.removeStatements(item(196), price, null);
+			con.commit();
+		}
+		assertEquals(9, count(price, condition));
+	}
+
+	@Test
+	public void testWithoutLiteralIndexing() throws Exception {
+		List<Integer> expected = counts();
+		sail.shutDown();
+		createSail(false);
+		assertEquals(expected, counts());
+	}
+
+	private List<Integer> counts() throws Exception {
+		List<Integer> counts = new ArrayList<>();
+		counts.add(count(price, compare(CompareOp.LE, vf.createLiteral(100.5))));
+		counts.add(count(RDFS.LABEL, startsWith("name-2")));
+		counts.add(count(created, compare(CompareOp.GT, vf.createLiteral("2020-01-27T00:00:00",
+				XMLSchema.DATETIME))));
+		return counts;
+	}
+
+	private ValueExpr compare(CompareOp operator, Literal value) {
+		return new Compare(new Var("o"), new ValueConstant(value), operator);
+	}
+
+	private ValueExpr startsWith(String prefix) {
+		return new FunctionCall(FN.STARTS_WITH.stringValue(), new Var("o"),
+				new ValueConstant(vf.createLiteral(prefix)));
+	}
+
+	private int count(IRI predicate, ValueExpr condition) throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			int count = count(con, predicate, condition);
+			con.commit();
+			return count;
+		}
+	}
+
+	private int count(SailConnection con, IRI predicate, ValueExpr condition) throws Exception {
+		Filter filter = new Filter(new StatementPattern(new Var("s"), new Var("p", predicate), new Var("o")),
+				condition);
+		int count = 0;
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> iter = con.evaluate(filter, null,
+				EmptyBindingSet.getInstance(), false)) {
+			while (iter.hasNext()) {
+				iter.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private IRI item(int i) {
+		return vf.createIRI("urn:item:" + i);
+	}
+}
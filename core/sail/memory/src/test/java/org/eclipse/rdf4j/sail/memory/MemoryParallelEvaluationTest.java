@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that queries give the same results with parallel evaluation as without.
+ */
+public class MemoryParallelEvaluationTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private SailRepository sequential;
+
+	private SailRepository parallel;
+
+	@Before
+	public void setUp() throws Exception {
+		sequential = createRepository(1);
+		parallel = createRepository(4);
+	}
+
+	private SailRepository createRepository(int parallelism) {
+		MemoryStore sail = new MemoryStore();
+		StrictEvaluationStrategyFactory factory = new StrictEvaluationStrategyFactory();
+		factory.setParallelism(parallelism);
+		sail.setEvaluationStrategyFactory(factory);
+		SailRepository repository = new SailRepository(sail);
+		repository.init();
+		try (RepositoryConnection con = repository.getConnection()) {
+			con.begin();
+			IRI ctx = vf.createIRI("urn:ctx");
+			for (int i = 0; i < 5000; i++) {
+				IRI item = vf.createIRI("urn:item:" + i);
+				con.add(item, RDF.TYPE, vf.createIRI("urn:type:" + i % 7));
+				con.add(item, RDFS.LABEL, vf.createLiteral("item " + i));
+				if (i % 3 == 0) {
+					con.add(item, RDFS.COMMENT, vf.createLiteral(i), ctx);
+				}
+			}
+			con.commit();
+		}
+		return repository;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sequential.shutDown();
+		parallel.shutDown();
+	}
+
+	@Test
+	public void testStatementPattern() {
+		assertSameResults("SELECT * { ?s ?p ?o }", 11667);
+		assertSameResults("SELECT * { ?s a ?type }", 5000);
+		assertSameResults("SELECT * { GRAPH ?g { ?s ?p ?o } }", 1667);
+	}
+
+	@Test
+	public void testUnion() {
+		assertSameResults("SELECT * { { ?s a ?type } UNION { ?s rdfs:label ?label } UNION { ?s rdfs:comment ?c } }",
+				11667);
+	}
+
+	@Test
+	public void testHashJoin() {
+		assertSameResults("SELECT * { ?s a ?type OPTIONAL { SELECT ?s ?c { ?s rdfs:comment ?c } } }", 5000);
+		assertSameResults("SELECT * { ?s a ?type { SELECT ?s ?label { ?s rdfs:label ?label } } }", 5000);
+	}
+
+	@Test
+	public void testLimit() {
+		assertSameResults("SELECT * { { ?s a ?type } UNION { ?s rdfs:label ?label } } LIMIT 10", 10);
+		assertSameResults("ASK { ?s ?p ?o }", 1);
+	}
+
+	private void assertSameResults(String query, int expectedCount) {
+		Map<BindingSet, Integer> expected = evaluate(sequential, query);
+		assertEquals(expectedCount, expected.values().stream().mapToInt(Integer::intValue).sum());
+		if (query.contains("LIMIT")) {
+			assertEquals(expectedCount, evaluate(parallel, query).values().stream().mapToInt(Integer::intValue).sum());
+		} else {
+			assertEquals(expected, evaluate(parallel, query));
+		}
+	}
+
+	private Map<BindingSet, Integer> evaluate(SailRepository repository, String query) {
+		Map<BindingSet, Integer> result = new HashMap<>();
+		try (RepositoryConnection con = repository.getConnection()) {
+			if (query.startsWith("ASK")) {
+				result.put(null, con.prepareBooleanQuery(query).evaluate() ? 1 : 0);
+				return result;
+			}
+			try (TupleQueryResult solutions = con.prepareTupleQuery(query).evaluate()) {
+				while (solutions.hasNext()) {
+					result.merge(solutions.next(), 1, Integer::sum);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.memory.model.MemIRI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the snapshot cleanup of a {@link MemoryStore} neither blocks nor affects readers.
+ */
+public class MemorySnapshotCleanupTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private MemoryStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		sail = new MemoryStore();
+		sail.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+	}
+
+	@Test
+	public void testCleanupWaitsForSnapshotReaders() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 1000; i++) {
+				con.addStatement(vf.createIRI("urn:resource:" + i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.addStatement(RDFS.RESOURCE, RDF.TYPE, RDFS.CLASS);
+			con.commit();
+
+			try (SailConnection reader = sail.getConnection()) {
+				reader.begin(IsolationLevels.SNAPSHOT);
+				assertEquals(1001, reader.size());
+
+				con.begin();
+				con.removeStatements(null, RDF.TYPE, RDFS.RESOURCE);
+				con.commit();
+
+				// not blocked by the reader or the cleanup
+				assertEquals(1, con.size());
+				Thread.sleep(100);
+				assertEquals(1001, reader.size());
+				assertEquals(1001, getPredicateStatementCount());
+				reader.commit();
+			}
+
+			long timeout = System.currentTimeMillis() + 10000;
+			while (getPredicateStatementCount() > 1 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, getPredicateStatementCount());
+			assertEquals(1, con.size());
+			assertTrue(con.hasStatement(RDFS.RESOURCE, RDF.TYPE, RDFS.CLASS, false));
+		}
+	}
+
+	@Test
+	public void testStaleStatementsAreKeptUntilRatioIsReached() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 1000; i++) {
+				con.addStatement(vf.createIRI("urn:resource:" + i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.commit();
+
+			// a few stale statements are left in the list of the predicate, but not in the lists of the subjects
+			con.begin();
+			for (int i = 0; i < 10; i++) {
+				con.removeStatements(vf.createIRI("urn:resource:" + i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.commit();
+			awaitSubjectStatementCount("urn:resource:9", 0);
+			assertEquals(1000, getPredicateStatementCount());
+			assertEquals(990, con.size());
+
+			// once an eighth of the list is stale, it is cleaned up
+			con.begin();
+			for (int i = 10; i < 200; i++) {
+				con.removeStatements(vf.createIRI("urn:resource:" + i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.commit();
+			awaitSubjectStatementCount("urn:resource:199", 0);
+			assertEquals(800, getPredicateStatementCount());
+			assertEquals(800, con.size());
+		}
+	}
+
+	private void awaitSubjectStatementCount(String subject, int count) throws InterruptedException {
+		MemIRI iri = ((MemorySailStore) sail.getSailStore()).getValueFactory().getMemURI(vf.createIRI(subject));
+		long timeout = System.currentTimeMillis() + 10000;
+		while (iri.getSubjectStatementList().size() > count && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, iri.getSubjectStatementList().size());
+	}
+
+	private int getPredicateStatementCount() {
+		MemIRI type = ((MemorySailStore) sail.getSailStore()).getValueFactory().getMemURI(RDF.TYPE);
+		return type.getPredicateStatementList().size();
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailConnectionListener;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStoreBulkLoader.StatementSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MemoryStoreBulkLoader}.
+ */
+public class MemoryStoreBulkLoaderTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private MemoryStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		sail = new MemoryStore();
+		sail.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(resource(0), RDF.TYPE, RDFS.RESOURCE);
+			((InferencerConnection) con).addInferredStatement(resource(1), RDF.TYPE, RDFS.RESOURCE);
+			con.commit();
+
+			try (SailConnection reader = sail.getConnection()) {
+				reader.begin(IsolationLevels.SNAPSHOT);
+				assertEquals(1, reader.size());
+
+				MemoryStoreBulkLoader loader = new MemoryStoreBulkLoader(sail);
+				loader.setThreads(3);
+				// the sources overlap, and overlap with the existing statements
+				long added = loader.load(Arrays.asList(source(0, 1000, null), source(500, 1500, null),
+						source(0, 100, ctx), source(1000, 2000, null)));
+				assertEquals(2099, added);
+
+				// the snapshot of the reader is not affected
+				assertEquals(1, reader.size());
+				reader.commit();
+			}
+
+			assertEquals(2100, con.size());
+			assertEquals(100, con.size(ctx));
+			assertEquals(2000, Iterations.asList(con.getStatements(null, RDF.TYPE, RDFS.RESOURCE, false)).size());
+			assertTrue(con.hasStatement(resource(1), RDF.TYPE, RDFS.RESOURCE, false));
+			assertTrue(con.hasStatement(resource(99), RDFS.LABEL, vf.createLiteral("label 99"), false, ctx));
+
+			// transactions see the loaded statements
+			con.begin();
+			con.removeStatements(null, null, null, ctx);
+			con.addStatement(resource(0), RDFS.LABEL, vf.createLiteral("label 0"));
+			con.commit();
+			assertEquals(2001, con.size());
+		}
+	}
+
+	@Test
+	public void testFailedLoad() throws Exception {
+		StatementSource failing = action -> {
+			action.accept(vf.createStatement(resource(-1), RDF.TYPE, RDFS.RESOURCE));
+			throw new IOException("unexpected end of file");
+		};
+		try {
+			new MemoryStoreBulkLoader(sail).load(Arrays.asList(source(0, 100, null), failing));
+			fail("expected SailException");
+		} catch (SailException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(0, con.size());
+			con.begin();
+			con.addStatement(resource(1000), RDF.TYPE, RDFS.RESOURCE);
+			con.commit();
+			// the statements of the failed load have not become visible
+			assertEquals(1, con.size());
+			assertFalse(con.hasStatement(resource(-1), null, null, false));
+		}
+	}
+
+	@Test
+	public void testLoadWithConnectionListener() throws Exception {
+		try (NotifyingSailConnection con = sail.getConnection()) {
+			// as added by stacked sails such as inferencers, which would miss the loaded statements
+			con.addConnectionListener(new SailConnectionListener() {
+
+				@Override
+				public void statementAdded(Statement st) {
+				}
+
+				@Override
+				public void statementRemoved(Statement st) {
+				}
+			});
+		}
+		try {
+			new MemoryStoreBulkLoader(sail).load(Arrays.asList(source(0, 100, null)));
+			fail("expected SailException");
+		} catch (SailException e) {
+			// expected
+		}
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(0, con.size());
+		}
+	}
+
+	@Test
+	public void testPersistedLoad() throws Exception {
+		sail.shutDown();
+		File dataDir = FileUtil.createTempDir("memorystore");
+		try {
+			sail = new MemoryStore(dataDir);
+			sail.init();
+			new MemoryStoreBulkLoader(sail).load(Arrays.asList(source(0, 100, null), source(100, 200, ctx)));
+			sail.shutDown();
+
+			sail = new MemoryStore(dataDir);
+			sail.init();
+			try (SailConnection con = sail.getConnection()) {
+				assertEquals(200, con.size());
+				assertEquals(100, con.size(ctx));
+			}
+		} finally {
+			sail.shutDown();
+			FileUtil.deleteDir(dataDir);
+		}
+	}
+
+	/**
+	 * Creates a source with a type and a label of a range of resources.
+	 */
+	private StatementSource source(int from, int to, IRI context) {
+		return action -> {
+			for (int i = from; i < to; i++) {
+				if (context == null) {
+					action.accept(vf.createStatement(resource(i), RDF.TYPE, RDFS.RESOURCE));
+				} else {
+					action.accept(vf.createStatement(resource(i), RDFS.LABEL, vf.createLiteral("label " + i),
+							context));
+				}
+			}
+		};
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Triple;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the checkpoint and delta files of a persistent {@link MemoryStore}.
+ */
+public class MemoryStorePersistenceTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private File dataDir;
+
+	private MemoryStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("memorystore");
+		sail = new MemoryStore(dataDir);
+		sail.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testCheckpointAndDeltas() throws Exception {
+		Literal label = vf.createLiteral("label", "en");
+		Literal number = vf.createLiteral("42", XMLSchema.INT);
+		Triple triple = vf.createTriple(resource(0), RDF.TYPE, RDFS.RESOURCE);
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 1000; i++) {
+				con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE, ctx);
+			}
+			con.commit();
+
+			// the delta file has become too large, so this is written as a checkpoint
+			con.begin();
+			con.addStatement(resource(0), RDFS.LABEL, label);
+			con.addStatement(triple, RDFS.COMMENT, number);
+			con.setNamespace("ex", "urn:example:");
+			con.commit();
+			long checkpointLength = new File(dataDir, MemoryStore.DATA_FILE_NAME).length();
+
+			con.begin();
+			con.removeStatements(resource(1), null, null);
+			con.addStatement(resource(1), RDFS.LABEL, label, ctx);
+			((InferencerConnection) con).addInferredStatement(resource(2), RDF.TYPE, RDFS.CLASS);
+			con.setNamespace("ex", "urn:other:");
+			con.commit();
+
+			// explicitly added after having been inferred
+			con.begin();
+			con.addStatement(resource(2), RDF.TYPE, RDFS.CLASS);
+			con.commit();
+
+			assertEquals(checkpointLength, new File(dataDir, MemoryStore.DATA_FILE_NAME).length());
+			assertTrue(new File(dataDir, MemoryStore.DELTA_FILE_NAME).length() > 13);
+		}
+
+		restart();
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(1003, con.size());
+			assertEquals(1000, con.size(ctx));
+			assertFalse(con.hasStatement(resource(1), RDF.TYPE, null, false));
+			assertTrue(con.hasStatement(resource(1), RDFS.LABEL, label, false, ctx));
+			assertTrue(con.hasStatement(resource(0), RDFS.LABEL, label, false));
+			assertTrue(con.hasStatement(triple, RDFS.COMMENT, number, false));
+			assertTrue(con.hasStatement(resource(2), RDF.TYPE, RDFS.CLASS, false));
+			assertEquals("urn:other:", con.getNamespace("ex"));
+		}
+	}
+
+	@Test
+	public void testIncompleteDelta() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 1000; i++) {
+				con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.commit();
+			con.begin();
+			con.addStatement(resource(0), RDFS.LABEL, vf.createLiteral("label"));
+			con.commit();
+			con.begin();
+			con.removeStatements(resource(0), RDF.TYPE, null);
+			con.commit();
+		}
+		sail.shutDown();
+
+		// simulate a crash while appending
+		File deltaFile = new File(dataDir, MemoryStore.DELTA_FILE_NAME);
+		long deltaLength = deltaFile.length();
+		try (OutputStream out = new FileOutputStream(deltaFile, true)) {
+			out.write(new byte[] { 4, 0, 0, 1, 0, 0, 0 });
+		}
+
+		sail = new MemoryStore(dataDir);
+		sail.init();
+		assertEquals(deltaLength, deltaFile.length());
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(1000, con.size());
+			assertFalse(con.hasStatement(resource(0), RDF.TYPE, null, false));
+
+			con.begin();
+			con.addStatement(resource(0), RDF.TYPE, RDFS.RESOURCE);
+			con.commit();
+		}
+
+		restart();
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(1001, con.size());
+			assertEquals(1000, Iterations.asList(con.getStatements(null, RDF.TYPE, null, false)).size());
+		}
+	}
+
+	@Test
+	public void testRemovedStatementsAreSyncedWithoutSyncDelay() throws Exception {
+		sail.shutDown();
+		sail = new MemoryStore(dataDir);
+		sail.setSyncDelay(-1);
+		sail.init();
+		MemorySailStore memStore = (MemorySailStore) sail.getSailStore();
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 100_000; i++) {
+				con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE);
+			}
+			con.commit();
+
+			con.begin();
+			con.removeStatements(resource(0), null, null);
+			con.commit();
+			assertEquals(1, memStore.getRetainedStatementCount());
+
+			// too many removed statements would be kept in memory until the next sync
+			con.begin();
+			con.removeStatements(null, RDF.TYPE, null);
+			con.commit();
+			assertEquals(0, memStore.getRetainedStatementCount());
+			assertEquals(0, con.size());
+		}
+
+		restart();
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(0, con.size());
+		}
+	}
+
+	private void restart() throws Exception {
+		sail.shutDown();
+		sail = new MemoryStore(dataDir);
+		sail.init();
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StatementIndexTest {
+
+	private static final int[] FIELDS = { 1, 0 };
+
+	private final Random random = new Random(42);
+
+	private final int[][] columns = new int[][] { new int[20000], new int[20000] };
+
+	@Test
+	public void testSmallCommits() {
+		// many commits that stay below the size at which the recent levels are merged into the main level
+		assertIndex(StatementIndex.build(FIELDS, fill(0, 2000), columns), 2000, 3000, 1);
+	}
+
+	@Test
+	public void testCommitsOfVaryingSize() {
+		assertIndex(new StatementIndex(FIELDS), 0, 20000, 200);
+	}
+
+	private void assertIndex(StatementIndex index, int start, int end, int maxCommitSize) {
+		for (int position = start; position < end;) {
+			int count = Math.min(end - position, 1 + random.nextInt(maxCommitSize));
+			index = index.add(fill(position, count), count, columns);
+			position += count;
+
+			assertEquals(position, index.size());
+			for (int value = 0; value < 10; value++) {
+				int[] key = { value };
+				assertEquals(expected(value, position), positions(index.cursor(key, 1, columns)));
+				assertEquals(expected(value, position).size(), index.count(key, 1, columns));
+			}
+		}
+
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 },
+				index.getFirstComponentValues(position -> true, columns));
+	}
+
+	/**
+	 * Creates statements at consecutive positions with random components.
+	 */
+	private int[] fill(int start, int count) {
+		int[] positions = new int[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = start + i;
+			columns[0][start + i] = random.nextInt(1000);
+			columns[1][start + i] = random.nextInt(10);
+		}
+		return positions;
+	}
+
+	private List<Integer> expected(int value, int size) {
+		List<Integer> result = new ArrayList<>();
+		for (int position = 0; position < size; position++) {
+			if (columns[1][position] == value) {
+				result.add(position);
+			}
+		}
+		return result;
+	}
+
+	private static List<Integer> positions(StatementIndex.Cursor cursor) {
+		List<Integer> result = new ArrayList<>();
+		for (int position = cursor.next(); position != -1; position = cursor.next()) {
+			result.add(position);
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Test;
+
+public class ValueDictionaryTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testIDs() {
+		ValueDictionary dictionary = new ValueDictionary();
+		assertEquals(0, dictionary.getID(null));
+		assertEquals(ValueDictionary.UNKNOWN_ID, dictionary.getID(iri(1)));
+
+		int id = dictionary.getOrCreateID(iri(1));
+		assertEquals(id, dictionary.getOrCreateID(iri(1)));
+		assertEquals(id, dictionary.getID(iri(1)));
+		assertEquals(iri(1), dictionary.getValue(id));
+		assertNull(dictionary.getValue(0));
+		assertEquals(1, dictionary.size());
+	}
+
+	@Test
+	public void testLookupsWhileGrowing() throws Exception {
+		ValueDictionary dictionary = new ValueDictionary();
+		// the highest index whose ID has been created
+		AtomicInteger created = new AtomicInteger(-1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Thread[] readers = new Thread[4];
+		for (int t = 0; t < readers.length; t++) {
+			readers[t] = new Thread(() -> {
+				try {
+					while (created.get() < 99_999) {
+						int i = created.get();
+						if (i >= 0) {
+							// lookups of existing values succeed while the table and value array are replaced
+							int id = dictionary.getID(iri(i));
+							assertEquals(iri(i), dictionary.getValue(id));
+						}
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+			readers[t].start();
+		}
+
+		for (int i = 0; i < 100_000; i++) {
+			dictionary.getOrCreateID(iri(i));
+			created.set(i);
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertNull(failure.get());
+		assertEquals(100_000, dictionary.size());
+	}
+
+	private IRI iri(int i) {
+		return vf.createIRI("urn:value:" + i);
+	}
+}
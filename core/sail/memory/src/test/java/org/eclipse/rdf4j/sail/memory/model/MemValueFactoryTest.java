@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Test;
+
+/**
+ * Unit tests for the value interning of {@link MemValueFactory}.
+ */
+public class MemValueFactoryTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final MemValueFactory factory = new MemValueFactory();
+
+	@Test
+	public void testInterning() {
+		IRI iri = vf.createIRI("urn:example:a");
+		assertNull(factory.getMemURI(iri));
+
+		MemIRI memIRI = factory.getOrCreateMemURI(iri);
+		assertSame(memIRI, factory.getMemURI(iri));
+		assertSame(memIRI, factory.createIRI("urn:example:a"));
+		assertSame(memIRI, factory.getOrCreateMemValue(memIRI));
+
+		Literal literal = vf.createLiteral(42);
+		MemLiteral memLiteral = factory.getOrCreateMemLiteral(literal);
+		assertSame(memLiteral, factory.createLiteral(42));
+		assertSame(memLiteral, factory.getMemLiteral(literal));
+
+		assertSame(factory.createIRI("urn:example:b").getNamespace(), memIRI.getNamespace());
+		assertEquals(2, factory.getMemURIs().size());
+
+		factory.clear();
+		assertNull(factory.getMemURI(iri));
+	}
+
+	@Test
+	public void testConcurrentInterning() throws Exception {
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<MemIRI>>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					List<MemIRI> iris = new ArrayList<>();
+					for (int i = 0; i < 10000; i++) {
+						iris.add(factory.getOrCreateMemURI(vf.createIRI("urn:example:" + i)));
+					}
+					return iris;
+				}));
+			}
+
+			List<MemIRI> expected = results.get(0).get();
+			for (Future<List<MemIRI>> result : results) {
+				List<MemIRI> iris = result.get();
+				for (int i = 0; i < iris.size(); i++) {
+					assertSame(expected.get(i), iris.get(i));
+				}
+			}
+			assertEquals(10000, factory.getMemURIs().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -9,12 +9,16 @@ package org.eclipse.rdf4j.sail.nativerdf;
 
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Limited-size concurrent cache. The actual cleanup to keep the size limited is done once per
  * <code>CLEANUP_INTERVAL</code> invocations of the protected method <code>cleanUp</code>. <code>cleanUp</code> method
  * is called every time by <code>put</code> The maximum size is maintained approximately. Cleanup is not done if size is
  * less than <code>capacity + CLEANUP_INTERVAL / 2</code>.
+ * <p>
+ * The number of hits and misses of {@link #get(Object)} is counted. Subclasses can replace the eviction policy, see
+ * {@link WTinyLfuCache}.
  *
  * @author Oleg Mirzov
  */
@@ -30,13 +34,23 @@ public class ConcurrentCache<K, V> {
 
 	protected final ConcurrentHashMap<K, V> cache;
 
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
 	public ConcurrentCache(int capacity) {
 		this.capacity = capacity;
 		this.cache = new ConcurrentHashMap<>((int) (capacity / LOAD_FACTOR), LOAD_FACTOR);
 	}
 
 	public V get(Object key) {
-		return cache.get(key);
+		V value = cache.get(key);
+		if (value != null) {
+			hitCount.increment();
+		} else {
+			missCount.increment();
+		}
+		return value;
 	}
 
 	public V put(K key, V value) {
@@ -48,6 +62,33 @@ public class ConcurrentCache<K, V> {
 		cache.clear();
 	}
 
+	/**
+	 * Gets the number of entries that are currently cached.
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the number of {@link #get(Object)} calls that found a cached value.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Gets the number of {@link #get(Object)} calls that did not find a cached value.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Hook method that is called once before entries are removed by a clean up, doing nothing by default.
+	 */
+	protected void beforeCleanUp() {
+	}
+
 	/**
 	 * @param key the key of the node to test for removal and do finalization on
 	 * @return true if removal is approved
@@ -74,6 +115,8 @@ public class ConcurrentCache<K, V> {
 				return;
 			}
 
+			beforeCleanUp();
+
 			Iterator<K> iter = cache.keySet().iterator();
 
 			float removeEachTh = (float) size / (size - capacity);
@@ -151,6 +151,16 @@ class ContextStore implements Iterable<Resource> {
 	void close() {
 	}
 
+	/**
+	 * Reconstructs the context sizes from the store, for example after statements have been added without
+	 * incrementing the sizes.
+	 */
+	void rebuild() throws IOException {
+		contextInfoMap.clear();
+		initializeContextCache();
+		contentsChanged = true;
+	}
+
 	void sync() throws IOException {
 		if (contentsChanged) {
 			// Flush the changes to disk
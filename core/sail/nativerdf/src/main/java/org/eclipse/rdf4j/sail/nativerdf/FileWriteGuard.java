@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.IOException;
+
+import org.eclipse.rdf4j.common.io.NioFile;
+
+/**
+ * Guards the writes to the files of a native store that are not forced to disk on every commit, so that the files can
+ * be restored to their state at the last checkpoint after a crash. The contents of a region of a file that existed at
+ * the checkpoint must be durable elsewhere before the region is overwritten or truncated for the first time.
+ */
+public interface FileWriteGuard {
+
+	/**
+	 * Records the contents of the specified region of a file that are needed to restore the file, without waiting
+	 * until they are durable. Regions that have already been recorded since the last checkpoint, and regions beyond
+	 * the length of the file at the last checkpoint, are not recorded again.
+	 *
+	 * @return A token that must be passed to {@link #awaitPrepared(long)} before the region is written.
+	 */
+	long prepareWrite(NioFile file, long offset, long length) throws IOException;
+
+	/**
+	 * Waits until the contents that have been recorded by {@link #prepareWrite(NioFile, long, long)} are durable.
+	 */
+	void awaitPrepared(long token) throws IOException;
+
+	/**
+	 * Prepares a write to the specified region of a file and waits until the region can be written.
+	 */
+	default void beforeWrite(NioFile file, long offset, long length) throws IOException {
+		awaitPrepared(prepareWrite(file, offset, length));
+	}
+
+	/**
+	 * Prepares the truncation of a file to the specified size and waits until the file can be truncated.
+	 */
+	default void beforeTruncate(NioFile file, long newSize) throws IOException {
+		beforeWrite(file, newSize, Math.max(0L, file.size() - newSize));
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct <tt>int</tt> IDs that have been added to it, using a
+ * fixed amount of memory. With <tt>2^precision</tt> registers, the standard error of the estimate is about
+ * <tt>1.04 / sqrt(2^precision)</tt>. IDs can not be removed from a sketch.
+ */
+class HyperLogLog {
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * Creates a new, empty sketch.
+	 *
+	 * @param precision The number of bits of the hash that select a register, between 4 and 16.
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < 4 || precision > 16) {
+			throw new IllegalArgumentException("precision must be between 4 and 16: " + precision);
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	public void add(int id) {
+		long hash = mix(id);
+		int index = (int) (hash >>> (64 - precision));
+		// the guard bit limits the rank to 64 - precision + 1
+		long remainder = (hash << precision) | (1L << (precision - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+		if (rank > registers[index]) {
+			registers[index] = rank;
+		}
+	}
+
+	/**
+	 * Gets the estimated number of distinct IDs that have been added to this sketch.
+	 */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0.0;
+		int zeroCount = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeroCount++;
+			}
+		}
+
+		double alpha = 0.7213 / (1.0 + 1.079 / m);
+		double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeroCount > 0) {
+			// small range correction: linear counting
+			estimate = m * Math.log((double) m / zeroCount);
+		}
+		return Math.round(estimate);
+	}
+
+	public void clear() {
+		Arrays.fill(registers, (byte) 0);
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.write(registers);
+	}
+
+	public void read(DataInput in) throws IOException {
+		in.readFully(registers);
+	}
+
+	private static long mix(long key) {
+		// finalizer of MurmurHash3
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.sail.SailException;
+
+/**
+ * Loads statements into an empty {@link NativeStore} without the overhead of regular transactions, intended for
+ * initial imports. Added statements are collected in sorted runs on disk, one set of runs per triple index. On
+ * {@link #commit()}, the triple indexes are built bottom-up from these runs, concurrently. Added statements are not
+ * visible before the bulk load has been committed, and connections can not modify the store while a bulk load is
+ * active.
+ * <p>
+ * Statements from an RDF parser can be passed on by an RDF handler that calls {@link #add(Statement)} for each
+ * statement that it receives.
+ *
+ * @see NativeStore#createBulkLoader()
+ */
+public class NativeBulkLoader implements AutoCloseable {
+
+	private final NativeSailStore store;
+
+	private boolean active;
+
+	NativeBulkLoader(NativeSailStore store) throws SailException {
+		this.store = store;
+		store.startBulkLoad();
+		active = true;
+	}
+
+	/**
+	 * Adds a statement to the bulk load.
+	 */
+	public void add(Statement st) throws SailException {
+		add(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+	}
+
+	/**
+	 * Adds a statement to each of the specified contexts, or to the default context if no contexts are specified.
+	 */
+	public void add(Resource subj, IRI pred, Value obj, Resource... contexts) throws SailException {
+		verifyActive();
+		store.bulkLoadStatement(subj, pred, obj, contexts);
+	}
+
+	/**
+	 * Builds the triple indexes from all added statements and ends the bulk load. If this fails, the store is left
+	 * empty.
+	 */
+	public void commit() throws SailException {
+		verifyActive();
+		active = false;
+		store.finishBulkLoad();
+	}
+
+	/**
+	 * Ends the bulk load, discarding all added statements if it has not been committed.
+	 */
+	@Override
+	public void close() throws SailException {
+		if (active) {
+			active = false;
+			store.abortBulkLoad();
+		}
+	}
+
+	private void verifyActive() {
+		if (!active) {
+			throw new IllegalStateException("Bulk load has already been committed or closed");
+		}
+	}
+}
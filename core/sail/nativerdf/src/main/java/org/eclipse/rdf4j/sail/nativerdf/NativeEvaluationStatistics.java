@@ -20,6 +20,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * {@link EvaluationStatistics} for the native store. The cardinality of patterns with a constant predicate is derived
+ * from the {@link PredicateStatistics} where possible, other patterns are estimated from the triple indexes.
+ *
  * @author Arjohn Kampman
  * @author Enrico Minack
  */
@@ -31,9 +34,20 @@ class NativeEvaluationStatistics extends EvaluationStatistics {
 
 	private final TripleStore tripleStore;
 
+	/**
+	 * The statistics on the predicates, may be <tt>null</tt>.
+	 */
+	private final PredicateStatistics predicateStatistics;
+
 	public NativeEvaluationStatistics(ValueStore valueStore, TripleStore tripleStore) {
+		this(valueStore, tripleStore, null);
+	}
+
+	public NativeEvaluationStatistics(ValueStore valueStore, TripleStore tripleStore,
+			PredicateStatistics predicateStatistics) {
 		this.valueStore = valueStore;
 		this.tripleStore = tripleStore;
+		this.predicateStatistics = predicateStatistics;
 	}
 
 	@Override
@@ -110,6 +124,47 @@ class NativeEvaluationStatistics extends EvaluationStatistics {
 			}
 		}
 
+		if (predicateStatistics != null && predID != NativeValue.UNKNOWN_ID && contextID == NativeValue.UNKNOWN_ID) {
+			double cardinality = predicateCardinality(subjID, predID, objID);
+			if (cardinality >= 0) {
+				return cardinality;
+			}
+		}
+
 		return tripleStore.cardinality(subjID, predID, objID, contextID);
 	}
+
+	/**
+	 * Estimates the cardinality of a pattern with a constant predicate and a variable context from the
+	 * {@link PredicateStatistics}. Bound subjects and objects are assumed to be evenly distributed, except for the
+	 * objects of <tt>rdf:type</tt>, for which the most frequent ones are counted.
+	 *
+	 * @return The estimated cardinality, or <tt>-1</tt> if the statistics can not be used for the pattern.
+	 */
+	private double predicateCardinality(int subjID, int predID, int objID) {
+		long count = predicateStatistics.getCount(predID);
+		if (count == 0) {
+			return 0;
+		}
+
+		boolean subjBound = subjID != NativeValue.UNKNOWN_ID;
+		boolean objBound = objID != NativeValue.UNKNOWN_ID;
+		if (!subjBound && !objBound) {
+			return count;
+		} else if (subjBound && objBound) {
+			// the indexes give a better estimate for this highly selective pattern
+			return -1;
+		} else if (subjBound) {
+			return (double) count / predicateStatistics.getDistinctSubjects(predID);
+		} else if (predID == predicateStatistics.getTypeID()) {
+			long classCount = predicateStatistics.getClassCount(objID);
+			if (classCount >= 0) {
+				return classCount;
+			}
+			// infrequent class, the indexes give a better estimate than the average
+			return -1;
+		} else {
+			return (double) count / predicateStatistics.getDistinctObjects(predID);
+		}
+	}
 }
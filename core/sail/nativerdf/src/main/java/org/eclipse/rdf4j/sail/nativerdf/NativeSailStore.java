@@ -10,11 +10,15 @@ package org.eclipse.rdf4j.sail.nativerdf;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -23,8 +27,10 @@ import org.eclipse.rdf4j.OpenRDFUtil;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
+import org.eclipse.rdf4j.common.iteration.DelayedIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.iteration.FilterIteration;
+import org.eclipse.rdf4j.common.iteration.Iteration;
 import org.eclipse.rdf4j.common.iteration.UnionIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Namespace;
@@ -32,6 +38,7 @@ import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.base.BackingSailSource;
@@ -53,6 +60,11 @@ class NativeSailStore implements SailStore {
 
 	final Logger logger = LoggerFactory.getLogger(NativeSailStore.class);
 
+	/**
+	 * The size of the {@link WriteAheadLog} in bytes above which a checkpoint is started in the background.
+	 */
+	static final long CHECKPOINT_LOG_SIZE = 32 * 1024 * 1024;
+
 	private final TripleStore tripleStore;
 
 	private final ValueStore valueStore;
@@ -61,6 +73,25 @@ class NativeSailStore implements SailStore {
 
 	private final ContextStore contextStore;
 
+	private final PredicateStatistics predicateStatistics;
+
+	/**
+	 * The log that makes committed transactions durable if <tt>forceSync</tt> is enabled, <tt>null</tt> otherwise.
+	 */
+	private final WriteAheadLog writeAheadLog;
+
+	/**
+	 * Executes the checkpoints that empty the {@link #writeAheadLog}, <tt>null</tt> if no log is used.
+	 */
+	private final ExecutorService checkpointExecutor;
+
+	/**
+	 * Flag indicating whether a checkpoint has been scheduled on the {@link #checkpointExecutor}.
+	 */
+	private final AtomicBoolean checkpointScheduled = new AtomicBoolean(false);
+
+	private volatile boolean closed = false;
+
 	/**
 	 * A lock to control concurrent access by {@link NativeSailSink} to the TripleStore, ValueStore, and NamespaceStore.
 	 * Each sink method that directly accesses one of these store obtains the lock and releases it immediately when
@@ -68,11 +99,30 @@ class NativeSailStore implements SailStore {
 	 */
 	private final ReentrantLock sinkStoreAccessLock = new ReentrantLock();
 
+	/**
+	 * A lock that serializes the modifications of the ValueStore. Sinks store the values of added statements while only
+	 * holding this lock, as they do not access the other stores to do so. Code that needs both locks must obtain the
+	 * {@link #sinkStoreAccessLock} first.
+	 */
+	private final ReentrantLock valueStoreLock = new ReentrantLock();
+
+	/**
+	 * The number of added statements that a {@link NativeSailSink} collects before it stores them in the
+	 * {@link TripleStore}.
+	 */
+	private static final int STAGED_STATEMENTS_SIZE = 4096;
+
 	/**
 	 * Boolean indicating whether any {@link NativeSailSink} has started a transaction on the {@link TripleStore}.
 	 */
 	private final AtomicBoolean storeTxnStarted = new AtomicBoolean(false);
 
+	/**
+	 * Flag indicating whether a {@link NativeBulkLoader} is active. Sinks can not start transactions on the
+	 * {@link TripleStore} in the meantime.
+	 */
+	private volatile boolean bulkLoadActive = false;
+
 	/**
 	 * Creates a new {@link NativeSailStore} with the default cache sizes.
 	 */
@@ -86,13 +136,76 @@ class NativeSailStore implements SailStore {
 	 */
 	public NativeSailStore(File dataDir, String tripleIndexes, boolean forceSync, int valueCacheSize,
 			int valueIDCacheSize, int namespaceCacheSize, int namespaceIDCacheSize) throws IOException, SailException {
+		this(dataDir, tripleIndexes, forceSync, false, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
+				namespaceIDCacheSize);
+	}
+
+	/**
+	 * Creates a new {@link NativeSailStore}, optionally reading the triple indexes from memory-mapped files.
+	 */
+	public NativeSailStore(File dataDir, String tripleIndexes, boolean forceSync, boolean memoryMappedIndexes,
+			int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize, int namespaceIDCacheSize)
+			throws IOException, SailException {
+		this(dataDir, tripleIndexes, forceSync, memoryMappedIndexes, valueCacheSize, valueIDCacheSize,
+				namespaceCacheSize, namespaceIDCacheSize, 0L);
+	}
+
+	/**
+	 * Creates a new {@link NativeSailStore}, optionally reading the triple indexes from memory-mapped files and caching
+	 * values off-heap. If <tt>forceSync</tt> is enabled, committed transactions are recorded in a
+	 * {@link WriteAheadLog}, which is forced to disk once for a group of concurrent commits. The store files are only
+	 * forced to disk at checkpoints. Before a region of a store file that existed at the last checkpoint is
+	 * overwritten, its original contents are forced to the log as well, so that the files can be restored to their
+	 * state at the checkpoint and the committed transactions can be replayed when the store is reopened after a crash.
+	 *
+	 * @param offHeapValueCacheSize The size of the off-heap value cache in bytes, or <tt>0</tt> to disable it.
+	 */
+	public NativeSailStore(File dataDir, String tripleIndexes, boolean forceSync, boolean memoryMappedIndexes,
+			int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize, int namespaceIDCacheSize,
+			long offHeapValueCacheSize) throws IOException, SailException {
 		boolean initialized = false;
 		try {
 			namespaceStore = new NamespaceStore(dataDir);
-			valueStore = new ValueStore(dataDir, forceSync, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
-					namespaceIDCacheSize);
-			tripleStore = new TripleStore(dataDir, tripleIndexes, forceSync);
+			if (forceSync) {
+				writeAheadLog = new WriteAheadLog(dataDir);
+				checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+					Thread t = Executors.defaultThreadFactory().newThread(r);
+					t.setName("rdf4j-nativestore-checkpoint");
+					t.setDaemon(true);
+					return t;
+				});
+			} else {
+				writeAheadLog = null;
+				checkpointExecutor = null;
+			}
+			boolean recover = writeAheadLog != null && !writeAheadLog.isEmpty();
+			if (recover) {
+				restoreFiles(dataDir);
+			}
+			if (writeAheadLog != null) {
+				valueStore = new ValueStore(dataDir, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
+						namespaceIDCacheSize, offHeapValueCacheSize, writeAheadLog);
+				tripleStore = new TripleStore(dataDir, tripleIndexes, false, memoryMappedIndexes, writeAheadLog);
+			} else {
+				valueStore = new ValueStore(dataDir, false, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
+						namespaceIDCacheSize, offHeapValueCacheSize);
+				tripleStore = new TripleStore(dataDir, tripleIndexes, false, memoryMappedIndexes);
+			}
+			if (recover) {
+				replayLog();
+			}
 			contextStore = new ContextStore(this, dataDir);
+			if (recover) {
+				contextStore.rebuild();
+				contextStore.sync();
+			}
+			predicateStatistics = new PredicateStatistics(dataDir);
+			if (recover || !predicateStatistics.isInitialized()) {
+				rebuildStatistics();
+			}
+			if (writeAheadLog != null) {
+				checkpoint();
+			}
 			initialized = true;
 		} finally {
 			if (!initialized) {
@@ -101,6 +214,51 @@ class NativeSailStore implements SailStore {
 		}
 	}
 
+	/**
+	 * Restores the store files to their state at the last checkpoint, as recorded in the {@link #writeAheadLog}, if the
+	 * store was not closed properly. The files that are derived from the restored files are deleted, so that they are
+	 * rebuilt when the stores are opened.
+	 */
+	private void restoreFiles(File dataDir) throws IOException {
+		logger.info("Detected uncheckpointed changes, restoring store files from write-ahead log");
+
+		writeAheadLog.restore(dataDir);
+
+		File[] files = dataDir.listFiles();
+		if (files == null) {
+			throw new IOException("Unable to list files in " + dataDir);
+		}
+		for (File file : files) {
+			String name = file.getName();
+			boolean derived = name.endsWith(".alloc") || name.endsWith(".bloom") || name.endsWith(".hash")
+					|| name.equals(TxnStatusFile.FILE_NAME);
+			if (derived && file.isFile() && !file.delete()) {
+				throw new IOException("Unable to delete file " + file);
+			}
+		}
+	}
+
+	/**
+	 * Replays the values and the committed transactions in the {@link #writeAheadLog} onto the restored value and
+	 * triple files. The writes are guarded by the log, so that the replay can be repeated if it is interrupted.
+	 */
+	private void replayLog() throws IOException {
+		int txnCount = writeAheadLog.replay(new WriteAheadLog.Handler() {
+
+			@Override
+			public void value(int id, byte[] data) throws IOException {
+				valueStore.restoreData(id, data);
+			}
+
+			@Override
+			public void triple(byte[] data, boolean removed) throws IOException {
+				tripleStore.replayTriple(data, removed);
+			}
+		});
+
+		logger.info("Replayed {} transactions from write-ahead log", txnCount);
+	}
+
 	@Override
 	public ValueFactory getValueFactory() {
 		return valueStore;
@@ -110,26 +268,38 @@ class NativeSailStore implements SailStore {
 	public void close() throws SailException {
 		try {
 			try {
-				if (namespaceStore != null) {
-					namespaceStore.close();
-				}
+				closeWriteAheadLog();
 			} finally {
 				try {
-					if (contextStore != null) {
-						contextStore.close();
+					if (namespaceStore != null) {
+						namespaceStore.close();
 					}
 				} finally {
 					try {
-						if (valueStore != null) {
-							valueStore.close();
+						if (contextStore != null) {
+							contextStore.close();
+						}
+						if (predicateStatistics != null) {
+							predicateStatistics.sync();
 						}
 					} finally {
-						if (tripleStore != null) {
-							tripleStore.close();
+						try {
+							if (valueStore != null) {
+								valueStore.close();
+							}
+						} finally {
+							try {
+								if (tripleStore != null) {
+									tripleStore.close();
+								}
+							} finally {
+								if (writeAheadLog != null) {
+									writeAheadLog.close();
+								}
+							}
 						}
 					}
 				}
-
 			}
 		} catch (IOException e) {
 			logger.warn("Failed to close store", e);
@@ -137,9 +307,278 @@ class NativeSailStore implements SailStore {
 		}
 	}
 
+	/**
+	 * Stops the background checkpoints and, unless a transaction is still active, forces all changes to disk so that
+	 * the {@link #writeAheadLog} does not need to be replayed when the store is reopened.
+	 */
+	private void closeWriteAheadLog() throws IOException {
+		closed = true;
+		if (checkpointExecutor != null) {
+			checkpointExecutor.shutdown();
+			try {
+				// checkpoints are not interrupted, as that would close the files that they write to
+				if (!checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+					logger.warn("Timed out waiting for checkpoint to complete");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (writeAheadLog != null && contextStore != null) {
+			sinkStoreAccessLock.lock();
+			try {
+				checkpoint();
+			} finally {
+				sinkStoreAccessLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Forces all changes to the value, namespace, context and triple files to disk and empties the
+	 * {@link #writeAheadLog}. This is skipped while a transaction or bulk load is active, as the log must then still
+	 * be written to. The caller must hold the {@link #sinkStoreAccessLock}.
+	 *
+	 * @return <tt>true</tt> if the checkpoint was completed.
+	 */
+	private boolean checkpoint() throws IOException {
+		if (storeTxnStarted.get() || bulkLoadActive) {
+			return false;
+		}
+
+		// sinks log new values while only holding the value store lock, these must not be discarded by the reset
+		valueStoreLock.lock();
+		try {
+			valueStore.force();
+			namespaceStore.sync();
+			if (contextStore != null) {
+				contextStore.sync();
+			}
+			if (predicateStatistics != null) {
+				predicateStatistics.sync();
+			}
+			tripleStore.force();
+			writeAheadLog.reset();
+		} finally {
+			valueStoreLock.unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * Starts a checkpoint in the background if the {@link #writeAheadLog} has grown larger than
+	 * {@link #CHECKPOINT_LOG_SIZE}.
+	 */
+	private void scheduleCheckpoint() {
+		if (writeAheadLog.size() < CHECKPOINT_LOG_SIZE || closed || !checkpointScheduled.compareAndSet(false, true)) {
+			return;
+		}
+
+		checkpointExecutor.execute(() -> {
+			sinkStoreAccessLock.lock();
+			try {
+				if (!closed) {
+					checkpoint();
+				}
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Failed to checkpoint native store, retrying after the next commit", e);
+			} finally {
+				checkpointScheduled.set(false);
+				sinkStoreAccessLock.unlock();
+			}
+		});
+	}
+
+	/**
+	 * Waits until all transactions that have been committed so far are durable, and starts a checkpoint if the
+	 * {@link #writeAheadLog} has grown large. This is called once all locks have been released, so that a single force
+	 * of the log makes the transactions of all threads that are waiting durable.
+	 */
+	void awaitDurable() throws SailException {
+		if (writeAheadLog != null) {
+			try {
+				writeAheadLog.awaitDurable(writeAheadLog.getCommittedLsn());
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+			scheduleCheckpoint();
+		}
+	}
+
+	/**
+	 * Appends the changes of the active transaction to the {@link #writeAheadLog}, followed by a commit record, without
+	 * forcing the log to disk. The new values have already been logged when they were stored. The caller must hold the
+	 * {@link #sinkStoreAccessLock}.
+	 *
+	 * @see #awaitDurable()
+	 */
+	private void logTransaction() throws IOException {
+		boolean logged = false;
+		try {
+			tripleStore.logTransaction(writeAheadLog);
+			writeAheadLog.commit();
+			logged = true;
+		} finally {
+			if (!logged) {
+				writeAheadLog.abort();
+			}
+		}
+	}
+
+	/**
+	 * Starts a bulk load into this store, which must not contain any statements.
+	 *
+	 * @see TripleStore#startBulkLoad()
+	 */
+	void startBulkLoad() throws SailException {
+		sinkStoreAccessLock.lock();
+		try {
+			if (bulkLoadActive) {
+				throw new SailException("A bulk load is already active");
+			}
+			if (storeTxnStarted.get()) {
+				throw new SailException("Can not start a bulk load while a transaction is active");
+			}
+			tripleStore.startBulkLoad();
+			bulkLoadActive = true;
+			if (writeAheadLog != null) {
+				// the loaded data is forced to disk by a checkpoint instead
+				valueStoreLock.lock();
+				try {
+					valueStore.setValueLog(null);
+				} finally {
+					valueStoreLock.unlock();
+				}
+			}
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			sinkStoreAccessLock.unlock();
+		}
+	}
+
+	void bulkLoadStatement(Resource subj, IRI pred, Value obj, Resource... contexts) throws SailException {
+		OpenRDFUtil.verifyContextNotNull(contexts);
+		sinkStoreAccessLock.lock();
+		valueStoreLock.lock();
+		try {
+			int subjID = valueStore.storeValue(subj);
+			int predID = valueStore.storeValue(pred);
+			int objID = valueStore.storeValue(obj);
+
+			if (contexts.length == 0) {
+				contexts = new Resource[] { null };
+			}
+
+			for (Resource context : contexts) {
+				int contextID = 0;
+				if (context != null) {
+					contextID = valueStore.storeValue(context);
+				}
+
+				tripleStore.bulkLoadTriple(subjID, predID, objID, contextID, true);
+			}
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			valueStoreLock.unlock();
+			sinkStoreAccessLock.unlock();
+		}
+	}
+
+	void finishBulkLoad() throws SailException {
+		sinkStoreAccessLock.lock();
+		try {
+			try {
+				syncValueStore();
+				predicateStatistics.markDirty();
+				tripleStore.finishBulkLoad();
+				// duplicate statements have only been removed while building the indexes
+				contextStore.rebuild();
+				contextStore.sync();
+				rebuildStatistics();
+			} finally {
+				bulkLoadActive = false;
+				resumeValueLogging();
+			}
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			sinkStoreAccessLock.unlock();
+		}
+	}
+
+	void abortBulkLoad() throws SailException {
+		sinkStoreAccessLock.lock();
+		try {
+			try {
+				tripleStore.abortBulkLoad();
+			} finally {
+				bulkLoadActive = false;
+				resumeValueLogging();
+			}
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			sinkStoreAccessLock.unlock();
+		}
+	}
+
+	/**
+	 * Resumes logging the new values after a bulk load and forces the values that have been stored in the meantime to
+	 * disk with a checkpoint, as they are not in the {@link #writeAheadLog}. The caller must hold the
+	 * {@link #sinkStoreAccessLock}.
+	 */
+	private void resumeValueLogging() throws IOException {
+		if (writeAheadLog != null) {
+			valueStoreLock.lock();
+			try {
+				valueStore.setValueLog(writeAheadLog);
+				checkpoint();
+			} finally {
+				valueStoreLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the {@link PredicateStatistics} from the committed statements in the {@link TripleStore}.
+	 */
+	private void rebuildStatistics() throws IOException {
+		logger.debug("rebuilding predicate statistics");
+		predicateStatistics.setTypeID(valueStore.getID(RDF.TYPE));
+		try (RecordIterator records = tripleStore.getTriples(-1, -1, -1, -1)) {
+			predicateStatistics.rebuild(records);
+		}
+		predicateStatistics.sync();
+	}
+
+	/**
+	 * Registers the changes of the active transaction with the {@link PredicateStatistics}. The caller must hold the
+	 * {@link #sinkStoreAccessLock}.
+	 */
+	private void updateStatistics() throws IOException {
+		if (predicateStatistics.getTypeID() == NativeValue.UNKNOWN_ID) {
+			// rdf:type statements can only be added once the value has been stored
+			predicateStatistics.setTypeID(valueStore.getID(RDF.TYPE));
+		}
+		predicateStatistics.markDirty();
+		tripleStore.updateStatistics(predicateStatistics);
+	}
+
+	private void syncValueStore() throws IOException {
+		valueStoreLock.lock();
+		try {
+			valueStore.sync();
+		} finally {
+			valueStoreLock.unlock();
+		}
+	}
+
 	@Override
 	public EvaluationStatistics getEvaluationStatistics() {
-		return new NativeEvaluationStatistics(valueStore, tripleStore);
+		return new NativeEvaluationStatistics(valueStore, tripleStore, predicateStatistics);
 	}
 
 	@Override
@@ -238,6 +677,82 @@ class NativeSailStore implements SailStore {
 			}
 		}
 
+		List<Integer> contextIDList = getContextIDList(contexts);
+
+		ArrayList<NativeStatementIterator> perContextIterList = new ArrayList<>(contextIDList.size());
+
+		for (int contextID : contextIDList) {
+			RecordIterator btreeIter = tripleStore.getTriples(subjID, predID, objID, contextID, explicit, false);
+
+			perContextIterList.add(new NativeStatementIterator(btreeIter, valueStore));
+		}
+
+		if (perContextIterList.size() == 1) {
+			return perContextIterList.get(0);
+		} else {
+			return new UnionIteration<>(perContextIterList);
+		}
+	}
+
+	/**
+	 * Creates a statement iterator for several lookups, which are performed in the order of the indexes that are used
+	 * for them, see {@link TripleStore#sortLookups(List)}.
+	 *
+	 * @param lookups  The subject, predicate and object of each lookup, any of which may be <tt>null</tt> to indicate a
+	 *                 wildcard.
+	 * @param contexts The context(s) of the lookups. Note that this parameter is a vararg and as such is optional. If
+	 *                 no contexts are supplied the method operates on the entire repository.
+	 * @return A StatementIterator over the statements that match the lookups.
+	 */
+	CloseableIteration<? extends Statement, SailException> createStatementIterator(List<Value[]> lookups,
+			boolean explicit, Resource... contexts) throws IOException {
+		List<Integer> contextIDList = getContextIDList(contexts);
+
+		List<int[]> idLookups = new ArrayList<>(lookups.size() * contextIDList.size());
+		for (Value[] lookup : lookups) {
+			int[] ids = new int[3];
+			boolean known = true;
+			for (int i = 0; i < ids.length && known; i++) {
+				ids[i] = NativeValue.UNKNOWN_ID;
+				if (lookup[i] != null) {
+					ids[i] = valueStore.getID(lookup[i]);
+					known = ids[i] != NativeValue.UNKNOWN_ID;
+				}
+			}
+			if (known) {
+				for (int contextID : contextIDList) {
+					idLookups.add(new int[] { ids[0], ids[1], ids[2], contextID });
+				}
+			}
+		}
+		tripleStore.sortLookups(idLookups);
+
+		List<DelayedIteration<Statement, SailException>> iterList = new ArrayList<>(idLookups.size());
+		for (int[] idLookup : idLookups) {
+			iterList.add(new DelayedIteration<Statement, SailException>() {
+
+				@Override
+				protected Iteration<? extends Statement, ? extends SailException> createIteration()
+						throws SailException {
+					try {
+						RecordIterator btreeIter = tripleStore.getTriples(idLookup[0], idLookup[1], idLookup[2],
+								idLookup[3], explicit, false);
+						return new NativeStatementIterator(btreeIter, valueStore);
+					} catch (IOException e) {
+						throw new SailException("Unable to get statements", e);
+					}
+				}
+			});
+		}
+		return new UnionIteration<>(iterList);
+	}
+
+	/**
+	 * Gets the IDs of the contexts of a pattern, skipping unknown contexts.
+	 *
+	 * @return The IDs, or {@link NativeValue#UNKNOWN_ID} as wildcard if no contexts are supplied.
+	 */
+	private List<Integer> getContextIDList(Resource... contexts) throws IOException {
 		List<Integer> contextIDList = new ArrayList<>(contexts.length);
 		if (contexts.length == 0) {
 			contextIDList.add(NativeValue.UNKNOWN_ID);
@@ -254,20 +769,7 @@ class NativeSailStore implements SailStore {
 				}
 			}
 		}
-
-		ArrayList<NativeStatementIterator> perContextIterList = new ArrayList<>(contextIDList.size());
-
-		for (int contextID : contextIDList) {
-			RecordIterator btreeIter = tripleStore.getTriples(subjID, predID, objID, contextID, explicit, false);
-
-			perContextIterList.add(new NativeStatementIterator(btreeIter, valueStore));
-		}
-
-		if (perContextIterList.size() == 1) {
-			return perContextIterList.get(0);
-		} else {
-			return new UnionIteration<>(perContextIterList);
-		}
+		return contextIDList;
 	}
 
 	double cardinality(Resource subj, IRI pred, Value obj, Resource context) throws IOException {
@@ -335,13 +837,27 @@ class NativeSailStore implements SailStore {
 
 		private final boolean explicit;
 
+		/**
+		 * The subject, predicate, object and context IDs of the added statements that have not been stored in the
+		 * {@link TripleStore} yet.
+		 */
+		private final int[] stagedIDs = new int[4 * STAGED_STATEMENTS_SIZE];
+
+		/**
+		 * The contexts of the staged statements.
+		 */
+		private final Resource[] stagedContexts = new Resource[STAGED_STATEMENTS_SIZE];
+
+		private int stagedCount = 0;
+
 		public NativeSailSink(boolean explicit) throws SailException {
 			this.explicit = explicit;
 		}
 
 		@Override
-		public void close() {
-			// no-op
+		public synchronized void close() {
+			// discard statements that have not been flushed
+			clearStagedStatements();
 		}
 
 		@Override
@@ -351,10 +867,12 @@ class NativeSailStore implements SailStore {
 
 		@Override
 		public synchronized void flush() throws SailException {
+			applyStagedStatements();
+
 			sinkStoreAccessLock.lock();
 			try {
 				try {
-					valueStore.sync();
+					syncValueStore();
 				} finally {
 					try {
 						namespaceStore.sync();
@@ -363,6 +881,11 @@ class NativeSailStore implements SailStore {
 							contextStore.sync();
 						} finally {
 							if (storeTxnStarted.get()) {
+								if (writeAheadLog != null) {
+									// the log is forced to disk once the locks have been released, see awaitDurable()
+									logTransaction();
+								}
+								updateStatistics();
 								tripleStore.commit();
 								// do not set flag to false until _after_ commit is succesfully completed.
 								storeTxnStarted.set(false);
@@ -425,8 +948,28 @@ class NativeSailStore implements SailStore {
 		}
 
 		@Override
-		public void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
-			addStatement(subj, pred, obj, explicit, ctx);
+		public synchronized void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
+			if (bulkLoadActive) {
+				throw new SailException("Can not start a transaction while a bulk load is active");
+			}
+
+			int offset = 4 * stagedCount;
+			valueStoreLock.lock();
+			try {
+				stagedIDs[offset] = valueStore.storeValue(subj);
+				stagedIDs[offset + 1] = valueStore.storeValue(pred);
+				stagedIDs[offset + 2] = valueStore.storeValue(obj);
+				stagedIDs[offset + 3] = ctx == null ? 0 : valueStore.storeValue(ctx);
+			} catch (IOException e) {
+				throw new SailException(e);
+			} finally {
+				valueStoreLock.unlock();
+			}
+			stagedContexts[stagedCount++] = ctx;
+
+			if (stagedCount == STAGED_STATEMENTS_SIZE) {
+				applyStagedStatements();
+			}
 		}
 
 		@Override
@@ -442,6 +985,10 @@ class NativeSailStore implements SailStore {
 		 */
 		private synchronized void startTriplestoreTransaction() throws SailException {
 
+			if (bulkLoadActive) {
+				throw new SailException("Can not start a transaction while a bulk load is active");
+			}
+
 			if (storeTxnStarted.compareAndSet(false, true)) {
 				try {
 					tripleStore.startTransaction();
@@ -452,48 +999,47 @@ class NativeSailStore implements SailStore {
 			}
 		}
 
-		private boolean addStatement(Resource subj, IRI pred, Value obj, boolean explicit, Resource... contexts)
-				throws SailException {
-			OpenRDFUtil.verifyContextNotNull(contexts);
-			boolean result = false;
+		/**
+		 * Stores the staged statements in the {@link TripleStore} in one batch, for which the indexes are updated in
+		 * parallel, see {@link TripleStore#storeTriples(int[], int, boolean)}. The values of the statements have
+		 * already been stored by {@link #approve(Resource, IRI, Value, Resource)}. Note that this does not let
+		 * transactions write concurrently: they are still serialized by the transaction lock of the
+		 * {@link NativeStore}, and removals are applied one pattern at a time.
+		 */
+		private synchronized void applyStagedStatements() throws SailException {
+			if (stagedCount == 0) {
+				return;
+			}
+
 			sinkStoreAccessLock.lock();
 			try {
 				startTriplestoreTransaction();
-				int subjID = valueStore.storeValue(subj);
-				int predID = valueStore.storeValue(pred);
-				int objID = valueStore.storeValue(obj);
-
-				if (contexts.length == 0) {
-					contexts = new Resource[] { null };
-				}
-
-				for (Resource context : contexts) {
-					int contextID = 0;
-					if (context != null) {
-						contextID = valueStore.storeValue(context);
-					}
-
-					boolean wasNew = tripleStore.storeTriple(subjID, predID, objID, contextID, explicit);
-					if (wasNew && context != null) {
-						contextStore.increment(context);
+				boolean[] added = tripleStore.storeTriples(stagedIDs, stagedCount, explicit);
+				for (int i = 0; i < stagedCount; i++) {
+					if (added[i] && stagedContexts[i] != null) {
+						contextStore.increment(stagedContexts[i]);
 					}
-					result |= wasNew;
 				}
 			} catch (IOException e) {
 				throw new SailException(e);
 			} catch (RuntimeException e) {
-				logger.error("Encountered an unexpected problem while trying to add a statement", e);
+				logger.error("Encountered an unexpected problem while trying to add statements", e);
 				throw e;
 			} finally {
+				clearStagedStatements();
 				sinkStoreAccessLock.unlock();
 			}
+		}
 
-			return result;
+		private void clearStagedStatements() {
+			Arrays.fill(stagedContexts, 0, stagedCount, null);
+			stagedCount = 0;
 		}
 
 		private long removeStatements(Resource subj, IRI pred, Value obj, boolean explicit, Resource... contexts)
 				throws SailException {
 			OpenRDFUtil.verifyContextNotNull(contexts);
+			applyStagedStatements();
 
 			sinkStoreAccessLock.lock();
 			try {
@@ -612,6 +1158,21 @@ class NativeSailStore implements SailStore {
 				throw new SailException("Unable to get statements", e);
 			}
 		}
+
+		@Override
+		public CloseableIteration<? extends Statement, SailException> getStatementsForLookups(List<Value[]> lookups,
+				Resource... contexts) throws SailException {
+			try {
+				return createStatementIterator(lookups, explicit, contexts);
+			} catch (IOException e) {
+				throw new SailException("Unable to get statements", e);
+			}
+		}
+
+		@Override
+		public boolean supportsBatchLookups() {
+			return true;
+		}
 	}
 
 }
@@ -17,13 +17,27 @@ import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
 
 /**
  * A statement iterator that wraps a RecordIterator containing statement records and translates these records to
  * {@link Statement} objects.
+ * <p>
+ * Records are read ahead in batches, and the values of a batch are fetched from the {@link ValueStore} all at once, so
+ * that values that are not cached are read in the order in which they are stored instead of at random. The batch size
+ * starts small and grows while the iterator is consumed, so that iterators of which only the first statements are
+ * needed do not read far ahead.
  */
 class NativeStatementIterator extends LookAheadIteration<Statement, SailException> {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int MIN_BATCH_SIZE = 16;
+
+	private static final int MAX_BATCH_SIZE = 1024;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -32,6 +46,24 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 
 	private final ValueStore valueStore;
 
+	/**
+	 * The subject, predicate, object and context IDs of the records in the current batch.
+	 */
+	private int[] ids = new int[4 * MIN_BATCH_SIZE];
+
+	/**
+	 * The values for the {@link #ids}.
+	 */
+	private NativeValue[] values;
+
+	private int batchSize = MIN_BATCH_SIZE;
+
+	private int batchCount = 0;
+
+	private int position = 0;
+
+	private boolean exhausted = false;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -51,31 +83,61 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 	@Override
 	public Statement getNextElement() throws SailException {
 		try {
-			byte[] nextValue = btreeIter.next();
-
-			if (nextValue == null) {
+			if (position == batchCount && !nextBatch()) {
 				return null;
 			}
 
-			int subjID = ByteArrayUtil.getInt(nextValue, TripleStore.SUBJ_IDX);
-			Resource subj = (Resource) valueStore.getValue(subjID);
+			int offset = 4 * position++;
+			Resource subj = (Resource) values[offset];
+			IRI pred = (IRI) values[offset + 1];
+			Value obj = values[offset + 2];
+			// the null context has ID 0, for which no value is fetched
+			Resource context = (Resource) values[offset + 3];
 
-			int predID = ByteArrayUtil.getInt(nextValue, TripleStore.PRED_IDX);
-			IRI pred = (IRI) valueStore.getValue(predID);
+			return valueStore.createStatement(subj, pred, obj, context);
+		} catch (IOException e) {
+			throw causeIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the next batch of records and fetches their values.
+	 *
+	 * @return <tt>false</tt> if there are no more records.
+	 */
+	private boolean nextBatch() throws IOException {
+		if (exhausted) {
+			return false;
+		}
 
-			int objID = ByteArrayUtil.getInt(nextValue, TripleStore.OBJ_IDX);
-			Value obj = valueStore.getValue(objID);
+		if (ids.length < 4 * batchSize) {
+			ids = new int[4 * batchSize];
+		}
 
-			Resource context = null;
-			int contextID = ByteArrayUtil.getInt(nextValue, TripleStore.CONTEXT_IDX);
-			if (contextID != 0) {
-				context = (Resource) valueStore.getValue(contextID);
+		int count = 0;
+		while (count < batchSize) {
+			byte[] nextValue = btreeIter.next();
+			if (nextValue == null) {
+				exhausted = true;
+				break;
 			}
 
-			return valueStore.createStatement(subj, pred, obj, context);
-		} catch (IOException e) {
-			throw causeIOException(e);
+			int offset = 4 * count++;
+			ids[offset] = ByteArrayUtil.getInt(nextValue, TripleStore.SUBJ_IDX);
+			ids[offset + 1] = ByteArrayUtil.getInt(nextValue, TripleStore.PRED_IDX);
+			ids[offset + 2] = ByteArrayUtil.getInt(nextValue, TripleStore.OBJ_IDX);
+			ids[offset + 3] = ByteArrayUtil.getInt(nextValue, TripleStore.CONTEXT_IDX);
+		}
+
+		if (count == 0) {
+			return false;
 		}
+
+		values = valueStore.getValues(ids, 4 * count);
+		batchCount = count;
+		position = 0;
+		batchSize = Math.min(MAX_BATCH_SIZE, batchSize * 2);
+		return true;
 	}
 
 	@Override
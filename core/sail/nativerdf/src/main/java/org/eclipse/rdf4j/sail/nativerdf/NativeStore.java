@@ -65,6 +65,12 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 	 */
 	private volatile boolean forceSync = false;
 
+	/**
+	 * Flag indicating whether the triple indexes are read from memory-mapped files. By default, this feature is
+	 * disabled.
+	 */
+	private volatile boolean memoryMappedIndexes = false;
+
 	private volatile int valueCacheSize = ValueStore.VALUE_CACHE_SIZE;
 
 	private volatile int valueIDCacheSize = ValueStore.VALUE_ID_CACHE_SIZE;
@@ -73,8 +79,18 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 
 	private volatile int namespaceIDCacheSize = ValueStore.NAMESPACE_ID_CACHE_SIZE;
 
+	/**
+	 * The size of the off-heap value cache in bytes, 0 if it is disabled. By default, this feature is disabled.
+	 */
+	private volatile long offHeapValueCacheSize = 0L;
+
 	private SailStore store;
 
+	/**
+	 * The store that holds the committed statements, wrapped by {@link #store}.
+	 */
+	private NativeSailStore nativeSailStore;
+
 	// used to decide if store is writable, is true if the store was writable during initialization
 	private boolean isWritable;
 
@@ -155,6 +171,10 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 	 * Specifiec whether updates should be synced to disk forcefully, must be called before initialization. Enabling
 	 * this feature may prevent corruption in case of events like power loss, but can have a severe impact on write
 	 * performance. By default, this feature is disabled.
+	 * <p>
+	 * Committed transactions are also recorded in a write-ahead log, which is forced to disk before the store files are
+	 * changed by the commit. A transaction that is interrupted while it is committed is re-applied from the log when
+	 * the store is reopened.
 	 */
 	public void setForceSync(boolean forceSync) {
 		this.forceSync = forceSync;
@@ -164,6 +184,20 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		return forceSync;
 	}
 
+	/**
+	 * Specifies whether the triple indexes should be read from memory-mapped files, must be called before
+	 * initialization. Memory-mapped reads avoid a system call and a buffer copy for every B-tree node that is not
+	 * cached, which mostly benefits range scans over large indexes. The mapped files count towards the virtual memory
+	 * of the process, not towards the Java heap. By default, this feature is disabled.
+	 */
+	public void setMemoryMappedIndexes(boolean memoryMappedIndexes) {
+		this.memoryMappedIndexes = memoryMappedIndexes;
+	}
+
+	public boolean getMemoryMappedIndexes() {
+		return memoryMappedIndexes;
+	}
+
 	public void setValueCacheSize(int valueCacheSize) {
 		this.valueCacheSize = valueCacheSize;
 	}
@@ -180,6 +214,21 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		this.namespaceIDCacheSize = namespaceIDCacheSize;
 	}
 
+	/**
+	 * Sets the size of the off-heap value cache in bytes, must be called before initialization. The off-heap cache
+	 * holds serialized values and their IDs outside of the Java heap, behind the (on-heap) value caches, so that a large
+	 * part of the values can be cached without increasing garbage collection pauses. The JVM option
+	 * <tt>-XX:MaxDirectMemorySize</tt> must allow for the cache size plus about a third for its hash tables. A size of
+	 * 0 disables the cache, which is the default.
+	 */
+	public void setOffHeapValueCacheSize(long offHeapValueCacheSize) {
+		this.offHeapValueCacheSize = offHeapValueCacheSize;
+	}
+
+	public long getOffHeapValueCacheSize() {
+		return offHeapValueCacheSize;
+	}
+
 	/**
 	 * @return Returns the {@link EvaluationStrategy}.
 	 */
@@ -262,8 +311,10 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 			if (!VERSION.equals(version) && upgradeStore(dataDir, version)) {
 				FileUtils.writeStringToFile(versionFile, VERSION);
 			}
-			final NativeSailStore mainStore = new NativeSailStore(dataDir, tripleIndexes, forceSync, valueCacheSize,
-					valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize);
+			final NativeSailStore mainStore = new NativeSailStore(dataDir, tripleIndexes, forceSync,
+					memoryMappedIndexes, valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize,
+					offHeapValueCacheSize);
+			this.nativeSailStore = mainStore;
 			this.store = new SnapshotSailStore(mainStore, () -> new MemoryOverflowModel() {
 
 				@Override
@@ -341,6 +392,30 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		return store.getValueFactory();
 	}
 
+	/**
+	 * Creates a {@link NativeBulkLoader} for an initial import of statements into this store, which must be empty. The
+	 * store is initialized first if necessary. Only one bulk load can be active at a time, and transactions can not
+	 * modify the store until the bulk loader has been committed or closed.
+	 *
+	 * @return A new bulk loader, which must be closed after use.
+	 * @throws SailException If the store is not empty, or if a transaction or another bulk load is active.
+	 */
+	public NativeBulkLoader createBulkLoader() throws SailException {
+		if (!isInitialized()) {
+			init();
+		}
+		return new NativeBulkLoader(nativeSailStore);
+	}
+
+	/**
+	 * Waits until the transactions that have been committed so far are durable.
+	 *
+	 * @see NativeSailStore#awaitDurable()
+	 */
+	void awaitDurable() throws SailException {
+		nativeSailStore.awaitDurable();
+	}
+
 	/**
 	 * This call will block when {@link IsolationLevels#NONE} is provided when there are active transactions with a
 	 * higher isolation and block when a higher isolation is provided when there are active transactions with
@@ -90,6 +90,9 @@ public class NativeStoreConnection extends SailSourceConnection {
 			}
 		}
 
+		// the log is forced once for all commits that are waiting, after all locks have been released
+		nativeStore.awaitDurable();
+
 		nativeStore.notifySailChanged(sailChangedEvent);
 
 		// create a fresh event object.
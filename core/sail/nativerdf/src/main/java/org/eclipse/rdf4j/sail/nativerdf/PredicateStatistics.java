@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
+
+/**
+ * Cardinality statistics on the statements in a {@link TripleStore}, per predicate. For each predicate, the exact
+ * number of statements is kept, together with {@link HyperLogLog} sketches of its distinct subjects and objects. For
+ * the <tt>rdf:type</tt> predicate, the most frequent objects (classes) and their counts are tracked as well.
+ * <p>
+ * The statistics are updated when a transaction is committed. Sketches can not forget values, so the number of
+ * distinct subjects and objects is overestimated after statements have been removed, but never exceeds the number of
+ * statements.
+ * <p>
+ * The statistics are stored in a file, which is written on {@link #sync()}: the native store does so on checkpoints
+ * and on close, not on every commit. The statistics are written to a temporary file first, which then replaces the
+ * previous file, so that a crash never leaves incomplete statistics behind. Before the first commit after a sync, the
+ * file is {@link #markDirty() marked} as outdated. If the file is missing or outdated when the store is opened, or if
+ * committed transactions have been recovered after a crash, the statistics are rebuilt from the triple indexes.
+ * <p>
+ * The file has the following format:
+ *
+ * <pre>
+ *  byte 1-3        : the magic number marker
+ *  byte 4          : the file format version
+ *  byte 5          : 1 if changes have been committed since the file was written, 0 otherwise
+ *  byte 6-9        : the ID of rdf:type, or -1
+ *  byte 10-13      : the number of predicates, followed by a record for each predicate:
+ *    byte 1-4      : the predicate ID
+ *    byte 5-12     : the number of statements
+ *    byte 13-      : the subject and object sketches
+ *  int             : the number of tracked classes, followed by a record for each class:
+ *    byte 1-4      : the class ID
+ *    byte 5-12     : the number of instances
+ *  byte            : 1 if classes have been evicted from the tracked classes, 0 otherwise
+ * </pre>
+ */
+class PredicateStatistics {
+
+	static final String FILE_NAME = "predicates.dat";
+
+	static final String SYNC_FILE_NAME = "predicates.sync";
+
+	/**
+	 * Magic number "Native Predicate File" to detect whether the file is actually a predicate statistics file.
+	 */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'n', 'p', 'f' };
+
+	/**
+	 * File format version, stored as the fourth byte in predicate statistics files.
+	 */
+	private static final byte FILE_FORMAT_VERSION = 2;
+
+	/**
+	 * The offset of the byte that marks the file as outdated, see {@link #markDirty()}.
+	 */
+	private static final int DIRTY_FLAG_OFFSET = 4;
+
+	/**
+	 * The precision of the sketches, 256 registers per sketch for a standard error of about 6.5%.
+	 */
+	private static final int SKETCH_PRECISION = 8;
+
+	/**
+	 * The maximum number of classes for which the number of instances is tracked.
+	 */
+	static final int TRACKED_CLASS_COUNT = 256;
+
+	private final File file;
+
+	private final File syncFile;
+
+	private final Map<Integer, PredicateInfo> predicates = new HashMap<>();
+
+	/**
+	 * The number of instances of the most frequent classes. When a class is added while the map is full, the least
+	 * frequent class is evicted and the count of the new class starts at the evicted count (Space-Saving algorithm), so
+	 * that a frequent class eventually displaces an infrequent one.
+	 */
+	private final Map<Integer, Long> classCounts = new HashMap<>();
+
+	/**
+	 * Flag indicating whether any class has been evicted from {@link #classCounts}. If not, the count of a class that
+	 * is not tracked is exactly 0.
+	 */
+	private boolean classesEvicted;
+
+	/**
+	 * The ID of <tt>rdf:type</tt>, or {@link NativeValue#UNKNOWN_ID} if it is not known yet.
+	 */
+	private int typeID = NativeValue.UNKNOWN_ID;
+
+	private boolean initialized;
+
+	/**
+	 * Flag indicating whether the statistics are different from what is stored on disk.
+	 */
+	private boolean contentsChanged;
+
+	/**
+	 * Flag indicating whether the file on disk has been marked as outdated.
+	 */
+	private boolean fileDirty;
+
+	/**
+	 * Creates new statistics, reading them from the statistics file in the specified directory if present. Otherwise,
+	 * the statistics must be {@link #rebuild(RecordIterator) rebuilt} before they are used.
+	 */
+	PredicateStatistics(File dataDir) throws IOException {
+		this.file = new File(dataDir, FILE_NAME);
+		this.syncFile = new File(dataDir, SYNC_FILE_NAME);
+		initialized = read();
+	}
+
+	/**
+	 * Checks whether the statistics have been read from disk or have been rebuilt.
+	 */
+	synchronized boolean isInitialized() {
+		return initialized;
+	}
+
+	/**
+	 * Sets the ID of <tt>rdf:type</tt>, which is needed to track the classes. The ID only needs to be set once it has
+	 * been stored, there can not be any <tt>rdf:type</tt> statements before.
+	 */
+	synchronized void setTypeID(int typeID) {
+		if (this.typeID != typeID) {
+			this.typeID = typeID;
+			classCounts.clear();
+			classesEvicted = false;
+			contentsChanged = true;
+		}
+	}
+
+	synchronized int getTypeID() {
+		return typeID;
+	}
+
+	/**
+	 * Marks the file on disk as outdated, unless it already is. This must be called before changes are committed to
+	 * the triple indexes, so that statistics that do not reflect these changes are never read after a crash. The file
+	 * is only marked once per sync.
+	 */
+	synchronized void markDirty() throws IOException {
+		if (fileDirty || !file.isFile()) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(DIRTY_FLAG_OFFSET);
+			raf.writeBoolean(true);
+		}
+		fileDirty = true;
+	}
+
+	/**
+	 * Registers a statement that has been added, in the form of a triple record.
+	 */
+	synchronized void add(byte[] data) {
+		int subj = ByteArrayUtil.getInt(data, TripleStore.SUBJ_IDX);
+		int pred = ByteArrayUtil.getInt(data, TripleStore.PRED_IDX);
+		int obj = ByteArrayUtil.getInt(data, TripleStore.OBJ_IDX);
+
+		contentsChanged = true;
+		PredicateInfo info = predicates.computeIfAbsent(pred, id -> new PredicateInfo());
+		info.count++;
+		info.subjects.add(subj);
+		info.objects.add(obj);
+
+		if (pred == typeID) {
+			addClass(obj);
+		}
+	}
+
+	/**
+	 * Registers a statement that has been removed, in the form of a triple record.
+	 */
+	synchronized void remove(byte[] data) {
+		int pred = ByteArrayUtil.getInt(data, TripleStore.PRED_IDX);
+		int obj = ByteArrayUtil.getInt(data, TripleStore.OBJ_IDX);
+
+		PredicateInfo info = predicates.get(pred);
+		if (info == null) {
+			return;
+		}
+
+		contentsChanged = true;
+		if (--info.count <= 0) {
+			// this also resets the sketches
+			predicates.remove(pred);
+		}
+
+		if (pred == typeID) {
+			classCounts.computeIfPresent(obj, (id, count) -> count <= 1 ? null : count - 1);
+		}
+	}
+
+	private void addClass(int obj) {
+		Long count = classCounts.get(obj);
+		if (count != null) {
+			classCounts.put(obj, count + 1);
+		} else if (classCounts.size() < TRACKED_CLASS_COUNT) {
+			classCounts.put(obj, 1L);
+		} else {
+			Entry<Integer, Long> min = null;
+			for (Entry<Integer, Long> entry : classCounts.entrySet()) {
+				if (min == null || entry.getValue() < min.getValue()) {
+					min = entry;
+				}
+			}
+			long minCount = min.getValue();
+			classCounts.remove(min.getKey());
+			classCounts.put(obj, minCount + 1);
+			classesEvicted = true;
+		}
+	}
+
+	/**
+	 * Gets the number of statements with the specified predicate.
+	 */
+	synchronized long getCount(int pred) {
+		PredicateInfo info = predicates.get(pred);
+		return info == null ? 0 : info.count;
+	}
+
+	/**
+	 * Gets the estimated number of distinct subjects of the statements with the specified predicate.
+	 */
+	synchronized long getDistinctSubjects(int pred) {
+		PredicateInfo info = predicates.get(pred);
+		return info == null ? 0 : Math.max(1, Math.min(info.count, info.subjects.estimate()));
+	}
+
+	/**
+	 * Gets the estimated number of distinct objects of the statements with the specified predicate.
+	 */
+	synchronized long getDistinctObjects(int pred) {
+		PredicateInfo info = predicates.get(pred);
+		return info == null ? 0 : Math.max(1, Math.min(info.count, info.objects.estimate()));
+	}
+
+	/**
+	 * Gets the number of <tt>rdf:type</tt> statements with the specified object.
+	 *
+	 * @return The (estimated) number of statements, or <tt>-1</tt> if the class is not frequent enough to be tracked.
+	 */
+	synchronized long getClassCount(int obj) {
+		Long count = classCounts.get(obj);
+		if (count != null) {
+			return count;
+		}
+		return classesEvicted ? -1 : 0;
+	}
+
+	/**
+	 * Replaces the statistics with those of the supplied triple records.
+	 */
+	synchronized void rebuild(RecordIterator records) throws IOException {
+		clear();
+		for (byte[] data = records.next(); data != null; data = records.next()) {
+			add(data);
+		}
+		initialized = true;
+	}
+
+	synchronized void clear() {
+		contentsChanged = true;
+		predicates.clear();
+		classCounts.clear();
+		classesEvicted = false;
+	}
+
+	/**
+	 * Writes the statistics to disk if they have changed, or if the file has been marked as outdated.
+	 */
+	synchronized void sync() throws IOException {
+		if ((contentsChanged || fileDirty) && initialized) {
+			write();
+			contentsChanged = false;
+		}
+	}
+
+	private void write() throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(syncFile)))) {
+			out.write(MAGIC_NUMBER);
+			out.writeByte(FILE_FORMAT_VERSION);
+			out.writeBoolean(false);
+			out.writeInt(typeID);
+
+			out.writeInt(predicates.size());
+			for (Entry<Integer, PredicateInfo> entry : predicates.entrySet()) {
+				out.writeInt(entry.getKey());
+				out.writeLong(entry.getValue().count);
+				entry.getValue().subjects.write(out);
+				entry.getValue().objects.write(out);
+			}
+
+			out.writeInt(classCounts.size());
+			for (Entry<Integer, Long> entry : classCounts.entrySet()) {
+				out.writeInt(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+			out.writeBoolean(classesEvicted);
+		}
+
+		// prefer atomic renameTo operations
+		boolean renamed = syncFile.renameTo(file);
+		if (!renamed && syncFile.exists() && file.exists()) {
+			// tolerate renameTo that does not work if destination exists
+			file.delete();
+			renamed = syncFile.renameTo(file);
+		}
+		if (!renamed) {
+			throw new IOException("Could not rename " + syncFile.getAbsolutePath() + " to " + file.getName());
+		}
+		fileDirty = false;
+	}
+
+	/**
+	 * Reads the statistics from disk.
+	 *
+	 * @return <tt>false</tt> if the file does not exist, is outdated or does not contain complete statistics.
+	 */
+	private boolean read() throws IOException {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			byte[] magicNumber = new byte[MAGIC_NUMBER.length];
+			in.readFully(magicNumber);
+			if (!Arrays.equals(MAGIC_NUMBER, magicNumber) || in.readByte() != FILE_FORMAT_VERSION) {
+				return false;
+			}
+			if (in.readBoolean()) {
+				// the store was not closed properly after changes were committed
+				fileDirty = true;
+				return false;
+			}
+
+			typeID = in.readInt();
+
+			int predicateCount = in.readInt();
+			for (int i = 0; i < predicateCount; i++) {
+				int pred = in.readInt();
+				PredicateInfo info = new PredicateInfo();
+				info.count = in.readLong();
+				info.subjects.read(in);
+				info.objects.read(in);
+				predicates.put(pred, info);
+			}
+
+			int classCount = in.readInt();
+			for (int i = 0; i < classCount; i++) {
+				int obj = in.readInt();
+				classCounts.put(obj, in.readLong());
+			}
+			classesEvicted = in.readBoolean();
+			return true;
+		} catch (EOFException e) {
+			// incomplete file
+			predicates.clear();
+			classCounts.clear();
+			typeID = NativeValue.UNKNOWN_ID;
+			return false;
+		}
+	}
+
+	private static class PredicateInfo {
+
+		private long count;
+
+		private final HyperLogLog subjects = new HyperLogLog(SKETCH_PRECISION);
+
+		private final HyperLogLog objects = new HyperLogLog(SKETCH_PRECISION);
+	}
+}
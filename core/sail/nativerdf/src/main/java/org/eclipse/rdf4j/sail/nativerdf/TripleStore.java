@@ -13,16 +13,24 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.sail.SailException;
@@ -30,6 +38,8 @@ import org.eclipse.rdf4j.sail.nativerdf.TxnStatusFile.TxnStatus;
 import org.eclipse.rdf4j.sail.nativerdf.btree.BTree;
 import org.eclipse.rdf4j.sail.nativerdf.btree.RecordComparator;
 import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordSorter;
+import org.eclipse.rdf4j.sail.nativerdf.datastore.BloomFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +48,10 @@ import org.slf4j.LoggerFactory;
  * IDs. Each ID represent an RDF value that is stored in a {@link ValueStore}. The four IDs refer to the statement's
  * subject, predicate, object and context. The ID <tt>0</tt> is used to represent the "null" context and doesn't map to
  * an actual RDF value.
+ * <p>
+ * Each index keeps a {@link BloomFilter} on the IDs in its first field, for example the subjects of an <tt>spoc</tt>
+ * index. Patterns with a value in that field that does not occur in the index are answered without accessing the
+ * index.
  *
  * @author Arjohn Kampman
  */
@@ -75,9 +89,28 @@ class TripleStore implements Closeable {
 	 * <li>version 1: Introduces configurable triple indexes and the properties file.
 	 * <li>version 10: Introduces a context field, essentially making this a quad store.
 	 * <li>version 10a: Introduces transaction flags, this is backwards compatible with version 10.
+	 * <li>version 11: Stores the nodes of the triple indexes in compressed form. Indexes of version 10 stores are
+	 * converted when the store is opened.
 	 * </ul>
 	 */
-	private static final int SCHEME_VERSION = 10;
+	private static final int SCHEME_VERSION = 11;
+
+	/**
+	 * The suffix of the filename prefix that is used for an index while it is being converted to the compressed node
+	 * format.
+	 */
+	private static final String UPGRADE_SUFFIX = "-upgrade";
+
+	/**
+	 * The minimum number of IDs that the Bloom filter of an index is sized for.
+	 */
+	private static final int MIN_PREFIX_FILTER_CAPACITY = 16 * 1024;
+
+	/**
+	 * The minimum number of updated records for which {@link #storeTriples(int[], int, boolean)} updates the indexes
+	 * concurrently. Smaller batches are not worth the overhead of handing them over to other threads.
+	 */
+	private static final int MIN_CONCURRENT_BATCH_SIZE = 1024;
 
 	// 17 bytes are used to represent a triple:
 	// byte 0-3 : subject
@@ -141,10 +174,30 @@ class TripleStore implements Closeable {
 
 	private final boolean forceSync;
 
+	/**
+	 * Flag indicating whether the index B-trees read their nodes from memory-mapped files.
+	 */
+	private final boolean memoryMapped;
+
+	/**
+	 * The guard for the writes to the index files, <tt>null</tt> if the writes are not guarded.
+	 */
+	private final FileWriteGuard writeGuard;
+
 	private final TxnStatusFile txnStatusFile;
 
 	private volatile RecordCache updatedTriplesCache;
 
+	/**
+	 * The sorters that collect the triples for each index while a bulk load is active, <tt>null</tt> otherwise.
+	 */
+	private List<RecordSorter> bulkLoadSorters;
+
+	/**
+	 * The executor that updates the indexes concurrently for large batches of triples, created on first use.
+	 */
+	private ExecutorService indexUpdateExecutor;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -154,9 +207,26 @@ class TripleStore implements Closeable {
 	}
 
 	public TripleStore(File dir, String indexSpecStr, boolean forceSync) throws IOException, SailException {
+		this(dir, indexSpecStr, forceSync, false);
+	}
+
+	public TripleStore(File dir, String indexSpecStr, boolean forceSync, boolean memoryMapped)
+			throws IOException, SailException {
+		this(dir, indexSpecStr, forceSync, memoryMapped, null);
+	}
+
+	/**
+	 * Creates a new TripleStore of which the writes to the index files are guarded by the specified guard. The
+	 * transaction status is then not written to disk synchronously, as the guard is responsible for recovering from an
+	 * interrupted transaction.
+	 */
+	TripleStore(File dir, String indexSpecStr, boolean forceSync, boolean memoryMapped, FileWriteGuard writeGuard)
+			throws IOException, SailException {
 		this.dir = dir;
 		this.forceSync = forceSync;
-		this.txnStatusFile = new TxnStatusFile(dir);
+		this.memoryMapped = memoryMapped;
+		this.writeGuard = writeGuard;
+		this.txnStatusFile = new TxnStatusFile(dir, writeGuard == null);
 
 		File propFile = new File(dir, PROPERTIES_FILE);
 
@@ -180,6 +250,7 @@ class TripleStore implements Closeable {
 
 			// Initialize existing indexes
 			Set<String> indexSpecs = getIndexSpecs();
+			completeIndexUpgrades(indexSpecs);
 			initIndexes(indexSpecs);
 
 			// Check transaction status
@@ -190,6 +261,8 @@ class TripleStore implements Closeable {
 				processUncompletedTransaction(txnStatus);
 			}
 
+			upgradeIndexes();
+
 			// Compare the existing indexes with the requested indexes
 			Set<String> reqIndexSpecs = parseIndexSpecList(indexSpecStr);
 
@@ -285,6 +358,223 @@ class TripleStore implements Closeable {
 		}
 	}
 
+	/**
+	 * Finishes or discards conversions of indexes to the compressed node format that have been interrupted. A
+	 * converted index that has been completely written replaces its original once the latter has been deleted.
+	 */
+	private void completeIndexUpgrades(Set<String> indexSpecs) throws IOException {
+		for (String fieldSeq : indexSpecs) {
+			String prefix = getFilenamePrefix(fieldSeq);
+			File upgradeDatFile = new File(dir, prefix + UPGRADE_SUFFIX + ".dat");
+			File upgradeAllocFile = new File(dir, prefix + UPGRADE_SUFFIX + ".alloc");
+
+			if (!upgradeDatFile.exists()) {
+				continue;
+			}
+
+			File datFile = new File(dir, prefix + ".dat");
+			if (datFile.exists()) {
+				logger.debug("Discarding incomplete conversion of {} index", fieldSeq);
+				upgradeDatFile.delete();
+				upgradeAllocFile.delete();
+			} else {
+				logger.debug("Completing conversion of {} index", fieldSeq);
+				replaceIndexFiles(prefix + UPGRADE_SUFFIX, prefix);
+			}
+		}
+	}
+
+	/**
+	 * Converts all indexes that don't store their nodes in compressed form yet.
+	 */
+	private void upgradeIndexes() throws IOException {
+		List<TripleIndex> outdatedIndexes = new ArrayList<>();
+		List<TripleIndex> upgradedIndexes = new ArrayList<>();
+		List<IndexBuild> builds = new ArrayList<>();
+
+		try {
+			for (TripleIndex index : indexes) {
+				if (!index.getBTree().isCompressed()) {
+					String fieldSeq = new String(index.getFieldSeq());
+					logger.info("Converting {} index to compressed node format...", fieldSeq);
+
+					TripleIndex upgradedIndex = new TripleIndex(fieldSeq, getFilenamePrefix(fieldSeq) + UPGRADE_SUFFIX);
+					outdatedIndexes.add(index);
+					upgradedIndexes.add(upgradedIndex);
+					builds.add(() -> copyIndex(index, upgradedIndex));
+				}
+			}
+
+			buildIndexes(builds);
+		} finally {
+			for (TripleIndex upgradedIndex : upgradedIndexes) {
+				upgradedIndex.close();
+			}
+		}
+
+		for (TripleIndex index : outdatedIndexes) {
+			String fieldSeq = new String(index.getFieldSeq());
+			String prefix = getFilenamePrefix(fieldSeq);
+
+			if (!index.delete()) {
+				throw new IOException("Unable to delete file(s) of " + fieldSeq + " index");
+			}
+			replaceIndexFiles(prefix + UPGRADE_SUFFIX, prefix);
+
+			indexes.set(indexes.indexOf(index), new TripleIndex(fieldSeq));
+			logger.info("Converted {} index", fieldSeq);
+		}
+	}
+
+	private void replaceIndexFiles(String sourcePrefix, String targetPrefix) throws IOException {
+		// the allocated nodes file and the Bloom filter are renamed last; they can be reconstructed from the data file
+		new File(dir, targetPrefix + ".alloc").delete();
+		new File(dir, targetPrefix + ".bloom").delete();
+		for (String extension : new String[] { ".dat", ".alloc", ".bloom" }) {
+			File sourceFile = new File(dir, sourcePrefix + extension);
+			File targetFile = new File(dir, targetPrefix + extension);
+			if (sourceFile.exists() && !sourceFile.renameTo(targetFile)) {
+				throw new IOException("Unable to rename " + sourceFile + " to " + targetFile);
+			}
+		}
+	}
+
+	/**
+	 * Fills <tt>targetIndex</tt> with all triples of <tt>sourceIndex</tt>. Any existing content of the target index, for
+	 * example from an interrupted earlier attempt, is discarded. Unless both indexes use the same field order, the
+	 * triples are sorted externally first; the target index is then built bottom-up from the sorted triples.
+	 */
+	private void copyIndex(TripleIndex sourceIndex, TripleIndex targetIndex) throws IOException {
+		BTree targetBTree = targetIndex.getBTree();
+		targetIndex.clear();
+
+		try (RecordIterator sourceIter = sourceIndex.getBTree().iterateAll()) {
+			if (Arrays.equals(sourceIndex.getFieldSeq(), targetIndex.getFieldSeq())) {
+				targetBTree.bulkLoad(sourceIter);
+			} else {
+				try (RecordSorter sorter = new RecordSorter(dir, RECORD_LENGTH, targetIndex.getComparator())) {
+					byte[] value;
+					while ((value = sourceIter.next()) != null) {
+						sorter.add(value);
+					}
+					try (RecordIterator sortedIter = sorter.sort()) {
+						targetBTree.bulkLoad(sortedIter);
+					}
+				}
+			}
+			targetIndex.rebuildPrefixFilter();
+		} finally {
+			targetIndex.sync();
+		}
+	}
+
+	/**
+	 * An action that fills or updates a single index.
+	 */
+	@FunctionalInterface
+	private interface IndexBuild {
+
+		void run() throws IOException;
+	}
+
+	/**
+	 * Runs the supplied index builds, concurrently if there are several of them and multiple processors are available.
+	 * All builds have finished when this method returns, also when one of them failed.
+	 */
+	private void buildIndexes(List<IndexBuild> builds) throws IOException {
+		if (builds.size() <= 1) {
+			for (IndexBuild build : builds) {
+				build.run();
+			}
+			return;
+		}
+
+		int threadCount = Math.min(builds.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			runIndexTasks(builds, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs the supplied index tasks on the specified executor and waits for all of them to finish. The first failure,
+	 * if any, is rethrown.
+	 */
+	private static void runIndexTasks(List<IndexBuild> tasks, ExecutorService executor) throws IOException {
+		List<Future<Void>> futures = new ArrayList<>(tasks.size());
+		for (IndexBuild task : tasks) {
+			futures.add(executor.submit(() -> {
+				task.run();
+				return null;
+			}));
+		}
+
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (Future<Void> future : futures) {
+			// always wait for all tasks, the indexes must not be modified anymore when this method returns
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			if (failure == null) {
+				throw new InterruptedIOException("Interrupted while updating indexes");
+			}
+		}
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IOException(failure);
+		}
+	}
+
+	/**
+	 * Gets the executor that is used to update the indexes concurrently in {@link #storeTriples(int[], int, boolean)},
+	 * creating it if needed.
+	 */
+	private synchronized ExecutorService getIndexUpdateExecutor() {
+		if (indexUpdateExecutor == null) {
+			int threadCount = Math.min(indexes.size(), Runtime.getRuntime().availableProcessors());
+			indexUpdateExecutor = Executors.newFixedThreadPool(threadCount, runnable -> {
+				Thread thread = new Thread(runnable, "rdf4j-nativestore-index-update");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return indexUpdateExecutor;
+	}
+
+	private static String getFilenamePrefix(String fieldSeq) {
+		return "triples-" + fieldSeq;
+	}
+
+	/**
+	 * Gets the capacity of a Bloom filter for twice the specified number of IDs, see {@link TripleIndex}.
+	 */
+	private static int getPrefixFilterCapacity(long idCount) {
+		return (int) Math.min(Integer.MAX_VALUE / 2, Math.max(MIN_PREFIX_FILTER_CAPACITY, 2L * idCount));
+	}
+
 	private void processUncompletedTransaction(TxnStatus txnStatus) throws IOException {
 		switch (txnStatus) {
 		case COMMITTING:
@@ -317,6 +607,14 @@ class TripleStore implements Closeable {
 				throw e;
 			}
 			break;
+		case BULK_LOADING:
+			// the store was empty when the bulk load was started
+			logger.info("Detected unfinished bulk load, clearing indexes");
+			clear();
+			sync();
+			txnStatusFile.setTxnStatus(TxnStatus.NONE);
+			logger.info("Indexes of unfinished bulk load cleared successfully");
+			break;
 		case UNKNOWN:
 			logger.info("Read invalid or unknown transaction status, trying to roll back");
 			try {
@@ -343,35 +641,19 @@ class TripleStore implements Closeable {
 
 		if (!addedIndexSpecs.isEmpty()) {
 			TripleIndex sourceIndex = indexes.get(0);
+			List<IndexBuild> builds = new ArrayList<>(addedIndexSpecs.size());
 
 			for (String fieldSeq : addedIndexSpecs) {
 				logger.debug("Initializing new index '{}'...", fieldSeq);
 
 				TripleIndex addedIndex = new TripleIndex(fieldSeq);
-				BTree addedBTree = null;
-				RecordIterator sourceIter = null;
-				try {
-					addedBTree = addedIndex.getBTree();
-					sourceIter = sourceIndex.getBTree().iterateAll();
-					byte[] value = null;
-					while ((value = sourceIter.next()) != null) {
-						addedBTree.insert(value);
-					}
-				} finally {
-					try {
-						if (sourceIter != null) {
-							sourceIter.close();
-						}
-					} finally {
-						if (addedBTree != null) {
-							addedBTree.sync();
-						}
-					}
-				}
+				builds.add(() -> copyIndex(sourceIndex, addedIndex));
 
 				currentIndexes.put(fieldSeq, addedIndex);
 			}
 
+			buildIndexes(builds);
+
 			logger.debug("New index(es) initialized");
 		}
 
@@ -385,7 +667,7 @@ class TripleStore implements Closeable {
 			try {
 				TripleIndex removedIndex = currentIndexes.remove(fieldSeq);
 
-				boolean deleted = removedIndex.getBTree().delete();
+				boolean deleted = removedIndex.delete();
 
 				if (deleted) {
 					logger.debug("Deleted file(s) for removed {} index", fieldSeq);
@@ -410,11 +692,18 @@ class TripleStore implements Closeable {
 
 	@Override
 	public void close() throws IOException {
+		synchronized (this) {
+			if (indexUpdateExecutor != null) {
+				indexUpdateExecutor.shutdownNow();
+				indexUpdateExecutor = null;
+			}
+		}
+
 		try {
 			List<Throwable> caughtExceptions = new ArrayList<>();
 			for (TripleIndex index : indexes) {
 				try {
-					index.getBTree().close();
+					index.close();
 				} catch (Throwable e) {
 					logger.warn("Failed to close file for {} index", new String(index.getFieldSeq()));
 					caughtExceptions.add(e);
@@ -581,6 +870,9 @@ class TripleStore implements Closeable {
 	private RecordIterator getTriples(int subj, int pred, int obj, int context, int flags, int flagsMask)
 			throws IOException {
 		TripleIndex index = getBestIndex(subj, pred, obj, context);
+		if (!index.mightContain(subj, pred, obj, context)) {
+			return EMPTY_ITERATOR;
+		}
 		boolean doRangeSearch = index.getPatternScore(subj, pred, obj, context) > 0;
 		return getTriplesUsingIndex(subj, pred, obj, context, flags, flagsMask, index, doRangeSearch);
 	}
@@ -617,6 +909,10 @@ class TripleStore implements Closeable {
 		TripleIndex index = getBestIndex(subj, pred, obj, context);
 		BTree btree = index.btree;
 
+		if (!index.mightContain(subj, pred, obj, context)) {
+			return 0;
+		}
+
 		double rangeSize;
 
 		if (index.getPatternScore(subj, pred, obj, context) == 0) {
@@ -630,6 +926,31 @@ class TripleStore implements Closeable {
 		return rangeSize;
 	}
 
+	/**
+	 * Sorts lookups of triples in the order of the indexes that are used for them, so that consecutive lookups descend
+	 * to the same or neighbouring nodes of a B-tree, which are then likely to be cached.
+	 *
+	 * @param lookups The subject, predicate, object and context IDs of the lookups, with <tt>-1</tt> for wildcards.
+	 */
+	public void sortLookups(List<int[]> lookups) {
+		Map<int[], TripleIndex> lookupIndexes = new IdentityHashMap<>(lookups.size());
+		Map<int[], byte[]> minValues = new IdentityHashMap<>(lookups.size());
+		for (int[] lookup : lookups) {
+			lookupIndexes.put(lookup, getBestIndex(lookup[0], lookup[1], lookup[2], lookup[3]));
+			minValues.put(lookup, getMinValue(lookup[0], lookup[1], lookup[2], lookup[3]));
+		}
+
+		lookups.sort((lookup1, lookup2) -> {
+			TripleIndex index = lookupIndexes.get(lookup1);
+			int diff = Integer.compare(indexes.indexOf(index), indexes.indexOf(lookupIndexes.get(lookup2)));
+			if (diff == 0) {
+				diff = index.getComparator()
+						.compareBTreeValues(minValues.get(lookup1), minValues.get(lookup2), 0, RECORD_LENGTH);
+			}
+			return diff;
+		});
+	}
+
 	protected TripleIndex getBestIndex(int subj, int pred, int obj, int context) {
 		int bestScore = -1;
 		TripleIndex bestIndex = null;
@@ -647,7 +968,7 @@ class TripleStore implements Closeable {
 
 	public void clear() throws IOException {
 		for (TripleIndex index : indexes) {
-			index.getBTree().clear();
+			index.clear();
 		}
 	}
 
@@ -656,11 +977,116 @@ class TripleStore implements Closeable {
 	}
 
 	public boolean storeTriple(int subj, int pred, int obj, int context, boolean explicit) throws IOException {
-		boolean stAdded = false;
-
 		byte[] data = getData(subj, pred, obj, context, 0);
 		byte[] storedData = indexes.get(0).getBTree().get(data);
 
+		boolean stAdded = updateFlags(data, storedData, explicit);
+
+		if (storedData == null || !Arrays.equals(data, storedData)) {
+			for (TripleIndex index : indexes) {
+				if (storedData == null) {
+					index.addToPrefixFilter(data);
+				}
+				index.getBTree().insert(data);
+				index.checkPrefixFilter();
+			}
+
+			updatedTriplesCache.storeRecord(data);
+		}
+
+		return stAdded;
+	}
+
+	/**
+	 * Stores a batch of triples in the current transaction. The flags of the triples are determined one by one, after
+	 * which the changed records are written to the indexes. For large batches, each index is updated by a separate
+	 * thread, in the order of that index.
+	 *
+	 * @param ids      The subject, predicate, object and context IDs of the triples, four per triple.
+	 * @param count    The number of triples in the batch.
+	 * @param explicit Whether the triples are explicit.
+	 * @return For each triple, whether it was added to the store, see
+	 *         {@link #storeTriple(int, int, int, int, boolean)}.
+	 */
+	public boolean[] storeTriples(int[] ids, int count, boolean explicit) throws IOException {
+		boolean[] added = new boolean[count];
+
+		// the latest record for each triple in the batch, a triple may occur more than once
+		Map<ByteBuffer, byte[]> updatedRecords = new LinkedHashMap<>();
+		List<byte[]> newRecords = new ArrayList<>();
+
+		BTree firstBTree = indexes.get(0).getBTree();
+		for (int i = 0; i < count; i++) {
+			byte[] data = getData(ids[4 * i], ids[4 * i + 1], ids[4 * i + 2], ids[4 * i + 3], 0);
+			ByteBuffer key = ByteBuffer.wrap(data, 0, FLAG_IDX);
+
+			byte[] storedData = updatedRecords.get(key);
+			boolean updatedInBatch = storedData != null;
+			if (!updatedInBatch) {
+				storedData = firstBTree.get(data);
+			}
+
+			added[i] = updateFlags(data, storedData, explicit);
+
+			if (storedData == null || !Arrays.equals(data, storedData)) {
+				if (storedData == null) {
+					newRecords.add(data);
+				}
+				updatedRecords.put(key, data);
+			}
+		}
+
+		if (updatedRecords.isEmpty()) {
+			return added;
+		}
+
+		// record the updates first, so that a failure while updating the indexes can be rolled back
+		List<byte[]> records = new ArrayList<>(updatedRecords.values());
+		for (byte[] data : records) {
+			updatedTriplesCache.storeRecord(data);
+		}
+
+		List<IndexBuild> updates = new ArrayList<>(indexes.size());
+		for (TripleIndex index : indexes) {
+			updates.add(() -> {
+				for (byte[] data : newRecords) {
+					index.addToPrefixFilter(data);
+				}
+
+				byte[][] sortedRecords = records.toArray(new byte[records.size()][]);
+				RecordComparator comparator = index.getComparator();
+				Arrays.sort(sortedRecords, (a, b) -> comparator.compareBTreeValues(a, b, 0, b.length));
+
+				BTree btree = index.getBTree();
+				for (byte[] data : sortedRecords) {
+					btree.insert(data);
+				}
+
+				// the filter is only rebuilt once the new records are in the index
+				index.checkPrefixFilter();
+			});
+		}
+
+		if (records.size() < MIN_CONCURRENT_BATCH_SIZE || updates.size() == 1) {
+			for (IndexBuild update : updates) {
+				update.run();
+			}
+		} else {
+			runIndexTasks(updates, getIndexUpdateExecutor());
+		}
+
+		return added;
+	}
+
+	/**
+	 * Sets the flags of a triple record that is stored in the current transaction, see txn-flags.txt for a description
+	 * of the flag transformations.
+	 *
+	 * @param data       The record to store, without any flags.
+	 * @param storedData The record that is currently stored for the same triple, or <tt>null</tt>.
+	 * @return Whether the triple is new, i.e. it did not exist or was removed before.
+	 */
+	private boolean updateFlags(byte[] data, byte[] storedData, boolean explicit) {
 		if (storedData == null) {
 			// Statement does not yet exist
 			data[FLAG_IDX] |= ADDED_FLAG;
@@ -668,59 +1094,48 @@ class TripleStore implements Closeable {
 				data[FLAG_IDX] |= EXPLICIT_FLAG;
 			}
 
-			stAdded = true;
+			return true;
+		}
+
+		// Statement already exists, only modify its flags
+		byte flags = storedData[FLAG_IDX];
+		boolean wasExplicit = (flags & EXPLICIT_FLAG) != 0;
+		boolean wasAdded = (flags & ADDED_FLAG) != 0;
+		boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
+		boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
+
+		if (wasAdded) {
+			// Statement has been added in the current transaction and is
+			// invisible to other connections, we can simply modify its flags
+			data[FLAG_IDX] |= ADDED_FLAG;
+			if (explicit || wasExplicit) {
+				data[FLAG_IDX] |= EXPLICIT_FLAG;
+			}
 		} else {
-			// Statement already exists, only modify its flags, see txn-flags.txt
-			// for a description of the flag transformations
-			byte flags = storedData[FLAG_IDX];
-			boolean wasExplicit = (flags & EXPLICIT_FLAG) != 0;
-			boolean wasAdded = (flags & ADDED_FLAG) != 0;
-			boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
-			boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
-
-			if (wasAdded) {
-				// Statement has been added in the current transaction and is
-				// invisible to other connections, we can simply modify its flags
-				data[FLAG_IDX] |= ADDED_FLAG;
-				if (explicit || wasExplicit) {
-					data[FLAG_IDX] |= EXPLICIT_FLAG;
+			// Committed statement, must keep explicit flag the same
+			if (wasExplicit) {
+				data[FLAG_IDX] |= EXPLICIT_FLAG;
+			}
+
+			if (explicit) {
+				if (!wasExplicit) {
+					// Make inferred statement explicit
+					data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
 				}
 			} else {
-				// Committed statement, must keep explicit flag the same
-				if (wasExplicit) {
-					data[FLAG_IDX] |= EXPLICIT_FLAG;
-				}
-
-				if (explicit) {
-					if (!wasExplicit) {
-						// Make inferred statement explicit
-						data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
-					}
-				} else {
-					if (wasRemoved) {
-						if (wasExplicit) {
-							// Re-add removed explicit statement as inferred
-							data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
-						}
-					} else if (wasToggled) {
+				if (wasRemoved) {
+					if (wasExplicit) {
+						// Re-add removed explicit statement as inferred
 						data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
 					}
+				} else if (wasToggled) {
+					data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
 				}
 			}
-
-			// Statement is new if it was removed before
-			stAdded = wasRemoved;
 		}
 
-		if (storedData == null || !Arrays.equals(data, storedData)) {
-			for (TripleIndex index : indexes) {
-				index.getBTree().insert(data);
-			}
-
-			updatedTriplesCache.storeRecord(data);
-		}
-
-		return stAdded;
+		// Statement is new if it was removed before
+		return wasRemoved;
 	}
 
 	/**
@@ -918,6 +1333,87 @@ class TripleStore implements Closeable {
 		// checkAllCommitted();
 	}
 
+	/**
+	 * Appends the changes of the active transaction to the supplied log, as the triple records that result from
+	 * committing it.
+	 */
+	void logTransaction(WriteAheadLog log) throws IOException {
+		RecordIterator iter = getTransactionRecords();
+		try {
+			byte[] data;
+			while ((data = iter.next()) != null) {
+				byte flags = data[FLAG_IDX];
+				boolean wasAdded = (flags & ADDED_FLAG) != 0;
+				boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
+				boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
+
+				if (wasRemoved) {
+					log.appendTriple(data, true);
+				} else if (wasAdded || wasToggled) {
+					byte[] committedData = data.clone();
+					committedData[FLAG_IDX] = (byte) ((wasToggled ? flags ^ EXPLICIT_FLAG : flags) & EXPLICIT_FLAG);
+					log.appendTriple(committedData, false);
+				}
+			}
+		} finally {
+			iter.close();
+		}
+	}
+
+	/**
+	 * Registers the statements that the active transaction adds and removes with the supplied statistics.
+	 */
+	void updateStatistics(PredicateStatistics statistics) throws IOException {
+		RecordIterator iter = getTransactionRecords();
+		try {
+			byte[] data;
+			while ((data = iter.next()) != null) {
+				byte flags = data[FLAG_IDX];
+				boolean wasAdded = (flags & ADDED_FLAG) != 0;
+				boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
+
+				// statements that are both added and removed did not exist before the transaction
+				if (wasAdded && !wasRemoved) {
+					statistics.add(data);
+				} else if (wasRemoved && !wasAdded) {
+					statistics.remove(data);
+				}
+			}
+		} finally {
+			iter.close();
+		}
+	}
+
+	/**
+	 * Gets the records that have been updated in the active transaction, or all records if these are not cached.
+	 */
+	private RecordIterator getTransactionRecords() throws IOException {
+		if (updatedTriplesCache != null && updatedTriplesCache.isValid()) {
+			return updatedTriplesCache.getRecords();
+		} else {
+			return indexes.get(0).getBTree().iterateAll();
+		}
+	}
+
+	/**
+	 * Applies a committed change from a {@link WriteAheadLog} to all indexes. Changes can be applied repeatedly, for
+	 * example when a change was already written to the indexes before a crash.
+	 *
+	 * @param data    The triple record as it was committed.
+	 * @param removed Whether the triple was removed.
+	 */
+	void replayTriple(byte[] data, boolean removed) throws IOException {
+		for (TripleIndex index : indexes) {
+			if (removed) {
+				index.getBTree().remove(data);
+			} else {
+				index.addToPrefixFilter(data);
+				index.getBTree().insert(data);
+				index.checkPrefixFilter();
+			}
+		}
+	}
+
 	private void checkAllCommitted() throws IOException {
 		for (TripleIndex index : indexes) {
 			System.out.println("Checking " + index + " index");
@@ -994,11 +1490,128 @@ class TripleStore implements Closeable {
 		txnStatusFile.setTxnStatus(TxnStatus.NONE);
 	}
 
+	/**
+	 * Starts a bulk load into this triple store, which must be empty. Triples that are added with
+	 * {@link #bulkLoadTriple} are collected in sorted runs on disk, one set of runs per index. The indexes are only
+	 * built when {@link #finishBulkLoad()} is called. Regular transactions can not be used while a bulk load is active.
+	 */
+	public void startBulkLoad() throws IOException {
+		if (bulkLoadSorters != null) {
+			throw new IllegalStateException("Bulk load already started");
+		}
+		for (TripleIndex index : indexes) {
+			try (RecordIterator iter = index.getBTree().iterateAll()) {
+				if (iter.next() != null) {
+					throw new SailException("Bulk loading requires an empty triple store");
+				}
+			}
+		}
+
+		txnStatusFile.setTxnStatus(TxnStatus.BULK_LOADING);
+
+		List<RecordSorter> sorters = new ArrayList<>(indexes.size());
+		for (TripleIndex index : indexes) {
+			sorters.add(new RecordSorter(dir, RECORD_LENGTH, index.getComparator()));
+		}
+		bulkLoadSorters = sorters;
+	}
+
+	/**
+	 * Adds a triple to the active bulk load. Duplicate triples are removed when the indexes are built.
+	 */
+	public void bulkLoadTriple(int subj, int pred, int obj, int context, boolean explicit) throws IOException {
+		if (bulkLoadSorters == null) {
+			throw new IllegalStateException("No bulk load active");
+		}
+
+		byte[] data = getData(subj, pred, obj, context, explicit ? EXPLICIT_FLAG : 0);
+		for (RecordSorter sorter : bulkLoadSorters) {
+			sorter.add(data);
+		}
+	}
+
+	/**
+	 * Builds all indexes from the triples of the active bulk load, concurrently. If this fails, the indexes are
+	 * cleared again.
+	 */
+	public void finishBulkLoad() throws IOException {
+		if (bulkLoadSorters == null) {
+			throw new IllegalStateException("No bulk load active");
+		}
+
+		List<IndexBuild> builds = new ArrayList<>(indexes.size());
+		for (int i = 0; i < indexes.size(); i++) {
+			TripleIndex index = indexes.get(i);
+			RecordSorter sorter = bulkLoadSorters.get(i);
+			builds.add(() -> {
+				try (RecordIterator sortedIter = sorter.sort()) {
+					index.getBTree().bulkLoad(sortedIter);
+				}
+				index.rebuildPrefixFilter();
+				index.sync();
+			});
+		}
+
+		boolean success = false;
+		try {
+			buildIndexes(builds);
+			success = true;
+		} finally {
+			if (success) {
+				closeBulkLoadSorters();
+				txnStatusFile.setTxnStatus(TxnStatus.NONE);
+			} else {
+				abortBulkLoad();
+			}
+		}
+	}
+
+	/**
+	 * Discards the triples of the active bulk load, leaving the triple store empty.
+	 */
+	public void abortBulkLoad() throws IOException {
+		try {
+			closeBulkLoadSorters();
+		} finally {
+			clear();
+			sync();
+			txnStatusFile.setTxnStatus(TxnStatus.NONE);
+		}
+	}
+
+	private void closeBulkLoadSorters() throws IOException {
+		List<RecordSorter> sorters = bulkLoadSorters;
+		bulkLoadSorters = null;
+
+		if (sorters != null) {
+			for (RecordSorter sorter : sorters) {
+				sorter.close();
+			}
+		}
+	}
+
 	protected void sync() throws IOException {
 		List<Throwable> exceptions = new ArrayList<>();
 		for (TripleIndex index : indexes) {
 			try {
-				index.getBTree().sync();
+				index.sync();
+			} catch (Throwable e) {
+				exceptions.add(e);
+			}
+		}
+		if (!exceptions.isEmpty()) {
+			throw new IOException(exceptions.get(0));
+		}
+	}
+
+	/**
+	 * Writes all changes to the index files and forces them to disk, regardless of the <tt>forceSync</tt> setting.
+	 */
+	void force() throws IOException {
+		List<Throwable> exceptions = new ArrayList<>();
+		for (TripleIndex index : indexes) {
+			try {
+				index.force();
 			} catch (Throwable e) {
 				exceptions.add(e);
 			}
@@ -1092,13 +1705,41 @@ class TripleStore implements Closeable {
 
 		private final BTree btree;
 
+		/**
+		 * The offset of the first field of this index in a triple record.
+		 */
+		private final int prefixFieldIdx;
+
+		private final File prefixFilterFile;
+
+		/**
+		 * Bloom filter on the IDs in the first field of all triples in this index.
+		 */
+		private volatile BloomFilter prefixFilter;
+
+		/**
+		 * Flag indicating whether the Bloom filter has changed since it was last written to its file, in which case
+		 * the file has been deleted.
+		 */
+		private volatile boolean prefixFilterChanged;
+
 		public TripleIndex(String fieldSeq) throws IOException {
-			tripleComparator = new TripleComparator(fieldSeq);
-			btree = new BTree(dir, getFilenamePrefix(fieldSeq), 2048, RECORD_LENGTH, tripleComparator, forceSync);
+			this(fieldSeq, getFilenamePrefix(fieldSeq));
 		}
 
-		private String getFilenamePrefix(String fieldSeq) {
-			return "triples-" + fieldSeq;
+		public TripleIndex(String fieldSeq, String filenamePrefix) throws IOException {
+			tripleComparator = new TripleComparator(fieldSeq);
+			btree = new BTree(dir, filenamePrefix, 2048, RECORD_LENGTH, tripleComparator, forceSync, memoryMapped,
+					true);
+			btree.setWriteGuard(writeGuard);
+			prefixFieldIdx = getFieldIdx(tripleComparator.getFieldSeq()[0]);
+			prefixFilterFile = new File(dir, filenamePrefix + ".bloom");
+
+			prefixFilter = BloomFilter.read(prefixFilterFile);
+			if (prefixFilter == null || prefixFilter.isFull()) {
+				logger.debug("Building Bloom filter for {} index", fieldSeq);
+				rebuildPrefixFilter();
+			}
 		}
 
 		public char[] getFieldSeq() {
@@ -1109,6 +1750,148 @@ class TripleStore implements Closeable {
 			return btree;
 		}
 
+		public RecordComparator getComparator() {
+			return tripleComparator;
+		}
+
+		/**
+		 * Checks whether this index might contain triples that match the supplied pattern.
+		 *
+		 * @return <tt>false</tt> if the index definitely does not contain matching triples.
+		 */
+		public boolean mightContain(int subj, int pred, int obj, int context) {
+			int id;
+			switch (prefixFieldIdx) {
+			case SUBJ_IDX:
+				id = subj;
+				break;
+			case PRED_IDX:
+				id = pred;
+				break;
+			case OBJ_IDX:
+				id = obj;
+				break;
+			default:
+				id = context;
+				break;
+			}
+
+			return id < 0 || prefixFilter.mightContain(id);
+		}
+
+		/**
+		 * Adds the first field of the supplied triple to the Bloom filter, before the triple is added to the index. Once
+		 * the triple has been added, {@link #checkPrefixFilter()} must be called to grow the filter if it is full.
+		 */
+		public void addToPrefixFilter(byte[] data) throws IOException {
+			invalidatePrefixFilterFile();
+			prefixFilter.add(ByteArrayUtil.getInt(data, prefixFieldIdx));
+		}
+
+		/**
+		 * Rebuilds the Bloom filter if it is full. The filter is rebuilt from the content of the index, so this must
+		 * only be called when all IDs that were added to the filter are stored in the index.
+		 */
+		public void checkPrefixFilter() throws IOException {
+			if (prefixFilter.isFull()) {
+				rebuildPrefixFilter();
+			}
+		}
+
+		/**
+		 * Replaces the Bloom filter with one that is created from the current content of the index and that is sized
+		 * for twice the number of distinct IDs in its first field. The IDs are added while iterating over the index, to
+		 * a filter that is sized for the number of IDs in the current filter. If that turns out to be too small, the
+		 * index is iterated once more with a filter sized for the number of distinct IDs counted the first time.
+		 */
+		public void rebuildPrefixFilter() throws IOException {
+			invalidatePrefixFilterFile();
+
+			BloomFilter current = prefixFilter;
+			BloomFilter filter = new BloomFilter(getPrefixFilterCapacity(current == null ? 0 : current.getKeyCount()));
+			long idCount = fillPrefixFilter(filter);
+			if (filter.isFull()) {
+				filter = new BloomFilter(getPrefixFilterCapacity(idCount));
+				fillPrefixFilter(filter);
+			}
+			prefixFilter = filter;
+		}
+
+		/**
+		 * Adds the IDs in the first field of the triples in the index to the supplied filter, until it is full.
+		 *
+		 * @return The number of distinct IDs in the first field.
+		 */
+		private long fillPrefixFilter(BloomFilter filter) throws IOException {
+			long idCount = 0;
+			int previousID = 0;
+			try (RecordIterator iter = btree.iterateAll()) {
+				byte[] data;
+				while ((data = iter.next()) != null) {
+					int id = ByteArrayUtil.getInt(data, prefixFieldIdx);
+					// the triples are sorted by the first field, so equal IDs are adjacent
+					if (idCount == 0 || id != previousID) {
+						idCount++;
+						previousID = id;
+						if (!filter.isFull()) {
+							filter.add(id);
+						}
+					}
+				}
+			}
+			return idCount;
+		}
+
+		public void clear() throws IOException {
+			invalidatePrefixFilterFile();
+			prefixFilter = new BloomFilter(MIN_PREFIX_FILTER_CAPACITY);
+			btree.clear();
+		}
+
+		public void sync() throws IOException {
+			btree.sync();
+			syncPrefixFilter();
+		}
+
+		public void force() throws IOException {
+			btree.force();
+			syncPrefixFilter();
+		}
+
+		public void close() throws IOException {
+			try {
+				// all triples are stored in the B-tree, which is synced on close too
+				syncPrefixFilter();
+			} finally {
+				btree.close();
+			}
+		}
+
+		public boolean delete() throws IOException {
+			prefixFilterFile.delete();
+			return btree.delete();
+		}
+
+		/**
+		 * Deletes the file of the Bloom filter before the filter is changed, so that an outdated filter is never read
+		 * after a crash.
+		 */
+		private void invalidatePrefixFilterFile() throws IOException {
+			if (!prefixFilterChanged) {
+				if (prefixFilterFile.exists() && !prefixFilterFile.delete()) {
+					throw new IOException("Unable to delete " + prefixFilterFile);
+				}
+				prefixFilterChanged = true;
+			}
+		}
+
+		private void syncPrefixFilter() throws IOException {
+			if (prefixFilterChanged) {
+				prefixFilter.write(prefixFilterFile);
+				prefixFilterChanged = false;
+			}
+		}
+
 		/**
 		 * Determines the 'score' of this index on the supplied pattern of subject, predicate, object and context IDs.
 		 * The higher the score, the better the index is suited for matching the pattern. Lowest score is 0, which means
@@ -1162,6 +1945,38 @@ class TripleStore implements Closeable {
 		}
 	}
 
+	private static int getFieldIdx(char field) {
+		switch (field) {
+		case 's':
+			return SUBJ_IDX;
+		case 'p':
+			return PRED_IDX;
+		case 'o':
+			return OBJ_IDX;
+		case 'c':
+			return CONTEXT_IDX;
+		default:
+			throw new IllegalArgumentException("invalid field: " + field);
+		}
+	}
+
+	private static final RecordIterator EMPTY_ITERATOR = new RecordIterator() {
+
+		@Override
+		public byte[] next() {
+			return null;
+		}
+
+		@Override
+		public void set(byte[] value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
 	/*------------------------------*
 	 * Inner class TripleComparator *
 	 *------------------------------*/
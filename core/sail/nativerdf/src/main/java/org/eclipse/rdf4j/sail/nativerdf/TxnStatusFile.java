@@ -45,7 +45,12 @@ class TxnStatusFile {
 		/**
 		 * The transaction status is unknown.
 		 */
-		UNKNOWN(TxnStatus.UNKNOWN_BYTE);
+		UNKNOWN(TxnStatus.UNKNOWN_BYTE),
+
+		/**
+		 * Triples are being bulk loaded into an empty store.
+		 */
+		BULK_LOADING(TxnStatus.BULK_LOADING_BYTE);
 
 		private final byte[] onDisk;
 
@@ -65,6 +70,7 @@ class TxnStatusFile {
 		private static final byte COMMITTING_BYTE = (byte) 0b00000100;
 		private static final byte ROLLING_BACK_BYTE = (byte) 0b00001000;
 		private static final byte UNKNOWN_BYTE = (byte) 0b00010000;
+		private static final byte BULK_LOADING_BYTE = (byte) 0b00100000;
 
 	}
 
@@ -82,8 +88,19 @@ class TxnStatusFile {
 	 * @throws IOException If the file did not yet exist and could not be written to.
 	 */
 	public TxnStatusFile(File dataDir) throws IOException {
+		this(dataDir, true);
+	}
+
+	/**
+	 * Creates a new transaction status file. New files are initialized with {@link TxnStatus#NONE}.
+	 *
+	 * @param dataDir     The directory for the transaction status file.
+	 * @param synchronous Flag indicating whether every status update is written to disk synchronously.
+	 * @throws IOException If the file did not yet exist and could not be written to.
+	 */
+	public TxnStatusFile(File dataDir, boolean synchronous) throws IOException {
 		File statusFile = new File(dataDir, FILE_NAME);
-		nioFile = new NioFile(statusFile, "rwd");
+		nioFile = new NioFile(statusFile, synchronous ? "rwd" : "rw");
 	}
 
 	public void close() throws IOException {
@@ -135,6 +152,9 @@ class TxnStatusFile {
 		case TxnStatus.UNKNOWN_BYTE:
 			status = TxnStatus.UNKNOWN;
 			break;
+		case TxnStatus.BULK_LOADING_BYTE:
+			status = TxnStatus.BULK_LOADING;
+			break;
 		default:
 			status = getTxnStatusDeprecated();
 		}
@@ -11,6 +11,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.eclipse.rdf4j.common.annotation.InternalUseOnly;
@@ -29,11 +34,14 @@ import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.nativerdf.datastore.DataStore;
+import org.eclipse.rdf4j.sail.nativerdf.datastore.OffHeapDataCache;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeBNode;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeIRI;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeLiteral;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeResource;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * File-based indexed storage and retrieval of RDF values. ValueStore maps RDF values to integer IDs and vice-versa.
@@ -71,6 +79,8 @@ public class ValueStore extends AbstractValueFactory {
 	 */
 	public static final int NAMESPACE_ID_CACHE_SIZE = 32;
 
+	private static final Logger logger = LoggerFactory.getLogger(ValueStore.class);
+
 	private static final String FILENAME_PREFIX = "values";
 
 	private static final byte URI_VALUE = 0x1; // 0000 0001
@@ -101,26 +111,40 @@ public class ValueStore extends AbstractValueFactory {
 	private volatile ValueStoreRevision revision;
 
 	/**
-	 * A simple cache containing the [VALUE_CACHE_SIZE] most-recently used values stored by their ID.
+	 * A scan-resistant cache containing the [VALUE_CACHE_SIZE] most frequently and recently used values stored by
+	 * their ID.
 	 */
 	private final ConcurrentCache<Integer, NativeValue> valueCache;
 
 	/**
-	 * A simple cache containing the [ID_CACHE_SIZE] most-recently used value-IDs stored by their value.
+	 * A scan-resistant cache containing the [ID_CACHE_SIZE] most frequently and recently used value-IDs stored by
+	 * their value.
 	 */
 	private final ConcurrentCache<NativeValue, Integer> valueIDCache;
 
 	/**
-	 * A simple cache containing the [NAMESPACE_CACHE_SIZE] most-recently used namespaces stored by their ID.
+	 * A scan-resistant cache containing the [NAMESPACE_CACHE_SIZE] most frequently and recently used namespaces
+	 * stored by their ID.
 	 */
 	private final ConcurrentCache<Integer, String> namespaceCache;
 
 	/**
-	 * A simple cache containing the [NAMESPACE_ID_CACHE_SIZE] most-recently used namespace-IDs stored by their
-	 * namespace.
+	 * A scan-resistant cache containing the [NAMESPACE_ID_CACHE_SIZE] most frequently and recently used namespace-IDs
+	 * stored by their namespace.
 	 */
 	private final ConcurrentCache<String, Integer> namespaceIDCache;
 
+	/**
+	 * An optional cache for the serialized values, kept outside of the Java heap. It is consulted when a value or ID is
+	 * not found in the caches above, before accessing the data store. May be <tt>null</tt>.
+	 */
+	private final OffHeapDataCache offHeapCache;
+
+	/**
+	 * The log to which newly stored values are appended, <tt>null</tt> if they are not logged.
+	 */
+	private volatile WriteAheadLog valueLog;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -135,17 +159,40 @@ public class ValueStore extends AbstractValueFactory {
 
 	public ValueStore(File dataDir, boolean forceSync, int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize,
 			int namespaceIDCacheSize) throws IOException {
+		this(dataDir, forceSync, valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize, 0L);
+	}
+
+	/**
+	 * Creates a new ValueStore with an optional off-heap cache for serialized values.
+	 *
+	 * @param offHeapCacheSize The size of the off-heap cache in bytes, or <tt>0</tt> to disable it.
+	 */
+	public ValueStore(File dataDir, boolean forceSync, int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize,
+			int namespaceIDCacheSize, long offHeapCacheSize) throws IOException {
 		super();
 		dataStore = new DataStore(dataDir, FILENAME_PREFIX, forceSync);
 
-		valueCache = new ConcurrentCache<>(valueCacheSize);
-		valueIDCache = new ConcurrentCache<>(valueIDCacheSize);
-		namespaceCache = new ConcurrentCache<>(namespaceCacheSize);
-		namespaceIDCache = new ConcurrentCache<>(namespaceIDCacheSize);
+		valueCache = new WTinyLfuCache<>(valueCacheSize);
+		valueIDCache = new WTinyLfuCache<>(valueIDCacheSize);
+		namespaceCache = new WTinyLfuCache<>(namespaceCacheSize);
+		namespaceIDCache = new WTinyLfuCache<>(namespaceIDCacheSize);
+		offHeapCache = offHeapCacheSize > 0L ? new OffHeapDataCache(offHeapCacheSize) : null;
 
 		setNewRevision();
 	}
 
+	/**
+	 * Creates a new ValueStore of which the data and ID files are guarded by the supplied write-ahead log instead of
+	 * being forced to disk, and that appends newly stored values to the log.
+	 */
+	ValueStore(File dataDir, int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize,
+			int namespaceIDCacheSize, long offHeapCacheSize, WriteAheadLog writeAheadLog) throws IOException {
+		this(dataDir, false, valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize,
+				offHeapCacheSize);
+		dataStore.setWriteGuard(writeAheadLog);
+		valueLog = writeAheadLog;
+	}
+
 	/*---------*
 	 * Methods *
 	 *---------*/
@@ -184,7 +231,7 @@ public class ValueStore extends AbstractValueFactory {
 
 		if (resultValue == null) {
 			// Value not in cache, fetch it from file
-			byte[] data = dataStore.getData(id);
+			byte[] data = getData(id);
 
 			if (data != null) {
 				resultValue = data2value(id, data);
@@ -197,6 +244,67 @@ public class ValueStore extends AbstractValueFactory {
 		return resultValue;
 	}
 
+	/**
+	 * Gets the values for the specified IDs. Values that are not cached are fetched from file in a single batch, in the
+	 * order in which they are stored.
+	 *
+	 * @param ids   Value IDs. IDs may occur more than once, IDs smaller than 1 are ignored.
+	 * @param count The number of IDs to get the values for, starting at the first element of <tt>ids</tt>.
+	 * @return The values for the IDs, in the same order as the IDs. An element is <tt>null</tt> if no value could be
+	 *         found for the corresponding ID.
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public NativeValue[] getValues(int[] ids, int count) throws IOException {
+		Map<Integer, NativeValue> resolved = new HashMap<>(count * 2);
+		List<Integer> missingIDs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int id = ids[i];
+			if (id <= 0 || resolved.containsKey(id)) {
+				continue;
+			}
+
+			NativeValue value = valueCache.get(id);
+			if (value == null && offHeapCache != null) {
+				byte[] data = offHeapCache.getData(id);
+				if (data != null) {
+					value = data2value(id, data);
+					valueCache.put(id, value);
+				}
+			}
+			if (value == null) {
+				missingIDs.add(id);
+			}
+			resolved.put(id, value);
+		}
+
+		if (!missingIDs.isEmpty()) {
+			int[] idArray = new int[missingIDs.size()];
+			for (int i = 0; i < idArray.length; i++) {
+				idArray[i] = missingIDs.get(i);
+			}
+
+			byte[][] data = dataStore.getData(idArray);
+			for (int i = 0; i < idArray.length; i++) {
+				if (data[i] != null) {
+					if (offHeapCache != null) {
+						offHeapCache.put(idArray[i], data[i]);
+					}
+					NativeValue value = data2value(idArray[i], data[i]);
+					valueCache.put(idArray[i], value);
+					resolved.put(idArray[i], value);
+				}
+			}
+		}
+
+		NativeValue[] values = new NativeValue[count];
+		for (int i = 0; i < count; i++) {
+			if (ids[i] > 0) {
+				values[i] = resolved.get(ids[i]);
+			}
+		}
+		return values;
+	}
+
 	/**
 	 * Gets the ID for the specified value.
 	 *
@@ -242,7 +350,7 @@ public class ValueStore extends AbstractValueFactory {
 		}
 
 		if (data != null) {
-			int id = dataStore.getID(data);
+			int id = getDataID(data);
 
 			if (id == NativeValue.UNKNOWN_ID && value instanceof Literal) {
 				id = dataStore.getID(literal2legacy((Literal) value));
@@ -266,6 +374,40 @@ public class ValueStore extends AbstractValueFactory {
 		return NativeValue.UNKNOWN_ID;
 	}
 
+	/**
+	 * Gets the data for the specified ID from the off-heap cache or, if it is not cached, from the data store.
+	 */
+	byte[] getData(int id) throws IOException {
+		byte[] data = offHeapCache != null ? offHeapCache.getData(id) : null;
+
+		if (data == null) {
+			data = dataStore.getData(id);
+
+			if (data != null && offHeapCache != null) {
+				offHeapCache.put(id, data);
+			}
+		}
+
+		return data;
+	}
+
+	/**
+	 * Gets the ID for the specified data from the off-heap cache or, if it is not cached, from the data store.
+	 */
+	private int getDataID(byte[] data) throws IOException {
+		int id = offHeapCache != null ? offHeapCache.getID(data) : NativeValue.UNKNOWN_ID;
+
+		if (id == NativeValue.UNKNOWN_ID) {
+			id = dataStore.getID(data);
+
+			if (id != NativeValue.UNKNOWN_ID && offHeapCache != null) {
+				offHeapCache.put(id, data);
+			}
+		}
+
+		return id;
+	}
+
 	/**
 	 * Stores the supplied value and returns the ID that has been assigned to it. In case the value was already present,
 	 * the value will not be stored again and the ID of the existing value is returned.
@@ -309,7 +451,18 @@ public class ValueStore extends AbstractValueFactory {
 		// store which will handle duplicates
 		byte[] valueData = value2data(value, true);
 
-		int id = dataStore.storeData(valueData);
+		int id = offHeapCache != null ? offHeapCache.getID(valueData) : NativeValue.UNKNOWN_ID;
+		if (id == NativeValue.UNKNOWN_ID) {
+			int maxID = dataStore.getMaxID();
+			id = dataStore.storeData(valueData);
+			WriteAheadLog log = valueLog;
+			if (log != null && id > maxID) {
+				log.appendValue(id, valueData);
+			}
+			if (offHeapCache != null) {
+				offHeapCache.put(id, valueData);
+			}
+		}
 
 		NativeValue nv = isOwnValue ? (NativeValue) value : getNativeValue(value);
 
@@ -337,6 +490,9 @@ public class ValueStore extends AbstractValueFactory {
 				valueIDCache.clear();
 				namespaceCache.clear();
 				namespaceIDCache.clear();
+				if (offHeapCache != null) {
+					offHeapCache.clear();
+				}
 
 				initBNodeParams();
 
@@ -358,15 +514,94 @@ public class ValueStore extends AbstractValueFactory {
 		dataStore.sync();
 	}
 
+	/**
+	 * Synchronizes any changes that are cached in memory to disk and forces them to the storage device.
+	 *
+	 * @exception IOException If an I/O error occurred.
+	 */
+	void force() throws IOException {
+		dataStore.force();
+	}
+
+	/**
+	 * Sets the log to which newly stored values are appended, <tt>null</tt> to stop logging them.
+	 */
+	void setValueLog(WriteAheadLog valueLog) {
+		this.valueLog = valueLog;
+	}
+
+	/**
+	 * Gets the highest ID that has been assigned to a value.
+	 */
+	int getMaxID() throws IOException {
+		return dataStore.getMaxID();
+	}
+
+	/**
+	 * Restores the data of a value with a specific ID, as recorded in a {@link WriteAheadLog}. Values that are already
+	 * present are skipped. Missing values are appended, which requires that all values with lower IDs are present.
+	 *
+	 * @exception IOException If the data of the value can not be stored with the specified ID.
+	 */
+	void restoreData(int id, byte[] data) throws IOException {
+		int maxID = dataStore.getMaxID();
+		if (id <= maxID) {
+			if (!Arrays.equals(data, dataStore.getData(id))) {
+				throw new IOException("Stored data of value " + id + " differs from the logged data");
+			}
+		} else if (id == maxID + 1) {
+			int storedID = dataStore.storeData(data);
+			if (storedID != id) {
+				throw new IOException("Logged value " + id + " was stored with ID " + storedID);
+			}
+		} else {
+			throw new IOException("Unable to restore value " + id + ", the highest stored ID is " + maxID);
+		}
+	}
+
 	/**
 	 * Closes the ValueStore, releasing any file references, etc. Once closed, the ValueStore can no longer be used.
 	 *
 	 * @exception IOException If an I/O error occurred.
 	 */
 	public void close() throws IOException {
+		if (logger.isDebugEnabled()) {
+			logCacheStatistics("value cache", valueCache);
+			logCacheStatistics("value ID cache", valueIDCache);
+			logCacheStatistics("namespace cache", namespaceCache);
+			logCacheStatistics("namespace ID cache", namespaceIDCache);
+			if (offHeapCache != null) {
+				logger.debug("off-heap cache: {} hits, {} misses", offHeapCache.getHitCount(),
+						offHeapCache.getMissCount());
+			}
+		}
+		if (offHeapCache != null) {
+			offHeapCache.close();
+		}
 		dataStore.close();
 	}
 
+	private void logCacheStatistics(String name, ConcurrentCache<?, ?> cache) {
+		logger.debug("{}: {} entries, {} hits, {} misses", name, cache.size(), cache.getHitCount(),
+				cache.getMissCount());
+	}
+
+	ConcurrentCache<Integer, NativeValue> getValueCache() {
+		return valueCache;
+	}
+
+	ConcurrentCache<NativeValue, Integer> getValueIDCache() {
+		return valueIDCache;
+	}
+
+	ConcurrentCache<Integer, String> getNamespaceCache() {
+		return namespaceCache;
+	}
+
+	ConcurrentCache<String, Integer> getNamespaceIDCache() {
+		return namespaceIDCache;
+	}
+
 	/**
 	 * Checks that every value has exactly one ID.
 	 *
@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded concurrent cache with a frequency-aware, scan-resistant eviction policy (W-TinyLFU). New entries enter a
+ * small LRU admission window. Entries that are pushed out of the window compete with the least recently used entry of
+ * the main area for a place in the cache; the one that has been accessed more often according to a compact frequency
+ * sketch wins. The main area is a segmented LRU: entries that are accessed again while on probation are promoted to a
+ * protected segment. As a result, a long scan over entries that are never used again can not flush the frequently used
+ * entries from the cache.
+ * <p>
+ * Values are read from a {@link java.util.concurrent.ConcurrentHashMap} without locking. Accesses are recorded in the
+ * eviction policy only if its lock is available, so under heavy contention some accesses are not counted; insertions
+ * update the map and the policy together under the lock, so that every cached entry is tracked by the policy. Subclasses can veto the removal of an entry through {@link #onEntryRemoval(Object)}, in
+ * which case the cache temporarily exceeds its capacity.
+ */
+public class WTinyLfuCache<K, V> extends ConcurrentCache<K, V> {
+
+	/**
+	 * The percentage of the capacity that is used for the admission window.
+	 */
+	private static final int WINDOW_PERCENTAGE = 1;
+
+	/**
+	 * The percentage of the main area that is used for the protected segment.
+	 */
+	private static final int PROTECTED_PERCENTAGE = 80;
+
+	private static final Object PRESENT = Boolean.TRUE;
+
+	private final int maximumSize;
+
+	private final int windowCapacity;
+
+	private final int protectedCapacity;
+
+	private final ReentrantLock policyLock = new ReentrantLock();
+
+	/*
+	 * The segments of the eviction policy, in LRU order (eldest first). Guarded by the policy lock.
+	 */
+
+	private final LinkedHashMap<K, Object> window = new LinkedHashMap<>();
+
+	private final LinkedHashMap<K, Object> probation = new LinkedHashMap<>();
+
+	private final LinkedHashMap<K, Object> protectedSegment = new LinkedHashMap<>();
+
+	private final FrequencySketch sketch;
+
+	public WTinyLfuCache(int capacity) {
+		super(capacity);
+		this.maximumSize = Math.max(1, capacity);
+		this.windowCapacity = Math.max(1, maximumSize * WINDOW_PERCENTAGE / 100);
+		this.protectedCapacity = (maximumSize - windowCapacity) * PROTECTED_PERCENTAGE / 100;
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	@Override
+	public V get(Object key) {
+		V value = super.get(key);
+
+		if (value != null && policyLock.tryLock()) {
+			try {
+				@SuppressWarnings("unchecked")
+				K k = (K) key;
+				onAccess(k);
+			} finally {
+				policyLock.unlock();
+			}
+		}
+
+		return value;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		V previous;
+
+		// the map is updated under the policy lock, so that an eviction can not remove an entry from the policy while
+		// it is added to the map
+		policyLock.lock();
+		try {
+			previous = cache.put(key, value);
+			if (previous == null) {
+				onInsert(key);
+			} else {
+				onAccess(key);
+			}
+		} finally {
+			policyLock.unlock();
+		}
+
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		policyLock.lock();
+		try {
+			super.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+		} finally {
+			policyLock.unlock();
+		}
+	}
+
+	@Override
+	protected void cleanUp() {
+		// entries are evicted when they are inserted
+	}
+
+	private void onAccess(K key) {
+		sketch.increment(key);
+
+		if (window.containsKey(key)) {
+			moveToMostRecent(window, key);
+		} else if (probation.remove(key) != null) {
+			protectedSegment.put(key, PRESENT);
+			if (protectedSegment.size() > protectedCapacity) {
+				// demote the least recently used protected entry
+				K demoted = removeEldest(protectedSegment);
+				probation.put(demoted, PRESENT);
+			}
+		} else if (protectedSegment.containsKey(key)) {
+			moveToMostRecent(protectedSegment, key);
+		}
+	}
+
+	private void onInsert(K key) {
+		sketch.increment(key);
+
+		// the key may still be known from an entry that was removed from the map directly
+		probation.remove(key);
+		protectedSegment.remove(key);
+
+		window.put(key, PRESENT);
+
+		while (window.size() > windowCapacity) {
+			admit(removeEldest(window));
+		}
+	}
+
+	/**
+	 * Moves an entry that has been pushed out of the admission window into the main area, if it is accessed more often
+	 * than the entry that would have to make room for it.
+	 */
+	private void admit(K candidate) {
+		int mainCapacity = maximumSize - windowCapacity;
+
+		if (mainSize() > mainCapacity) {
+			// the main area has outgrown its capacity because of a vetoed removal
+			evictVictim();
+		}
+
+		if (mainSize() < mainCapacity) {
+			probation.put(candidate, PRESENT);
+			return;
+		}
+
+		LinkedHashMap<K, Object> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+		if (!victimSegment.isEmpty()) {
+			K victim = victimSegment.keySet().iterator().next();
+
+			if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+				if (evict(victim)) {
+					victimSegment.remove(victim);
+					probation.put(candidate, PRESENT);
+					return;
+				}
+				// removal of the victim has been vetoed, reject the candidate instead
+				moveToMostRecent(victimSegment, victim);
+			}
+		}
+
+		if (!evict(candidate)) {
+			probation.put(candidate, PRESENT);
+		}
+	}
+
+	private void evictVictim() {
+		LinkedHashMap<K, Object> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+		K victim = victimSegment.keySet().iterator().next();
+		if (evict(victim)) {
+			victimSegment.remove(victim);
+		} else {
+			moveToMostRecent(victimSegment, victim);
+		}
+	}
+
+	private int mainSize() {
+		return probation.size() + protectedSegment.size();
+	}
+
+	/**
+	 * Removes the entry for the specified key from the cache, unless {@link #onEntryRemoval(Object)} vetoes this.
+	 *
+	 * @return <tt>true</tt> if the entry is no longer cached.
+	 */
+	private boolean evict(K key) {
+		boolean[] vetoed = new boolean[1];
+		cache.computeIfPresent(key, (k, v) -> {
+			if (onEntryRemoval(k)) {
+				return null;
+			}
+			vetoed[0] = true;
+			return v;
+		});
+		return !vetoed[0];
+	}
+
+	private static <K> void moveToMostRecent(LinkedHashMap<K, Object> segment, K key) {
+		segment.remove(key);
+		segment.put(key, PRESENT);
+	}
+
+	private static <K> K removeEldest(LinkedHashMap<K, Object> segment) {
+		Iterator<K> iter = segment.keySet().iterator();
+		K eldest = iter.next();
+		iter.remove();
+		return eldest;
+	}
+
+	/**
+	 * A count-min sketch with 4-bit counters that estimates how often keys have been accessed. All counters are halved
+	 * periodically, so that the estimates reflect recent popularity.
+	 */
+	static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		/** Each long holds 16 counters of 4 bits. */
+		private final long[] table;
+
+		private final int tableMask;
+
+		private final int sampleSize;
+
+		private int additions;
+
+		FrequencySketch(int capacity) {
+			int length = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+			table = new long[length];
+			tableMask = length - 1;
+			sampleSize = 10 * Math.max(capacity, 8);
+		}
+
+		int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < SEEDS.length; i++) {
+				frequency = Math.min(frequency, counter(indexOf(hash, i)));
+			}
+			return frequency;
+		}
+
+		void increment(Object key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for (int i = 0; i < SEEDS.length; i++) {
+				added |= incrementCounter(indexOf(hash, i));
+			}
+
+			if (added && ++additions == sampleSize) {
+				reset();
+			}
+		}
+
+		private int counter(int index) {
+			int offset = (index & 15) << 2;
+			return (int) ((table[(index >>> 4) & tableMask] >>> offset) & 15L);
+		}
+
+		private boolean incrementCounter(int index) {
+			int tableIndex = (index >>> 4) & tableMask;
+			int offset = (index & 15) << 2;
+			if (((table[tableIndex] >>> offset) & 15L) == 15L) {
+				return false;
+			}
+			table[tableIndex] += 1L << offset;
+			return true;
+		}
+
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions /= 2;
+		}
+
+		private static int indexOf(int hash, int i) {
+			long h = (hash + SEEDS[i]) * SEEDS[i];
+			h += h >>> 32;
+			return (int) h;
+		}
+
+		private static int spread(int hash) {
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			return (hash >>> 16) ^ hash;
+		}
+	}
+}
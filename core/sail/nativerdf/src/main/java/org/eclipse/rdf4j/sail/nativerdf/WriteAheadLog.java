@@ -0,0 +1,676 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.common.io.NioFile;
+
+/**
+ * An append-only log that makes the transactions of a native store durable without forcing the store files to disk on
+ * every commit. The store files are only forced to disk by a checkpoint, after which the log is emptied with
+ * {@link #reset()}. In between, the log records:
+ * <ul>
+ * <li>the values that are stored, in the order of their IDs;</li>
+ * <li>the triples that each transaction adds and removes, followed by a commit record;</li>
+ * <li>the state of the store files at the last checkpoint, as the file lengths and the original contents of the pages
+ * that are overwritten in place. As a {@link FileWriteGuard}, the log makes these durable before the pages are
+ * written.</li>
+ * </ul>
+ * After a crash, {@link #restore(File)} returns the store files to their state at the last checkpoint and
+ * {@link #replay(Handler)} re-applies the values and committed transactions.
+ * <p>
+ * Records are appended by a single writer at a time. When several threads wait for their commit records to become
+ * durable ({@link #awaitDurable(long)}), a single force covers all of them (group commit).
+ * <p>
+ * The log file consists of a header followed by frames of the form
+ * <tt>[length:int][crc32:int][type:byte][payload]</tt>. Frames that follow a damaged frame are ignored, as are the
+ * triples that are not followed by a commit record.
+ */
+class WriteAheadLog implements FileWriteGuard, Closeable {
+
+	public static final String FILE_NAME = "txn-log";
+
+	/**
+	 * Magic number "Native WAL File" to detect whether a file is actually a write-ahead log file.
+	 */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'n', 'w', 'f' };
+
+	/**
+	 * The file format version, stored as the fourth byte in log files.
+	 */
+	private static final byte FILE_FORMAT_VERSION = 1;
+
+	private static final int HEADER_LENGTH = MAGIC_NUMBER.length + 1;
+
+	private static final int FRAME_HEADER_LENGTH = 4 + 4 + 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The granularity with which the original contents of the store files are recorded.
+	 */
+	static final int PAGE_SIZE = 4096;
+
+	private static final byte VALUE_FRAME = 1;
+
+	private static final byte ADDED_TRIPLE_FRAME = 2;
+
+	private static final byte REMOVED_TRIPLE_FRAME = 3;
+
+	private static final byte COMMIT_FRAME = 4;
+
+	private static final byte ABORT_FRAME = 5;
+
+	private static final byte FILE_FRAME = 6;
+
+	private static final byte PAGE_FRAME = 7;
+
+	private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+	/**
+	 * Receives the values and the changes of the committed transactions in the log, see
+	 * {@link WriteAheadLog#replay(Handler)}.
+	 */
+	interface Handler {
+
+		void value(int id, byte[] data) throws IOException;
+
+		void triple(byte[] data, boolean removed) throws IOException;
+	}
+
+	/**
+	 * The state of a store file at the last checkpoint, as far as it has been recorded in the log.
+	 */
+	private static final class GuardedFile {
+
+		final long checkpointLength;
+
+		/**
+		 * The pages of which the original contents have been recorded.
+		 */
+		final BitSet recordedPages = new BitSet();
+
+		/**
+		 * The log sequence number directly after the last frame that has been recorded for the file.
+		 */
+		long lsn;
+
+		GuardedFile(long checkpointLength) {
+			this.checkpointLength = checkpointLength;
+		}
+	}
+
+	private final NioFile nioFile;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The file offset at which the contents of {@link #buffer} will be written.
+	 */
+	private long writePosition;
+
+	/**
+	 * Flag indicating whether triples have been appended that are not yet followed by a commit or abort record.
+	 */
+	private boolean txnPending;
+
+	/**
+	 * The store files that have been written since the last checkpoint, by file name.
+	 */
+	private final Map<String, GuardedFile> guardedFiles = new HashMap<>();
+
+	/**
+	 * The file offsets directly after the commit (positive) and abort (negative) records in the log, in ascending
+	 * order, as found when the log was opened. Used to skip the triples of transactions that were not committed.
+	 */
+	private long[] txnEnds = new long[0];
+
+	private int txnEndCount;
+
+	/**
+	 * The length of the log when it was opened, up to which it is replayed.
+	 */
+	private final long replayEnd;
+
+	/**
+	 * The difference between log sequence numbers and file offsets. Log sequence numbers keep increasing when the log
+	 * is {@link #reset()}, file offsets start anew.
+	 */
+	private long lsnOffset;
+
+	/**
+	 * The log sequence number directly after the last commit record that has been written to the file.
+	 */
+	private volatile long committedLsn;
+
+	/**
+	 * The log sequence number directly after the last frame that has been written to the file.
+	 */
+	private volatile long writtenLsn;
+
+	private final Object forceMonitor = new Object();
+
+	/**
+	 * The log sequence number up to which the log is durable, guarded by {@link #forceMonitor}.
+	 */
+	private long durableLsn;
+
+	/**
+	 * Flag indicating whether a thread is currently forcing the log to disk, guarded by {@link #forceMonitor}.
+	 */
+	private boolean forcing;
+
+	private long forceCount;
+
+	/**
+	 * Opens the log file in the specified directory, creating it if it does not yet exist. Any damaged frames at the
+	 * end of the log are removed.
+	 */
+	public WriteAheadLog(File dataDir) throws IOException {
+		nioFile = new NioFile(new File(dataDir, FILE_NAME));
+
+		if (nioFile.size() < HEADER_LENGTH) {
+			nioFile.truncate(0);
+			nioFile.writeBytes(MAGIC_NUMBER, 0);
+			nioFile.writeByte(FILE_FORMAT_VERSION, MAGIC_NUMBER.length);
+			nioFile.force(false);
+		} else {
+			byte[] magicNumber = nioFile.readBytes(0, MAGIC_NUMBER.length);
+			if (!Arrays.equals(MAGIC_NUMBER, magicNumber)) {
+				nioFile.close();
+				throw new IOException("File doesn't contain compatible write-ahead log data");
+			}
+			byte version = nioFile.readByte(MAGIC_NUMBER.length);
+			if (version > FILE_FORMAT_VERSION) {
+				nioFile.close();
+				throw new IOException("Unable to read write-ahead log; it uses a newer file format");
+			}
+		}
+
+		replayEnd = scan();
+		if (replayEnd < nioFile.size()) {
+			nioFile.truncate(replayEnd);
+			nioFile.force(false);
+		}
+
+		writePosition = replayEnd;
+		committedLsn = writtenLsn = durableLsn = writePosition;
+
+		if (txnPending) {
+			// the triples of the interrupted transaction must not become part of the next one
+			abort();
+		}
+	}
+
+	/**
+	 * Checks whether the log contains any frames.
+	 */
+	public synchronized boolean isEmpty() {
+		return writePosition == HEADER_LENGTH && buffer.position() == 0;
+	}
+
+	/**
+	 * Gets the size of the log in bytes.
+	 */
+	public synchronized long size() {
+		return writePosition + buffer.position();
+	}
+
+	/**
+	 * Gets the log sequence number directly after the last commit record that has been written to the file.
+	 */
+	public long getCommittedLsn() {
+		return committedLsn;
+	}
+
+	/**
+	 * Gets the number of times that the log has been forced to disk by {@link #awaitDurable(long)}.
+	 */
+	long getForceCount() {
+		synchronized (forceMonitor) {
+			return forceCount;
+		}
+	}
+
+	/**
+	 * Appends a value that has been stored with the specified ID. Values are replayed whether or not the transaction
+	 * that stored them was committed, as their IDs have been assigned.
+	 */
+	public synchronized void appendValue(int id, byte[] data) throws IOException {
+		byte[] payload = new byte[4 + data.length];
+		ByteArrayUtil.putInt(id, payload, 0);
+		System.arraycopy(data, 0, payload, 4, data.length);
+		appendFrame(VALUE_FRAME, payload);
+	}
+
+	/**
+	 * Appends a triple record to the current transaction.
+	 *
+	 * @param data    The triple record, with the flags that it has once the transaction is committed.
+	 * @param removed Whether the triple is removed by the transaction.
+	 */
+	public synchronized void appendTriple(byte[] data, boolean removed) throws IOException {
+		appendFrame(removed ? REMOVED_TRIPLE_FRAME : ADDED_TRIPLE_FRAME, data);
+		txnPending = true;
+	}
+
+	/**
+	 * Appends a commit record for the current transaction and writes all buffered frames to the file, without forcing
+	 * them to disk.
+	 *
+	 * @return The log sequence number that has to be passed to {@link #awaitDurable(long)} to wait until the
+	 *         transaction is durable.
+	 */
+	public synchronized long commit() throws IOException {
+		appendFrame(COMMIT_FRAME, EMPTY_PAYLOAD);
+		flushBuffer();
+		txnPending = false;
+		committedLsn = writtenLsn;
+		return committedLsn;
+	}
+
+	/**
+	 * Discards the triples of the current transaction. They are followed by an abort record, as the file may already
+	 * contain them.
+	 */
+	public synchronized void abort() throws IOException {
+		if (txnPending) {
+			appendFrame(ABORT_FRAME, EMPTY_PAYLOAD);
+			txnPending = false;
+		}
+	}
+
+	/**
+	 * Waits until the log is durable up to the specified log sequence number. If no other thread is currently forcing
+	 * the log to disk, the calling thread does so on behalf of all frames that have been written so far.
+	 */
+	public void awaitDurable(long lsn) throws IOException {
+		while (true) {
+			long targetLsn;
+			synchronized (forceMonitor) {
+				while (forcing && durableLsn < lsn) {
+					try {
+						forceMonitor.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while waiting for the write-ahead log");
+					}
+				}
+				if (durableLsn >= lsn) {
+					return;
+				}
+				forcing = true;
+				targetLsn = writtenLsn;
+			}
+
+			boolean success = false;
+			try {
+				nioFile.force(false);
+				success = true;
+			} finally {
+				synchronized (forceMonitor) {
+					forcing = false;
+					if (success) {
+						durableLsn = Math.max(durableLsn, targetLsn);
+						forceCount++;
+					}
+					forceMonitor.notifyAll();
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized long prepareWrite(NioFile file, long offset, long length) throws IOException {
+		String name = file.getFile().getName();
+		GuardedFile guardedFile = guardedFiles.get(name);
+		boolean recorded = false;
+
+		if (guardedFile == null) {
+			// first write since the last checkpoint, all writes are guarded so the file still has its original length
+			guardedFile = new GuardedFile(file.size());
+			guardedFiles.put(name, guardedFile);
+			appendFrame(FILE_FRAME, filePayload(name, guardedFile.checkpointLength, EMPTY_PAYLOAD));
+			recorded = true;
+		}
+
+		// regions beyond the checkpoint length are emptied by a restore, they do not need to be recorded
+		long end = Math.min(offset + length, guardedFile.checkpointLength);
+		for (long page = offset / PAGE_SIZE; offset < end && page * PAGE_SIZE < end; page++) {
+			if (!guardedFile.recordedPages.get((int) page)) {
+				long pageOffset = page * PAGE_SIZE;
+				int pageLength = (int) Math.min(PAGE_SIZE, guardedFile.checkpointLength - pageOffset);
+				byte[] contents = file.readBytes(pageOffset, pageLength);
+				appendFrame(PAGE_FRAME, filePayload(name, pageOffset, contents));
+				guardedFile.recordedPages.set((int) page);
+				recorded = true;
+			}
+		}
+
+		if (recorded) {
+			flushBuffer();
+			guardedFile.lsn = writtenLsn;
+		}
+		return guardedFile.lsn;
+	}
+
+	@Override
+	public void awaitPrepared(long token) throws IOException {
+		awaitDurable(token);
+	}
+
+	/**
+	 * Empties the log. This must only be called between transactions and once all changes in the log have been forced
+	 * to the store files. Values that are appended to the log concurrently must be blocked until the log has been
+	 * reset.
+	 */
+	public synchronized void reset() throws IOException {
+		if (txnPending) {
+			throw new IllegalStateException("Can not reset the write-ahead log during a transaction");
+		}
+
+		// buffered values have been forced to the value files as well
+		buffer.clear();
+		nioFile.truncate(HEADER_LENGTH);
+		nioFile.force(false);
+
+		lsnOffset += writePosition - HEADER_LENGTH;
+		writePosition = HEADER_LENGTH;
+		writtenLsn = lsnOffset + writePosition;
+		guardedFiles.clear();
+		txnEndCount = 0;
+
+		// the changes of all committed transactions are on disk now
+		synchronized (forceMonitor) {
+			durableLsn = Math.max(durableLsn, writtenLsn);
+			forceMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Restores the store files in the specified directory to their state at the last checkpoint, as recorded in the
+	 * log when it was opened. Files that were created after the checkpoint are emptied. The log keeps guarding the
+	 * restored files, so that they can be restored again if the replay is interrupted.
+	 *
+	 * @return <tt>true</tt> if any files were restored.
+	 */
+	public synchronized boolean restore(File dataDir) throws IOException {
+		Map<String, NioFile> files = new HashMap<>();
+		try {
+			try (FrameReader reader = new FrameReader(replayEnd)) {
+				while (reader.next()) {
+					if (reader.type == FILE_FRAME || reader.type == PAGE_FRAME) {
+						int nameLength = ByteArrayUtil.getInt(reader.payload, 8);
+						String name = new String(reader.payload, 12, nameLength, StandardCharsets.UTF_8);
+						long offset = ByteArrayUtil.getLong(reader.payload, 0);
+
+						if (reader.type == FILE_FRAME) {
+							if (!files.containsKey(name)) {
+								guardedFiles.put(name, new GuardedFile(offset));
+								files.put(name, new NioFile(new File(dataDir, name)));
+							}
+						} else {
+							int dataStart = 12 + nameLength;
+							ByteBuffer contents = ByteBuffer.wrap(reader.payload, dataStart,
+									reader.payload.length - dataStart);
+							files.get(name).write(contents, offset);
+							guardedFiles.get(name).recordedPages.set((int) (offset / PAGE_SIZE));
+						}
+					}
+				}
+			}
+
+			for (Map.Entry<String, NioFile> entry : files.entrySet()) {
+				NioFile file = entry.getValue();
+				file.truncate(guardedFiles.get(entry.getKey()).checkpointLength);
+				file.force(false);
+			}
+		} finally {
+			for (NioFile file : files.values()) {
+				file.close();
+			}
+		}
+
+		return !files.isEmpty();
+	}
+
+	/**
+	 * Passes the values and the changes of all committed transactions in the log to the supplied handler, in the order
+	 * in which they were appended, as far as they were recorded in the log when it was opened.
+	 *
+	 * @return The number of replayed transactions.
+	 */
+	public synchronized int replay(Handler handler) throws IOException {
+		int txnCount = 0;
+		int txnIndex = 0;
+
+		try (FrameReader reader = new FrameReader(replayEnd)) {
+			while (reader.next()) {
+				switch (reader.type) {
+				case VALUE_FRAME:
+					handler.value(ByteArrayUtil.getInt(reader.payload, 0),
+							Arrays.copyOfRange(reader.payload, 4, reader.payload.length));
+					break;
+				case ADDED_TRIPLE_FRAME:
+				case REMOVED_TRIPLE_FRAME:
+					// find the commit or abort record that ends the transaction
+					while (txnIndex < txnEndCount && Math.abs(txnEnds[txnIndex]) < reader.position) {
+						txnIndex++;
+					}
+					if (txnIndex < txnEndCount && txnEnds[txnIndex] > 0) {
+						handler.triple(reader.payload, reader.type == REMOVED_TRIPLE_FRAME);
+					}
+					break;
+				case COMMIT_FRAME:
+					txnCount++;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		return txnCount;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		nioFile.close();
+	}
+
+	private void appendFrame(byte type, byte[] payload) throws IOException {
+		crc.reset();
+		crc.update(type);
+		crc.update(payload, 0, payload.length);
+
+		int frameLength = FRAME_HEADER_LENGTH + payload.length;
+		if (buffer.remaining() < frameLength) {
+			flushBuffer();
+		}
+
+		if (buffer.remaining() < frameLength) {
+			// frame is larger than the buffer, write it directly
+			ByteBuffer frame = ByteBuffer.allocate(frameLength);
+			putFrame(frame, type, payload);
+			frame.flip();
+			write(frame);
+		} else {
+			putFrame(buffer, type, payload);
+		}
+	}
+
+	private void putFrame(ByteBuffer target, byte type, byte[] payload) {
+		target.putInt(payload.length);
+		target.putInt((int) crc.getValue());
+		target.put(type);
+		target.put(payload);
+	}
+
+	private void flushBuffer() throws IOException {
+		if (buffer.position() > 0) {
+			buffer.flip();
+			write(buffer);
+			buffer.clear();
+		}
+	}
+
+	private void write(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			writePosition += nioFile.write(data, writePosition);
+		}
+		writtenLsn = lsnOffset + writePosition;
+	}
+
+	/**
+	 * Creates the payload of a file or page frame: <tt>[offset:long][nameLength:int][name][data]</tt>, where the
+	 * offset is the length of the file for file frames.
+	 */
+	private static byte[] filePayload(String name, long offset, byte[] data) {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] payload = new byte[12 + nameBytes.length + data.length];
+		ByteArrayUtil.putLong(offset, payload, 0);
+		ByteArrayUtil.putInt(nameBytes.length, payload, 8);
+		System.arraycopy(nameBytes, 0, payload, 12, nameBytes.length);
+		System.arraycopy(data, 0, payload, 12 + nameBytes.length, data.length);
+		return payload;
+	}
+
+	/**
+	 * Validates the frames in the log file and records the ends of the transactions in {@link #txnEnds}.
+	 *
+	 * @return The file offset directly after the last intact frame.
+	 */
+	private long scan() throws IOException {
+		long end = HEADER_LENGTH;
+		try (FrameReader reader = new FrameReader(nioFile.size())) {
+			while (reader.next()) {
+				crc.reset();
+				crc.update(reader.type);
+				crc.update(reader.payload, 0, reader.payload.length);
+				if ((int) crc.getValue() != reader.checksum) {
+					// partially written frame
+					break;
+				}
+				end = reader.position;
+
+				if (reader.type == ADDED_TRIPLE_FRAME || reader.type == REMOVED_TRIPLE_FRAME) {
+					txnPending = true;
+				} else if (reader.type == COMMIT_FRAME || reader.type == ABORT_FRAME) {
+					if (txnEndCount == txnEnds.length) {
+						txnEnds = Arrays.copyOf(txnEnds, Math.max(16, 2 * txnEndCount));
+					}
+					txnEnds[txnEndCount++] = reader.type == COMMIT_FRAME ? end : -end;
+					txnPending = false;
+				}
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Reads the frames in the log file sequentially, up to a limit.
+	 */
+	private final class FrameReader implements Closeable {
+
+		private final DataInputStream in;
+
+		private final long limit;
+
+		/**
+		 * The file offset directly after the current frame.
+		 */
+		long position = HEADER_LENGTH;
+
+		byte type;
+
+		int checksum;
+
+		byte[] payload;
+
+		FrameReader(long limit) {
+			this.in = new DataInputStream(new BufferedInputStream(new LogInputStream(position), BUFFER_SIZE));
+			this.limit = limit;
+		}
+
+		/**
+		 * Reads the next frame.
+		 *
+		 * @return <tt>false</tt> if the limit has been reached or the next frame is incomplete.
+		 */
+		boolean next() throws IOException {
+			if (position + FRAME_HEADER_LENGTH > limit) {
+				return false;
+			}
+			try {
+				int length = in.readInt();
+				checksum = in.readInt();
+				type = in.readByte();
+				if (length < 0 || length > limit - position - FRAME_HEADER_LENGTH) {
+					return false;
+				}
+				payload = new byte[length];
+				in.readFully(payload);
+			} catch (EOFException e) {
+				return false;
+			}
+			position += FRAME_HEADER_LENGTH + payload.length;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the log file sequentially, starting at the specified offset.
+	 */
+	private final class LogInputStream extends InputStream {
+
+		private long position;
+
+		LogInputStream(long position) {
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = nioFile.read(ByteBuffer.wrap(b, off, len), position);
+			if (count <= 0) {
+				return -1;
+			}
+			position += count;
+			return count;
+		}
+	}
+}
@@ -155,6 +155,16 @@ class AllocatedNodesList implements Closeable {
 		}
 	}
 
+	/**
+	 * Writes any changes that are cached in memory to disk and forces them to the storage device.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void force() throws IOException {
+		sync();
+		nioFile.force(false);
+	}
+
 	private void scheduleSync() throws IOException {
 		if (needsSync == false) {
 			nioFile.truncate(0);
@@ -256,6 +266,9 @@ class AllocatedNodesList implements Closeable {
 	private void crawlAllocatedNodes(Node node) throws IOException {
 		try {
 			allocatedNodes.set(node.getID());
+			for (int overflowID : node.getOverflowIDs()) {
+				allocatedNodes.set(overflowID);
+			}
 
 			if (!node.isLeaf()) {
 				for (int i = 0; i < node.getValueCount() + 1; i++) {
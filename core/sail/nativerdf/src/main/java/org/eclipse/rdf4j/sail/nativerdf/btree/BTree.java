@@ -22,6 +22,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.common.io.NioFile;
 import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.nativerdf.FileWriteGuard;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +60,19 @@ public class BTree implements Closeable {
 	 */
 	static final byte FILE_FORMAT_VERSION = 1;
 
+	/**
+	 * The file format version number of BTree files that store their nodes in compressed form, see
+	 * {@link NodeEncoding}. A compressed node is stored in a chain of blocks: its own block, followed by as many
+	 * overflow blocks as it needs. Each block starts with the ID of the next block in the chain, <tt>0</tt> for the
+	 * last block.
+	 */
+	static final byte COMPRESSED_FILE_FORMAT_VERSION = 2;
+
+	/**
+	 * The factor by which the branch factor of compressed BTrees exceeds the number of slots that fit in a block.
+	 */
+	static final int COMPRESSED_CAPACITY_FACTOR = 2;
+
 	/**
 	 * The length of the header field.
 	 */
@@ -92,6 +106,12 @@ public class BTree implements Closeable {
 	 */
 	final ReentrantReadWriteLock btreeLock = new ReentrantReadWriteLock();
 
+	/**
+	 * Read path using memory-mapped segments of the BTree file, <tt>null</tt> if nodes are read through
+	 * {@link #nioFile} only.
+	 */
+	final MappedNodeReader mappedNodeReader;
+
 	private final ConcurrentNodeCache nodeCache = new ConcurrentNodeCache(id -> {
 		Node node = new Node(id, this);
 		try {
@@ -100,7 +120,7 @@ public class BTree implements Closeable {
 			throw new SailException("Error reading B-tree node", exc);
 		}
 		return node;
-	});
+	}, this::prepareNodeWrites);
 
 	/*
 	 * Info about allocated and unused nodes in the file
@@ -126,6 +146,11 @@ public class BTree implements Closeable {
 	 */
 	final int valueSize;
 
+	/**
+	 * Flag indicating whether nodes are stored in compressed form.
+	 */
+	final boolean compressed;
+
 	/**
 	 * The size of a slot storing a node ID and a value. Value derived from valueSize.
 	 */
@@ -166,6 +191,11 @@ public class BTree implements Closeable {
 	 */
 	private final AtomicBoolean closed = new AtomicBoolean(false);
 
+	/**
+	 * The guard that is notified before the BTree file is written, <tt>null</tt> if the writes are not guarded.
+	 */
+	private volatile FileWriteGuard writeGuard;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -238,6 +268,67 @@ public class BTree implements Closeable {
 	 */
 	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
 			boolean forceSync) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync, false);
+	}
+
+	/**
+	 * Creates a new BTree that uses the supplied <tt>RecordComparator</tt> to compare the values that are or will be
+	 * stored in the B-Tree.
+	 *
+	 * @param dataDir        The directory for the BTree data.
+	 * @param filenamePrefix The prefix for all files used by this BTree.
+	 * @param blockSize      The size (in bytes) of a file block for a single node. Ideally, the size specified is the
+	 *                       size of a block in the used file system.
+	 * @param valueSize      The size (in bytes) of the fixed-length values that are or will be stored in the B-Tree.
+	 * @param comparator     The <tt>RecordComparator</tt> to use for determining whether one value is smaller, larger
+	 *                       or equal to another.
+	 * @param forceSync      Flag indicating whether updates should be synced to disk forcefully by calling
+	 *                       {@link FileChannel#force(boolean)}. This may have a severe impact on write performance.
+	 * @param memoryMapped   Flag indicating whether nodes should be read from memory-mapped segments of the B-Tree
+	 *                       file instead of through positional file reads.
+	 * @throws IOException In case the initialization of the B-Tree file failed.
+	 */
+	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, boolean memoryMapped) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync, memoryMapped, false);
+	}
+
+	/**
+	 * Creates a new BTree that uses the supplied <tt>RecordComparator</tt> to compare the values that are or will be
+	 * stored in the B-Tree.
+	 *
+	 * @param dataDir        The directory for the BTree data.
+	 * @param filenamePrefix The prefix for all files used by this BTree.
+	 * @param blockSize      The size (in bytes) of a file block for a single node. Ideally, the size specified is the
+	 *                       size of a block in the used file system.
+	 * @param valueSize      The size (in bytes) of the fixed-length values that are or will be stored in the B-Tree.
+	 * @param comparator     The <tt>RecordComparator</tt> to use for determining whether one value is smaller, larger
+	 *                       or equal to another.
+	 * @param forceSync      Flag indicating whether updates should be synced to disk forcefully by calling
+	 *                       {@link FileChannel#force(boolean)}. This may have a severe impact on write performance.
+	 * @param memoryMapped   Flag indicating whether nodes should be read from memory-mapped segments of the B-Tree
+	 *                       file instead of through positional file reads.
+	 * @param compressed     Flag indicating whether a newly created B-Tree file should store its nodes in compressed
+	 *                       form. Existing files keep the format they were created with.
+	 * @throws IOException In case the initialization of the B-Tree file failed.
+	 */
+	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, boolean memoryMapped, boolean compressed) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync,
+				memoryMapped ? MappedNodeReader.DEFAULT_SEGMENT_BLOCK_COUNT : 0, compressed);
+	}
+
+	/**
+	 * Creates a new BTree, reading nodes from memory-mapped segments of <tt>segmentBlockCount</tt> blocks if that
+	 * number is positive.
+	 */
+	BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, int segmentBlockCount) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync, segmentBlockCount, false);
+	}
+
+	BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, int segmentBlockCount, boolean compressed) throws IOException {
 		if (dataDir == null) {
 			throw new IllegalArgumentException("dataDir must not be null");
 		}
@@ -269,6 +360,7 @@ public class BTree implements Closeable {
 			// Empty file, initialize it with the specified parameters
 			this.blockSize = blockSize;
 			this.valueSize = valueSize;
+			this.compressed = compressed;
 			this.rootNodeID = 0;
 			this.height = 0;
 
@@ -288,11 +380,12 @@ public class BTree implements Closeable {
 			this.blockSize = buf.getInt();
 			this.valueSize = buf.getInt();
 			this.rootNodeID = buf.getInt();
+			this.compressed = version == COMPRESSED_FILE_FORMAT_VERSION;
 
 			if (Arrays.equals(MAGIC_NUMBER, magicNumber)) {
-				if (version > FILE_FORMAT_VERSION) {
+				if (version > COMPRESSED_FILE_FORMAT_VERSION) {
 					throw new IOException("Unable to read BTree file " + file + "; it uses a newer file format");
-				} else if (version != FILE_FORMAT_VERSION) {
+				} else if (version != FILE_FORMAT_VERSION && version != COMPRESSED_FILE_FORMAT_VERSION) {
 					throw new IOException(
 							"Unable to read BTree file " + file + "; invalid file format version: " + version);
 				}
@@ -315,13 +408,28 @@ public class BTree implements Closeable {
 			}
 		}
 
+		mappedNodeReader = segmentBlockCount > 0 ? new MappedNodeReader(nioFile, this.blockSize, segmentBlockCount)
+				: null;
+
 		// Calculate derived properties
 		slotSize = 4 + this.valueSize;
-		branchFactor = 1 + (this.blockSize - 8) / slotSize;
+		if (this.compressed) {
+			// nodes are kept in fixed-size slots in memory, but only need as many blocks on disk as their encoded
+			// form occupies
+			branchFactor = COMPRESSED_CAPACITY_FACTOR * (1 + (this.blockSize - 8) / slotSize);
+		} else {
+			branchFactor = 1 + (this.blockSize - 8) / slotSize;
+		}
 		// bf=30 --> mvc=14; bf=29 --> mvc=14
 		minValueCount = (branchFactor - 1) / 2;
 		nodeSize = 8 + (branchFactor - 1) * slotSize;
 
+		if (this.compressed) {
+			// Initialize the allocated nodes eagerly; allocating overflow blocks while writing nodes must never
+			// require crawling the tree
+			allocatedNodesList.getNodeCount();
+		}
+
 		// System.out.println("blockSize=" + this.blockSize);
 		// System.out.println("valueSize=" + this.valueSize);
 		// System.out.println("slotSize=" + this.slotSize);
@@ -341,6 +449,13 @@ public class BTree implements Closeable {
 		return nioFile.getFile();
 	}
 
+	/**
+	 * Checks whether this BTree stores its nodes in compressed form.
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
 	/**
 	 * Closes the BTree and then deletes its data files.
 	 *
@@ -386,6 +501,9 @@ public class BTree implements Closeable {
 					nodeCache.clear();
 				} finally {
 					try {
+						if (mappedNodeReader != null) {
+							mappedNodeReader.clear();
+						}
 						nioFile.close();
 					} finally {
 						allocatedNodesList.close(syncChanges);
@@ -397,6 +515,14 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Sets the guard that is notified before the BTree file is written or truncated. The file of allocated nodes is
+	 * not guarded, it is rebuilt from the BTree file when it is missing.
+	 */
+	public void setWriteGuard(FileWriteGuard writeGuard) {
+		this.writeGuard = writeGuard;
+	}
+
 	/**
 	 * Writes any changes that are cached in memory to disk.
 	 *
@@ -418,6 +544,23 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Writes any changes that are cached in memory to disk and forces them to the storage device, regardless of the
+	 * <tt>forceSync</tt> setting.
+	 *
+	 * @throws IOException
+	 */
+	public void force() throws IOException {
+		btreeLock.readLock().lock();
+		try {
+			nodeCache.flush();
+			nioFile.force(false);
+			allocatedNodesList.force();
+		} finally {
+			btreeLock.readLock().unlock();
+		}
+	}
+
 	/**
 	 * Gets the value that matches the specified key.
 	 *
@@ -984,7 +1127,7 @@ public class BTree implements Closeable {
 		btreeLock.writeLock().lock();
 		try {
 			nodeCache.clear();
-			nioFile.truncate(HEADER_LENGTH);
+			truncate(HEADER_LENGTH);
 
 			if (rootNodeID != 0) {
 				rootNodeID = 0;
@@ -997,6 +1140,110 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Fills an empty B-Tree with the values that are returned by the supplied iterator, which must return them in
+	 * strictly ascending order according to this B-Tree's comparator. Instead of inserting the values one by one, the
+	 * tree is built bottom-up: nodes are filled completely from left to right and are never revisited, except for the
+	 * right-most node on each level, which may need to borrow values from its left sibling at the end.
+	 *
+	 * @param values The values to store in the B-Tree, in ascending order.
+	 * @throws IOException           If an I/O error occurred.
+	 * @throws IllegalStateException If the B-Tree is not empty.
+	 */
+	public void bulkLoad(RecordIterator values) throws IOException {
+		btreeLock.writeLock().lock();
+		try {
+			if (rootNodeID != 0) {
+				throw new IllegalStateException("Bulk loading requires an empty B-Tree: " + getFile());
+			}
+
+			// the node that is currently being filled, for each level of the tree, leaf nodes first
+			List<Node> openNodes = new ArrayList<>();
+			try {
+				byte[] previous = null;
+				byte[] value;
+				while ((value = values.next()) != null) {
+					if (previous != null && comparator.compareBTreeValues(previous, value, 0, valueSize) >= 0) {
+						throw new IllegalArgumentException("Values are not in strictly ascending order");
+					}
+					appendValue(openNodes, 0, value, 0, 0);
+					previous = value;
+				}
+
+				if (openNodes.isEmpty()) {
+					return;
+				}
+
+				// The right-most node on a level can have less than the minimum number of values. Fix this top-down,
+				// so that each node's parent has a left sibling available
+				for (int level = openNodes.size() - 2; level >= 0; level--) {
+					Node node = openNodes.get(level);
+					Node parentNode = openNodes.get(level + 1);
+
+					int shortage = minValueCount - node.getValueCount();
+					if (shortage > 0) {
+						Node leftSibling = parentNode.getChildNode(parentNode.getValueCount() - 1);
+						try {
+							for (int i = 0; i < shortage; i++) {
+								parentNode.rotateRight(parentNode.getValueCount(), leftSibling, node);
+							}
+						} finally {
+							leftSibling.release();
+						}
+					}
+				}
+
+				rootNodeID = openNodes.get(openNodes.size() - 1).getID();
+				writeFileHeader();
+				height = openNodes.size();
+			} finally {
+				for (Node node : openNodes) {
+					node.release();
+				}
+			}
+		} finally {
+			btreeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends a value to the open node on the specified level. When that node is full, the value is moved up to the
+	 * parent level instead, with a new node for the current level as its right child.
+	 *
+	 * @param leftNodeID  The ID of the node to the left of <tt>value</tt>, used when a new root node needs to be
+	 *                    created.
+	 * @param rightNodeID The ID of the node to the right of <tt>value</tt>.
+	 */
+	private void appendValue(List<Node> openNodes, int level, byte[] value, int leftNodeID, int rightNodeID)
+			throws IOException {
+		if (level == openNodes.size()) {
+			Node newNode = createNewNode();
+			if (level > 0) {
+				newNode.setChildNodeID(0, leftNodeID);
+			}
+			openNodes.add(newNode);
+		}
+
+		Node node = openNodes.get(level);
+
+		if (node.getValueCount() < branchFactor - 1) {
+			node.insertValueNodeIDPair(node.getValueCount(), value, rightNodeID);
+		} else {
+			// node is full, continue with a new node on this level
+			Node newNode = createNewNode();
+			if (level > 0) {
+				newNode.setChildNodeID(0, rightNodeID);
+			}
+			openNodes.set(level, newNode);
+
+			try {
+				appendValue(openNodes, level + 1, value, node.getID(), newNode.getID());
+			} finally {
+				node.release();
+			}
+		}
+	}
+
 	private Node createNewNode() throws IOException {
 		int newNodeID = allocatedNodesList.allocateNode();
 
@@ -1031,11 +1278,14 @@ public class BTree implements Closeable {
 			// allow the discarded node ID to be reused
 			synchronized (allocatedNodesList) {
 				allocatedNodesList.freeNode(node.getID());
+				for (int overflowID : node.getOverflowIDs()) {
+					allocatedNodesList.freeNode(overflowID);
+				}
 
 				int maxNodeID = allocatedNodesList.getMaxNodeID();
-				if (node.getID() > maxNodeID) {
+				if (nodeID2offset(maxNodeID + 1) < nioFile.size()) {
 					// Shrink file
-					nioFile.truncate(nodeID2offset(maxNodeID) + nodeSize);
+					truncate(nodeID2offset(maxNodeID) + Math.min(nodeSize, blockSize));
 				}
 			}
 		} else {
@@ -1043,16 +1293,103 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Reads the first <tt>length</tt> bytes of the block with the specified ID into <tt>dst</tt>.
+	 */
+	void readBlock(int blockID, byte[] dst, int length) throws IOException {
+		long offset = nodeID2offset(blockID);
+
+		if (mappedNodeReader != null && mappedNodeReader.read(dst, length, offset)) {
+			return;
+		}
+
+		int bytesRead = nioFile.read(ByteBuffer.wrap(dst, 0, length), offset);
+		assert bytesRead == length : "Read operation didn't read the entire block (" + bytesRead + " of " + length
+				+ " bytes)";
+	}
+
+	/**
+	 * Writes the first <tt>length</tt> bytes of <tt>src</tt> to the block with the specified ID.
+	 */
+	void writeBlock(int blockID, byte[] src, int length) throws IOException {
+		beforeWrite(nodeID2offset(blockID), length);
+		int bytesWritten = nioFile.write(ByteBuffer.wrap(src, 0, length), nodeID2offset(blockID));
+		assert bytesWritten == length : "Write operation didn't write the entire block (" + bytesWritten + " of "
+				+ length + " bytes)";
+	}
+
+	/**
+	 * Allocates an overflow block for a compressed node.
+	 */
+	int allocateBlock() throws IOException {
+		return allocatedNodesList.allocateNode();
+	}
+
+	/**
+	 * Frees an overflow block that is no longer used by a compressed node.
+	 */
+	void freeBlock(int blockID) throws IOException {
+		allocatedNodesList.freeNode(blockID);
+	}
+
+	/**
+	 * Notifies the {@link #writeGuard} that the specified region of the BTree file is about to be written.
+	 */
+	void beforeWrite(long offset, int length) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeWrite(nioFile, offset, length);
+		}
+	}
+
+	/**
+	 * Records the blocks that the supplied changed nodes occupy with the {@link #writeGuard} at once, so that writing
+	 * the nodes does not wait for the guard once per node.
+	 */
+	private void prepareNodeWrites(List<Node> nodes) {
+		FileWriteGuard guard = writeGuard;
+		if (guard == null) {
+			return;
+		}
+
+		try {
+			long token = 0L;
+			for (Node node : nodes) {
+				token = Math.max(token, guard.prepareWrite(nioFile, nodeID2offset(node.getID()), blockSize));
+				for (int overflowID : node.getOverflowIDs()) {
+					token = Math.max(token, guard.prepareWrite(nioFile, nodeID2offset(overflowID), blockSize));
+				}
+			}
+			guard.awaitPrepared(token);
+		} catch (IOException exc) {
+			throw new SailException("Error preparing B-tree node writes", exc);
+		}
+	}
+
+	private void truncate(long newSize) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeTruncate(nioFile, newSize);
+		}
+		if (mappedNodeReader != null) {
+			// drops the mappings beyond the new end while no reader uses them
+			mappedNodeReader.truncate(newSize);
+		} else {
+			nioFile.truncate(newSize);
+		}
+	}
+
 	private void writeFileHeader() throws IOException {
 		ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH);
 		buf.put(MAGIC_NUMBER);
-		buf.put(FILE_FORMAT_VERSION);
+		buf.put(compressed ? COMPRESSED_FILE_FORMAT_VERSION : FILE_FORMAT_VERSION);
 		buf.putInt(blockSize);
 		buf.putInt(valueSize);
 		buf.putInt(rootNodeID);
 
 		buf.rewind();
 
+		beforeWrite(0L, HEADER_LENGTH);
 		nioFile.write(buf, 0L);
 	}
 
@@ -1069,6 +1406,7 @@ public class BTree implements Closeable {
 		out.println("Stored parameters:");
 		out.println("block size   = " + blockSize);
 		out.println("value size   = " + valueSize);
+		out.println("compressed   = " + compressed);
 		out.println("root node ID = " + rootNodeID);
 		out.println();
 		out.println("Derived parameters:");
@@ -1078,6 +1416,19 @@ public class BTree implements Closeable {
 		out.println("node size       = " + nodeSize);
 		out.println();
 
+		if (compressed) {
+			// nodes may span several blocks, walk the tree instead of the file
+			int[] counts = new int[2];
+			Node rootNode = readRootNode();
+			if (rootNode != null) {
+				printNode(out, rootNode, counts);
+			}
+			out.println("#nodes          = " + counts[0]);
+			out.println("#values         = " + counts[1]);
+			out.println("---end of BTree file---");
+			return;
+		}
+
 		int nodeCount = 0;
 		int valueCount = 0;
 
@@ -1114,4 +1465,28 @@ public class BTree implements Closeable {
 		out.println("#values         = " + valueCount);
 		out.println("---end of BTree file---");
 	}
+
+	private void printNode(PrintStream out, Node node, int[] counts) throws IOException {
+		try {
+			int count = node.getValueCount();
+			counts[0]++;
+			counts[1] += count;
+			out.print("node " + node.getID() + ": ");
+			out.print("count=" + count + " ");
+
+			for (int i = 0; i < count; i++) {
+				out.print(node.getChildNodeID(i));
+				out.print("[" + ByteArrayUtil.toHexString(node.getValue(i)) + "]");
+			}
+			out.println(node.getChildNodeID(count));
+
+			if (!node.isLeaf()) {
+				for (int i = 0; i <= count; i++) {
+					printNode(out, node.getChildNode(i), counts);
+				}
+			}
+		} finally {
+			node.release();
+		}
+	}
 }
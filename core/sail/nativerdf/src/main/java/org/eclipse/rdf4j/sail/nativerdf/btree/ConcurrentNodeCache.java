@@ -8,8 +8,11 @@
 package org.eclipse.rdf4j.sail.nativerdf.btree;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.nativerdf.ConcurrentCache;
@@ -18,6 +21,11 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 
 	private final Function<Integer, Node> reader;
 
+	/**
+	 * Receives the changed nodes that are about to be written together, see {@link #prepareWrites(Predicate)}.
+	 */
+	private final Consumer<List<Node>> writePreparer;
+
 	private static final Consumer<Node> writeNode = node -> {
 		if (node.dataChanged()) {
 			try {
@@ -28,13 +36,15 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 		}
 	};
 
-	public ConcurrentNodeCache(Function<Integer, Node> reader) {
+	public ConcurrentNodeCache(Function<Integer, Node> reader, Consumer<List<Node>> writePreparer) {
 		super(0); // cleanUp, when actually run, will try to completely purge the cache (but retain currently used
 		// nodes)
 		this.reader = reader;
+		this.writePreparer = writePreparer;
 	}
 
 	public void flush() {
+		prepareWrites(node -> true);
 		cache.forEachValue(Long.MAX_VALUE, writeNode);
 	}
 
@@ -71,6 +81,27 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 		cleanUp();
 	}
 
+	@Override
+	protected void beforeCleanUp() {
+		// unused nodes are written when they are removed
+		prepareWrites(node -> node.getUsageCount() == 0);
+	}
+
+	/**
+	 * Passes the changed nodes that match the filter to the {@link #writePreparer} before they are written.
+	 */
+	private void prepareWrites(Predicate<Node> filter) {
+		List<Node> changedNodes = new ArrayList<>();
+		for (Node node : cache.values()) {
+			if (node.dataChanged() && filter.test(node)) {
+				changedNodes.add(node);
+			}
+		}
+		if (!changedNodes.isEmpty()) {
+			writePreparer.accept(changedNodes);
+		}
+	}
+
 	@Override
 	protected boolean onEntryRemoval(Integer key) {
 		Node node = cache.get(key);
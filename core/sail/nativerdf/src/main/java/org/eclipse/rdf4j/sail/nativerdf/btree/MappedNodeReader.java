@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.rdf4j.common.io.NioFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read path for B-tree nodes that uses read-only, memory-mapped segments of the B-tree file instead of positional
+ * channel reads. Segments have a fixed size that is a multiple of the block size, so a node never crosses a segment
+ * boundary. A segment is only mapped once the file covers it completely; nodes in the (partial) tail of the file are not
+ * served by this reader and must be read through the {@link NioFile}.
+ * <p>
+ * Node writes still go through the file channel. This relies on the operating system keeping mapped regions coherent
+ * with channel writes through a unified page cache, which is the case for local files on Linux, macOS and Windows.
+ * <p>
+ * Accessing a mapped region beyond the end of the file crashes the JVM on Linux and macOS, so the file must only be
+ * shrunk through {@link #truncate(long)}, which drops the affected segments while no reader uses them. On Windows, a
+ * file can not be shrunk at all while a region beyond its new end is mapped, and a mapping is only released once its
+ * buffer has been garbage collected. The file then keeps its size, which merely leaves unused space at its end.
+ */
+class MappedNodeReader {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedNodeReader.class);
+
+	/**
+	 * The default number of B-tree blocks per mapped segment, i.e. 32MB for the 2048 byte blocks of the triple indexes.
+	 */
+	static final int DEFAULT_SEGMENT_BLOCK_COUNT = 16 * 1024;
+
+	private final NioFile nioFile;
+
+	private final long segmentSize;
+
+	/**
+	 * The mapped segments, indexed by segment number. A <tt>null</tt> entry indicates that the segment has not (yet)
+	 * been mapped. The array is replaced as a whole when it needs to grow or when segments are invalidated.
+	 */
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+	/**
+	 * Held by readers while they access a mapped segment, and exclusively while segments are dropped and the file is
+	 * truncated.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * The end of the segments that have been mapped since the file was last truncated successfully. Guarded by the
+	 * write lock.
+	 */
+	private long mappedEnd;
+
+	MappedNodeReader(NioFile nioFile, int blockSize, int segmentBlockCount) {
+		if (segmentBlockCount <= 0) {
+			throw new IllegalArgumentException("segment block count must be larger than 0");
+		}
+		this.nioFile = nioFile;
+		this.segmentSize = (long) blockSize * segmentBlockCount;
+		if (segmentSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("segment size must not exceed " + Integer.MAX_VALUE + " bytes");
+		}
+	}
+
+	/**
+	 * Copies <tt>length</tt> bytes starting at <tt>offset</tt> from the mapped file into <tt>dst</tt>.
+	 *
+	 * @return <tt>true</tt> if the data was read, <tt>false</tt> if the region is not covered by a mapped segment and
+	 *         has to be read from the file channel instead.
+	 */
+	boolean read(byte[] dst, int length, long offset) throws IOException {
+		int segmentIdx = (int) (offset / segmentSize);
+
+		lock.readLock().lock();
+		try {
+			MappedByteBuffer segment = getSegment(segmentIdx);
+
+			if (segment == null) {
+				return false;
+			}
+
+			ByteBuffer view = segment.duplicate();
+			view.position((int) (offset - segmentIdx * segmentSize));
+			view.get(dst, 0, length);
+			return true;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private MappedByteBuffer getSegment(int segmentIdx) throws IOException {
+		MappedByteBuffer[] currentSegments = segments;
+		if (segmentIdx < currentSegments.length && currentSegments[segmentIdx] != null) {
+			return currentSegments[segmentIdx];
+		}
+
+		long segmentStart = segmentIdx * segmentSize;
+		if (nioFile.size() < segmentStart + segmentSize) {
+			// segment is not completely covered by the file yet
+			return null;
+		}
+
+		synchronized (this) {
+			currentSegments = segments;
+			if (segmentIdx < currentSegments.length && currentSegments[segmentIdx] != null) {
+				return currentSegments[segmentIdx];
+			}
+			if (nioFile.size() < segmentStart + segmentSize) {
+				// file has been truncated concurrently
+				return null;
+			}
+
+			MappedByteBuffer segment = nioFile.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+			mappedEnd = Math.max(mappedEnd, segmentStart + segmentSize);
+
+			MappedByteBuffer[] newSegments = Arrays.copyOf(currentSegments,
+					Math.max(currentSegments.length, segmentIdx + 1));
+			newSegments[segmentIdx] = segment;
+			segments = newSegments;
+
+			return segment;
+		}
+	}
+
+	/**
+	 * Drops all mapped segments that extend beyond <tt>newFileSize</tt> and truncates the file, while no reader
+	 * accesses a mapped segment. If a region beyond the new end of the file has been mapped and the file can not be
+	 * truncated because of that, as on Windows, the file keeps its size.
+	 */
+	void truncate(long newFileSize) throws IOException {
+		lock.writeLock().lock();
+		try {
+			synchronized (this) {
+				int retainedCount = (int) Math.min(segments.length, newFileSize / segmentSize);
+				if (retainedCount < segments.length) {
+					segments = Arrays.copyOf(segments, retainedCount);
+				}
+
+				try {
+					nioFile.truncate(newFileSize);
+					mappedEnd = Math.min(mappedEnd, retainedCount * segmentSize);
+				} catch (IOException e) {
+					if (mappedEnd <= newFileSize) {
+						throw e;
+					}
+					logger.debug("Unable to truncate mapped file, keeping its size", e);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops all mapped segments. The mappings themselves are released when the buffers are garbage collected.
+	 */
+	void clear() {
+		lock.writeLock().lock();
+		try {
+			synchronized (this) {
+				segments = new MappedByteBuffer[0];
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
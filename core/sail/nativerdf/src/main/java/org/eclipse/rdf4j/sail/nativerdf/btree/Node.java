@@ -36,6 +36,11 @@ class Node {
 	/** Flag indicating whether the contents of data has changed. */
 	private boolean dataChanged;
 
+	/** The IDs of the overflow blocks that store this node in a compressed BTree, in chain order. */
+	private int[] overflowIDs = NO_OVERFLOW_IDS;
+
+	private static final int[] NO_OVERFLOW_IDS = new int[0];
+
 	/** Registered listeners that want to be notified of changes to the node. */
 	private final ConcurrentLinkedDeque<NodeListener> listeners = new ConcurrentLinkedDeque<>();
 
@@ -93,6 +98,14 @@ class Node {
 		return dataChanged;
 	}
 
+	/**
+	 * Gets the IDs of the overflow blocks that this node occupies in addition to its own block. Always empty for BTrees
+	 * that don't store their nodes in compressed form.
+	 */
+	public int[] getOverflowIDs() {
+		return overflowIDs;
+	}
+
 	public int getValueCount() {
 		return valueCount;
 	}
@@ -445,12 +458,24 @@ class Node {
 	}
 
 	public void read() throws IOException {
+		if (tree.compressed) {
+			readCompressed();
+			return;
+		}
+
+		long offset = tree.nodeID2offset(id);
+
+		if (tree.mappedNodeReader != null && tree.mappedNodeReader.read(data, tree.nodeSize, offset)) {
+			valueCount = ByteArrayUtil.getInt(data, 0);
+			return;
+		}
+
 		ByteBuffer buf = ByteBuffer.wrap(data);
 
 		// Don't fill the spare slot in data:
 		buf.limit(tree.nodeSize);
 
-		int bytesRead = tree.nioFile.read(buf, tree.nodeID2offset(id));
+		int bytesRead = tree.nioFile.read(buf, offset);
 		assert bytesRead == tree.nodeSize : "Read operation didn't read the entire node (" + bytesRead + " of "
 				+ tree.nodeSize + " bytes)";
 
@@ -458,11 +483,17 @@ class Node {
 	}
 
 	public void write() throws IOException {
+		if (tree.compressed) {
+			writeCompressed();
+			return;
+		}
+
 		ByteBuffer buf = ByteBuffer.wrap(data);
 
 		// Don't write the spare slot in data to the file:
 		buf.limit(tree.nodeSize);
 
+		tree.beforeWrite(tree.nodeID2offset(id), tree.nodeSize);
 		int bytesWritten = tree.nioFile.write(buf, tree.nodeID2offset(id));
 		assert bytesWritten == tree.nodeSize : "Write operation didn't write the entire node (" + bytesWritten + " of "
 				+ tree.nodeSize + " bytes)";
@@ -470,6 +501,72 @@ class Node {
 		dataChanged = false;
 	}
 
+	private void readCompressed() throws IOException {
+		int chunkSize = tree.blockSize - 4;
+		byte[] block = new byte[tree.blockSize];
+		byte[] encoded = new byte[chunkSize];
+		int encodedLength = 0;
+		int[] chainIDs = NO_OVERFLOW_IDS;
+
+		int blockID = id;
+		while (true) {
+			tree.readBlock(blockID, block, tree.blockSize);
+
+			if (encodedLength + chunkSize > encoded.length) {
+				encoded = Arrays.copyOf(encoded, encoded.length * 2);
+			}
+			System.arraycopy(block, 4, encoded, encodedLength, chunkSize);
+			encodedLength += chunkSize;
+
+			blockID = ByteArrayUtil.getInt(block, 0);
+			if (blockID == 0) {
+				break;
+			}
+			chainIDs = Arrays.copyOf(chainIDs, chainIDs.length + 1);
+			chainIDs[chainIDs.length - 1] = blockID;
+		}
+
+		overflowIDs = chainIDs;
+		valueCount = NodeEncoding.decode(encoded, data, tree.valueSize);
+	}
+
+	private void writeCompressed() throws IOException {
+		int chunkSize = tree.blockSize - 4;
+		byte[] encoded = NodeEncoding.encode(data, valueCount, tree.valueSize);
+		int blockCount = Math.max(1, (encoded.length + chunkSize - 1) / chunkSize);
+
+		// Grow or shrink the chain of overflow blocks to the required length
+		int overflowCount = blockCount - 1;
+		if (overflowCount != overflowIDs.length) {
+			int[] newOverflowIDs = Arrays.copyOf(overflowIDs, overflowCount);
+			for (int i = overflowIDs.length; i < overflowCount; i++) {
+				newOverflowIDs[i] = tree.allocateBlock();
+			}
+			for (int i = overflowCount; i < overflowIDs.length; i++) {
+				tree.freeBlock(overflowIDs[i]);
+			}
+			overflowIDs = newOverflowIDs;
+		}
+
+		// Write the overflow blocks before the node's own block, so that the chain is complete once the latter is
+		// written
+		byte[] block = new byte[tree.blockSize];
+		for (int i = blockCount - 1; i >= 0; i--) {
+			int nextBlockID = i < overflowCount ? overflowIDs[i] : 0;
+			int chunkStart = i * chunkSize;
+			int chunkLength = Math.min(chunkSize, encoded.length - chunkStart);
+
+			Arrays.fill(block, (byte) 0);
+			ByteArrayUtil.putInt(nextBlockID, block, 0);
+			if (chunkLength > 0) {
+				System.arraycopy(encoded, chunkStart, block, 4, chunkLength);
+			}
+			tree.writeBlock(i == 0 ? id : overflowIDs[i - 1], block, tree.blockSize);
+		}
+
+		dataChanged = false;
+	}
+
 	/**
 	 * Shifts the data between <tt>startOffset</tt> (inclusive) and <tt>endOffset</tt> (exclusive) <tt>shift</tt>
 	 * positions to the right. Negative shift values can be used to shift data to the left.
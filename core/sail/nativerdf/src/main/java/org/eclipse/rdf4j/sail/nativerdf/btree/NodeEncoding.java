@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+
+/**
+ * Delta/varint encoding of the in-memory representation of a {@link Node} that is used by the compressed B-tree file
+ * format. The encoded form of a node is:
+ * <ul>
+ * <li>the value count, as a varint;</li>
+ * <li>a leaf marker byte, which is <tt>1</tt> if all child node IDs are <tt>0</tt>;</li>
+ * <li>for non-leaf nodes, the <tt>valueCount + 1</tt> child node IDs, as varints;</li>
+ * <li>the values, in order.</li>
+ * </ul>
+ * Each value is split into units: one unit per complete 4-byte word, followed by one unit per remaining byte. A value
+ * starts with a bit mask that marks the units that differ from the same unit of the previous value (the first value is
+ * compared to all zeros). Only the marked units follow the mask: words as the zigzag varint of their difference to the
+ * previous word, remaining bytes as is. As values in a node are sorted, neighbouring values tend to share most of their
+ * words and differ by small amounts in the others.
+ */
+final class NodeEncoding {
+
+	private NodeEncoding() {
+	}
+
+	/**
+	 * Encodes the node data in <tt>data</tt>, which uses the fixed-size slot layout of {@link Node}.
+	 *
+	 * @return the encoded node, the array has exactly the length of the encoded data.
+	 */
+	static byte[] encode(byte[] data, int valueCount, int valueSize) {
+		int slotSize = valueSize + 4;
+		int wordCount = valueSize / 4;
+		int unitCount = wordCount + valueSize % 4;
+		int maskLength = (unitCount + 7) / 8;
+
+		Output out = new Output(16 + valueCount * (maskLength + valueSize));
+
+		out.writeVarInt(valueCount);
+
+		boolean leaf = true;
+		for (int i = 0; i <= valueCount && leaf; i++) {
+			leaf = ByteArrayUtil.getInt(data, 4 + i * slotSize) == 0;
+		}
+		out.writeByte(leaf ? 1 : 0);
+
+		if (!leaf) {
+			for (int i = 0; i <= valueCount; i++) {
+				out.writeVarInt(ByteArrayUtil.getInt(data, 4 + i * slotSize));
+			}
+		}
+
+		byte[] mask = new byte[maskLength];
+		int prevOffset = -1;
+		for (int i = 0; i < valueCount; i++) {
+			int offset = 8 + i * slotSize;
+
+			Arrays.fill(mask, (byte) 0);
+			for (int unit = 0; unit < unitCount; unit++) {
+				if (unitValue(data, offset, unit, wordCount) != prevUnitValue(data, prevOffset, unit, wordCount)) {
+					mask[unit >>> 3] |= 1 << (unit & 7);
+				}
+			}
+			out.writeBytes(mask);
+
+			for (int unit = 0; unit < unitCount; unit++) {
+				if ((mask[unit >>> 3] & (1 << (unit & 7))) != 0) {
+					int value = unitValue(data, offset, unit, wordCount);
+					if (unit < wordCount) {
+						int delta = value - prevUnitValue(data, prevOffset, unit, wordCount);
+						out.writeVarInt((delta << 1) ^ (delta >> 31));
+					} else {
+						out.writeByte(value);
+					}
+				}
+			}
+
+			prevOffset = offset;
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes an encoded node into <tt>data</tt>, using the fixed-size slot layout of {@link Node}. The supplied array
+	 * is expected to be zeroed.
+	 *
+	 * @return the number of values in the node.
+	 */
+	static int decode(byte[] encoded, byte[] data, int valueSize) {
+		int slotSize = valueSize + 4;
+		int wordCount = valueSize / 4;
+		int unitCount = wordCount + valueSize % 4;
+		int maskLength = (unitCount + 7) / 8;
+
+		Input in = new Input(encoded);
+
+		int valueCount = in.readVarInt();
+		ByteArrayUtil.putInt(valueCount, data, 0);
+
+		boolean leaf = in.readByte() == 1;
+		if (!leaf) {
+			for (int i = 0; i <= valueCount; i++) {
+				ByteArrayUtil.putInt(in.readVarInt(), data, 4 + i * slotSize);
+			}
+		}
+
+		int prevOffset = -1;
+		for (int i = 0; i < valueCount; i++) {
+			int offset = 8 + i * slotSize;
+			int maskOffset = in.pos;
+			in.pos += maskLength;
+
+			for (int unit = 0; unit < unitCount; unit++) {
+				int prevValue = prevUnitValue(data, prevOffset, unit, wordCount);
+				boolean changed = (encoded[maskOffset + (unit >>> 3)] & (1 << (unit & 7))) != 0;
+
+				if (unit < wordCount) {
+					int value = prevValue;
+					if (changed) {
+						int zigzag = in.readVarInt();
+						value += (zigzag >>> 1) ^ -(zigzag & 1);
+					}
+					ByteArrayUtil.putInt(value, data, offset + 4 * unit);
+				} else {
+					data[offset + 4 * wordCount + unit - wordCount] = (byte) (changed ? in.readByte() : prevValue);
+				}
+			}
+
+			prevOffset = offset;
+		}
+
+		return valueCount;
+	}
+
+	private static int unitValue(byte[] data, int offset, int unit, int wordCount) {
+		if (unit < wordCount) {
+			return ByteArrayUtil.getInt(data, offset + 4 * unit);
+		}
+		return data[offset + 4 * wordCount + unit - wordCount] & 0xff;
+	}
+
+	private static int prevUnitValue(byte[] data, int prevOffset, int unit, int wordCount) {
+		return prevOffset < 0 ? 0 : unitValue(data, prevOffset, unit, wordCount);
+	}
+
+	private static final class Output {
+
+		private byte[] buf;
+
+		private int pos;
+
+		Output(int initialCapacity) {
+			buf = new byte[initialCapacity];
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			buf[pos++] = (byte) b;
+		}
+
+		void writeBytes(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		void writeVarInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7f) != 0) {
+				buf[pos++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			buf[pos++] = (byte) value;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, pos);
+		}
+
+		private void ensureCapacity(int extra) {
+			if (pos + extra > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+			}
+		}
+	}
+
+	private static final class Input {
+
+		private final byte[] buf;
+
+		private int pos;
+
+		Input(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int readByte() {
+			return buf[pos++] & 0xff;
+		}
+
+		int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = buf[pos++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+}
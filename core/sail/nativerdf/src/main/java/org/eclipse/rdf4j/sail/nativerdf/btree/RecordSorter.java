@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External sorter for fixed-length records, for example to feed {@link BTree#bulkLoad(RecordIterator)}. Records are
+ * collected in memory and written to temporary files in sorted runs of a fixed number of records. {@link #sort()}
+ * merges the runs into a single sorted sequence in which records that are equal according to the
+ * {@link RecordComparator} only occur once; the record that was added first is retained.
+ * <p>
+ * At most a fixed number of runs is read at the same time. If there are more runs, groups of runs are first merged
+ * into longer runs, in as many passes as needed, so that the number of open files and read buffers stays bounded.
+ */
+public class RecordSorter implements Closeable {
+
+	/**
+	 * The default number of records that is sorted in memory before a run is written to disk.
+	 */
+	public static final int DEFAULT_RUN_SIZE = 256 * 1024;
+
+	/**
+	 * The default maximum number of runs that are merged at the same time.
+	 */
+	public static final int DEFAULT_MERGE_WIDTH = 64;
+
+	private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+	private final File tmpDir;
+
+	private final int recordLength;
+
+	private final Comparator<byte[]> comparator;
+
+	private final byte[][] buffer;
+
+	private final int mergeWidth;
+
+	private int bufferCount;
+
+	private final List<Run> runs = new ArrayList<>();
+
+	private boolean sorted;
+
+	public RecordSorter(File tmpDir, int recordLength, RecordComparator comparator) {
+		this(tmpDir, recordLength, comparator, DEFAULT_RUN_SIZE);
+	}
+
+	/**
+	 * @param tmpDir       The directory for the temporary run files.
+	 * @param recordLength The length of the records that are sorted.
+	 * @param comparator   The comparator that determines the order of the records.
+	 * @param runSize      The number of records that is sorted in memory before a run is written to disk.
+	 */
+	public RecordSorter(File tmpDir, int recordLength, RecordComparator comparator, int runSize) {
+		this(tmpDir, recordLength, comparator, runSize, DEFAULT_MERGE_WIDTH);
+	}
+
+	/**
+	 * @param tmpDir       The directory for the temporary run files.
+	 * @param recordLength The length of the records that are sorted.
+	 * @param comparator   The comparator that determines the order of the records.
+	 * @param runSize      The number of records that is sorted in memory before a run is written to disk.
+	 * @param mergeWidth   The maximum number of runs that are merged at the same time.
+	 */
+	public RecordSorter(File tmpDir, int recordLength, RecordComparator comparator, int runSize, int mergeWidth) {
+		if (runSize <= 0) {
+			throw new IllegalArgumentException("run size must be larger than 0");
+		}
+		if (mergeWidth < 2) {
+			throw new IllegalArgumentException("merge width must be at least 2");
+		}
+		this.tmpDir = tmpDir;
+		this.recordLength = recordLength;
+		this.comparator = (r1, r2) -> comparator.compareBTreeValues(r1, r2, 0, recordLength);
+		this.buffer = new byte[runSize][];
+		this.mergeWidth = mergeWidth;
+	}
+
+	/**
+	 * Adds a record to this sorter. The supplied array is not copied and must not be modified afterwards.
+	 */
+	public void add(byte[] record) throws IOException {
+		if (sorted) {
+			throw new IllegalStateException("Records have already been sorted");
+		}
+		assert record.length == recordLength : "record has length " + record.length + ", expected " + recordLength;
+
+		buffer[bufferCount++] = record;
+
+		if (bufferCount == buffer.length) {
+			writeRun();
+		}
+	}
+
+	/**
+	 * Returns all records that have been added, in sorted order and without duplicates. This method can only be called
+	 * once.
+	 */
+	public RecordIterator sort() throws IOException {
+		if (sorted) {
+			throw new IllegalStateException("Records have already been sorted");
+		}
+		sorted = true;
+
+		if (runs.isEmpty()) {
+			// everything fits in memory
+			Arrays.sort(buffer, 0, bufferCount, comparator);
+			return new DistinctIterator(new BufferIterator(buffer, bufferCount));
+		}
+
+		if (bufferCount > 0) {
+			writeRun();
+		}
+		while (runs.size() > mergeWidth) {
+			mergeRuns();
+		}
+		return new DistinctIterator(new MergeIterator(runs));
+	}
+
+	/**
+	 * Deletes any temporary files that are used by this sorter.
+	 */
+	@Override
+	public void close() throws IOException {
+		Arrays.fill(buffer, null);
+		bufferCount = 0;
+
+		for (Run run : runs) {
+			run.close();
+		}
+		runs.clear();
+	}
+
+	private void writeRun() throws IOException {
+		Arrays.sort(buffer, 0, bufferCount, comparator);
+
+		File file = File.createTempFile("records", ".run", tmpDir);
+		Run run = new Run(runs.size(), file, bufferCount);
+		runs.add(run);
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE)) {
+			for (int i = 0; i < bufferCount; i++) {
+				out.write(buffer[i]);
+			}
+		}
+
+		Arrays.fill(buffer, 0, bufferCount, null);
+		bufferCount = 0;
+	}
+
+	/**
+	 * Replaces the runs by longer runs, each of which merges up to {@link #mergeWidth} consecutive runs. As consecutive
+	 * runs are merged, records that were added earlier remain in runs with a lower index.
+	 */
+	private void mergeRuns() throws IOException {
+		List<Run> mergedRuns = new ArrayList<>();
+		try {
+			for (int i = 0; i < runs.size(); i += mergeWidth) {
+				List<Run> group = runs.subList(i, Math.min(i + mergeWidth, runs.size()));
+
+				File file = File.createTempFile("records", ".run", tmpDir);
+				Run run = new Run(mergedRuns.size(), file, 0);
+				mergedRuns.add(run);
+
+				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE);
+						RecordIterator iter = new DistinctIterator(new MergeIterator(group))) {
+					byte[] record;
+					while ((record = iter.next()) != null) {
+						out.write(record);
+						run.remaining++;
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			for (Run run : mergedRuns) {
+				run.close();
+			}
+			throw e;
+		}
+
+		// the runs of each group were closed, which deleted their files, once the group was merged
+		runs.clear();
+		runs.addAll(mergedRuns);
+	}
+
+	private class Run implements Closeable {
+
+		/** The sequence number of this run, used to keep the first of several equal records. */
+		final int index;
+
+		final File file;
+
+		private int remaining;
+
+		private DataInputStream in;
+
+		byte[] current;
+
+		Run(int index, File file, int recordCount) {
+			this.index = index;
+			this.file = file;
+			this.remaining = recordCount;
+		}
+
+		boolean advance() throws IOException {
+			if (remaining == 0) {
+				current = null;
+				return false;
+			}
+			if (in == null) {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+			}
+			current = new byte[recordLength];
+			in.readFully(current);
+			remaining--;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (in != null) {
+					in.close();
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	private static class BufferIterator implements RecordIterator {
+
+		private final byte[][] records;
+
+		private final int count;
+
+		private int index;
+
+		BufferIterator(byte[][] records, int count) {
+			this.records = records;
+			this.count = count;
+		}
+
+		@Override
+		public byte[] next() {
+			return index < count ? records[index++] : null;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			index = count;
+		}
+	}
+
+	/**
+	 * Merges sorted runs using a priority queue that is ordered by the current record of each run. The runs are closed,
+	 * and their files deleted, when the iterator is closed.
+	 */
+	private class MergeIterator implements RecordIterator {
+
+		private final List<Run> mergedRuns;
+
+		private final PriorityQueue<Run> queue;
+
+		private boolean initialized;
+
+		MergeIterator(List<Run> mergedRuns) {
+			this.mergedRuns = mergedRuns;
+			queue = new PriorityQueue<>(mergedRuns.size(), (r1, r2) -> {
+				int diff = comparator.compare(r1.current, r2.current);
+				return diff != 0 ? diff : Integer.compare(r1.index, r2.index);
+			});
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			if (!initialized) {
+				initialized = true;
+				for (Run run : mergedRuns) {
+					if (run.advance()) {
+						queue.add(run);
+					}
+				}
+			}
+
+			Run run = queue.poll();
+			if (run == null) {
+				return null;
+			}
+
+			byte[] record = run.current;
+			if (run.advance()) {
+				queue.add(run);
+			}
+			return record;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			queue.clear();
+			if (mergedRuns == runs) {
+				RecordSorter.this.close();
+			} else {
+				for (Run run : mergedRuns) {
+					run.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skips records that are equal to their predecessor.
+	 */
+	private class DistinctIterator implements RecordIterator {
+
+		private final RecordIterator source;
+
+		private byte[] previous;
+
+		DistinctIterator(RecordIterator source) {
+			this.source = source;
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			byte[] record;
+			while ((record = source.next()) != null) {
+				if (previous == null || comparator.compare(previous, record) != 0) {
+					previous = record;
+					return record;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			source.close();
+		}
+	}
+}
@@ -8,9 +8,11 @@
 package org.eclipse.rdf4j.sail.nativerdf.config;
 
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.FORCE_SYNC;
+import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.MEMORY_MAPPED_INDEXES;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE_CACHE_SIZE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE_ID_CACHE_SIZE;
+import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.OFF_HEAP_VALUE_CACHE_SIZE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.TRIPLE_INDEXES;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.VALUE_CACHE_SIZE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.VALUE_ID_CACHE_SIZE;
@@ -37,6 +39,8 @@ public class NativeStoreConfig extends BaseSailConfig {
 
 	private boolean forceSync = false;
 
+	private boolean memoryMappedIndexes = false;
+
 	private int valueCacheSize = -1;
 
 	private int valueIDCacheSize = -1;
@@ -45,6 +49,8 @@ public class NativeStoreConfig extends BaseSailConfig {
 
 	private int namespaceIDCacheSize = -1;
 
+	private long offHeapValueCacheSize = -1;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -83,6 +89,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 		this.forceSync = forceSync;
 	}
 
+	public boolean getMemoryMappedIndexes() {
+		return memoryMappedIndexes;
+	}
+
+	public void setMemoryMappedIndexes(boolean memoryMappedIndexes) {
+		this.memoryMappedIndexes = memoryMappedIndexes;
+	}
+
 	public int getValueCacheSize() {
 		return valueCacheSize;
 	}
@@ -115,6 +129,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 		this.namespaceIDCacheSize = namespaceIDCacheSize;
 	}
 
+	public long getOffHeapValueCacheSize() {
+		return offHeapValueCacheSize;
+	}
+
+	public void setOffHeapValueCacheSize(long offHeapValueCacheSize) {
+		this.offHeapValueCacheSize = offHeapValueCacheSize;
+	}
+
 	@Override
 	public Resource export(Model m) {
 		Resource implNode = super.export(m);
@@ -127,6 +149,9 @@ public class NativeStoreConfig extends BaseSailConfig {
 		if (forceSync) {
 			m.add(implNode, FORCE_SYNC, vf.createLiteral(forceSync));
 		}
+		if (memoryMappedIndexes) {
+			m.add(implNode, MEMORY_MAPPED_INDEXES, vf.createLiteral(memoryMappedIndexes));
+		}
 		if (valueCacheSize >= 0) {
 			m.add(implNode, VALUE_CACHE_SIZE, vf.createLiteral(valueCacheSize));
 		}
@@ -139,6 +164,9 @@ public class NativeStoreConfig extends BaseSailConfig {
 		if (namespaceIDCacheSize >= 0) {
 			m.add(implNode, NAMESPACE_ID_CACHE_SIZE, vf.createLiteral(namespaceIDCacheSize));
 		}
+		if (offHeapValueCacheSize >= 0) {
+			m.add(implNode, OFF_HEAP_VALUE_CACHE_SIZE, vf.createLiteral(offHeapValueCacheSize));
+		}
 
 		return implNode;
 	}
@@ -159,6 +187,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 							"Boolean value required for " + FORCE_SYNC + " property, found " + lit);
 				}
 			});
+			Models.objectLiteral(m.getStatements(implNode, MEMORY_MAPPED_INDEXES, null)).ifPresent(lit -> {
+				try {
+					setMemoryMappedIndexes(lit.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + MEMORY_MAPPED_INDEXES + " property, found " + lit);
+				}
+			});
 
 			Models.objectLiteral(m.getStatements(implNode, VALUE_CACHE_SIZE, null)).ifPresent(lit -> {
 				try {
@@ -195,6 +231,15 @@ public class NativeStoreConfig extends BaseSailConfig {
 							"Integer value required for " + NAMESPACE_ID_CACHE_SIZE + " property, found " + lit);
 				}
 			});
+
+			Models.objectLiteral(m.getStatements(implNode, OFF_HEAP_VALUE_CACHE_SIZE, null)).ifPresent(lit -> {
+				try {
+					setOffHeapValueCacheSize(lit.longValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Integer value required for " + OFF_HEAP_VALUE_CACHE_SIZE + " property, found " + lit);
+				}
+			});
 		} catch (ModelException e) {
 			throw new SailConfigException(e.getMessage(), e);
 		}
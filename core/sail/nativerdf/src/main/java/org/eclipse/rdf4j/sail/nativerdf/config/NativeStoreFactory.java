@@ -54,6 +54,7 @@ public class NativeStoreFactory implements SailFactory {
 
 			nativeStore.setTripleIndexes(nativeConfig.getTripleIndexes());
 			nativeStore.setForceSync(nativeConfig.getForceSync());
+			nativeStore.setMemoryMappedIndexes(nativeConfig.getMemoryMappedIndexes());
 
 			if (nativeConfig.getValueCacheSize() >= 0) {
 				nativeStore.setValueCacheSize(nativeConfig.getValueCacheSize());
@@ -67,6 +68,9 @@ public class NativeStoreFactory implements SailFactory {
 			if (nativeConfig.getNamespaceIDCacheSize() >= 0) {
 				nativeStore.setNamespaceIDCacheSize(nativeConfig.getNamespaceIDCacheSize());
 			}
+			if (nativeConfig.getOffHeapValueCacheSize() >= 0) {
+				nativeStore.setOffHeapValueCacheSize(nativeConfig.getOffHeapValueCacheSize());
+			}
 			if (nativeConfig.getIterationCacheSyncThreshold() > 0) {
 				nativeStore.setIterationCacheSyncThreshold(nativeConfig.getIterationCacheSyncThreshold());
 			}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.datastore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter for <tt>long</tt> keys that can be stored in a file. A Bloom filter answers whether a key might have
+ * been added to it: if {@link #mightContain(long)} returns <tt>false</tt>, the key has definitely not been added. The
+ * filter is sized for a specific number of keys, its capacity, with a false positive rate of about 1%. Adding more keys
+ * than the capacity increases the false positive rate; owners of a filter are expected to replace it with a larger one
+ * when it {@link #isFull() is full}.
+ * <p>
+ * Keys can be added and queried concurrently.
+ */
+public class BloomFilter {
+
+	/**
+	 * Magic number "Bloom Filter File" to detect whether a file is actually a Bloom filter file.
+	 */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'b', 'f', 'f' };
+
+	/**
+	 * The file format version, stored as the fourth byte in Bloom filter files.
+	 */
+	private static final byte FILE_FORMAT_VERSION = 1;
+
+	/**
+	 * The number of bits per key, which results in a false positive rate of about 1%.
+	 */
+	private static final int BITS_PER_KEY = 10;
+
+	/**
+	 * The number of hash functions, the optimum for {@link #BITS_PER_KEY}.
+	 */
+	private static final int HASH_COUNT = 7;
+
+	private final int capacity;
+
+	private final long bitCount;
+
+	private final AtomicLongArray words;
+
+	private final AtomicInteger keyCount = new AtomicInteger();
+
+	/**
+	 * Creates a new, empty Bloom filter.
+	 *
+	 * @param capacity The number of keys that the filter is sized for.
+	 */
+	public BloomFilter(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be larger than 0: " + capacity);
+		}
+		this.capacity = capacity;
+		int wordCount = (int) (((long) capacity * BITS_PER_KEY + 63) / 64);
+		this.words = new AtomicLongArray(wordCount);
+		this.bitCount = wordCount * 64L;
+	}
+
+	/**
+	 * Adds a key to this filter.
+	 *
+	 * @return <tt>true</tt> if the filter changed, which is always the case for keys that have not been added before,
+	 *         except for false positives.
+	 */
+	public boolean add(long key) {
+		long hash = mix(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		boolean changed = false;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = Math.floorMod(hash1 + i * (long) hash2, bitCount);
+			int wordIndex = (int) (bit >>> 6);
+			long mask = 1L << bit;
+
+			long word = words.get(wordIndex);
+			if ((word & mask) == 0L) {
+				while (!words.compareAndSet(wordIndex, word, word | mask)) {
+					word = words.get(wordIndex);
+				}
+				changed = true;
+			}
+		}
+
+		if (changed) {
+			keyCount.incrementAndGet();
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks whether the specified key might have been added to this filter.
+	 *
+	 * @return <tt>false</tt> if the key has definitely not been added.
+	 */
+	public boolean mightContain(long key) {
+		long hash = mix(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = Math.floorMod(hash1 + i * (long) hash2, bitCount);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of keys that the filter is sized for.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the (approximate) number of distinct keys that have been added to this filter.
+	 */
+	public int getKeyCount() {
+		return keyCount.get();
+	}
+
+	/**
+	 * Checks whether more keys have been added to this filter than it is sized for.
+	 */
+	public boolean isFull() {
+		return keyCount.get() > capacity;
+	}
+
+	/**
+	 * Writes this filter to the specified file, replacing any existing content.
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+			out.write(MAGIC_NUMBER);
+			out.writeByte(FILE_FORMAT_VERSION);
+			out.writeInt(capacity);
+			out.writeInt(keyCount.get());
+			out.writeInt(words.length());
+			for (int i = 0; i < words.length(); i++) {
+				out.writeLong(words.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Reads a filter that has been written by {@link #write(File)}.
+	 *
+	 * @return The filter, or <tt>null</tt> if the file does not exist or does not contain a complete filter.
+	 */
+	public static BloomFilter read(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+			byte[] magicNumber = new byte[MAGIC_NUMBER.length];
+			in.readFully(magicNumber);
+			if (!Arrays.equals(MAGIC_NUMBER, magicNumber) || in.readByte() != FILE_FORMAT_VERSION) {
+				return null;
+			}
+
+			BloomFilter filter = new BloomFilter(in.readInt());
+			filter.keyCount.set(in.readInt());
+			if (in.readInt() != filter.words.length()) {
+				return null;
+			}
+			for (int i = 0; i < filter.words.length(); i++) {
+				filter.words.set(i, in.readLong());
+			}
+			return filter;
+		} catch (EOFException | IllegalArgumentException e) {
+			// incomplete or corrupt file
+			return null;
+		}
+	}
+
+	private static long mix(long key) {
+		// finalizer of MurmurHash3
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
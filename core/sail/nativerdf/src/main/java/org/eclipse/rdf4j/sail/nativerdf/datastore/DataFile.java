@@ -15,6 +15,7 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.FileWriteGuard;
 
 /**
  * Class supplying access to a data file. A data file stores data sequentially. Each entry starts with the entry's
@@ -41,6 +42,11 @@ public class DataFile implements Closeable {
 
 	private static final long HEADER_LENGTH = MAGIC_NUMBER.length + 1;
 
+	/**
+	 * The maximum number of bytes that {@link #getData(long[])} reads at once.
+	 */
+	private static final int READ_WINDOW_SIZE = 64 * 1024;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -49,6 +55,11 @@ public class DataFile implements Closeable {
 
 	private final boolean forceSync;
 
+	/**
+	 * The guard that is notified before the file is written, <tt>null</tt> if the writes are not guarded.
+	 */
+	private volatile FileWriteGuard writeGuard;
+
 	// cached file size, also reflects buffer usage
 	private volatile long nioFileSize;
 
@@ -108,6 +119,13 @@ public class DataFile implements Closeable {
 		return nioFile.getFile();
 	}
 
+	/**
+	 * Sets the guard that is notified before the file is written or truncated.
+	 */
+	public void setWriteGuard(FileWriteGuard writeGuard) {
+		this.writeGuard = writeGuard;
+	}
+
 	/**
 	 * Stores the specified data and returns the byte-offset at which it has been stored.
 	 *
@@ -130,6 +148,7 @@ public class DataFile implements Closeable {
 			buf.put(data);
 			buf.rewind();
 
+			beforeWrite(offset, buf.remaining());
 			nioFile.write(buf, offset);
 
 			nioFileSize += buf.array().length;
@@ -158,12 +177,27 @@ public class DataFile implements Closeable {
 		byte[] byteToWrite = new byte[position];
 		buffer.get(byteToWrite, 0, position);
 
+		beforeWrite(nioFileSize - byteToWrite.length, byteToWrite.length);
 		nioFile.write(ByteBuffer.wrap(byteToWrite), nioFileSize - byteToWrite.length);
 
 		buffer.position(0);
 
 	}
 
+	private void beforeWrite(long offset, long length) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeWrite(nioFile, offset, length);
+		}
+	}
+
+	private void beforeTruncate(long newSize) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeTruncate(nioFile, newSize);
+		}
+	}
+
 	private int remainingBufferCapacity() {
 		return buffer.capacity() - buffer.position();
 	}
@@ -221,12 +255,85 @@ public class DataFile implements Closeable {
 
 	}
 
+	/**
+	 * Gets the data that is stored at the specified offsets. Data that is stored close together is fetched with a
+	 * single read operation, so that reading a batch of offsets in ascending order mostly results in sequential I/O.
+	 *
+	 * @param offsets The offsets of the data, in ascending order.
+	 * @return The data, in the same order as the offsets.
+	 */
+	public byte[][] getData(long[] offsets) throws IOException {
+		flush();
+
+		byte[][] result = new byte[offsets.length][];
+		byte[] window = null;
+		long windowStart = 0L;
+		int windowLength = 0;
+
+		for (int i = 0; i < offsets.length; i++) {
+			long offset = offsets[i];
+			assert offset > 0 : "offset must be larger than 0, is: " + offset;
+			assert i == 0 || offsets[i - 1] <= offset : "offsets must be in ascending order";
+
+			if (offset < windowStart || offset + 4 > windowStart + windowLength) {
+				// read all data up to the last offset that fits in the window, plus an estimate of its length
+				int last = i;
+				while (last + 1 < offsets.length && offsets[last + 1] - offset < READ_WINDOW_SIZE / 2) {
+					last++;
+				}
+				if (last == i) {
+					result[i] = getData(offset);
+					continue;
+				}
+
+				if (window == null) {
+					window = new byte[READ_WINDOW_SIZE];
+				}
+				long end = Math.min(nioFileSize, offsets[last] + (dataLengthApproximateAverage * 2) + 4);
+				windowStart = offset;
+				windowLength = read(window, (int) Math.min(READ_WINDOW_SIZE, end - offset), offset);
+			}
+
+			int pos = (int) (offset - windowStart);
+			if (pos + 4 > windowLength) {
+				// the file is shorter than expected
+				result[i] = getData(offset);
+				continue;
+			}
+
+			int dataLength = (window[pos] << 24) & 0xff000000 |
+					(window[pos + 1] << 16) & 0x00ff0000 |
+					(window[pos + 2] << 8) & 0x0000ff00 |
+					(window[pos + 3]) & 0x000000ff;
+
+			if (pos + 4 + dataLength <= windowLength) {
+				result[i] = Arrays.copyOfRange(window, pos + 4, pos + 4 + dataLength);
+			} else {
+				// the data extends beyond the window
+				result[i] = getData(offset);
+			}
+		}
+
+		return result;
+	}
+
+	private int read(byte[] data, int length, long offset) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(data, 0, length);
+		while (buf.hasRemaining()) {
+			if (nioFile.read(buf, offset + buf.position()) < 0) {
+				break;
+			}
+		}
+		return buf.position();
+	}
+
 	/**
 	 * Discards all stored data.
 	 *
 	 * @throws IOException If an I/O error occurred.
 	 */
 	public void clear() throws IOException {
+		beforeTruncate(HEADER_LENGTH);
 		nioFile.truncate(HEADER_LENGTH);
 		nioFileSize = HEADER_LENGTH;
 		buffer.clear();
@@ -14,14 +14,27 @@ import java.util.Arrays;
 import java.util.zip.CRC32;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.FileWriteGuard;
 
 /**
- * Class that provides indexed storage and retrieval of arbitrary length data.
+ * Class that provides indexed storage and retrieval of arbitrary length data. A {@link BloomFilter} on the hash codes
+ * of the stored data answers most lookups of data that is not present without accessing the files. The filter is
+ * persisted on {@link #sync()}; it is rebuilt from the hash file when it is missing, for example after a crash, and
+ * when it gets full. The hash file itself is rebuilt from the data file when it is missing.
  *
  * @author Arjohn Kampman
  */
 public class DataStore implements Closeable {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	/**
+	 * The minimum number of hash codes that the Bloom filter is sized for.
+	 */
+	private static final int MIN_BLOOM_FILTER_CAPACITY = 64 * 1024;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -32,6 +45,19 @@ public class DataStore implements Closeable {
 
 	private final HashFile hashFile;
 
+	private final File bloomFilterFile;
+
+	/**
+	 * Bloom filter on the hash codes of all stored data.
+	 */
+	private volatile BloomFilter bloomFilter;
+
+	/**
+	 * Flag indicating whether the Bloom filter has changed since it was last written to its file, in which case the
+	 * file has been deleted.
+	 */
+	private boolean bloomFilterChanged;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -43,7 +69,18 @@ public class DataStore implements Closeable {
 	public DataStore(File dataDir, String filePrefix, boolean forceSync) throws IOException {
 		dataFile = new DataFile(new File(dataDir, filePrefix + ".dat"), forceSync);
 		idFile = new IDFile(new File(dataDir, filePrefix + ".id"), forceSync);
+		boolean hashFileExists = new File(dataDir, filePrefix + ".hash").exists();
 		hashFile = new HashFile(new File(dataDir, filePrefix + ".hash"), forceSync);
+		bloomFilterFile = new File(dataDir, filePrefix + ".bloom");
+
+		if (!hashFileExists && idFile.getMaxID() > 0) {
+			rebuildHashFile();
+		}
+
+		bloomFilter = BloomFilter.read(bloomFilterFile);
+		if (bloomFilter == null || bloomFilter.isFull()) {
+			rebuildBloomFilter();
+		}
 	}
 
 	/*---------*
@@ -70,6 +107,41 @@ public class DataStore implements Closeable {
 		return null;
 	}
 
+	/**
+	 * Gets the values for the specified IDs. The values are read from the data file in the order in which they are
+	 * stored, which is considerably faster for large batches of IDs than reading them one by one.
+	 *
+	 * @param ids Value IDs, should all be larger than 0.
+	 * @return The values for the IDs, in the same order as the IDs. An element is <tt>null</tt> if no value could be
+	 *         found for the corresponding ID.
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public byte[][] getData(int[] ids) throws IOException {
+		long[] offsets = new long[ids.length];
+		Integer[] order = new Integer[ids.length];
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			assert ids[i] > 0 : "id must be larger than 0, is: " + ids[i];
+			offsets[i] = idFile.getOffset(ids[i]);
+			if (offsets[i] != 0L) {
+				order[count++] = i;
+			}
+		}
+		Arrays.sort(order, 0, count, (a, b) -> Long.compare(offsets[a], offsets[b]));
+
+		long[] sortedOffsets = new long[count];
+		for (int i = 0; i < count; i++) {
+			sortedOffsets[i] = offsets[order[i]];
+		}
+		byte[][] sortedData = dataFile.getData(sortedOffsets);
+
+		byte[][] result = new byte[ids.length][];
+		for (int i = 0; i < count; i++) {
+			result[order[i]] = sortedData[i];
+		}
+		return result;
+	}
+
 	/**
 	 * Gets the ID for the specified value.
 	 *
@@ -80,10 +152,18 @@ public class DataStore implements Closeable {
 	public int getID(byte[] queryData) throws IOException {
 		assert queryData != null : "queryData must not be null";
 
+		return getID(queryData, getDataHash(queryData));
+	}
+
+	private int getID(byte[] queryData, int hash) throws IOException {
 		int id = -1;
 
+		if (!bloomFilter.mightContain(hash)) {
+			// Data has definitely not been stored
+			return id;
+		}
+
 		// Value not in cache or cache not used, fetch from file
-		int hash = getDataHash(queryData);
 		HashFile.IDIterator iter = hashFile.getIDIterator(hash);
 		try {
 			while ((id = iter.next()) >= 0) {
@@ -123,18 +203,35 @@ public class DataStore implements Closeable {
 	public int storeData(byte[] data) throws IOException {
 		assert data != null : "data must not be null";
 
-		int id = getID(data);
+		int hash = getDataHash(data);
+		int id = getID(data, hash);
 
 		if (id == -1) {
-			// Data not stored yet, store it under a new ID.
+			// Data not stored yet, store it under a new ID. The hash is added to the Bloom filter first, so that the
+			// data can be found as soon as it is in the hash file.
+			addToBloomFilter(hash);
+
 			long offset = dataFile.storeData(data);
 			id = idFile.storeOffset(offset);
-			hashFile.storeID(getDataHash(data), id);
+			hashFile.storeID(hash, id);
+
+			if (bloomFilter.isFull()) {
+				rebuildBloomFilter();
+			}
 		}
 
 		return id;
 	}
 
+	/**
+	 * Sets the guard that is notified before the data and ID files are written or truncated. The hash file is not
+	 * guarded, it is rebuilt from the data file when it is missing.
+	 */
+	public void setWriteGuard(FileWriteGuard writeGuard) {
+		dataFile.setWriteGuard(writeGuard);
+		idFile.setWriteGuard(writeGuard);
+	}
+
 	/**
 	 * Synchronizes any recent changes to the data to disk.
 	 *
@@ -144,6 +241,21 @@ public class DataStore implements Closeable {
 		hashFile.sync();
 		idFile.sync();
 		dataFile.sync();
+		syncBloomFilter();
+	}
+
+	/**
+	 * Synchronizes any recent changes to the data to disk and forces them to the storage device, regardless of the
+	 * <tt>forceSync</tt> setting.
+	 *
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public void force() throws IOException {
+		// the sync(boolean) methods of the files always force, the argument controls whether meta data is forced too
+		hashFile.sync(false);
+		idFile.sync(false);
+		dataFile.sync(false);
+		syncBloomFilter();
 	}
 
 	/**
@@ -153,6 +265,8 @@ public class DataStore implements Closeable {
 	 */
 	public void clear() throws IOException {
 		try {
+			invalidateBloomFilterFile();
+			bloomFilter = new BloomFilter(MIN_BLOOM_FILTER_CAPACITY);
 			hashFile.clear();
 		} finally {
 			try {
@@ -172,6 +286,8 @@ public class DataStore implements Closeable {
 	@Override
 	public void close() throws IOException {
 		try {
+			// all hashes are stored in the hash file, which is not synced on close either
+			syncBloomFilter();
 			hashFile.close();
 		} finally {
 			try {
@@ -182,6 +298,64 @@ public class DataStore implements Closeable {
 		}
 	}
 
+	/**
+	 * Deletes the file of the Bloom filter before the filter is changed, so that an outdated filter is never read after
+	 * a crash.
+	 */
+	private void invalidateBloomFilterFile() throws IOException {
+		if (!bloomFilterChanged) {
+			if (bloomFilterFile.exists() && !bloomFilterFile.delete()) {
+				throw new IOException("Unable to delete " + bloomFilterFile);
+			}
+			bloomFilterChanged = true;
+		}
+	}
+
+	private void addToBloomFilter(int hash) throws IOException {
+		invalidateBloomFilterFile();
+		bloomFilter.add(hash);
+	}
+
+	private void syncBloomFilter() throws IOException {
+		if (bloomFilterChanged) {
+			bloomFilter.write(bloomFilterFile);
+			bloomFilterChanged = false;
+		}
+	}
+
+	/**
+	 * Replaces the Bloom filter with one that is sized for twice the number of items in the hash file.
+	 */
+	/**
+	 * Stores the hash codes of all data in the data file in the empty hash file. IDs are assigned in the order in
+	 * which the data is appended to the data file.
+	 */
+	private void rebuildHashFile() throws IOException {
+		int id = 0;
+		DataFile.DataIterator iter = dataFile.iterator();
+		while (iter.hasNext()) {
+			hashFile.storeID(getDataHash(iter.next()), ++id);
+		}
+		hashFile.sync();
+	}
+
+	private void rebuildBloomFilter() throws IOException {
+		invalidateBloomFilterFile();
+
+		BloomFilter newFilter = new BloomFilter(getBloomFilterCapacity(hashFile.getItemCount()));
+		hashFile.forEachHash(newFilter::add);
+		if (newFilter.isFull()) {
+			// the item count of the hash file was outdated
+			newFilter = new BloomFilter(getBloomFilterCapacity(newFilter.getKeyCount()));
+			hashFile.forEachHash(newFilter::add);
+		}
+		bloomFilter = newFilter;
+	}
+
+	private static int getBloomFilterCapacity(int itemCount) {
+		return (int) Math.min(Integer.MAX_VALUE / 2, Math.max(MIN_BLOOM_FILTER_CAPACITY, 2L * itemCount));
+	}
+
 	/**
 	 * Gets a hash code for the supplied data.
 	 *
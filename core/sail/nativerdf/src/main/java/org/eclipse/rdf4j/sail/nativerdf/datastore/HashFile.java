@@ -14,8 +14,8 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
 
 import org.eclipse.rdf4j.common.io.NioFile;
 
@@ -75,11 +75,6 @@ public class HashFile implements Closeable {
 	// recordSize = ITEM_SIZE * bucketSize + 4
 	private final int recordSize;
 
-	// first prime > 5MB
-	private final BitSet poorMansBloomFilter;
-
-	boolean loadedHashFileFromDisk = false;
-
 	/**
 	 * A read/write lock that is used to prevent structural changes to the hash file while readers are active in order
 	 * to prevent concurrency issues.
@@ -146,19 +141,6 @@ public class HashFile implements Closeable {
 				}
 
 				recordSize = ITEM_SIZE * bucketSize + 4;
-				loadedHashFileFromDisk = itemCount > 0;
-			}
-
-			if (!loadedHashFileFromDisk) {
-				// 41943049 is ~5MB, and a prime
-				if (initialSize > 41943049) {
-					// initialSize < Integer.MAX_VALUE and Integer.MAX_VALUE = ~250 MB
-					poorMansBloomFilter = new BitSet(initialSize);
-				} else {
-					poorMansBloomFilter = new BitSet(41943049);
-				}
-			} else {
-				poorMansBloomFilter = null;
 			}
 		} catch (IOException e) {
 			this.nioFile.close();
@@ -182,15 +164,33 @@ public class HashFile implements Closeable {
 	 * Gets an iterator that iterates over the IDs with hash codes that match the specified hash code.
 	 */
 	public IDIterator getIDIterator(int hash) throws IOException {
-		if (!loadedHashFileFromDisk && !poorMansBloomFilter.get(getBloomFilterIndex(hash))) {
-			return emptyIDIterator;
-		} else {
-			return new IDIterator(hash);
-		}
+		return new IDIterator(hash);
 	}
 
-	private int getBloomFilterIndex(int hash) {
-		return Math.abs(hash) % poorMansBloomFilter.size();
+	/**
+	 * Passes the hash codes of all stored items to the supplied consumer, in no particular order.
+	 */
+	public void forEachHash(IntConsumer consumer) throws IOException {
+		structureLock.readLock().lock();
+		try {
+			ByteBuffer bucket = ByteBuffer.allocate(recordSize);
+			long fileSize = nioFile.size();
+
+			// the normal buckets are followed by the overflow buckets
+			for (long bucketOffset = HEADER_LENGTH; bucketOffset < fileSize; bucketOffset += recordSize) {
+				nioFile.read(bucket, bucketOffset);
+
+				for (int slotNo = 0; slotNo < bucketSize; slotNo++) {
+					if (bucket.getInt(ITEM_SIZE * slotNo + 4) != 0) {
+						consumer.accept(bucket.getInt(ITEM_SIZE * slotNo));
+					}
+				}
+
+				bucket.clear();
+			}
+		} finally {
+			structureLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -198,9 +198,6 @@ public class HashFile implements Closeable {
 	 */
 	public void storeID(int hash, int id) throws IOException {
 		structureLock.readLock().lock();
-		if (!loadedHashFileFromDisk) {
-			poorMansBloomFilter.set(getBloomFilterIndex(hash), true);
-		}
 		try {
 			// Calculate bucket offset for initial bucket
 			long bucketOffset = getBucketOffset(hash);
@@ -261,7 +258,6 @@ public class HashFile implements Closeable {
 
 	public void clear() throws IOException {
 		structureLock.writeLock().lock();
-		poorMansBloomFilter.clear();
 		try {
 			// Truncate the file to remove any overflow buffers
 			nioFile.truncate(HEADER_LENGTH + (long) bucketCount * recordSize);
@@ -497,18 +493,6 @@ public class HashFile implements Closeable {
 	 * Inner class IDIterator *
 	 *------------------------*/
 
-	private final IDIterator emptyIDIterator = new IDIterator() {
-		@Override
-		public void close() {
-
-		}
-
-		@Override
-		public int next() throws IOException {
-			return -1;
-		}
-	};
-
 	public class IDIterator {
 
 		private final int queryHash;
@@ -534,10 +518,6 @@ public class HashFile implements Closeable {
 			}
 		}
 
-		IDIterator() {
-			queryHash = 0;
-		}
-
 		public void close() {
 			bucketBuffer = null;
 			structureLock.readLock().unlock();
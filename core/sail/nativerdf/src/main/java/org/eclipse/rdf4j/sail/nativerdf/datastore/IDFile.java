@@ -16,6 +16,7 @@ import java.util.Map;
 
 import org.apache.commons.collections4.map.ReferenceMap;
 import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.FileWriteGuard;
 
 import com.google.common.math.LongMath;
 
@@ -61,6 +62,11 @@ public class IDFile implements Closeable {
 
 	private final boolean forceSync;
 
+	/**
+	 * The guard that is notified before the file is written, <tt>null</tt> if the writes are not guarded.
+	 */
+	private volatile FileWriteGuard writeGuard;
+
 	// ReferenceMap keeps a soft reference to the cache line (Long[]) which means that it will be GCed if we run low on
 	// memory. This is not synchronized and we choose to synchronize in the code instead of synchronizing the whole map
 	// because this allows us to synchronize multiple operations together.
@@ -131,6 +137,13 @@ public class IDFile implements Closeable {
 		return nioFile.getFile();
 	}
 
+	/**
+	 * Sets the guard that is notified before the file is written or truncated.
+	 */
+	public void setWriteGuard(FileWriteGuard writeGuard) {
+		this.writeGuard = writeGuard;
+	}
+
 	/**
 	 * Gets the largest ID that is stored in this ID file.
 	 *
@@ -146,6 +159,7 @@ public class IDFile implements Closeable {
 	 */
 	public int storeOffset(long offset) throws IOException {
 		long fileSize = nioFileSize;
+		beforeWrite(fileSize, ITEM_SIZE);
 		nioFile.writeLong(offset, fileSize);
 		nioFileSize += ITEM_SIZE;
 		return (int) (fileSize / ITEM_SIZE);
@@ -160,6 +174,7 @@ public class IDFile implements Closeable {
 	public void setOffset(int id, long offset) throws IOException {
 		assert id > 0 : "id must be larger than 0, is: " + id;
 
+		beforeWrite(ITEM_SIZE * id, ITEM_SIZE);
 		nioFile.writeLong(offset, ITEM_SIZE * id);
 
 		// We need to update the cache after writing to file (not before) so that if anyone refreshes the cache it will
@@ -235,6 +250,7 @@ public class IDFile implements Closeable {
 	 * @throws IOException If an I/O error occurred.
 	 */
 	public void clear() throws IOException {
+		beforeTruncate(HEADER_LENGTH);
 		nioFile.truncate(HEADER_LENGTH);
 		nioFileSize = nioFile.size();
 		clearCache();
@@ -263,6 +279,20 @@ public class IDFile implements Closeable {
 		nioFile.close();
 	}
 
+	private void beforeWrite(long offset, long length) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeWrite(nioFile, offset, length);
+		}
+	}
+
+	private void beforeTruncate(long newSize) throws IOException {
+		FileWriteGuard guard = writeGuard;
+		if (guard != null) {
+			guard.beforeTruncate(nioFile, newSize);
+		}
+	}
+
 	synchronized private Long[] getCacheLine(int cacheLookupIndex) {
 		if (cacheLookupIndex == gcReducingCacheIndex) {
 			return gcReducingCache;
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.datastore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cache for the data of a {@link DataStore} that is kept outside of the Java heap, in direct byte buffers. The cache
+ * maps IDs to data and data to IDs, so that both {@link DataStore#getData(int)} and {@link DataStore#getID(byte[])}
+ * lookups can be answered without file access. Because the cached data does not consist of Java objects, the cache can
+ * grow to many gigabytes without increasing garbage collection pauses. Note that the JVM limits the amount of direct
+ * memory, see the <tt>-XX:MaxDirectMemorySize</tt> option.
+ * <p>
+ * The cache is divided into segments that are locked independently. Each segment stores its entries in a ring buffer
+ * that is allocated on first use; when the buffer is full, the oldest entries are overwritten. The entries are found
+ * through two small set-associative hash tables that are also stored off-heap and that need about 20 bytes per
+ * entry. The cache is lossy: a lookup may miss data that has been added before, but it never returns stale data as
+ * long as the cache is cleared together with the data store.
+ */
+public class OffHeapDataCache {
+
+	/**
+	 * The minimum capacity of a cache, in bytes.
+	 */
+	public static final long MIN_CAPACITY = 1 << 20;
+
+	/**
+	 * The maximum size of the ring buffer of a segment.
+	 */
+	private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The minimum size of the ring buffer of a segment, unless the capacity of the cache is smaller.
+	 */
+	private static final int MIN_SEGMENT_SIZE = 1 << 20;
+
+	/**
+	 * The number of segments up to which the number of segments is increased for better concurrency.
+	 */
+	private static final int CONCURRENCY_LEVEL = 64;
+
+	/**
+	 * The expected average size of an entry, used to determine the size of the hash tables.
+	 */
+	private static final int AVERAGE_ENTRY_SIZE = 64;
+
+	/**
+	 * The number of slots in each bucket of the hash tables.
+	 */
+	private static final int BUCKET_SIZE = 4;
+
+	/**
+	 * Slot in the ID table: [id:int][position:long].
+	 */
+	private static final int ID_SLOT_LENGTH = 12;
+
+	/**
+	 * Slot in the hash table: [hash:int][id:int].
+	 */
+	private static final int HASH_SLOT_LENGTH = 8;
+
+	/**
+	 * Entry in the ring buffer: [id:int][length:int][data].
+	 */
+	private static final int ENTRY_HEADER_LENGTH = 8;
+
+	private final Segment[] segments;
+
+	private final int segmentMask;
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param capacity The maximum amount of memory that is used for cached data, in bytes. The hash tables of the
+	 *                 cache come on top of this.
+	 */
+	public OffHeapDataCache(long capacity) {
+		if (capacity < MIN_CAPACITY) {
+			throw new IllegalArgumentException("capacity must be at least " + MIN_CAPACITY + " bytes: " + capacity);
+		}
+
+		int segmentCount = 1;
+		while (segmentCount < CONCURRENCY_LEVEL && capacity / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+			segmentCount *= 2;
+		}
+		while (capacity / segmentCount > MAX_SEGMENT_SIZE) {
+			segmentCount *= 2;
+		}
+
+		int segmentSize = (int) (capacity / segmentCount);
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(segmentSize);
+		}
+		segmentMask = segmentCount - 1;
+	}
+
+	/**
+	 * Gets the cached data for the specified ID.
+	 *
+	 * @return The data, or <tt>null</tt> if it is not cached.
+	 */
+	public byte[] getData(int id) {
+		long hash = mix(id);
+		byte[] data = segmentFor(hash).getData(id, hash);
+		if (data != null) {
+			hitCount.increment();
+		} else {
+			missCount.increment();
+		}
+		return data;
+	}
+
+	/**
+	 * Gets the ID for the specified data.
+	 *
+	 * @return The ID of the data, or <tt>-1</tt> if it is not cached.
+	 */
+	public int getID(byte[] data) {
+		int dataHash = Arrays.hashCode(data);
+		long hash = mix(dataHash);
+
+		int[] candidates = segmentFor(hash).getCandidateIDs(dataHash, hash);
+		for (int id : candidates) {
+			if (id != 0) {
+				long idHash = mix(id);
+				if (segmentFor(idHash).containsData(id, idHash, data)) {
+					hitCount.increment();
+					return id;
+				}
+			}
+		}
+
+		missCount.increment();
+		return -1;
+	}
+
+	/**
+	 * Adds the specified data to the cache. Data that is larger than 1/16 of a segment is not cached.
+	 */
+	public void put(int id, byte[] data) {
+		if (id <= 0) {
+			throw new IllegalArgumentException("id must be larger than 0, is: " + id);
+		}
+
+		long idHash = mix(id);
+		if (segmentFor(idHash).putData(id, idHash, data)) {
+			int dataHash = Arrays.hashCode(data);
+			long hash = mix(dataHash);
+			segmentFor(hash).putID(dataHash, hash, id);
+		}
+	}
+
+	/**
+	 * Removes all data from the cache.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Releases the memory that is used by the cache. The cache can still be used afterwards, in which case new memory
+	 * is allocated.
+	 */
+	public void close() {
+		for (Segment segment : segments) {
+			segment.release();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups that were answered from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that could not be answered from the cache.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	private Segment segmentFor(long hash) {
+		return segments[(int) (hash >>> 40) & segmentMask];
+	}
+
+	private static long mix(int key) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		h ^= h >>> 32;
+		h *= 0xd6e8feb86659fd93L;
+		return h ^ (h >>> 32);
+	}
+
+	private static final class Segment {
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private final int size;
+
+		private final int bucketMask;
+
+		/**
+		 * The ring buffer with the cached entries, <tt>null</tt> until the first entry is added.
+		 */
+		private ByteBuffer entries;
+
+		/**
+		 * Maps IDs to the positions of their entries.
+		 */
+		private ByteBuffer idTable;
+
+		/**
+		 * Maps data hashes to IDs.
+		 */
+		private ByteBuffer hashTable;
+
+		/**
+		 * The total number of bytes that has been written to the ring buffer. Entries that start before
+		 * <tt>writePosition - size</tt> have been (partially) overwritten.
+		 */
+		private long writePosition;
+
+		Segment(int size) {
+			this.size = size;
+			int bucketCount = Integer.highestOneBit(Math.max(1, size / AVERAGE_ENTRY_SIZE / BUCKET_SIZE));
+			this.bucketMask = bucketCount - 1;
+		}
+
+		byte[] getData(int id, long hash) {
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				int offset = findEntry(id, hash);
+				if (offset < 0) {
+					return null;
+				}
+
+				byte[] data = new byte[entries.getInt(offset + 4)];
+				ByteBuffer buf = entries.duplicate();
+				buf.position(offset + ENTRY_HEADER_LENGTH);
+				buf.get(data);
+				return data;
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		boolean containsData(int id, long hash, byte[] data) {
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				int offset = findEntry(id, hash);
+				if (offset < 0 || entries.getInt(offset + 4) != data.length) {
+					return false;
+				}
+
+				int dataOffset = offset + ENTRY_HEADER_LENGTH;
+				for (int i = 0; i < data.length; i++) {
+					if (entries.get(dataOffset + i) != data[i]) {
+						return false;
+					}
+				}
+				return true;
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		int[] getCandidateIDs(int dataHash, long hash) {
+			int[] ids = new int[BUCKET_SIZE];
+
+			Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				if (hashTable != null) {
+					int bucketOffset = bucketOffset(hash, HASH_SLOT_LENGTH);
+					for (int i = 0; i < BUCKET_SIZE; i++) {
+						int slotOffset = bucketOffset + i * HASH_SLOT_LENGTH;
+						if (hashTable.getInt(slotOffset) == dataHash) {
+							ids[i] = hashTable.getInt(slotOffset + 4);
+						}
+					}
+				}
+			} finally {
+				readLock.unlock();
+			}
+
+			return ids;
+		}
+
+		/**
+		 * Adds an entry for the specified data.
+		 *
+		 * @return <tt>false</tt> if the data is too large to be cached.
+		 */
+		boolean putData(int id, long hash, byte[] data) {
+			int entryLength = ENTRY_HEADER_LENGTH + data.length;
+			if (entryLength > size / 16) {
+				return false;
+			}
+
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				allocate();
+
+				int offset = (int) (writePosition % size);
+				if (offset + entryLength > size) {
+					// entries do not wrap around, skip the remainder of the buffer
+					writePosition += size - offset;
+					offset = 0;
+				}
+
+				long position = writePosition;
+				entries.putInt(offset, id);
+				entries.putInt(offset + 4, data.length);
+				ByteBuffer buf = entries.duplicate();
+				buf.position(offset + ENTRY_HEADER_LENGTH);
+				buf.put(data);
+				writePosition += entryLength;
+
+				int bucketOffset = bucketOffset(hash, ID_SLOT_LENGTH);
+				int slot = findSlot(idTable, bucketOffset, ID_SLOT_LENGTH, id, 0);
+				if (slot < 0) {
+					slot = insertSlot(idTable, bucketOffset, ID_SLOT_LENGTH);
+					idTable.putInt(slot, id);
+				}
+				idTable.putLong(slot + 4, position);
+				return true;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void putID(int dataHash, long hash, int id) {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				allocate();
+
+				int bucketOffset = bucketOffset(hash, HASH_SLOT_LENGTH);
+				if (findSlot(hashTable, bucketOffset, HASH_SLOT_LENGTH, dataHash, id) < 0) {
+					int slot = insertSlot(hashTable, bucketOffset, HASH_SLOT_LENGTH);
+					hashTable.putInt(slot, dataHash);
+					hashTable.putInt(slot + 4, id);
+				}
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void clear() {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				if (entries != null) {
+					fill(idTable);
+					fill(hashTable);
+				}
+				writePosition = 0L;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		void release() {
+			Lock writeLock = lock.writeLock();
+			writeLock.lock();
+			try {
+				entries = null;
+				idTable = null;
+				hashTable = null;
+				writePosition = 0L;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+
+		private void allocate() {
+			if (entries == null) {
+				int bucketCount = bucketMask + 1;
+				entries = ByteBuffer.allocateDirect(size);
+				idTable = ByteBuffer.allocateDirect(bucketCount * BUCKET_SIZE * ID_SLOT_LENGTH);
+				hashTable = ByteBuffer.allocateDirect(bucketCount * BUCKET_SIZE * HASH_SLOT_LENGTH);
+			}
+		}
+
+		/**
+		 * Gets the offset of the intact entry for the specified ID in the ring buffer, or <tt>-1</tt> if there is
+		 * none.
+		 */
+		private int findEntry(int id, long hash) {
+			if (entries == null) {
+				return -1;
+			}
+
+			int slot = findSlot(idTable, bucketOffset(hash, ID_SLOT_LENGTH), ID_SLOT_LENGTH, id, 0);
+			if (slot < 0) {
+				return -1;
+			}
+
+			long position = idTable.getLong(slot + 4);
+			if (position + size < writePosition) {
+				// entry has been overwritten
+				return -1;
+			}
+
+			int offset = (int) (position % size);
+			return entries.getInt(offset) == id ? offset : -1;
+		}
+
+		private int bucketOffset(long hash, int slotLength) {
+			return ((int) hash & bucketMask) * BUCKET_SIZE * slotLength;
+		}
+
+		/**
+		 * Gets the offset of the slot in a bucket that starts with the specified key and, if the specified ID is not 0,
+		 * is followed by that ID. Returns <tt>-1</tt> if there is no such slot. Empty slots contain zeros only, which
+		 * never matches because IDs are larger than 0.
+		 */
+		private static int findSlot(ByteBuffer table, int bucketOffset, int slotLength, int key, int id) {
+			for (int i = 0; i < BUCKET_SIZE; i++) {
+				int slotOffset = bucketOffset + i * slotLength;
+				if (table.getInt(slotOffset) == key && (id == 0 || table.getInt(slotOffset + 4) == id)) {
+					return slotOffset;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Makes room for a new slot at the front of a bucket, dropping the last slot, and returns its offset.
+		 */
+		private static int insertSlot(ByteBuffer table, int bucketOffset, int slotLength) {
+			for (int i = (BUCKET_SIZE - 1) * slotLength - 1; i >= 0; i--) {
+				table.put(bucketOffset + slotLength + i, table.get(bucketOffset + i));
+			}
+			return bucketOffset;
+		}
+
+		private static void fill(ByteBuffer buffer) {
+			int limit = buffer.capacity();
+			int i = 0;
+			for (; i + 8 <= limit; i += 8) {
+				buffer.putLong(i, 0L);
+			}
+			for (; i < limit; i++) {
+				buffer.put(i, (byte) 0);
+			}
+		}
+	}
+}
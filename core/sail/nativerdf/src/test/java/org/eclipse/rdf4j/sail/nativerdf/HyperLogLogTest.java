@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HyperLogLog}.
+ */
+public class HyperLogLogTest {
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new HyperLogLog(8).estimate());
+	}
+
+	@Test
+	public void testSmallCardinalities() {
+		HyperLogLog sketch = new HyperLogLog(8);
+		for (int i = 1; i <= 20; i++) {
+			sketch.add(i);
+			// duplicates do not count
+			sketch.add(i);
+		}
+		assertEquals(20, sketch.estimate(), 2);
+	}
+
+	@Test
+	public void testLargeCardinalities() {
+		HyperLogLog sketch = new HyperLogLog(8);
+		int count = 1_000_000;
+		for (int i = 0; i < count; i++) {
+			sketch.add(i);
+		}
+		long estimate = sketch.estimate();
+		// four times the standard error of 6.5%
+		assertTrue("estimate: " + estimate, Math.abs(estimate - count) < count * 0.26);
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		HyperLogLog sketch = new HyperLogLog(8);
+		for (int i = 0; i < 5000; i++) {
+			sketch.add(i * 31);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.write(new DataOutputStream(bytes));
+
+		HyperLogLog copy = new HyperLogLog(8);
+		copy.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(sketch.estimate(), copy.estimate());
+
+		copy.clear();
+		assertEquals(0, copy.estimate());
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeBulkLoaderTest {
+
+	private static final int RESOURCE_COUNT = 1000;
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private File dataDir;
+
+	private NativeStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+		sail = new NativeStore(dataDir, "spoc,posc,cosp");
+		sail.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testCommit() throws Exception {
+		try (NativeBulkLoader loader = sail.createBulkLoader()) {
+			addStatements(loader);
+			loader.commit();
+		}
+
+		assertContents();
+
+		// the indexes are fully functional after reopening
+		sail.shutDown();
+		sail = new NativeStore(dataDir, "spoc,posc,cosp");
+		sail.init();
+		assertContents();
+
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.removeStatements(null, RDF.TYPE, null);
+			con.commit();
+			assertEquals(RESOURCE_COUNT, con.size());
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		try (NativeBulkLoader loader = sail.createBulkLoader()) {
+			addStatements(loader);
+		}
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(0, con.size());
+			assertFalse(con.getContextIDs().hasNext());
+		}
+
+		// a new bulk load can be started after the previous one was discarded
+		try (NativeBulkLoader loader = sail.createBulkLoader()) {
+			loader.add(RDFS.CLASS, RDF.TYPE, RDFS.CLASS);
+			loader.commit();
+		}
+
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(1, con.size());
+		}
+	}
+
+	@Test(expected = SailException.class)
+	public void testNonEmptyStore() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(RDFS.CLASS, RDF.TYPE, RDFS.CLASS);
+			con.commit();
+		}
+
+		sail.createBulkLoader();
+	}
+
+	private void addStatements(NativeBulkLoader loader) throws Exception {
+		for (int i = 0; i < RESOURCE_COUNT; i++) {
+			IRI subj = vf.createIRI("urn:resource:" + i);
+			loader.add(subj, RDF.TYPE, RDFS.RESOURCE);
+			// duplicates are removed
+			loader.add(vf.createStatement(subj, RDF.TYPE, RDFS.RESOURCE));
+			loader.add(subj, RDFS.LABEL, vf.createLiteral("resource " + i), ctx);
+		}
+	}
+
+	private void assertContents() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(2 * RESOURCE_COUNT, con.size());
+			assertEquals(RESOURCE_COUNT, con.size(ctx));
+			assertTrue(con.hasStatement(vf.createIRI("urn:resource:42"), RDFS.LABEL, vf.createLiteral("resource 42"),
+					false, ctx));
+			assertTrue(con.getContextIDs().hasNext());
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the cardinalities that {@link NativeEvaluationStatistics} derives from the {@link PredicateStatistics}.
+ */
+public class NativeEvaluationStatisticsTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI common = vf.createIRI("urn:class:common");
+
+	private final IRI rare = vf.createIRI("urn:class:rare");
+
+	private File dataDir;
+
+	private NativeStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+		sail = createSail();
+
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 2000; i++) {
+				con.addStatement(resource(i), RDF.TYPE, common);
+				con.addStatement(resource(i), RDFS.LABEL, vf.createLiteral("label " + (i % 100)));
+			}
+			for (int i = 0; i < 10; i++) {
+				con.addStatement(resource(i), RDF.TYPE, rare);
+			}
+			con.commit();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testCardinalities() throws Exception {
+		assertCardinalities();
+	}
+
+	@Test
+	public void testStatisticsArePersisted() throws Exception {
+		sail.shutDown();
+		assertTrue(new File(dataDir, PredicateStatistics.FILE_NAME).isFile());
+
+		sail = createSail();
+		assertCardinalities();
+	}
+
+	@Test
+	public void testStatisticsAreWrittenOnClose() throws Exception {
+		File file = new File(dataDir, PredicateStatistics.FILE_NAME);
+		byte[] committed = Files.readAllBytes(file.toPath());
+
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(resource(5000), RDF.TYPE, rare);
+			con.commit();
+		}
+		// commits do not rewrite the file, the first one after a sync only marks it as outdated
+		assertEquals(1, committed[4]);
+		assertArrayEquals(committed, Files.readAllBytes(file.toPath()));
+
+		sail.shutDown();
+		byte[] written = Files.readAllBytes(file.toPath());
+		assertEquals(0, written[4]);
+		assertFalse(Arrays.equals(committed, written));
+		assertFalse(new File(dataDir, PredicateStatistics.SYNC_FILE_NAME).exists());
+
+		sail = createSail();
+		assertEquals(11, cardinality(null, RDF.TYPE, rare), 0);
+	}
+
+	@Test
+	public void testOutdatedStatisticsAreRebuilt() throws Exception {
+		File file = new File(dataDir, PredicateStatistics.FILE_NAME);
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(resource(5000), RDF.TYPE, rare);
+			con.commit();
+		}
+		byte[] outdated = Files.readAllBytes(file.toPath());
+		sail.shutDown();
+
+		// simulate a crash after the commit
+		Files.write(file.toPath(), outdated);
+
+		sail = createSail();
+		assertEquals(11, cardinality(null, RDF.TYPE, rare), 0);
+	}
+
+	@Test
+	public void testStatisticsAreRebuilt() throws Exception {
+		sail.shutDown();
+		assertTrue(new File(dataDir, PredicateStatistics.FILE_NAME).delete());
+
+		sail = createSail();
+		assertCardinalities();
+	}
+
+	@Test
+	public void testRemovedStatements() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 500; i++) {
+				con.removeStatements(resource(i), RDF.TYPE, common);
+			}
+			// added and removed in the same transaction
+			con.addStatement(resource(5000), RDF.TYPE, common);
+			con.removeStatements(resource(5000), RDF.TYPE, common);
+			con.commit();
+		}
+
+		assertEquals(1510, cardinality(null, RDF.TYPE, null), 0);
+		assertEquals(1500, cardinality(null, RDF.TYPE, common), 0);
+		assertEquals(10, cardinality(null, RDF.TYPE, rare), 0);
+	}
+
+	private void assertCardinalities() {
+		assertEquals(2010, cardinality(null, RDF.TYPE, null), 0);
+		assertEquals(2000, cardinality(null, RDF.TYPE, common), 0);
+		assertEquals(10, cardinality(null, RDF.TYPE, rare), 0);
+		assertEquals(2000, cardinality(null, RDFS.LABEL, null), 0);
+
+		// 100 distinct labels, so about 20 subjects per label
+		double perLabel = cardinality(null, RDFS.LABEL, vf.createLiteral("label 1"));
+		assertTrue("cardinality: " + perLabel, perLabel > 15 && perLabel < 25);
+		// 2000 distinct subjects, so about 1 label per subject
+		double perSubject = cardinality(resource(1), RDFS.LABEL, null);
+		assertTrue("cardinality: " + perSubject, perSubject > 0.8 && perSubject < 1.25);
+
+		assertEquals(0, cardinality(null, RDFS.COMMENT, null), 0);
+	}
+
+	private double cardinality(Value subj, IRI pred, Value obj) {
+		StatementPattern pattern = new StatementPattern(var("s", subj), var("p", pred), var("o", obj));
+		return sail.getSailStore().getEvaluationStatistics().getCardinality(pattern);
+	}
+
+	private Var var(String name, Value value) {
+		return value == null ? new Var(name) : new Var(name, value);
+	}
+
+	private NativeStore createSail() {
+		NativeStore sail = new NativeStore(dataDir);
+		sail.init();
+		return sail;
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.base.SailDataset;
+import org.eclipse.rdf4j.sail.base.SailSink;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the lookup of the statements of several patterns at once in a {@link NativeSailStore}.
+ */
+public class NativeSailStoreLookupTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final ValueFactory F = SimpleValueFactory.getInstance();
+
+	private final IRI CTX_1 = F.createIRI("urn:one");
+
+	private final Statement S0 = F.createStatement(F.createIRI("http://example.org/0"), RDFS.LABEL,
+			F.createLiteral("zero"));
+
+	private final Statement S1 = F.createStatement(F.createIRI("http://example.org/1"), RDFS.LABEL,
+			F.createLiteral("one"), CTX_1);
+
+	private final Statement S2 = F.createStatement(F.createIRI("http://example.org/2"), RDFS.LABEL,
+			F.createLiteral("two"));
+
+	private NativeSailStore store;
+
+	@Before
+	public void before() throws Exception {
+		store = new NativeSailStore(tempFolder.newFolder("dbmodel"), "spoc,posc");
+
+		SailSink sink = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+		try {
+			for (Statement st : Arrays.asList(S0, S1, S2)) {
+				sink.approve(st);
+			}
+			sink.flush();
+		} finally {
+			sink.close();
+		}
+	}
+
+	@After
+	public void after() throws Exception {
+		store.close();
+	}
+
+	@Test
+	public void testSubjectLookups() throws Exception {
+		List<Value[]> lookups = new ArrayList<>();
+		lookups.add(new Value[] { S2.getSubject(), RDFS.LABEL, null });
+		lookups.add(new Value[] { S0.getSubject(), null, null });
+		lookups.add(new Value[] { F.createIRI("http://example.org/unknown"), RDFS.LABEL, null });
+
+		assertEquals(new HashSet<>(Arrays.asList(S0, S2)), getStatements(lookups));
+	}
+
+	@Test
+	public void testObjectLookups() throws Exception {
+		List<Value[]> lookups = new ArrayList<>();
+		lookups.add(new Value[] { null, RDFS.LABEL, F.createLiteral("two") });
+		lookups.add(new Value[] { null, RDFS.LABEL, F.createLiteral("one") });
+
+		assertEquals(new HashSet<>(Arrays.asList(S1, S2)), getStatements(lookups));
+	}
+
+	@Test
+	public void testContexts() throws Exception {
+		List<Value[]> lookups = new ArrayList<>();
+		lookups.add(new Value[] { S0.getSubject(), null, null });
+		lookups.add(new Value[] { S1.getSubject(), null, null });
+
+		assertEquals(new HashSet<>(Arrays.asList(S1)), getStatements(lookups, CTX_1));
+		assertEquals(new HashSet<>(Arrays.asList(S0)), getStatements(lookups, (Resource) null));
+		assertEquals(new HashSet<>(), getStatements(lookups, F.createIRI("urn:unknown")));
+	}
+
+	@Test
+	public void testSupportsBatchLookups() throws Exception {
+		SailDataset dataset = store.getExplicitSailSource().dataset(IsolationLevels.NONE);
+		try {
+			assertTrue(dataset.supportsBatchLookups());
+		} finally {
+			dataset.close();
+		}
+	}
+
+	private Set<Statement> getStatements(List<Value[]> lookups, Resource... contexts) throws SailException {
+		SailDataset dataset = store.getExplicitSailSource().dataset(IsolationLevels.NONE);
+		try {
+			CloseableIteration<? extends Statement, SailException> statements = dataset
+					.getStatementsForLookups(lookups, contexts);
+			return Iterations.asSet(statements);
+		} finally {
+			dataset.close();
+		}
+	}
+}
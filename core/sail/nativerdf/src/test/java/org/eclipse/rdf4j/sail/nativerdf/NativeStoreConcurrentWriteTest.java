@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.IsolationLevel;
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NativeStore} transactions that add statements concurrently and in large batches.
+ */
+public class NativeStoreConcurrentWriteTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private File dataDir;
+
+	private NativeStore sail;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+		sail = new NativeStore(dataDir, "spoc,posc,cosp");
+		sail.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sail.shutDown();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testLargeTransaction() throws Exception {
+		int count = 10_000;
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			for (int i = 0; i < count; i++) {
+				con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE, ctx);
+				// duplicates within the same batch
+				con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE, ctx);
+			}
+			con.commit();
+
+			assertEquals(count, con.size());
+			assertEquals(count, con.size(ctx));
+			assertTrue(con.hasStatement(resource(count - 1), RDF.TYPE, RDFS.RESOURCE, false, ctx));
+			assertEquals(count, count(con, null));
+		}
+	}
+
+	@Test
+	public void testReadOwnStagedStatements() throws Exception {
+		try (SailConnection con = sail.getConnection()) {
+			con.begin(IsolationLevels.NONE);
+			con.addStatement(resource(0), RDF.TYPE, RDFS.RESOURCE, ctx);
+			con.addStatement(resource(1), RDFS.LABEL, vf.createLiteral("label"));
+			assertTrue(con.hasStatement(resource(1), RDFS.LABEL, null, false));
+			assertEquals(2, con.size());
+
+			con.removeStatements(resource(0), null, null);
+			con.addStatement(resource(2), RDFS.LABEL, vf.createLiteral("label"), ctx);
+			con.commit();
+
+			assertFalse(con.hasStatement(resource(0), null, null, false));
+			assertEquals(2, con.size());
+			assertEquals(1, con.size(ctx));
+		}
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		testConcurrentWriters(IsolationLevels.NONE);
+	}
+
+	@Test
+	public void testConcurrentIsolatedWriters() throws Exception {
+		testConcurrentWriters(IsolationLevels.SNAPSHOT_READ);
+	}
+
+	private void testConcurrentWriters(IsolationLevel isolationLevel) throws Exception {
+		int threadCount = 4;
+		int statementCount = 5_000;
+		List<Thread> threads = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			IRI type = vf.createIRI("urn:type:" + t);
+			threads.add(new Thread(() -> {
+				try (SailConnection con = sail.getConnection()) {
+					con.begin(isolationLevel);
+					for (int i = 0; i < statementCount; i++) {
+						con.addStatement(resource(i), RDF.TYPE, type, ctx);
+					}
+					con.commit();
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(threadCount * statementCount, con.size());
+			assertEquals(threadCount * statementCount, con.size(ctx));
+			for (int t = 0; t < threadCount; t++) {
+				assertEquals(statementCount, count(con, vf.createIRI("urn:type:" + t)));
+			}
+		}
+	}
+
+	private int count(SailConnection con, IRI type) {
+		return Iterations.asList(con.getStatements(null, RDF.TYPE, type, false)).size();
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for a {@link NativeStore} with <tt>forceSync</tt> enabled, which uses a {@link WriteAheadLog}.
+ */
+public class NativeStoreWriteAheadLogTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI ctx = vf.createIRI("urn:ctx");
+
+	private File dataDir;
+
+	private File checkpointDir;
+
+	private File recoveryDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+		checkpointDir = FileUtil.createTempDir("nativestore");
+		recoveryDir = FileUtil.createTempDir("nativestore");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtil.deleteDir(dataDir);
+		FileUtil.deleteDir(checkpointDir);
+		FileUtil.deleteDir(recoveryDir);
+	}
+
+	@Test
+	public void testReplayLog() throws Exception {
+		NativeStore sail = createSail(dataDir);
+		try (SailConnection con = sail.getConnection()) {
+			for (int i = 0; i < 5; i++) {
+				addResource(con, i);
+			}
+		} finally {
+			sail.shutDown();
+		}
+
+		// the store files are in their checkpointed state after a clean shutdown
+		copyFiles(dataDir, checkpointDir);
+
+		sail = createSail(dataDir);
+		try (SailConnection con = sail.getConnection()) {
+			for (int i = 5; i < 10; i++) {
+				addResource(con, i);
+			}
+			con.begin();
+			con.removeStatements(resource(0), RDFS.LABEL, null);
+			con.commit();
+
+			// simulate a crash, the changes have been written to the store files in place without forcing them
+			copyFiles(dataDir, recoveryDir);
+		} finally {
+			sail.shutDown();
+		}
+
+		// the log is empty after a clean shutdown
+		try (WriteAheadLog log = new WriteAheadLog(dataDir)) {
+			assertTrue(log.isEmpty());
+		}
+
+		// the same log, replayed onto the files as they were forced at the checkpoint
+		Files.copy(new File(recoveryDir, WriteAheadLog.FILE_NAME).toPath(),
+				new File(checkpointDir, WriteAheadLog.FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		// restore the files that have been changed in place and replay the log
+		assertRecovered(recoveryDir);
+		assertRecovered(checkpointDir);
+	}
+
+	@Test
+	public void testConcurrentCommits() throws Exception {
+		NativeStore sail = createSail(dataDir);
+		try {
+			int threadCount = 4;
+			int commitCount = 25;
+			List<Thread> threads = new ArrayList<>();
+			List<Throwable> errors = new ArrayList<>();
+			for (int t = 0; t < threadCount; t++) {
+				int threadID = t;
+				threads.add(new Thread(() -> {
+					try (SailConnection con = sail.getConnection()) {
+						for (int i = 0; i < commitCount; i++) {
+							con.begin();
+							con.addStatement(resource(threadID * commitCount + i), RDF.TYPE, RDFS.RESOURCE);
+							con.commit();
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}));
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			assertTrue(errors.toString(), errors.isEmpty());
+			try (SailConnection con = sail.getConnection()) {
+				assertEquals(threadCount * commitCount, con.size());
+			}
+		} finally {
+			sail.shutDown();
+		}
+	}
+
+	private void addResource(SailConnection con, int i) {
+		con.begin();
+		con.addStatement(resource(i), RDF.TYPE, RDFS.RESOURCE, ctx);
+		con.addStatement(resource(i), RDFS.LABEL, vf.createLiteral("label " + i));
+		con.commit();
+	}
+
+	/**
+	 * Copies the store files, without the lock directory, as if the store had crashed.
+	 */
+	private void copyFiles(File fromDir, File toDir) throws IOException {
+		for (File file : fromDir.listFiles()) {
+			if (file.isFile()) {
+				Files.copy(file.toPath(), new File(toDir, file.getName()).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private void assertRecovered(File dir) {
+		NativeStore sail = createSail(dir);
+		try {
+			assertContents(sail);
+		} finally {
+			sail.shutDown();
+		}
+
+		// the recovery has been checkpointed
+		try (WriteAheadLog log = new WriteAheadLog(dir)) {
+			assertTrue(log.isEmpty());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		sail = createSail(dir);
+		try {
+			assertContents(sail);
+		} finally {
+			sail.shutDown();
+		}
+	}
+
+	private void assertContents(NativeStore sail) {
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(19, con.size());
+			assertEquals(10, con.size(ctx));
+			assertTrue(con.hasStatement(resource(9), RDFS.LABEL, vf.createLiteral("label 9"), false));
+			assertEquals(1, Iterations.asList(con.getContextIDs()).size());
+		}
+	}
+
+	private NativeStore createSail(File dir) {
+		NativeStore sail = new NativeStore(dir, "spoc,posc");
+		sail.setForceSync(true);
+		sail.init();
+		return sail;
+	}
+
+	private IRI resource(int i) {
+		return vf.createIRI("urn:resource:" + i);
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link TripleStore#storeTriples(int[], int, boolean)}, which updates the indexes in parallel for large
+ * batches, leaves every index in the same state as storing the triples one by one.
+ */
+public class TripleStoreBatchTest {
+
+	private static final String INDEXES = "spoc,posc,opsc,cspo";
+
+	private static final int TRIPLE_COUNT = 5_000;
+
+	private File batchDir;
+
+	private File singleDir;
+
+	private TripleStore batchStore;
+
+	private TripleStore singleStore;
+
+	@Before
+	public void setUp() throws Exception {
+		batchDir = FileUtil.createTempDir("nativestore");
+		singleDir = FileUtil.createTempDir("nativestore");
+		batchStore = new TripleStore(batchDir, INDEXES);
+		singleStore = new TripleStore(singleDir, INDEXES);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try {
+			batchStore.close();
+			singleStore.close();
+		} finally {
+			FileUtil.deleteDir(batchDir);
+			FileUtil.deleteDir(singleDir);
+		}
+	}
+
+	@Test
+	public void testBatchesMatchSingleUpdates() throws Exception {
+		// committed triples, half of them inferred
+		startTransaction();
+		store(triples(0, 1_000), false);
+		store(triples(1_000, 2_000), true);
+		commit();
+
+		startTransaction();
+		// removed and added again in a batch
+		for (int i = 1_500; i < 1_600; i++) {
+			int[] triple = triple(i);
+			assertEquals(singleStore.removeTriplesByContext(triple[0], triple[1], triple[2], triple[3], true),
+					batchStore.removeTriplesByContext(triple[0], triple[1], triple[2], triple[3], true));
+		}
+		// existing inferred and explicit triples, new triples and duplicates within the batch
+		int[] batch = concat(triples(500, TRIPLE_COUNT), triples(3_000, 3_500));
+		store(batch, true);
+		assertIndexesMatch(true);
+		commit();
+
+		assertIndexesMatch(false);
+		assertEquals(TRIPLE_COUNT, count(batchStore, -1, -1, -1, -1));
+		assertTrue("index updates did not run in parallel", hasIndexUpdateThread());
+	}
+
+	@Test
+	public void testRollback() throws Exception {
+		startTransaction();
+		store(triples(0, 1_000), true);
+		commit();
+
+		batchStore.startTransaction();
+		batchStore.storeTriples(triples(500, TRIPLE_COUNT), TRIPLE_COUNT - 500, true);
+		batchStore.rollback();
+
+		assertIndexesMatch(false);
+		assertEquals(1_000, count(batchStore, -1, -1, -1, -1));
+	}
+
+	private void startTransaction() throws Exception {
+		batchStore.startTransaction();
+		singleStore.startTransaction();
+	}
+
+	private void commit() throws Exception {
+		batchStore.commit();
+		singleStore.commit();
+	}
+
+	private void store(int[] ids, boolean explicit) throws Exception {
+		int count = ids.length / 4;
+		boolean[] added = batchStore.storeTriples(ids, count, explicit);
+		for (int i = 0; i < count; i++) {
+			boolean singleAdded = singleStore.storeTriple(ids[4 * i], ids[4 * i + 1], ids[4 * i + 2], ids[4 * i + 3],
+					explicit);
+			assertEquals("triple " + i, singleAdded, added[i]);
+		}
+	}
+
+	/**
+	 * Compares the records of both stores, including their flags, with patterns that are answered by each of the
+	 * indexes.
+	 */
+	private void assertIndexesMatch(boolean readTransaction) throws Exception {
+		for (int i = 0; i < TRIPLE_COUNT; i++) {
+			int[] triple = triple(i);
+			assertRecordsMatch(triple[0], -1, -1, -1, readTransaction);
+			assertRecordsMatch(-1, -1, triple[2], -1, readTransaction);
+		}
+		for (int pred = 1; pred <= 3; pred++) {
+			assertRecordsMatch(-1, pred, -1, -1, readTransaction);
+		}
+		for (int context = 0; context < 5; context++) {
+			assertRecordsMatch(-1, -1, -1, context, readTransaction);
+		}
+	}
+
+	private void assertRecordsMatch(int subj, int pred, int obj, int context, boolean readTransaction)
+			throws Exception {
+		List<byte[]> expected = records(singleStore, subj, pred, obj, context, readTransaction);
+		List<byte[]> actual = records(batchStore, subj, pred, obj, context, readTransaction);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+	private List<byte[]> records(TripleStore tripleStore, int subj, int pred, int obj, int context,
+			boolean readTransaction) throws Exception {
+		List<byte[]> records = new ArrayList<>();
+		try (RecordIterator iter = tripleStore.getTriples(subj, pred, obj, context, readTransaction)) {
+			byte[] data;
+			while ((data = iter.next()) != null) {
+				records.add(data.clone());
+			}
+		}
+		return records;
+	}
+
+	private int count(TripleStore tripleStore, int subj, int pred, int obj, int context) throws Exception {
+		return records(tripleStore, subj, pred, obj, context, false).size();
+	}
+
+	private boolean hasIndexUpdateThread() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("rdf4j-nativestore-index-update")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] triples(int from, int to) {
+		int[] ids = new int[4 * (to - from)];
+		for (int i = from; i < to; i++) {
+			System.arraycopy(triple(i), 0, ids, 4 * (i - from), 4);
+		}
+		return ids;
+	}
+
+	private static int[] triple(int i) {
+		return new int[] { 1_000_000 + i, 1 + i % 3, 2_000_000 + i, i % 5 };
+	}
+
+	private static int[] concat(int[] a, int[] b) {
+		int[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+}
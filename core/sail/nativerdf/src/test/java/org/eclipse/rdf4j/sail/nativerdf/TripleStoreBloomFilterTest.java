@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Bloom filters of the {@link TripleStore} indexes.
+ */
+public class TripleStoreBloomFilterTest {
+
+	private static final int SUBJECT_COUNT = 50_000;
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testLookupsAfterGrowthAndReopen() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			// more subjects than the initial capacity of the filters
+			tripleStore.startTransaction();
+			for (int subj = 1; subj <= SUBJECT_COUNT; subj++) {
+				tripleStore.storeTriple(subj, 1, subj + 1, 0);
+			}
+			tripleStore.commit();
+
+			verifyTriples(tripleStore);
+		} finally {
+			tripleStore.close();
+		}
+
+		assertTrue(new File(dataDir, "triples-spoc.bloom").exists());
+
+		// reopen with persisted filters
+		tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			verifyTriples(tripleStore);
+		} finally {
+			tripleStore.close();
+		}
+
+		// reopen with a missing filter, which is rebuilt from the index
+		assertTrue(new File(dataDir, "triples-spoc.bloom").delete());
+		tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			verifyTriples(tripleStore);
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testEverySubjectIsFoundAfterGrowth() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			// the filters are rebuilt while the triples are stored
+			tripleStore.startTransaction();
+			for (int subj = 1; subj <= SUBJECT_COUNT; subj++) {
+				tripleStore.storeTriple(subj, 1, subj + 1, 0);
+			}
+			tripleStore.commit();
+
+			for (int subj = 1; subj <= SUBJECT_COUNT; subj++) {
+				assertEquals(1, count(tripleStore, subj, -1, -1, -1));
+			}
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testEverySubjectIsFoundAfterBatchGrowth() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			// each index is updated in one go, large batches concurrently
+			tripleStore.startTransaction();
+			int batchSize = 4096;
+			int[] ids = new int[4 * batchSize];
+			for (int first = 1; first <= SUBJECT_COUNT; first += batchSize) {
+				int count = Math.min(batchSize, SUBJECT_COUNT - first + 1);
+				for (int i = 0; i < count; i++) {
+					ids[4 * i] = first + i;
+					ids[4 * i + 1] = 1;
+					ids[4 * i + 2] = first + i + 1;
+					ids[4 * i + 3] = 0;
+				}
+				tripleStore.storeTriples(ids, count, true);
+			}
+			tripleStore.commit();
+
+			for (int subj = 1; subj <= SUBJECT_COUNT; subj++) {
+				assertEquals(1, count(tripleStore, subj, -1, -1, -1));
+			}
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testFilterFileIsDeletedOnChange() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(1, 2, 3, 0);
+			tripleStore.commit();
+			assertTrue(new File(dataDir, "triples-spoc.bloom").exists());
+
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(4, 5, 6, 0);
+
+			// an outdated filter must not survive a crash
+			assertFalse(new File(dataDir, "triples-spoc.bloom").exists());
+
+			tripleStore.commit();
+			assertEquals(1, count(tripleStore, 4, -1, -1, -1));
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(1, 2, 3, 0);
+			tripleStore.commit();
+
+			tripleStore.clear();
+
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(4, 5, 6, 0);
+			tripleStore.commit();
+
+			assertEquals(0, count(tripleStore, 1, -1, -1, -1));
+			assertEquals(1, count(tripleStore, 4, -1, -1, -1));
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	private void verifyTriples(TripleStore tripleStore) throws Exception {
+		for (int subj = 1; subj <= SUBJECT_COUNT; subj += 97) {
+			assertEquals(1, count(tripleStore, subj, -1, -1, -1));
+			assertEquals(1, count(tripleStore, -1, 1, subj + 1, -1));
+		}
+
+		// subjects and objects that do not occur in the indexes
+		for (int id = SUBJECT_COUNT + 2; id < SUBJECT_COUNT + 1000; id++) {
+			assertEquals(0, count(tripleStore, id, -1, -1, -1));
+			assertEquals(0, count(tripleStore, -1, 2, id, -1));
+		}
+		assertEquals(0.0, tripleStore.cardinality(SUBJECT_COUNT + 5, -1, -1, -1), 0.0);
+	}
+
+	private int count(TripleStore tripleStore, int subj, int pred, int obj, int context) throws Exception {
+		int count = 0;
+		try (RecordIterator iter = tripleStore.getTriples(subj, pred, obj, context)) {
+			while (iter.next() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.BTree;
+import org.eclipse.rdf4j.sail.nativerdf.btree.DefaultRecordComparator;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the conversion of the triple indexes of version 10 stores to the compressed node format.
+ */
+public class TripleStoreUpgradeTest {
+
+	private static final int TRIPLE_COUNT = 1000;
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtil.deleteDir(dataDir);
+		dataDir = null;
+	}
+
+	@Test
+	public void testUpgradeUncompressedIndex() throws Exception {
+		createVersion10Store();
+
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			assertTripleCount(tripleStore.getTriples(-1, -1, -1, -1), TRIPLE_COUNT);
+			assertTripleCount(tripleStore.getTriples(-1, 1, 7, -1), TRIPLE_COUNT / 100);
+		} finally {
+			tripleStore.close();
+		}
+
+		assertFalse(new File(dataDir, "triples-spoc-upgrade.dat").exists());
+
+		BTree btree = new BTree(dataDir, "triples-spoc", 2048, TripleStore.RECORD_LENGTH,
+				new DefaultRecordComparator(), false);
+		try {
+			assertTrue(btree.isCompressed());
+		} finally {
+			btree.close();
+		}
+	}
+
+	private void createVersion10Store() throws Exception {
+		// for positive IDs, the byte order of spoc records equals the order of the spoc index
+		BTree btree = new BTree(dataDir, "triples-spoc", 2048, TripleStore.RECORD_LENGTH,
+				new DefaultRecordComparator(), false);
+		try {
+			for (int i = 1; i <= TRIPLE_COUNT; i++) {
+				byte[] record = new byte[TripleStore.RECORD_LENGTH];
+				ByteArrayUtil.putInt(i, record, TripleStore.SUBJ_IDX);
+				ByteArrayUtil.putInt(1, record, TripleStore.PRED_IDX);
+				ByteArrayUtil.putInt(i % 100, record, TripleStore.OBJ_IDX);
+				record[TripleStore.FLAG_IDX] = TripleStore.EXPLICIT_FLAG;
+				btree.insert(record);
+			}
+		} finally {
+			btree.close();
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("version", "10");
+		properties.setProperty("triple-indexes", "spoc");
+		try (OutputStream out = new FileOutputStream(new File(dataDir, "triples.prop"))) {
+			properties.store(out, null);
+		}
+	}
+
+	private void assertTripleCount(RecordIterator iter, int expected) throws Exception {
+		try {
+			int count = 0;
+			while (iter.next() != null) {
+				count++;
+			}
+			assertEquals(expected, count);
+		} finally {
+			iter.close();
+		}
+	}
+}
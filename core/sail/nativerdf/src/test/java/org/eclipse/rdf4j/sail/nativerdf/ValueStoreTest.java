@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.sail.nativerdf.datastore.OffHeapDataCache;
+import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ValueStore} with an off-heap value cache.
+ */
+public class ValueStoreTest {
+
+	private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private File dataDir;
+
+	private ValueStore valueStore;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("valuestore");
+		valueStore = createValueStore();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		valueStore.close();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testStoreAndRetrieveValues() throws Exception {
+		int count = 5000;
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = valueStore.storeValue(value(i));
+		}
+
+		for (int i = 0; i < count; i++) {
+			// values are read back through the off-heap cache, as the on-heap caches are small
+			assertEquals(value(i), valueStore.getValue(ids[i]));
+			assertEquals(ids[i], valueStore.getID(value(i)));
+			assertEquals(ids[i], valueStore.storeValue(value(i)));
+		}
+
+		// reopen without cache contents
+		valueStore.sync();
+		valueStore.close();
+		valueStore = createValueStore();
+
+		for (int i = 0; i < count; i++) {
+			assertEquals(value(i), valueStore.getValue(ids[i]));
+			assertEquals(ids[i], valueStore.getID(value(i)));
+		}
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		int id = valueStore.storeValue(value(1));
+		assertEquals(value(1), valueStore.getValue(id));
+
+		valueStore.clear();
+
+		assertEquals(NativeValue.UNKNOWN_ID, valueStore.getID(value(1)));
+		int newID = valueStore.storeValue(value(2));
+		assertEquals(value(2), valueStore.getValue(newID));
+		assertNotEquals(NativeValue.UNKNOWN_ID, valueStore.getID(value(2)));
+	}
+
+	@Test
+	public void testGetValues() throws Exception {
+		valueStore.close();
+		// without off-heap cache, uncached values are read from the data file in batches
+		valueStore = new ValueStore(dataDir, false, 16, 16, 16, 16);
+
+		int count = 3000;
+		int[] ids = new int[count + 4];
+		for (int i = 0; i < count; i++) {
+			ids[i] = valueStore.storeValue(value(i));
+		}
+		StringBuilder longLabel = new StringBuilder();
+		while (longLabel.length() < 100_000) {
+			longLabel.append("long literal ");
+		}
+		ids[count] = valueStore.storeValue(vf.createLiteral(longLabel.toString()));
+		// duplicates, the null context and an unknown ID
+		ids[count + 1] = ids[7];
+		ids[count + 2] = 0;
+		ids[count + 3] = valueStore.getMaxID() + 1;
+		valueStore.sync();
+
+		// reverse the order to read the values in another order than they are stored
+		int[] reversed = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			reversed[i] = ids[ids.length - 1 - i];
+		}
+
+		NativeValue[] values = valueStore.getValues(reversed, reversed.length);
+		assertEquals(reversed.length, values.length);
+		assertNull(values[0]);
+		assertNull(values[1]);
+		assertEquals(value(7), values[2]);
+		assertEquals(longLabel.toString(), values[3].stringValue());
+		for (int i = 0; i < count; i++) {
+			assertEquals(value(i), values[values.length - 1 - i]);
+		}
+
+		// only a part of the IDs
+		values = valueStore.getValues(ids, 2);
+		assertEquals(2, values.length);
+		assertEquals(value(1), values[1]);
+	}
+
+	private ValueStore createValueStore() throws Exception {
+		return new ValueStore(dataDir, false, 16, 16, 16, 16, OffHeapDataCache.MIN_CAPACITY);
+	}
+
+	private static Value value(int i) {
+		return i % 2 == 0 ? vf.createIRI("http://example.org/resource/" + i) : vf.createLiteral("literal " + i);
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WTinyLfuCache}.
+ */
+public class WTinyLfuCacheTest {
+
+	@Test
+	public void testSizeIsBounded() {
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(100);
+
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(i, "v" + i);
+		}
+
+		assertTrue(cache.size() <= 100);
+	}
+
+	@Test
+	public void testSizeIsBoundedWithConcurrentWriters() throws Exception {
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(100);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t * 100_000;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					cache.put(offset + i, "v" + i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// an entry that is added to the map while the policy evicts it would never be evicted
+		assertTrue(cache.size() <= 100);
+	}
+
+	@Test
+	public void testHitAndMissCounts() {
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(10);
+		cache.put(1, "one");
+
+		assertEquals("one", cache.get(1));
+		assertEquals("one", cache.get(1));
+		assertNull(cache.get(2));
+
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testFrequentEntriesSurviveScan() {
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(200);
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "hot" + i);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 100; i++) {
+				assertNotNull(cache.get(i));
+			}
+		}
+
+		// a scan over many values that are used only once, while the hot values are still in use
+		for (int i = 1000; i < 100_000; i++) {
+			cache.put(i, "cold" + i);
+			if (i % 1000 == 0) {
+				for (int j = 0; j < 100; j++) {
+					cache.get(j);
+				}
+			}
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals("hot" + i, cache.get(i));
+		}
+		assertTrue(cache.size() <= 200);
+	}
+
+	@Test
+	public void testRemovalVeto() {
+		Set<Integer> pinned = new HashSet<>();
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<Integer, String>(10) {
+
+			@Override
+			protected boolean onEntryRemoval(Integer key) {
+				return !pinned.contains(key);
+			}
+		};
+
+		pinned.add(0);
+		cache.put(0, "pinned");
+		for (int i = 1; i < 1000; i++) {
+			cache.put(i, "v" + i);
+		}
+
+		assertEquals("pinned", cache.get(0));
+		assertTrue(cache.size() <= 10);
+	}
+
+	@Test
+	public void testClear() {
+		WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(10);
+		for (int i = 0; i < 20; i++) {
+			cache.put(i, "v" + i);
+		}
+
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		cache.put(1, "one");
+		assertEquals("one", cache.get(1));
+	}
+}
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.common.io.NioFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WriteAheadLog}.
+ */
+public class WriteAheadLogTest {
+
+	private File dataDir;
+
+	private WriteAheadLog log;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("wal");
+		log = new WriteAheadLog(dataDir);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		log.close();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testReplayCommittedTransactions() throws Exception {
+		assertTrue(log.isEmpty());
+
+		log.appendValue(1, new byte[] { 1, 2, 3 });
+		log.appendTriple(triple(1), false);
+		log.commit();
+		log.appendTriple(triple(2), true);
+		log.commit();
+		// never committed
+		log.appendTriple(triple(3), false);
+
+		reopen();
+		assertFalse(log.isEmpty());
+
+		List<String> changes = replay();
+		assertEquals(3, changes.size());
+		assertEquals("value 1 [1, 2, 3]", changes.get(0));
+		assertEquals("added 1", changes.get(1));
+		assertEquals("removed 2", changes.get(2));
+
+		// the uncommitted transaction has been aborted when the log was opened
+		reopen();
+		assertEquals(3, replay().size());
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+		log.appendTriple(triple(1), false);
+		log.abort();
+		log.appendTriple(triple(2), false);
+		log.commit();
+
+		reopen();
+		List<String> changes = replay();
+		assertEquals(1, changes.size());
+		assertEquals("added 2", changes.get(0));
+	}
+
+	@Test
+	public void testCorruptTailIsIgnored() throws Exception {
+		log.appendTriple(triple(1), false);
+		log.commit();
+		log.appendTriple(triple(2), false);
+		log.commit();
+		log.close();
+
+		// damage the last frame, as if it was only partially written
+		File file = new File(dataDir, WriteAheadLog.FILE_NAME);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length() - 3);
+			raf.write(0x7F);
+		}
+
+		log = new WriteAheadLog(dataDir);
+		List<String> changes = replay();
+		assertEquals(1, changes.size());
+		assertEquals("added 1", changes.get(0));
+	}
+
+	@Test
+	public void testLargeValue() throws Exception {
+		byte[] data = new byte[200_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		log.appendTriple(triple(1), false);
+		log.appendValue(7, data);
+		log.commit();
+
+		reopen();
+		log.replay(new WriteAheadLog.Handler() {
+
+			@Override
+			public void value(int id, byte[] valueData) {
+				assertEquals(7, id);
+				assertArrayEquals(data, valueData);
+			}
+
+			@Override
+			public void triple(byte[] tripleData, boolean removed) {
+				assertArrayEquals(WriteAheadLogTest.triple(1), tripleData);
+			}
+		});
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		log.appendTriple(triple(1), false);
+		long lsn1 = log.commit();
+		log.appendTriple(triple(2), false);
+		long lsn2 = log.commit();
+		assertTrue(lsn2 > lsn1);
+
+		// a single force makes both transactions durable
+		log.awaitDurable(lsn2);
+		log.awaitDurable(lsn1);
+		assertEquals(1, log.getForceCount());
+	}
+
+	@Test
+	public void testConcurrentCommits() throws Exception {
+		int threadCount = 8;
+		int commitCount = 50;
+		// all threads commit before any of them waits, so that a single force makes all their commits durable
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+		List<Thread> threads = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			int threadID = t;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < commitCount; i++) {
+						long lsn;
+						synchronized (log) {
+							log.appendTriple(triple(threadID * commitCount + i), false);
+							lsn = log.commit();
+						}
+						barrier.await();
+						log.awaitDurable(lsn);
+						barrier.await();
+					}
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(commitCount, log.getForceCount());
+
+		reopen();
+		assertEquals(threadCount * commitCount, replay().size());
+	}
+
+	@Test
+	public void testReset() throws Exception {
+		log.appendTriple(triple(1), false);
+		long lsn = log.commit();
+
+		log.reset();
+
+		assertTrue(log.isEmpty());
+		// the reset log does not need to be forced for transactions that were committed before
+		log.awaitDurable(lsn);
+		assertEquals(0, log.getForceCount());
+
+		log.appendTriple(triple(2), false);
+		assertTrue(log.commit() > lsn);
+
+		reopen();
+		List<String> changes = replay();
+		assertEquals(1, changes.size());
+		assertEquals("added 2", changes.get(0));
+	}
+
+	@Test
+	public void testRestore() throws Exception {
+		byte[] original = new byte[2 * WriteAheadLog.PAGE_SIZE + 100];
+		for (int i = 0; i < original.length; i++) {
+			original[i] = (byte) i;
+		}
+		File file = new File(dataDir, "test.dat");
+		Files.write(file.toPath(), original);
+
+		NioFile nioFile = new NioFile(file);
+		try {
+			// overwrite the second page twice, and append to the file
+			log.beforeWrite(nioFile, WriteAheadLog.PAGE_SIZE + 10, 20);
+			nioFile.writeBytes(new byte[20], WriteAheadLog.PAGE_SIZE + 10);
+			log.beforeWrite(nioFile, WriteAheadLog.PAGE_SIZE + 30, 20);
+			nioFile.writeBytes(new byte[20], WriteAheadLog.PAGE_SIZE + 30);
+			log.beforeWrite(nioFile, original.length, 50);
+			nioFile.writeBytes(new byte[50], original.length);
+			// only the first write needed to wait for a force of the log
+			assertEquals(1, log.getForceCount());
+		} finally {
+			nioFile.close();
+		}
+
+		// the original contents are kept when a transaction is aborted
+		log.appendTriple(triple(1), false);
+		log.abort();
+
+		reopen();
+		assertFalse(log.isEmpty());
+		assertTrue(log.restore(dataDir));
+		assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+		assertEquals(0, replay().size());
+
+		// files are not restored once the log has been reset
+		log.reset();
+		reopen();
+		assertTrue(log.isEmpty());
+		assertFalse(log.restore(dataDir));
+	}
+
+	private void reopen() throws IOException {
+		log.close();
+		log = new WriteAheadLog(dataDir);
+	}
+
+	private List<String> replay() throws IOException {
+		List<String> changes = new ArrayList<>();
+		log.replay(new WriteAheadLog.Handler() {
+
+			@Override
+			public void value(int id, byte[] data) {
+				StringBuilder sb = new StringBuilder();
+				for (byte b : data) {
+					sb.append(sb.length() == 0 ? "" : ", ").append(b);
+				}
+				changes.add("value " + id + " [" + sb + "]");
+			}
+
+			@Override
+			public void triple(byte[] data, boolean removed) {
+				changes.add((removed ? "removed " : "added ") + data[0]);
+			}
+		});
+		return changes;
+	}
+
+	private static byte[] triple(int subj) {
+		byte[] data = new byte[17];
+		data[0] = (byte) subj;
+		return data;
+	}
+}
@@ -39,7 +39,11 @@ public class BTreeBenchmark {
 	@Before
 	public void setUp() throws Exception {
 		dir = FileUtil.createTempDir("btree");
-		btree = new BTree(dir, "test", 4096, 8);
+		btree = createBTree(dir);
+	}
+
+	protected BTree createBTree(File dir) throws IOException {
+		return new BTree(dir, "test", 4096, 8);
 	}
 
 	@After
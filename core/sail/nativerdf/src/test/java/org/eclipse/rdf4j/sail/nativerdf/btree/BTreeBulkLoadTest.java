@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BTreeBulkLoadTest {
+
+	private File dir;
+
+	private BTree btree;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = FileUtil.createTempDir("btree");
+		// branch factor 16
+		btree = new BTree(dir, "test", 128, 4, new DefaultRecordComparator(), false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		btree.delete();
+		FileUtil.deleteDir(dir);
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		btree.bulkLoad(new RangeIterator(0, 0));
+		assertRange(0, 0);
+
+		btree.insert(toValue(3));
+		assertRange(3, 4);
+	}
+
+	@Test
+	public void testVariousSizes() throws Exception {
+		// sizes around the node capacity of the first levels of the tree
+		int[] sizes = { 1, 7, 15, 16, 17, 23, 31, 32, 33, 255, 256, 257, 271, 272, 5000 };
+		for (int size : sizes) {
+			btree.clear();
+			btree.bulkLoad(new RangeIterator(0, size));
+			assertRange(0, size);
+		}
+	}
+
+	@Test
+	public void testUpdatesAfterBulkLoad() throws Exception {
+		int size = 5000;
+		btree.bulkLoad(new RangeIterator(0, 2 * size, 2));
+		btree.close();
+
+		btree = new BTree(dir, "test", 128, 4, new DefaultRecordComparator(), false);
+
+		// fill the gaps, which splits all bulk loaded nodes, then remove the original values
+		for (int i = 1; i < 2 * size; i += 2) {
+			btree.insert(toValue(i));
+		}
+		assertRange(0, 2 * size);
+
+		for (int i = 0; i < 2 * size; i += 2) {
+			assertArrayEquals(toValue(i), btree.remove(toValue(i)));
+		}
+		for (int i = 1; i < 2 * size; i += 2) {
+			assertArrayEquals(toValue(i), btree.get(toValue(i)));
+		}
+		assertNull(btree.get(toValue(0)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNonEmpty() throws Exception {
+		btree.insert(toValue(1));
+		btree.bulkLoad(new RangeIterator(2, 10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsorted() throws Exception {
+		btree.bulkLoad(new RangeIterator(10, 0, -1));
+	}
+
+	private void assertRange(int from, int to) throws Exception {
+		try (RecordIterator iter = btree.iterateAll()) {
+			int expected = from;
+			byte[] value;
+			while ((value = iter.next()) != null) {
+				assertEquals(expected++, ByteArrayUtil.getInt(value, 0));
+			}
+			assertEquals(to, expected);
+		}
+		for (int i = from; i < to; i++) {
+			assertArrayEquals(toValue(i), btree.get(toValue(i)));
+		}
+	}
+
+	private static byte[] toValue(int i) {
+		byte[] value = new byte[4];
+		ByteArrayUtil.putInt(i, value, 0);
+		return value;
+	}
+
+	private static class RangeIterator implements RecordIterator {
+
+		private final int end;
+
+		private final int step;
+
+		private int next;
+
+		RangeIterator(int start, int end) {
+			this(start, end, 1);
+		}
+
+		RangeIterator(int start, int end, int step) {
+			this.next = start;
+			this.end = end;
+			this.step = step;
+		}
+
+		@Override
+		public byte[] next() {
+			if (step > 0 ? next >= end : next <= end) {
+				return null;
+			}
+			byte[] value = toValue(next);
+			next += step;
+			return value;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
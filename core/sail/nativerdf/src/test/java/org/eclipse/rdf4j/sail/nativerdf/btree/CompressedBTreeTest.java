@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressedBTreeTest {
+
+	private static final int VALUE_COUNT = 5000;
+
+	private File dir;
+
+	private BTree btree;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = FileUtil.createTempDir("btree");
+		btree = createBTree();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		btree.delete();
+		FileUtil.deleteDir(dir);
+	}
+
+	private BTree createBTree() throws Exception {
+		return new BTree(dir, "test", 128, 4, new DefaultRecordComparator(), false, false, true);
+	}
+
+	@Test
+	public void testReadAfterReopen() throws Exception {
+		for (int i : shuffledValues()) {
+			btree.insert(toValue(i));
+		}
+		btree.close();
+
+		btree = createBTree();
+
+		assertTrue(btree.isCompressed());
+		assertRange(0, VALUE_COUNT);
+		assertArrayEquals(toValue(42), btree.get(toValue(42)));
+		assertNull(btree.get(toValue(VALUE_COUNT)));
+	}
+
+	@Test
+	public void testReadAfterRemoval() throws Exception {
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+
+		for (int i = VALUE_COUNT - 1; i >= VALUE_COUNT / 2; i--) {
+			btree.remove(toValue(i));
+		}
+		btree.close();
+
+		btree = createBTree();
+		assertRange(0, VALUE_COUNT / 2);
+
+		for (int i = VALUE_COUNT / 2; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+
+		assertRange(0, VALUE_COUNT);
+	}
+
+	@Test
+	public void testIncompressibleValues() throws Exception {
+		// random values hardly compress, so nodes need overflow blocks
+		Random random = new Random(43);
+		List<byte[]> values = new ArrayList<>();
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			byte[] value = toValue(random.nextInt());
+			if (btree.insert(value) == null) {
+				values.add(value);
+			}
+		}
+		btree.close();
+
+		// the allocated nodes list has to be reconstructed, including the overflow blocks
+		new File(dir, "test.alloc").delete();
+		btree = createBTree();
+
+		for (byte[] value : values) {
+			assertArrayEquals(value, btree.get(value));
+		}
+		for (byte[] value : values) {
+			btree.remove(value);
+		}
+		btree.sync();
+
+		try (RecordIterator iter = btree.iterateAll()) {
+			assertNull(iter.next());
+		}
+	}
+
+	@Test
+	public void testUncompressedFileFormatIsRetained() throws Exception {
+		btree.delete();
+		btree = new BTree(dir, "test", 128, 4, new DefaultRecordComparator(), false);
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.close();
+
+		btree = createBTree();
+
+		assertFalse(btree.isCompressed());
+		assertRange(0, VALUE_COUNT);
+	}
+
+	private void assertRange(int from, int to) throws Exception {
+		try (RecordIterator iter = btree.iterateAll()) {
+			int expected = from;
+			byte[] value;
+			while ((value = iter.next()) != null) {
+				assertEquals(expected++, ByteArrayUtil.getInt(value, 0));
+			}
+			assertEquals(to, expected);
+		}
+	}
+
+	private static List<Integer> shuffledValues() {
+		List<Integer> values = new ArrayList<>(VALUE_COUNT);
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			values.add(i);
+		}
+		Collections.shuffle(values, new Random(42));
+		return values;
+	}
+
+	private static byte[] toValue(int i) {
+		byte[] value = new byte[4];
+		ByteArrayUtil.putInt(i, value, 0);
+		return value;
+	}
+}
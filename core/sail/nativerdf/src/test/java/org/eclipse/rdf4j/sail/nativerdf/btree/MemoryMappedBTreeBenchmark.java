@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the {@link BTreeBenchmark} against a B-tree that reads its nodes from memory-mapped segments. The segments are
+ * kept small so that the benchmark data is mapped almost completely.
+ */
+public class MemoryMappedBTreeBenchmark extends BTreeBenchmark {
+
+	@Override
+	protected BTree createBTree(File dir) throws IOException {
+		return new BTree(dir, "test", 4096, 8, new DefaultRecordComparator(), false, 64);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryMappedBTreeTest {
+
+	private static final int VALUE_COUNT = 5000;
+
+	private File dir;
+
+	private BTree btree;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = FileUtil.createTempDir("btree");
+		btree = createBTree();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		btree.delete();
+		FileUtil.deleteDir(dir);
+	}
+
+	private BTree createBTree() throws Exception {
+		// two blocks per segment, so that practically all nodes are read from mapped segments
+		return new BTree(dir, "test", 128, 4, new DefaultRecordComparator(), false, 2);
+	}
+
+	@Test
+	public void testReadAfterReopen() throws Exception {
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.close();
+
+		btree = createBTree();
+
+		assertRange(0, VALUE_COUNT);
+		assertArrayEquals(toValue(42), btree.get(toValue(42)));
+		assertNull(btree.get(toValue(VALUE_COUNT)));
+	}
+
+	@Test
+	public void testReadAfterRemoval() throws Exception {
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+
+		// removing the upper half frees nodes at the end of the file, which shrinks it
+		for (int i = VALUE_COUNT - 1; i >= VALUE_COUNT / 2; i--) {
+			btree.remove(toValue(i));
+		}
+		btree.sync();
+
+		assertRange(0, VALUE_COUNT / 2);
+
+		for (int i = VALUE_COUNT / 2; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+
+		assertRange(0, VALUE_COUNT);
+	}
+
+	@Test
+	public void testConcurrentReadsWhileShrinking() throws Exception {
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					// the lower half is never removed, reading the upper half races with the shrinking file
+					assertArrayEquals(toValue(42), btree.get(toValue(42)));
+					try (RecordIterator iter = btree.iterateAll()) {
+						while (iter.next() != null) {
+						}
+					}
+				}
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		});
+		reader.start();
+		try {
+			for (int round = 0; round < 5; round++) {
+				for (int i = VALUE_COUNT - 1; i >= VALUE_COUNT / 2; i--) {
+					btree.remove(toValue(i));
+				}
+				for (int i = VALUE_COUNT / 2; i < VALUE_COUNT; i++) {
+					btree.insert(toValue(i));
+				}
+			}
+		} finally {
+			done.set(true);
+			reader.join();
+		}
+
+		assertNull(failure.get());
+		assertRange(0, VALUE_COUNT);
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			btree.insert(toValue(i));
+		}
+		btree.sync();
+		btree.clear();
+
+		try (RecordIterator iter = btree.iterateAll()) {
+			assertNull(iter.next());
+		}
+
+		btree.insert(toValue(7));
+		assertRange(7, 8);
+	}
+
+	private void assertRange(int from, int to) throws Exception {
+		try (RecordIterator iter = btree.iterateAll()) {
+			int expected = from;
+			byte[] value;
+			while ((value = iter.next()) != null) {
+				assertEquals(expected++, ByteArrayUtil.getInt(value, 0));
+			}
+			assertEquals(to, expected);
+		}
+	}
+
+	private static byte[] toValue(int i) {
+		byte[] value = new byte[4];
+		ByteArrayUtil.putInt(i, value, 0);
+		return value;
+	}
+}
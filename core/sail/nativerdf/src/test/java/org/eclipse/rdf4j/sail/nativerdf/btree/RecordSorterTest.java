@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.btree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordSorterTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = FileUtil.createTempDir("sorter");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtil.deleteDir(dir);
+	}
+
+	@Test
+	public void testInMemory() throws Exception {
+		assertSorted(100, 1000);
+	}
+
+	@Test
+	public void testRuns() throws Exception {
+		assertSorted(1000, 64);
+	}
+
+	@Test
+	public void testMultipleMergePasses() throws Exception {
+		// 125 runs, merged 4 at a time
+		assertSorted(1000, 16, 4);
+	}
+
+	@Test
+	public void testFirstRecordRetainedAcrossMergePasses() throws Exception {
+		// records are equal if their first byte is equal
+		RecordComparator comparator = (key, data, offset, length) -> Integer.compare(key[0] & 0xff,
+				data[offset] & 0xff);
+		try (RecordSorter sorter = new RecordSorter(dir, 2, comparator, 3, 2)) {
+			for (int i = 0; i < 60; i++) {
+				sorter.add(new byte[] { (byte) (i % 7), (byte) i });
+			}
+
+			try (RecordIterator iter = sorter.sort()) {
+				for (int i = 0; i < 7; i++) {
+					byte[] record = iter.next();
+					assertEquals(i, record[0]);
+					assertEquals(i, record[1]);
+				}
+				assertNull(iter.next());
+			}
+		}
+		assertEquals(0, dir.list().length);
+	}
+
+	@Test
+	public void testTemporaryFilesDeleted() throws Exception {
+		try (RecordSorter sorter = new RecordSorter(dir, 2, new DefaultRecordComparator(), 10)) {
+			for (int i = 0; i < 100; i++) {
+				sorter.add(new byte[] { 0, (byte) i });
+			}
+			assertEquals(10, dir.list().length);
+		}
+		assertEquals(0, dir.list().length);
+	}
+
+	private void assertSorted(int valueCount, int runSize) throws Exception {
+		assertSorted(valueCount, runSize, RecordSorter.DEFAULT_MERGE_WIDTH);
+	}
+
+	private void assertSorted(int valueCount, int runSize, int mergeWidth) throws Exception {
+		List<Integer> values = new ArrayList<>();
+		for (int i = 0; i < valueCount; i++) {
+			// add every value twice
+			values.add(i);
+			values.add(i);
+		}
+		Collections.shuffle(values, new Random(42));
+
+		try (RecordSorter sorter = new RecordSorter(dir, 2, new DefaultRecordComparator(), runSize, mergeWidth)) {
+			for (int value : values) {
+				sorter.add(new byte[] { (byte) (value >> 8), (byte) value });
+			}
+
+			try (RecordIterator iter = sorter.sort()) {
+				for (int i = 0; i < valueCount; i++) {
+					byte[] record = iter.next();
+					assertEquals(i, ((record[0] & 0xff) << 8) | (record[1] & 0xff));
+				}
+				assertNull(iter.next());
+			}
+		}
+	}
+}
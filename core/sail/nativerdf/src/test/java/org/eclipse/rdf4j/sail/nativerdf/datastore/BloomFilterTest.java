@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BloomFilter}.
+ */
+public class BloomFilterTest {
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("bloomfilter");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testNoFalseNegatives() {
+		BloomFilter filter = new BloomFilter(10_000);
+		for (long key = 0; key < 10_000; key++) {
+			filter.add(key * 31);
+		}
+
+		for (long key = 0; key < 10_000; key++) {
+			assertTrue(filter.mightContain(key * 31));
+		}
+		// keys that are false positives when they are added are not counted
+		assertTrue(filter.getKeyCount() > 9_900);
+		assertFalse(filter.isFull());
+	}
+
+	@Test
+	public void testFalsePositiveRate() {
+		BloomFilter filter = new BloomFilter(10_000);
+		for (long key = 0; key < 10_000; key++) {
+			filter.add(key);
+		}
+
+		int falsePositives = 0;
+		for (long key = 10_000; key < 110_000; key++) {
+			if (filter.mightContain(key)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positive rate too high: " + falsePositives, falsePositives < 2_000);
+	}
+
+	@Test
+	public void testFull() {
+		BloomFilter filter = new BloomFilter(100);
+		for (long key = 0; key < 200; key++) {
+			filter.add(key);
+		}
+
+		assertTrue(filter.isFull());
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		File file = new File(dataDir, "test.bloom");
+		BloomFilter filter = new BloomFilter(1000);
+		for (long key = 0; key < 1000; key++) {
+			filter.add(key);
+		}
+		filter.write(file);
+
+		BloomFilter readFilter = BloomFilter.read(file);
+
+		assertNotNull(readFilter);
+		assertEquals(filter.getCapacity(), readFilter.getCapacity());
+		assertEquals(filter.getKeyCount(), readFilter.getKeyCount());
+		for (long key = 0; key < 1000; key++) {
+			assertTrue(readFilter.mightContain(key));
+		}
+	}
+
+	@Test
+	public void testReadIncompleteFile() throws Exception {
+		File file = new File(dataDir, "test.bloom");
+		new BloomFilter(1000).write(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+
+		assertNull(BloomFilter.read(file));
+		assertNull(BloomFilter.read(new File(dataDir, "missing.bloom")));
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.datastore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link OffHeapDataCache}.
+ */
+public class OffHeapDataCacheTest {
+
+	private OffHeapDataCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new OffHeapDataCache(OffHeapDataCache.MIN_CAPACITY);
+	}
+
+	@After
+	public void tearDown() {
+		cache.close();
+	}
+
+	@Test
+	public void testGetDataAndID() {
+		for (int id = 1; id <= 1000; id++) {
+			cache.put(id, data(id));
+		}
+
+		for (int id = 1; id <= 1000; id++) {
+			assertArrayEquals(data(id), cache.getData(id));
+			assertEquals(id, cache.getID(data(id)));
+		}
+
+		assertNull(cache.getData(1001));
+		assertEquals(-1, cache.getID(data(1001)));
+		assertEquals(2000, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testOverwrittenEntriesAreNotReturned() {
+		int count = 100_000;
+		for (int id = 1; id <= count; id++) {
+			cache.put(id, data(id));
+		}
+
+		// the oldest entries no longer fit in the ring buffers
+		int found = 0;
+		for (int id = 1; id <= count; id++) {
+			byte[] data = cache.getData(id);
+			if (data != null) {
+				assertArrayEquals(data(id), data);
+				found++;
+			}
+			int cachedID = cache.getID(data(id));
+			assertTrue(cachedID == -1 || cachedID == id);
+		}
+		assertTrue(found > 0);
+		assertTrue(found < count);
+
+		// the most recent entry is always retained
+		assertArrayEquals(data(count), cache.getData(count));
+	}
+
+	@Test
+	public void testClear() {
+		cache.put(1, data(1));
+
+		cache.clear();
+
+		assertNull(cache.getData(1));
+		assertEquals(-1, cache.getID(data(1)));
+
+		cache.put(2, data(2));
+		assertArrayEquals(data(2), cache.getData(2));
+	}
+
+	@Test
+	public void testLargeDataIsNotCached() {
+		byte[] data = new byte[(int) OffHeapDataCache.MIN_CAPACITY];
+
+		cache.put(1, data);
+
+		assertNull(cache.getData(1));
+		assertEquals(-1, cache.getID(data));
+	}
+
+	private static byte[] data(int id) {
+		return ("http://example.org/resource/" + id).getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
@@ -244,6 +245,28 @@ public final class NioFile implements Closeable {
 		}
 	}
 
+	/**
+	 * Performs a protected {@link FileChannel#map(FileChannel.MapMode, long, long)} call. The returned buffer stays
+	 * valid after the channel has been closed or reopened.
+	 *
+	 * @param mode     map mode
+	 * @param position non-negative position within the file
+	 * @param size     size of the region to map
+	 * @return the mapped region
+	 * @throws IOException
+	 */
+	public MappedByteBuffer map(FileChannel.MapMode mode, long position, long size) throws IOException {
+		while (true) {
+			try {
+				return fc.map(mode, position, size);
+			} catch (ClosedByInterruptException e) {
+				throw e;
+			} catch (ClosedChannelException e) {
+				reopen(e);
+			}
+		}
+	}
+
 	/**
 	 * Write byte array to channel starting at offset.
 	 *
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.common.iteration;
+
+import java.util.List;
+
+/**
+ * A {@link CloseableIteration} that can return its elements in batches, which spares the consumer the per element
+ * overhead of {@link #hasNext()} and {@link #next()}, e.g. dispatch, synchronization and look-ahead bookkeeping.
+ * Batches and single elements may be read from the same iteration alternately. Consumers that accept any iteration
+ * should read batches with {@link Iterations#nextBatch(Iteration, List, int)}.
+ *
+ * @since 3.3.0
+ */
+public interface BatchIteration<E, X extends Exception> extends CloseableIteration<E, X> {
+
+	/**
+	 * A batch size that amortizes the per element overhead of most iterations.
+	 */
+	int DEFAULT_BATCH_SIZE = 128;
+
+	/**
+	 * Reads the next elements of this iteration and adds them to a batch. The batch is not cleared.
+	 *
+	 * @param batch The list to add the elements to.
+	 * @param max   The maximum number of elements to add, at least <tt>1</tt>.
+	 * @return The number of elements that have been added, which is <tt>0</tt> if and only if the iteration has no more
+	 *         elements, in which case it is closed.
+	 */
+	int nextBatch(List<? super E> batch, int max) throws X;
+}
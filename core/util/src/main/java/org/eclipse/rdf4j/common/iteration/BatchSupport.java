@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.common.iteration;
+
+import java.util.List;
+
+/**
+ * Helpers for the {@link BatchIteration} implementations of the base iteration classes.
+ */
+final class BatchSupport {
+
+	/**
+	 * Whether a class overrides {@link Iteration#hasNext()} or {@link Iteration#next()} in a subclass of the class that
+	 * implements {@link BatchIteration#nextBatch(List, int)}, in which case the inherited batch implementation would
+	 * bypass the overriding methods.
+	 */
+	private static final ClassValue<Boolean> ELEMENT_ACCESS_OVERRIDDEN = new ClassValue<Boolean>() {
+
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				if (declares(c, "nextBatch", List.class, int.class)) {
+					return false;
+				} else if (declares(c, "hasNext") || declares(c, "next")) {
+					return true;
+				}
+			}
+			return false;
+		}
+	};
+
+	private BatchSupport() {
+	}
+
+	/**
+	 * Checks whether the inherited batch implementation of an iteration can be used, or whether its elements must be
+	 * read by its own {@link Iteration#hasNext()} and {@link Iteration#next()} methods.
+	 */
+	static boolean isBatchSupported(Iteration<?, ?> iter) {
+		return !ELEMENT_ACCESS_OVERRIDDEN.get(iter.getClass());
+	}
+
+	/**
+	 * Reads a batch element by element.
+	 */
+	static <E, X extends Exception> int nextElements(Iteration<? extends E, X> iter, List<? super E> batch, int max)
+			throws X {
+		int count = 0;
+		while (count < max && iter.hasNext()) {
+			batch.add(iter.next());
+			count++;
+		}
+		return count;
+	}
+
+	private static boolean declares(Class<?> c, String name, Class<?>... parameterTypes) {
+		try {
+			c.getDeclaredMethod(name, parameterTypes);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
@@ -8,6 +8,8 @@
 
 package org.eclipse.rdf4j.common.iteration;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 
@@ -15,7 +17,8 @@ import java.util.Objects;
  * A CloseableIteration that converts an iteration over objects of type <tt>S</tt> (the source type) to an iteration
  * over objects of type <tt>T</tt> (the target type).
  */
-public abstract class ConvertingIteration<S, T, X extends Exception> extends AbstractCloseableIteration<T, X> {
+public abstract class ConvertingIteration<S, T, X extends Exception> extends AbstractCloseableIteration<T, X>
+		implements BatchIteration<T, X> {
 
 	/*-----------*
 	 * Variables *
@@ -26,6 +29,11 @@ public abstract class ConvertingIteration<S, T, X extends Exception> extends Abs
 	 */
 	private final Iteration<? extends S, ? extends X> iter;
 
+	/**
+	 * The source objects that are converted by {@link #nextBatch(List, int)}.
+	 */
+	private List<S> sourceObjects;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -81,6 +89,34 @@ public abstract class ConvertingIteration<S, T, X extends Exception> extends Abs
 		return convert(iter.next());
 	}
 
+	/**
+	 * Reads a batch of the source type iteration and converts it. Subclasses that override {@link #hasNext()} or
+	 * {@link #next()} without overriding this method are read element by element.
+	 */
+	@Override
+	public int nextBatch(List<? super T> batch, int max) throws X {
+		if (!BatchSupport.isBatchSupported(this)) {
+			return BatchSupport.nextElements(this, batch, max);
+		} else if (isClosed()) {
+			return 0;
+		}
+		if (sourceObjects == null) {
+			sourceObjects = new ArrayList<>(Math.min(max, DEFAULT_BATCH_SIZE));
+		}
+		try {
+			int count = Iterations.nextBatch(iter, sourceObjects, max);
+			if (count == 0) {
+				close();
+			}
+			for (S sourceObject : sourceObjects) {
+				batch.add(convert(sourceObject));
+			}
+			return count;
+		} finally {
+			sourceObjects.clear();
+		}
+	}
+
 	/**
 	 * Calls <tt>remove()</tt> on the underlying Iteration.
 	 *
@@ -8,6 +8,7 @@
 
 package org.eclipse.rdf4j.common.iteration;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 
@@ -15,7 +16,8 @@ import java.util.Objects;
  * A CloseableIteration that converts an arbitrary iteration to an iteration with exceptions of type <tt>X</tt>.
  * Subclasses need to override {@link #convert(Exception)} to do the conversion.
  */
-public abstract class ExceptionConvertingIteration<E, X extends Exception> extends AbstractCloseableIteration<E, X> {
+public abstract class ExceptionConvertingIteration<E, X extends Exception> extends AbstractCloseableIteration<E, X>
+		implements BatchIteration<E, X> {
 
 	/*-----------*
 	 * Variables *
@@ -94,6 +96,31 @@ public abstract class ExceptionConvertingIteration<E, X extends Exception> exten
 		}
 	}
 
+	/**
+	 * Reads the next elements from the underlying Iteration, in a single call if it is a {@link BatchIteration}.
+	 * Subclasses that override {@link #hasNext()} or {@link #next()} without overriding this method are read element by
+	 * element.
+	 */
+	@Override
+	public int nextBatch(List<? super E> batch, int max) throws X {
+		if (!BatchSupport.isBatchSupported(this)) {
+			return BatchSupport.nextElements(this, batch, max);
+		} else if (isClosed()) {
+			return 0;
+		}
+		try {
+			int count = Iterations.nextBatch(iter, batch, max);
+			if (count == 0) {
+				close();
+			}
+			return count;
+		} catch (NoSuchElementException | IllegalStateException e) {
+			throw e;
+		} catch (Exception e) {
+			throw convert(e);
+		}
+	}
+
 	/**
 	 * Calls <tt>remove()</tt> on the underlying Iteration.
 	 *
@@ -8,6 +8,8 @@
 
 package org.eclipse.rdf4j.common.iteration;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -22,6 +24,11 @@ public abstract class FilterIteration<E, X extends Exception> extends IterationW
 
 	private volatile E nextElement;
 
+	/**
+	 * The elements of the wrapped Iteration that are filtered by {@link #nextBatch(List, int)}.
+	 */
+	private List<E> candidates;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -69,6 +76,44 @@ public abstract class FilterIteration<E, X extends Exception> extends IterationW
 		}
 	}
 
+	/**
+	 * Reads batches of the wrapped Iteration and filters them, until elements have been accepted or the wrapped
+	 * Iteration is exhausted.
+	 */
+	@Override
+	public int nextBatch(List<? super E> batch, int max) throws X {
+		if (!BatchSupport.isBatchSupported(this)) {
+			return BatchSupport.nextElements(this, batch, max);
+		}
+		int count = 0;
+		E pending = nextElement;
+		if (pending != null) {
+			nextElement = null;
+			batch.add(pending);
+			count++;
+		}
+		if (candidates == null) {
+			candidates = new ArrayList<>(Math.min(max, DEFAULT_BATCH_SIZE));
+		}
+		try {
+			while (count < max && !isClosed()) {
+				if (super.nextBatch(candidates, max - count) == 0) {
+					break;
+				}
+				for (E candidate : candidates) {
+					if (accept(candidate)) {
+						batch.add(candidate);
+						count++;
+					}
+				}
+				candidates.clear();
+			}
+		} finally {
+			candidates.clear();
+		}
+		return count;
+	}
+
 	private void findNextElement() throws X {
 		try {
 			while (!isClosed() && nextElement == null && super.hasNext()) {
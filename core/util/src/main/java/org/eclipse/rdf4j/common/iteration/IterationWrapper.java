@@ -8,6 +8,7 @@
 
 package org.eclipse.rdf4j.common.iteration;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -15,7 +16,8 @@ import java.util.NoSuchElementException;
  * provides default methods that forward method calls to the wrapped Iteration. Subclasses of <tt>IterationWrapper</tt>
  * should override some of these methods and may also provide additional methods and fields.
  */
-public class IterationWrapper<E, X extends Exception> extends AbstractCloseableIteration<E, X> {
+public class IterationWrapper<E, X extends Exception> extends AbstractCloseableIteration<E, X>
+		implements BatchIteration<E, X> {
 
 	/*-----------*
 	 * Variables *
@@ -88,6 +90,28 @@ public class IterationWrapper<E, X extends Exception> extends AbstractCloseableI
 		}
 	}
 
+	/**
+	 * Reads the next elements from the wrapped Iteration, in a single call if it is a {@link BatchIteration}.
+	 * Subclasses that override {@link #hasNext()} or {@link #next()} without overriding this method are read element
+	 * by element.
+	 */
+	@Override
+	public int nextBatch(List<? super E> batch, int max) throws X {
+		if (!BatchSupport.isBatchSupported(this)) {
+			return BatchSupport.nextElements(this, batch, max);
+		} else if (isClosed()) {
+			return 0;
+		} else if (Thread.currentThread().isInterrupted()) {
+			close();
+			return 0;
+		}
+		int count = Iterations.nextBatch(wrappedIter, batch, max);
+		if (count == 0) {
+			close();
+		}
+		return count;
+	}
+
 	/**
 	 * Removes the last element that has been returned from the wrapped Iteration.
 	 *
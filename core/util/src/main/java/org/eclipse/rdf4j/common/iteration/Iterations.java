@@ -71,6 +71,26 @@ public class Iterations {
 		return collection;
 	}
 
+	/**
+	 * Reads the next elements of an Iteration and adds them to a batch, in a single call if the Iteration is a
+	 * {@link BatchIteration}, otherwise element by element.
+	 *
+	 * @param iter  The Iteration to read the elements from.
+	 * @param batch The list to add the elements to.
+	 * @param max   The maximum number of elements to add, at least <tt>1</tt>.
+	 * @return The number of elements that have been added, which is <tt>0</tt> if and only if the Iteration has no more
+	 *         elements.
+	 * @since 3.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E, X extends Exception> int nextBatch(Iteration<? extends E, X> iter, List<? super E> batch,
+			int max) throws X {
+		if (iter instanceof BatchIteration) {
+			return ((BatchIteration<? extends E, X>) iter).nextBatch(batch, max);
+		}
+		return BatchSupport.nextElements(iter, batch, max);
+	}
+
 	/**
 	 * Get a sequential {@link Stream} with the supplied {@link Iteration} as its source. If the source iteration is a
 	 * {@link CloseableIteration}, it will be automatically closed by the stream when done. Any checked exceptions
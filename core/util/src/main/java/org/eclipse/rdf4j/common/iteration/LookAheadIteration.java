@@ -8,6 +8,7 @@
 
 package org.eclipse.rdf4j.common.iteration;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -15,7 +16,8 @@ import java.util.NoSuchElementException;
  * super class for Iterations that have no easy way to tell if there are any more results, but still should implement
  * the <tt>java.util.Iteration</tt> interface.
  */
-public abstract class LookAheadIteration<E, X extends Exception> extends AbstractCloseableIteration<E, X> {
+public abstract class LookAheadIteration<E, X extends Exception> extends AbstractCloseableIteration<E, X>
+		implements BatchIteration<E, X> {
 
 	/*-----------*
 	 * Variables *
@@ -69,6 +71,30 @@ public abstract class LookAheadIteration<E, X extends Exception> extends Abstrac
 		}
 	}
 
+	/**
+	 * Reads the next elements with {@link #getNextElement()}, without looking ahead.
+	 */
+	@Override
+	public int nextBatch(List<? super E> batch, int max) throws X {
+		int count = 0;
+		E pending = nextElement;
+		if (pending != null) {
+			nextElement = null;
+			batch.add(pending);
+			count++;
+		}
+		while (count < max && !isClosed()) {
+			E next = getNextElement();
+			if (next == null) {
+				close();
+			} else {
+				batch.add(next);
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Fetches the next element if it hasn't been fetched yet and stores it in {@link #nextElement}.
 	 *
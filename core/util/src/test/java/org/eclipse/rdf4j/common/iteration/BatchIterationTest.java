@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.common.iteration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchIterationTest {
+
+	@Test
+	public void testLookAheadIteration() throws Exception {
+		Range range = new Range(10);
+		List<Integer> batch = new ArrayList<>();
+
+		assertEquals(4, range.nextBatch(batch, 4));
+		assertEquals(Arrays.asList(0, 1, 2, 3), batch);
+		assertEquals(6, range.nextBatch(batch, 100));
+		assertEquals(10, batch.size());
+		assertEquals(0, range.nextBatch(batch, 100));
+		assertTrue(range.isClosed());
+	}
+
+	@Test
+	public void testMixedAccess() throws Exception {
+		Range range = new Range(5);
+		List<Integer> batch = new ArrayList<>();
+
+		assertTrue(range.hasNext());
+		assertEquals(2, range.nextBatch(batch, 2));
+		assertEquals(Arrays.asList(0, 1), batch);
+		assertEquals(Integer.valueOf(2), range.next());
+		batch.clear();
+		assertEquals(2, range.nextBatch(batch, 10));
+		assertEquals(Arrays.asList(3, 4), batch);
+		assertFalse(range.hasNext());
+	}
+
+	@Test
+	public void testFilterIteration() throws Exception {
+		Range range = new Range(100);
+		FilterIteration<Integer, Exception> even = new FilterIteration<Integer, Exception>(range) {
+
+			@Override
+			protected boolean accept(Integer object) {
+				return object % 2 == 0;
+			}
+		};
+
+		assertTrue(even.hasNext());
+		assertEquals(Integer.valueOf(0), even.next());
+		assertTrue(even.hasNext());
+		List<Integer> batch = new ArrayList<>();
+		assertEquals(3, even.nextBatch(batch, 3));
+		assertEquals(Arrays.asList(2, 4, 6), batch);
+		assertEquals(46, even.nextBatch(batch, 100));
+		assertEquals(49, batch.size());
+		assertEquals(0, even.nextBatch(batch, 100));
+		assertTrue(even.isClosed());
+		assertTrue(range.isClosed());
+	}
+
+	@Test
+	public void testConvertingIteration() throws Exception {
+		Range range = new Range(3);
+		ConvertingIteration<Integer, String, Exception> strings = new ConvertingIteration<Integer, String, Exception>(
+				range) {
+
+			@Override
+			protected String convert(Integer sourceObject) {
+				return sourceObject.toString();
+			}
+		};
+
+		List<String> batch = new ArrayList<>();
+		assertEquals(3, Iterations.nextBatch(strings, batch, 10));
+		assertEquals(Arrays.asList("0", "1", "2"), batch);
+		assertEquals(0, Iterations.nextBatch(strings, batch, 10));
+		assertTrue(range.isClosed());
+	}
+
+	@Test
+	public void testOverriddenElementAccess() throws Exception {
+		LimitIteration<Integer, Exception> limit = new LimitIteration<>(new Range(100), 5);
+
+		List<Integer> batch = new ArrayList<>();
+		assertEquals(5, limit.nextBatch(batch, 10));
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), batch);
+		assertEquals(0, limit.nextBatch(batch, 10));
+	}
+
+	@Test
+	public void testIteratorIteration() throws Exception {
+		CloseableIteration<Integer, Exception> iter = new CloseableIteratorIteration<>(
+				Arrays.asList(1, 2, 3).iterator());
+
+		List<Integer> batch = new ArrayList<>();
+		assertEquals(2, Iterations.nextBatch(iter, batch, 2));
+		assertEquals(1, Iterations.nextBatch(iter, batch, 2));
+		assertEquals(Arrays.asList(1, 2, 3), batch);
+		assertEquals(0, Iterations.nextBatch(iter, batch, 2));
+	}
+
+	/**
+	 * Iterates over the integers from zero.
+	 */
+	private static class Range extends LookAheadIteration<Integer, Exception> {
+
+		private final int size;
+
+		private int next;
+
+		public Range(int size) {
+			this.size = size;
+		}
+
+		@Override
+		protected Integer getNextElement() {
+			return next < size ? next++ : null;
+		}
+	}
+}
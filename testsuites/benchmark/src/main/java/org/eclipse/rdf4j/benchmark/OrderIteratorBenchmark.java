@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2020 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.OrderIterator;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.ValueComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the sorting of solutions by the {@link OrderIterator}, without the evaluation of a query: the bounded heap
+ * for ORDER BY with a small LIMIT, and the external merge sort once the solutions exceed the cache threshold.
+ *
+ * @see QueryOrderBenchmark
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 2)
+@Measurement(iterations = 4)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderIteratorBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int countk = 100;
+
+	@Param({ "10", "1000", "-1" })
+	public int limit = 10;
+
+	@Param({ "0", "10000" })
+	public int syncThreshold = 10000;
+
+	@Param({ "false", "true" })
+	public boolean distinct;
+
+	private List<BindingSet> solutions;
+
+	private final Comparator<BindingSet> comparator = new Comparator<BindingSet>() {
+
+		private final ValueComparator valueComparator = new ValueComparator();
+
+		@Override
+		public int compare(BindingSet a, BindingSet b) {
+			int result = valueComparator.compare(a.getValue("o"), b.getValue("o"));
+			return result != 0 ? result : valueComparator.compare(a.getValue("s"), b.getValue("s"));
+		}
+	};
+
+	@Setup
+	public void setup() {
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		Random random = new Random(42);
+		solutions = new ArrayList<>(countk * 1000);
+		for (int i = 0; i < countk * 1000; i++) {
+			QueryBindingSet bindings = new QueryBindingSet();
+			bindings.addBinding("s", vf.createIRI("urn:test:" + i));
+			// about half of the values are duplicates
+			bindings.addBinding("o", vf.createLiteral(Double.toHexString(random.nextInt(countk * 500))));
+			solutions.add(bindings);
+		}
+	}
+
+	@Benchmark
+	public long sort() throws QueryEvaluationException {
+		long count = 0;
+		try (OrderIterator sorted = new OrderIterator(new CloseableIteratorIteration<>(solutions.iterator()),
+				comparator, limit > 0 ? limit : Long.MAX_VALUE, distinct, syncThreshold)) {
+			while (sorted.hasNext()) {
+				sorted.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String regexp = ".*" + OrderIteratorBenchmark.class.getSimpleName() + ".*";
+		new Runner(new OptionsBuilder().include(regexp).build()).run();
+	}
+}
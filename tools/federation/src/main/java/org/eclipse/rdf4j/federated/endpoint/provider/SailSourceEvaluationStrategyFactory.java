@@ -20,7 +20,9 @@ import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.ValueExpr;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryOptimizerPipeline;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryValueEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
 import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedService;
@@ -124,12 +126,22 @@ import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
 			return delegate.evaluate(expr, bindings);
 		}
 
+		@Override
+		public QueryEvaluationStep precompile(TupleExpr expr) {
+			return delegate.precompile(expr);
+		}
+
 		@Override
 		public Value evaluate(ValueExpr expr, BindingSet bindings)
 				throws ValueExprEvaluationException, QueryEvaluationException {
 			return delegate.evaluate(expr, bindings);
 		}
 
+		@Override
+		public QueryValueEvaluationStep precompile(ValueExpr expr) {
+			return delegate.precompile(expr);
+		}
+
 		@Override
 		public boolean isTrue(ValueExpr expr, BindingSet bindings)
 				throws ValueExprEvaluationException, QueryEvaluationException {